@@ -0,0 +1,77 @@
+package com.github.toastshaman.dropwizard.auth.jwt.benchmarks;
+
+import com.codahale.metrics.MetricRegistry;
+import com.github.toastshaman.dropwizard.auth.jwt.CachingJwtAuthenticator;
+import com.google.common.cache.CacheBuilderSpec;
+import io.dropwizard.auth.AuthenticationException;
+import io.dropwizard.auth.PrincipalImpl;
+import org.jose4j.jwt.consumer.InvalidJwtException;
+import org.jose4j.jwt.consumer.JwtConsumer;
+import org.jose4j.jwt.consumer.JwtContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.security.Principal;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link CachingJwtAuthenticator#authenticate} at hit ratios from 0% to 100%.
+ * <p>A miss is forced by invalidating the token right before it is authenticated, so every miss pays
+ * for the underlying authenticator and for re-populating the cache.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CachingJwtAuthenticatorBenchmark {
+
+    private static final int TOKENS = 1024;
+
+    @Param({"0", "25", "50", "75", "100"})
+    public int hitRatio;
+
+    private CachingJwtAuthenticator<Principal> authenticator;
+    private JwtContext[] contexts;
+    private boolean[] misses;
+    private int next;
+
+    @Setup
+    public void setUp() throws InvalidJwtException, AuthenticationException {
+        final Principal principal = new PrincipalImpl("good-guy");
+        authenticator = new CachingJwtAuthenticator<>(new MetricRegistry(),
+            context -> Optional.of(principal),
+            CacheBuilderSpec.parse("maximumSize=" + TOKENS));
+
+        final JwtConsumer consumer = Tokens.HS256.consumer();
+        final Random random = new Random(42);
+        contexts = new JwtContext[TOKENS];
+        misses = new boolean[TOKENS];
+        for (int i = 0; i < TOKENS; i++) {
+            contexts[i] = consumer.process(Tokens.HS256.token("user-" + i));
+            misses[i] = random.nextInt(100) >= hitRatio;
+            authenticator.authenticate(contexts[i]);
+        }
+    }
+
+    @Benchmark
+    public Optional<Principal> authenticate() throws AuthenticationException {
+        final int i = next++ & (TOKENS - 1);
+        if (misses[i]) {
+            authenticator.invalidate(contexts[i]);
+        }
+        return authenticator.authenticate(contexts[i]);
+    }
+}
@@ -0,0 +1,62 @@
+package com.github.toastshaman.dropwizard.auth.jwt.benchmarks;
+
+import com.github.toastshaman.dropwizard.auth.jwt.JwtAuthFilter;
+import io.dropwizard.auth.PrincipalImpl;
+import org.glassfish.jersey.server.ContainerRequest;
+import org.jose4j.jwt.consumer.JwtContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.ws.rs.core.SecurityContext;
+import java.io.IOException;
+import java.security.Principal;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static javax.ws.rs.core.HttpHeaders.AUTHORIZATION;
+
+/**
+ * Measures {@link JwtAuthFilter#filter} end to end for each signature algorithm: header extraction,
+ * parsing, signature verification, claim validation and authentication.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class JwtAuthFilterBenchmark {
+
+    @Param({"HS256", "RS256", "ES256"})
+    public Tokens algorithm;
+
+    private JwtAuthFilter<Principal> filter;
+    private ContainerRequest request;
+
+    @Setup
+    public void setUp() {
+        final Principal principal = new PrincipalImpl("good-guy");
+        filter = new JwtAuthFilter.Builder<Principal>()
+            .setJwtConsumer(algorithm.consumer())
+            .setPrefix("Bearer")
+            .setRealm("realm")
+            .setAuthenticator((JwtContext context) -> Optional.of(principal))
+            .buildAuthFilter();
+        request = Requests.withHeader(AUTHORIZATION, "Bearer " + algorithm.token("good-guy"));
+    }
+
+    @Benchmark
+    public SecurityContext filter() throws IOException {
+        filter.filter(request);
+        return request.getSecurityContext();
+    }
+}
@@ -0,0 +1,58 @@
+package com.github.toastshaman.dropwizard.auth.jwt.benchmarks;
+
+import com.github.toastshaman.dropwizard.auth.jwt.LazyJwtClaims;
+import org.jose4j.jwt.MalformedClaimException;
+import org.jose4j.jwt.consumer.InvalidJwtException;
+import org.jose4j.jwt.consumer.JwtConsumer;
+import org.jose4j.jwt.consumer.JwtContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares verifying a token whose claims are all parsed by jose4j with verifying it through
+ * {@link LazyJwtClaims}, for tokens carrying an increasing number of custom claims of which only the subject
+ * is read.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class LazyClaimsBenchmark {
+
+    @Param({"0", "20", "200"})
+    public int customClaims;
+
+    private JwtConsumer consumer;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        consumer = Tokens.HS256.consumer();
+        token = Tokens.HS256.tokenWithClaims("good-guy", customClaims);
+    }
+
+    @Benchmark
+    public String eager() throws InvalidJwtException, MalformedClaimException {
+        return consumer.process(token).getJwtClaims().getSubject();
+    }
+
+    @Benchmark
+    public String lazy() throws InvalidJwtException, MalformedClaimException {
+        final JwtContext context = LazyJwtClaims.decode(token);
+        consumer.processContext(context);
+        return context.getJwtClaims().getSubject();
+    }
+}
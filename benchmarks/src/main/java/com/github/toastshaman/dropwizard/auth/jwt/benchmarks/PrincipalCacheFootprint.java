@@ -0,0 +1,67 @@
+package com.github.toastshaman.dropwizard.auth.jwt.benchmarks;
+
+import com.codahale.metrics.MetricRegistry;
+import com.github.toastshaman.dropwizard.auth.jwt.CachingJwtAuthenticator;
+import com.github.toastshaman.dropwizard.auth.jwt.GuavaPrincipalCache;
+import com.github.toastshaman.dropwizard.auth.jwt.OffHeapPrincipalCache;
+import com.github.toastshaman.dropwizard.auth.jwt.PrincipalCache;
+import com.github.toastshaman.dropwizard.auth.jwt.PrincipalSerializer;
+import com.google.common.cache.CacheBuilderSpec;
+import io.dropwizard.auth.PrincipalImpl;
+import org.jose4j.jwt.consumer.JwtConsumer;
+import org.jose4j.jwt.consumer.JwtContext;
+import org.openjdk.jol.info.GraphLayout;
+
+import java.security.Principal;
+import java.util.Optional;
+
+/**
+ * Compares the retained heap of the principal cache in full and compact mode and of the off-heap cache.
+ * <p>Run with {@code java -cp benchmarks/target/benchmarks.jar
+ * com.github.toastshaman.dropwizard.auth.jwt.benchmarks.PrincipalCacheFootprint [entries] [claimBytes]}.</p>
+ */
+public class PrincipalCacheFootprint {
+
+    public static void main(String[] args) throws Exception {
+        final int entries = args.length > 0 ? Integer.parseInt(args[0]) : 10_000;
+        final int claimBytes = args.length > 1 ? Integer.parseInt(args[1]) : 1536;
+
+        final JwtConsumer consumer = Tokens.HS256.consumer();
+        final JwtContext[] contexts = new JwtContext[entries];
+        for (int i = 0; i < entries; i++) {
+            contexts[i] = consumer.process(Tokens.HS256.token("user-" + i, claimBytes));
+        }
+        System.out.printf("%d entries, tokens of %d characters%n", entries, contexts[0].getJwt().length());
+
+        for (boolean compact : new boolean[]{false, true}) {
+            measure(compact ? "compact" : "full",
+                new GuavaPrincipalCache<>(CacheBuilderSpec.parse("maximumSize=" + entries)), compact, contexts);
+        }
+
+        final OffHeapPrincipalCache<Principal> offHeap = new OffHeapPrincipalCache.Builder<Principal>()
+            .setSerializer(PrincipalSerializer.byName(PrincipalImpl::new))
+            .setMaximumSize(entries * 2L)
+            .setHotTierSize(entries / 10)
+            .build();
+        measure("off-heap", offHeap, true, contexts);
+        System.out.printf("%-8s %,14d bytes of direct memory%n", "", offHeap.capacityInBytes());
+    }
+
+    private static void measure(String name, PrincipalCache<Principal> cache, boolean compact,
+                                JwtContext[] contexts) throws Exception {
+        final long empty = GraphLayout.parseInstance(cache).totalSize();
+
+        final CachingJwtAuthenticator<Principal> authenticator = new CachingJwtAuthenticator.Builder<Principal>()
+            .setMetricRegistry(new MetricRegistry())
+            .setAuthenticator(context -> Optional.of(new PrincipalImpl("user")))
+            .setCache(cache)
+            .setCompact(compact)
+            .build();
+        for (JwtContext context : contexts) {
+            authenticator.authenticate(context);
+        }
+
+        final long retained = GraphLayout.parseInstance(cache).totalSize() - empty;
+        System.out.printf("%-8s %,14d bytes  %,8d bytes/entry%n", name, retained, retained / contexts.length);
+    }
+}
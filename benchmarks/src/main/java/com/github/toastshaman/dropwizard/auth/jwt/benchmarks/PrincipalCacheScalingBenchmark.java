@@ -0,0 +1,118 @@
+package com.github.toastshaman.dropwizard.auth.jwt.benchmarks;
+
+import com.codahale.metrics.MetricRegistry;
+import com.github.toastshaman.dropwizard.auth.jwt.CachingJwtAuthenticator;
+import com.github.toastshaman.dropwizard.auth.jwt.CaffeinePrincipalCache;
+import com.github.toastshaman.dropwizard.auth.jwt.GuavaPrincipalCache;
+import com.github.toastshaman.dropwizard.auth.jwt.PrincipalCache;
+import com.google.common.cache.CacheBuilderSpec;
+import io.dropwizard.auth.AuthenticationException;
+import io.dropwizard.auth.PrincipalImpl;
+import org.jose4j.jwt.consumer.InvalidJwtException;
+import org.jose4j.jwt.consumer.JwtConsumer;
+import org.jose4j.jwt.consumer.JwtContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.security.Principal;
+import java.util.Optional;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the throughput of the {@link PrincipalCache} backends as the number of threads grows.
+ * <p>Tokens are requested with a skewed distribution, so a few hot tokens receive most of the traffic, and
+ * the cache is sized to hold all of them.</p>
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PrincipalCacheScalingBenchmark {
+
+    private static final int TOKENS = 4096;
+    private static final int SEQUENCE = 1 << 16;
+
+    @State(Scope.Benchmark)
+    public static class Caches {
+
+        @Param({"guava", "caffeine"})
+        public String backend;
+
+        CachingJwtAuthenticator<Principal> authenticator;
+        JwtContext[] contexts;
+
+        @Setup
+        public void setUp() throws InvalidJwtException, AuthenticationException {
+            final Principal principal = new PrincipalImpl("good-guy");
+            final PrincipalCache<Principal> cache = "guava".equals(backend)
+                ? new GuavaPrincipalCache<>(CacheBuilderSpec.parse("maximumSize=" + TOKENS))
+                : new CaffeinePrincipalCache.Builder<Principal>().setMaximumSize(TOKENS).build();
+            authenticator = new CachingJwtAuthenticator<>(new MetricRegistry(),
+                context -> Optional.of(principal), cache);
+
+            final JwtConsumer consumer = Tokens.HS256.consumer();
+            contexts = new JwtContext[TOKENS];
+            for (int i = 0; i < TOKENS; i++) {
+                contexts[i] = consumer.process(Tokens.HS256.token("user-" + i));
+                authenticator.authenticate(contexts[i]);
+            }
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Requests {
+
+        final int[] sequence = new int[SEQUENCE];
+        int next;
+
+        @Setup
+        public void setUp() {
+            final Random random = new Random(Thread.currentThread().getId());
+            for (int i = 0; i < SEQUENCE; i++) {
+                // squaring a uniform sample skews the requests towards the low indexes
+                final double sample = random.nextDouble();
+                sequence[i] = (int) (sample * sample * TOKENS);
+            }
+        }
+
+        JwtContext next(Caches caches) {
+            return caches.contexts[sequence[next++ & (SEQUENCE - 1)]];
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public Optional<Principal> threads01(Caches caches, Requests requests) throws AuthenticationException {
+        return caches.authenticator.authenticate(requests.next(caches));
+    }
+
+    @Benchmark
+    @Threads(4)
+    public Optional<Principal> threads04(Caches caches, Requests requests) throws AuthenticationException {
+        return caches.authenticator.authenticate(requests.next(caches));
+    }
+
+    @Benchmark
+    @Threads(16)
+    public Optional<Principal> threads16(Caches caches, Requests requests) throws AuthenticationException {
+        return caches.authenticator.authenticate(requests.next(caches));
+    }
+
+    @Benchmark
+    @Threads(64)
+    public Optional<Principal> threads64(Caches caches, Requests requests) throws AuthenticationException {
+        return caches.authenticator.authenticate(requests.next(caches));
+    }
+}
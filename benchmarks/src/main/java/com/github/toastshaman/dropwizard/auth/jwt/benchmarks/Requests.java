@@ -0,0 +1,49 @@
+package com.github.toastshaman.dropwizard.auth.jwt.benchmarks;
+
+import org.glassfish.jersey.internal.MapPropertiesDelegate;
+import org.glassfish.jersey.server.ContainerRequest;
+
+import javax.ws.rs.core.SecurityContext;
+import java.net.URI;
+import java.security.Principal;
+
+/**
+ * Builds the requests fed to the filter under test.
+ */
+final class Requests {
+
+    private static final URI BASE_URI = URI.create("http://localhost:8080/");
+    private static final URI REQUEST_URI = URI.create("http://localhost:8080/test/profile");
+
+    private Requests() {}
+
+    static ContainerRequest withHeader(String name, String value) {
+        final ContainerRequest request = new ContainerRequest(BASE_URI, REQUEST_URI, "GET",
+            new InsecureSecurityContext(), new MapPropertiesDelegate());
+        request.header(name, value);
+        return request;
+    }
+
+    private static final class InsecureSecurityContext implements SecurityContext {
+
+        @Override
+        public Principal getUserPrincipal() {
+            return null;
+        }
+
+        @Override
+        public boolean isUserInRole(String role) {
+            return false;
+        }
+
+        @Override
+        public boolean isSecure() {
+            return false;
+        }
+
+        @Override
+        public String getAuthenticationScheme() {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.github.toastshaman.dropwizard.auth.jwt.benchmarks;
+
+import com.github.toastshaman.dropwizard.auth.jwt.RevocationList;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the membership check of a {@link RevocationList} for tokens which have not been revoked, the common
+ * case, and for revoked tokens, which are confirmed against the exact set.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RevocationListBenchmark {
+
+    @Param({"1000", "1000000"})
+    public int revoked;
+
+    private RevocationList revocations;
+    private String revokedJwtId;
+    private String validJwtId;
+
+    @Setup
+    public void setUp() {
+        final List<String> jwtIds = new ArrayList<>(revoked);
+        for (int i = 0; i < revoked; i++) {
+            jwtIds.add(UUID.randomUUID().toString());
+        }
+        revocations = new RevocationList(() -> jwtIds, Duration.ofHours(1));
+        revocations.refresh();
+        revokedJwtId = jwtIds.get(revoked / 2);
+        validJwtId = UUID.randomUUID().toString();
+    }
+
+    @Benchmark
+    public boolean notRevoked() {
+        return revocations.isRevoked(validJwtId);
+    }
+
+    @Benchmark
+    public boolean revoked() {
+        return revocations.isRevoked(revokedJwtId);
+    }
+}
@@ -0,0 +1,74 @@
+package com.github.toastshaman.dropwizard.auth.jwt.benchmarks;
+
+import com.github.toastshaman.dropwizard.auth.jwt.CachingSignatureVerifier;
+import org.jose4j.jwt.consumer.InvalidJwtException;
+import org.jose4j.jwt.consumer.JwtConsumer;
+import org.jose4j.jwt.consumer.JwtConsumerBuilder;
+import org.jose4j.jwt.consumer.JwtContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.security.Key;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares verifying a token with the stock {@link JwtConsumer}, which initialises a new {@code Mac} or
+ * {@code Signature} for every token, with decoding it first and verifying it with a
+ * {@link CachingSignatureVerifier}, which reuses one instance per thread and key.
+ * <p>Run with several threads, e.g. {@code -t 8}, to include contention on the security providers.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(1)
+@State(Scope.Benchmark)
+public class SignatureVerificationBenchmark {
+
+    private static final JwtConsumer PARSER = new JwtConsumerBuilder()
+        .setSkipAllValidators()
+        .setDisableRequireSignature()
+        .setSkipSignatureVerification()
+        .build();
+
+    @Param({"HS256", "RS256", "ES256"})
+    public Tokens algorithm;
+
+    private JwtConsumer consumer;
+    private JwtConsumer claimsConsumer;
+    private CachingSignatureVerifier verifier;
+    private String token;
+
+    @Setup
+    public void setUp() {
+        final Key key = algorithm.verificationKey();
+        consumer = algorithm.consumer();
+        claimsConsumer = algorithm.claimsConsumer();
+        verifier = new CachingSignatureVerifier((jws, nesting) -> key);
+        token = algorithm.token("good-guy");
+    }
+
+    @Benchmark
+    public JwtContext stockConsumer() throws InvalidJwtException {
+        return consumer.process(token);
+    }
+
+    @Benchmark
+    public JwtContext cachingVerifier() throws InvalidJwtException {
+        final JwtContext context = PARSER.process(token);
+        verifier.verify(context);
+        claimsConsumer.processContext(context);
+        return context;
+    }
+}
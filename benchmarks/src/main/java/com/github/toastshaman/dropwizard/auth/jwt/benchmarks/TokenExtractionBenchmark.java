@@ -0,0 +1,76 @@
+package com.github.toastshaman.dropwizard.auth.jwt.benchmarks;
+
+import com.codahale.metrics.MetricRegistry;
+import com.github.toastshaman.dropwizard.auth.jwt.JwtAuthFilter;
+import com.github.toastshaman.dropwizard.auth.jwt.VerifiedTokenCache;
+import com.google.common.cache.CacheBuilderSpec;
+import io.dropwizard.auth.PrincipalImpl;
+import org.glassfish.jersey.server.ContainerRequest;
+import org.jose4j.jwt.consumer.JwtContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.ws.rs.core.SecurityContext;
+import java.io.IOException;
+import java.security.Principal;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static javax.ws.rs.core.HttpHeaders.AUTHORIZATION;
+import static javax.ws.rs.core.HttpHeaders.COOKIE;
+
+/**
+ * Compares extracting the token from the {@code Authorization} header with extracting it from a cookie.
+ * <p>The filter is set up with a {@link VerifiedTokenCache} so that signature verification is taken out of
+ * the measurement. Run with {@code -prof gc} to see the allocation rate of each path.</p>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TokenExtractionBenchmark {
+
+    private static final String COOKIE_NAME = "jwt";
+
+    @Param({"header", "cookie"})
+    public String source;
+
+    private JwtAuthFilter<Principal> filter;
+    private ContainerRequest request;
+
+    @Setup
+    public void setUp() {
+        final Principal principal = new PrincipalImpl("good-guy");
+        filter = new JwtAuthFilter.Builder<Principal>()
+            .setJwtConsumer(Tokens.HS256.consumer())
+            .setVerifiedTokenCache(new VerifiedTokenCache(new MetricRegistry(),
+                CacheBuilderSpec.parse("maximumSize=16"), 30))
+            .setCookieName(COOKIE_NAME)
+            .setPrefix("Bearer")
+            .setRealm("realm")
+            .setAuthenticator((JwtContext context) -> Optional.of(principal))
+            .buildAuthFilter();
+
+        final String token = Tokens.HS256.token("good-guy");
+        request = "header".equals(source)
+            ? Requests.withHeader(AUTHORIZATION, "Bearer " + token)
+            : Requests.withHeader(COOKIE, "theme=dark; session=abc123; " + COOKIE_NAME + "=" + token);
+    }
+
+    @Benchmark
+    public SecurityContext extract() throws IOException {
+        filter.filter(request);
+        return request.getSecurityContext();
+    }
+}
@@ -0,0 +1,187 @@
+package com.github.toastshaman.dropwizard.auth.jwt.benchmarks;
+
+import com.google.common.base.Strings;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.jose4j.jwk.EcJwkGenerator;
+import org.jose4j.jwk.PublicJsonWebKey;
+import org.jose4j.jwk.RsaJwkGenerator;
+import org.jose4j.jws.AlgorithmIdentifiers;
+import org.jose4j.jws.JsonWebSignature;
+import org.jose4j.jwt.JwtClaims;
+import org.jose4j.jwt.consumer.JwtConsumer;
+import org.jose4j.jwt.consumer.JwtConsumerBuilder;
+import org.jose4j.keys.EllipticCurves;
+import org.jose4j.keys.HmacKey;
+import org.jose4j.lang.JoseException;
+
+import java.security.Key;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Signing keys and tokens shared by the benchmarks.
+ * <p>EdDSA is not part of the matrix: jose4j 0.6.0 does not implement it and Java 8 ships no Ed25519
+ * provider.</p>
+ */
+public enum Tokens {
+
+    HS256(AlgorithmIdentifiers.HMAC_SHA256) {
+        private final HmacKey key = new HmacKey("dfwzsdzwh823zebdwdz772632gdsbdaa".getBytes(UTF_8));
+
+        @Override
+        Key signingKey() {
+            return key;
+        }
+
+        @Override
+        Key verificationKey() {
+            return key;
+        }
+    },
+    RS256(AlgorithmIdentifiers.RSA_USING_SHA256) {
+        private final PublicJsonWebKey jwk = generate(() -> RsaJwkGenerator.generateJwk(2048));
+
+        @Override
+        Key signingKey() {
+            return jwk.getPrivateKey();
+        }
+
+        @Override
+        Key verificationKey() {
+            return jwk.getPublicKey();
+        }
+    },
+    ES256(AlgorithmIdentifiers.ECDSA_USING_P256_CURVE_AND_SHA256) {
+        private final PublicJsonWebKey jwk = generate(() -> EcJwkGenerator.generateJwk(EllipticCurves.P256));
+
+        @Override
+        Key signingKey() {
+            return jwk.getPrivateKey();
+        }
+
+        @Override
+        Key verificationKey() {
+            return jwk.getPublicKey();
+        }
+    };
+
+    private final String algorithm;
+
+    Tokens(String algorithm) {
+        this.algorithm = algorithm;
+    }
+
+    abstract Key signingKey();
+
+    abstract Key verificationKey();
+
+    /**
+     * Returns a consumer accepting the tokens of this algorithm.
+     *
+     * @return a consumer accepting the tokens of this algorithm
+     */
+    public JwtConsumer consumer() {
+        return new JwtConsumerBuilder()
+            .setAllowedClockSkewInSeconds(30)
+            .setRequireExpirationTime()
+            .setRequireSubject()
+            .setVerificationKey(verificationKey())
+            .build();
+    }
+
+    /**
+     * Returns a consumer which only validates the claims of the tokens of this algorithm and leaves the
+     * signature to a {@link com.github.toastshaman.dropwizard.auth.jwt.CachingSignatureVerifier}.
+     *
+     * @return a consumer skipping signature verification
+     */
+    public JwtConsumer claimsConsumer() {
+        return new JwtConsumerBuilder()
+            .setAllowedClockSkewInSeconds(30)
+            .setRequireExpirationTime()
+            .setRequireSubject()
+            .setSkipSignatureVerification()
+            .build();
+    }
+
+    /**
+     * Returns a token for the given subject which is valid for an hour.
+     *
+     * @param subject the subject of the token
+     * @return a signed token
+     */
+    public String token(String subject) {
+        return token(subject, 0);
+    }
+
+    /**
+     * Returns a token for the given subject which is valid for an hour and carries a custom claim of
+     * roughly the given size.
+     *
+     * @param subject          the subject of the token
+     * @param customClaimBytes the length of the custom claim's value
+     * @return a signed token
+     */
+    public String token(String subject, int customClaimBytes) {
+        final JwtClaims claims = new JwtClaims();
+        if (customClaimBytes > 0) {
+            claims.setClaim("profile", Strings.repeat("x", customClaimBytes));
+        }
+        return sign(subject, claims);
+    }
+
+    /**
+     * Returns a token for the given subject which is valid for an hour and carries the given number of custom
+     * claims, alternating between strings, numbers and small objects.
+     *
+     * @param subject      the subject of the token
+     * @param customClaims the number of custom claims
+     * @return a signed token
+     */
+    public String tokenWithClaims(String subject, int customClaims) {
+        final JwtClaims claims = new JwtClaims();
+        for (int i = 0; i < customClaims; i++) {
+            switch (i % 3) {
+                case 0:
+                    claims.setClaim("claim-" + i, "value-" + i + "-" + Strings.repeat("x", 24));
+                    break;
+                case 1:
+                    claims.setClaim("claim-" + i, i * 1000L);
+                    break;
+                default:
+                    claims.setClaim("claim-" + i, ImmutableMap.of("id", i, "tags", ImmutableList.of("a", "b")));
+            }
+        }
+        return sign(subject, claims);
+    }
+
+    private String sign(String subject, JwtClaims claims) {
+        claims.setSubject(subject);
+        claims.setIssuer("Issuer");
+        claims.setExpirationTimeMinutesInTheFuture(60);
+        claims.setGeneratedJwtId();
+
+        final JsonWebSignature jws = new JsonWebSignature();
+        jws.setPayload(claims.toJson());
+        jws.setAlgorithmHeaderValue(algorithm);
+        jws.setKey(signingKey());
+
+        try {
+            return jws.getCompactSerialization();
+        }
+        catch (JoseException e) { throw Throwables.propagate(e); }
+    }
+
+    private static PublicJsonWebKey generate(KeyGenerator generator) {
+        try {
+            return generator.generate();
+        }
+        catch (JoseException e) { throw Throwables.propagate(e); }
+    }
+
+    private interface KeyGenerator {
+        PublicJsonWebKey generate() throws JoseException;
+    }
+}
@@ -0,0 +1,94 @@
+package com.github.toastshaman.dropwizard.auth.jwt;
+
+import com.google.common.base.Throwables;
+import io.dropwizard.auth.AuthenticationException;
+import io.dropwizard.auth.Authenticator;
+
+import java.security.Principal;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * An authenticator which resolves credentials into a principal without blocking the calling thread.
+ * <p>A failed authentication completes the returned stage exceptionally with an
+ * {@link AuthenticationException}.</p>
+ *
+ * @param <C> the type of credentials the authenticator can authenticate
+ * @param <P> the type of principals the authenticator returns
+ */
+@FunctionalInterface
+public interface AsyncAuthenticator<C, P extends Principal> {
+
+    /**
+     * Given a set of user-provided credentials, eventually returns an optional principal.
+     *
+     * @param credentials a set of user-provided credentials
+     * @return a stage completed with either an authenticated principal or an absent optional
+     */
+    CompletionStage<Optional<P>> authenticateAsync(C credentials);
+
+    /**
+     * Adapts a blocking {@link Authenticator} by running it on the given executor. The executor should be a
+     * bounded pool dedicated to the lookups; a shared pool such as
+     * {@link java.util.concurrent.ForkJoinPool#commonPool()} is starved by blocking lookups.
+     *
+     * @param authenticator the blocking authenticator
+     * @param executor      the executor running the blocking lookups, e.g. a pool dedicated to the user store
+     * @param <C>           the type of credentials
+     * @param <P>           the type of principals
+     * @return an asynchronous authenticator
+     */
+    static <C, P extends Principal> AsyncAuthenticator<C, P> fromBlocking(Authenticator<C, P> authenticator,
+                                                                          Executor executor) {
+        checkNotNull(executor, "Executor is not set");
+        return credentials -> CompletableFuture.supplyAsync(() -> {
+            try {
+                return authenticator.authenticate(credentials);
+            } catch (AuthenticationException e) {
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+    /**
+     * Adapts an asynchronous authenticator to the blocking {@link Authenticator} interface by waiting at most
+     * the given time for each result. A lookup which takes longer fails with an
+     * {@link AuthenticationException} but is not cancelled, so that it can still populate caches.
+     * <p>The calling thread is blocked while it waits, so this bounds the time a request thread spends on a
+     * lookup but does not free it for other requests.</p>
+     *
+     * @param authenticator the asynchronous authenticator
+     * @param timeout       the maximum time to wait for a principal
+     * @param <C>           the type of credentials
+     * @param <P>           the type of principals
+     * @return a blocking authenticator
+     */
+    static <C, P extends Principal> Authenticator<C, P> awaiting(AsyncAuthenticator<C, P> authenticator,
+                                                                 Duration timeout) {
+        final long timeoutNanos = timeout.toNanos();
+        return credentials -> {
+            try {
+                return authenticator.authenticateAsync(credentials)
+                    .toCompletableFuture()
+                    .get(timeoutNanos, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new AuthenticationException("Interrupted while authenticating", e);
+            } catch (TimeoutException e) {
+                throw new AuthenticationException("Authentication timed out after " + timeout, e);
+            } catch (ExecutionException e) {
+                Throwables.propagateIfPossible(e.getCause(), AuthenticationException.class);
+                throw new AuthenticationException(e.getCause());
+            }
+        };
+    }
+}
@@ -0,0 +1,64 @@
+package com.github.toastshaman.dropwizard.auth.jwt;
+
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Metric;
+import com.codahale.metrics.MetricSet;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableMap;
+
+import java.util.Map;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Gauges reading the size and the {@link CacheStats} of one of the caches of this library, e.g. for the
+ * principals of a {@link CachingJwtAuthenticator}:
+ * <pre>
+ * environment.metrics().register(name(CachingJwtAuthenticator.class, "cache"),
+ *     CacheStatsGauges.of(cachingAuthenticator));
+ * </pre>
+ * <p>The statistics are read when the gauges are reported, and cover the whole lifetime of the cache.</p>
+ */
+public class CacheStatsGauges implements MetricSet {
+
+    private final Supplier<CacheStats> stats;
+    private final LongSupplier size;
+
+    /**
+     * Creates new gauges.
+     *
+     * @param stats returns the current statistics of the cache
+     * @param size  returns the current number of entries of the cache
+     */
+    public CacheStatsGauges(Supplier<CacheStats> stats, LongSupplier size) {
+        this.stats = checkNotNull(stats, "stats are not set");
+        this.size = checkNotNull(size, "size is not set");
+    }
+
+    public static CacheStatsGauges of(CachingJwtAuthenticator<?> authenticator) {
+        return new CacheStatsGauges(authenticator::stats, authenticator::size);
+    }
+
+    public static CacheStatsGauges of(VerifiedTokenCache cache) {
+        return new CacheStatsGauges(cache::stats, cache::size);
+    }
+
+    public static CacheStatsGauges of(RejectedTokenCache cache) {
+        return new CacheStatsGauges(cache::stats, cache::size);
+    }
+
+    @Override
+    public Map<String, Metric> getMetrics() {
+        return ImmutableMap.<String, Metric>builder()
+            .put("size", (Gauge<Long>) size::getAsLong)
+            .put("hit-count", (Gauge<Long>) () -> stats.get().hitCount())
+            .put("miss-count", (Gauge<Long>) () -> stats.get().missCount())
+            .put("hit-rate", (Gauge<Double>) () -> stats.get().hitRate())
+            .put("eviction-count", (Gauge<Long>) () -> stats.get().evictionCount())
+            .put("load-count", (Gauge<Long>) () -> stats.get().loadCount())
+            .put("average-load-penalty", (Gauge<Double>) () -> stats.get().averageLoadPenalty())
+            .build();
+    }
+}
@@ -0,0 +1,197 @@
+package com.github.toastshaman.dropwizard.auth.jwt;
+
+import org.jose4j.jwt.JwtClaims;
+import org.jose4j.jwt.MalformedClaimException;
+import org.jose4j.jwt.NumericDate;
+import org.jose4j.jwt.consumer.JwtContext;
+
+import java.security.Principal;
+import java.util.Collections;
+
+/**
+ * A principal held by a {@link PrincipalCache} together with the claims it was authenticated from.
+ * <p>A full entry keeps the complete {@link JwtContext}. A compact entry only keeps the subject, issuer,
+ * JWT ID and expiration time of the token; its {@link #getContext()} is rebuilt from these claims.</p>
+ *
+ * @param <P> the principal
+ */
+public final class CachedPrincipal<P extends Principal> {
+
+    /**
+     * The expiration time of entries whose token does not expire.
+     */
+    public static final long NEVER = Long.MAX_VALUE;
+
+    private static final String[] NO_INDEX_VALUES = new String[0];
+
+    private final P principal;
+    private final String subject;
+    private final String issuer;
+    private final String jwtId;
+    private final long expiresAt;
+    private final long writtenAt;
+    private final JwtContext context;
+    private final String[] indexValues;
+
+    /**
+     * Creates a new cache entry.
+     *
+     * @param principal the authenticated principal
+     * @param subject   the {@code sub} claim of the token, may be {@code null}
+     * @param issuer    the {@code iss} claim of the token, may be {@code null}
+     * @param jwtId     the {@code jti} claim of the token, may be {@code null}
+     * @param expiresAt the time in milliseconds since the epoch at which the entry must no longer be used,
+     *                  usually the token's expiration time, or {@link #NEVER}
+     * @param context   the full credentials or {@code null} for a compact entry
+     */
+    public CachedPrincipal(P principal, String subject, String issuer, String jwtId, long expiresAt, JwtContext context) {
+        this(principal, subject, issuer, jwtId, expiresAt, System.currentTimeMillis(), context, NO_INDEX_VALUES);
+    }
+
+    CachedPrincipal(P principal, String subject, String issuer, String jwtId, long expiresAt,
+                    long writtenAt, JwtContext context, String[] indexValues) {
+        this.principal = principal;
+        this.subject = subject;
+        this.issuer = issuer;
+        this.jwtId = jwtId;
+        this.expiresAt = expiresAt;
+        this.writtenAt = writtenAt;
+        this.context = context;
+        this.indexValues = indexValues;
+    }
+
+    /**
+     * Creates an entry which keeps the complete credentials.
+     *
+     * @param context   the credentials the principal was authenticated from
+     * @param principal the authenticated principal
+     * @param <P>       the principal
+     * @return a full cache entry
+     */
+    public static <P extends Principal> CachedPrincipal<P> full(JwtContext context, P principal) {
+        return from(context, principal, true);
+    }
+
+    /**
+     * Creates an entry which only keeps the claims needed to identify the token.
+     *
+     * @param context   the credentials the principal was authenticated from
+     * @param principal the authenticated principal
+     * @param <P>       the principal
+     * @return a compact cache entry
+     */
+    public static <P extends Principal> CachedPrincipal<P> compact(JwtContext context, P principal) {
+        return from(context, principal, false);
+    }
+
+    private static <P extends Principal> CachedPrincipal<P> from(JwtContext context, P principal, boolean full) {
+        final JwtClaims claims = context.getJwtClaims();
+        return new CachedPrincipal<>(principal,
+            stringClaim(claims, "sub"),
+            stringClaim(claims, "iss"),
+            stringClaim(claims, "jti"),
+            expiresAt(claims),
+            full ? context : null);
+    }
+
+    public P getPrincipal() {
+        return principal;
+    }
+
+    public String getSubject() {
+        return subject;
+    }
+
+    public String getIssuer() {
+        return issuer;
+    }
+
+    public String getJwtId() {
+        return jwtId;
+    }
+
+    public long getExpiresAt() {
+        return expiresAt;
+    }
+
+    /**
+     * Returns the time at which the principal was loaded from the underlying authenticator.
+     *
+     * @return the time in milliseconds since the epoch at which the entry was created
+     */
+    public long getWrittenAt() {
+        return writtenAt;
+    }
+
+    /**
+     * Returns whether the entry keeps the complete credentials.
+     *
+     * @return {@code false} for a compact entry
+     */
+    public boolean isFull() {
+        return context != null;
+    }
+
+    /**
+     * Returns the credentials the principal was authenticated from. For a compact entry this is a context
+     * without a raw token whose claims are limited to {@code sub}, {@code iss}, {@code jti} and {@code exp}.
+     *
+     * @return the credentials of the entry
+     */
+    public JwtContext getContext() {
+        if (context != null) {
+            return context;
+        }
+
+        final JwtClaims claims = new JwtClaims();
+        if (subject != null) {
+            claims.setSubject(subject);
+        }
+        if (issuer != null) {
+            claims.setIssuer(issuer);
+        }
+        if (jwtId != null) {
+            claims.setJwtId(jwtId);
+        }
+        if (expiresAt != NEVER) {
+            claims.setExpirationTime(NumericDate.fromMilliseconds(expiresAt));
+        }
+        return new JwtContext(null, claims, Collections.emptyList());
+    }
+
+    /**
+     * Returns a copy of this entry which remembers the values it was indexed under, so that they can be
+     * removed from the secondary indexes once the entry is removed.
+     */
+    CachedPrincipal<P> withIndexValues(String[] values) {
+        return new CachedPrincipal<>(principal, subject, issuer, jwtId, expiresAt, writtenAt, context, values);
+    }
+
+    String[] getIndexValues() {
+        return indexValues;
+    }
+
+    /**
+     * Returns whether the entry has expired.
+     *
+     * @param now the current time in milliseconds since the epoch
+     * @return {@code true} if the entry must no longer be used
+     */
+    public boolean isExpired(long now) {
+        return now >= expiresAt;
+    }
+
+    static String stringClaim(JwtClaims claims, String name) {
+        final Object value = claims.getClaimValue(name);
+        return value instanceof String ? (String) value : null;
+    }
+
+    private static long expiresAt(JwtClaims claims) {
+        try {
+            final NumericDate expirationTime = claims.getExpirationTime();
+            return expirationTime == null ? NEVER : expirationTime.getValueInMillis();
+        } catch (MalformedClaimException e) {
+            return Long.MIN_VALUE;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.github.toastshaman.dropwizard.auth.jwt;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.security.Principal;
+
+/**
+ * Converts compact {@link CachedPrincipal}s to and from bytes. The expiration and write times of an entry are
+ * not part of its bytes, so that callers can store them where they can be read without decoding the entry.
+ *
+ * @param <P> the principal
+ */
+final class CachedPrincipalCodec<P extends Principal> {
+
+    private final PrincipalSerializer<P> serializer;
+
+    CachedPrincipalCodec(PrincipalSerializer<P> serializer) {
+        this.serializer = serializer;
+    }
+
+    byte[] encode(CachedPrincipal<P> entry) throws IOException {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            writeString(out, entry.getSubject());
+            writeString(out, entry.getIssuer());
+            writeString(out, entry.getJwtId());
+            final String[] indexValues = entry.getIndexValues();
+            out.writeInt(indexValues.length);
+            for (String value : indexValues) {
+                writeString(out, value);
+            }
+            serializer.write(entry.getPrincipal(), out);
+        }
+        return bytes.toByteArray();
+    }
+
+    CachedPrincipal<P> decode(byte[] body, long expiresAt, long writtenAt) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(body))) {
+            final String subject = readString(in);
+            final String issuer = readString(in);
+            final String jwtId = readString(in);
+            final String[] indexValues = new String[in.readInt()];
+            for (int i = 0; i < indexValues.length; i++) {
+                indexValues[i] = readString(in);
+            }
+            final P principal = serializer.read(in);
+            return new CachedPrincipal<>(principal, subject, issuer, jwtId, expiresAt, writtenAt, null, indexValues);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
@@ -1,29 +1,113 @@
 package com.github.toastshaman.dropwizard.auth.jwt;
 
+import com.codahale.metrics.Histogram;
 import com.codahale.metrics.Meter;
 import com.codahale.metrics.MetricRegistry;
 import com.codahale.metrics.Timer;
-import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheBuilderSpec;
+import com.google.common.base.Throwables;
 import com.google.common.cache.CacheStats;
 import io.dropwizard.auth.AuthenticationException;
 import io.dropwizard.auth.Authenticator;
 import org.jose4j.jwt.consumer.JwtContext;
 
 import java.security.Principal;
-import java.util.AbstractMap.SimpleEntry;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
 import java.util.function.Predicate;
 
 import static com.codahale.metrics.MetricRegistry.name;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
 
-public class CachingJwtAuthenticator<P extends Principal> implements Authenticator<JwtContext, P> {
+/**
+ * An {@link Authenticator} decorator which caches the principals returned by the underlying authenticator.
+ * <p>Each principal is cached until its token expires, in addition to the limits of the configured cache.</p>
+ * <p>By default the cache is keyed by the raw token and keeps the complete {@link JwtContext} of every
+ * entry. In compact mode, see {@link Builder#setCompact(boolean)}, entries are keyed by the token's
+ * {@link TokenDigest} and only keep the principal and the few claims needed for invalidation, which
+ * shrinks the footprint of each entry from several kilobytes to a few hundred bytes.</p>
+ * <p>Secondary indexes on the subject, issuer, JWT ID or a custom value of the credentials can be added with
+ * the {@link Builder}. They are maintained as principals are cached, invalidated and evicted, so that
+ * {@link #invalidateBySubject(String)} and friends only touch the entries of the given value instead of
+ * scanning the whole cache.</p>
+ * <p>Concurrent misses for the same credentials are coalesced: only one caller invokes the underlying
+ * authenticator while the others wait for its result. The number of callers served by each load is
+ * recorded in the {@code stampede-size} histogram.</p>
+ * <p>With {@link Builder#setRefreshAfterWrite(Duration)} a principal which was loaded longer ago than the
+ * given duration is still served from the cache while a single reload runs in the background. A reload
+ * which fails keeps the stale principal until its token expires; a reload which returns no principal
+ * discards it.</p>
+ * <p>With a {@link RevocationList} credentials whose {@code jti} claim has been revoked are refused before
+ * the cache is consulted, so that a revoked token is not served from the cache.</p>
+ * <p>Every {@link Builder#setCleanUpInterval(Duration) clean-up interval} the cache is cleaned up on the
+ * refresh executor, or on the calling thread without one, so that the entries of expired tokens are discarded
+ * even by caches which only drop them when they are read, such as {@link GuavaPrincipalCache}.</p>
+ * <p>{@link #authenticateAsync(JwtContext)} never blocks: hits complete immediately, callers of a load in
+ * flight share its result and misses are loaded on the refresh executor. It requires a refresh executor, see
+ * {@link Builder#setRefreshExecutor(Executor)}; there is no default, as misses call the underlying
+ * authenticator, which usually blocks on a user store.</p>
+ *
+ * @param <P> the principal
+ */
+public class CachingJwtAuthenticator<P extends Principal>
+    implements Authenticator<JwtContext, P>, AsyncAuthenticator<JwtContext, P> {
+
+    /**
+     * The name of the index on the {@code sub} claim.
+     */
+    public static final String SUBJECT_INDEX = "sub";
+
+    /**
+     * The name of the index on the {@code iss} claim.
+     */
+    public static final String ISSUER_INDEX = "iss";
+
+    /**
+     * The name of the index on the {@code jti} claim.
+     */
+    public static final String JWT_ID_INDEX = "jti";
+
+    private static final long DEFAULT_CLEAN_UP_INTERVAL_MILLIS = Duration.ofMinutes(1).toMillis();
 
     private final Authenticator<JwtContext, P> authenticator;
-    private final Cache<String, SimpleEntry<JwtContext, Optional<P>>> cache;
+    private final PrincipalCache<P> cache;
+    private final boolean compact;
+    private final PrincipalIndex[] indexes;
+    private final long refreshAfterWriteMillis;
+    private final Executor refreshExecutor;
+    private final long cleanUpIntervalMillis;
+    private final AtomicLong nextCleanUp;
+    private final RevocationList revocations;
+    private final ConcurrentMap<Object, Load<P>> loads = new ConcurrentHashMap<>();
     private final Meter cacheMisses;
+    private final Histogram stampedeSize;
+    private final Meter refreshes;
+    private final Meter refreshFailures;
+    private final Meter revoked;
     private final Timer gets;
+    private final LongAdder loadSuccesses = new LongAdder();
+    private final LongAdder loadFailures = new LongAdder();
+    private final LongAdder totalLoadTime = new LongAdder();
 
     /**
      * Creates a new cached authenticator.
@@ -48,29 +132,318 @@ public class CachingJwtAuthenticator<P extends Principal> implements Authenticat
     public CachingJwtAuthenticator(final MetricRegistry metricRegistry,
                                    final Authenticator<JwtContext, P> authenticator,
                                    final CacheBuilder<Object, Object> builder) {
+        this(metricRegistry, authenticator, new GuavaPrincipalCache<>(builder));
+    }
+
+    /**
+     * Creates a new cached authenticator.
+     *
+     * @param metricRegistry the application's registry of metrics
+     * @param authenticator  the underlying authenticator
+     * @param cache          the {@link PrincipalCache} holding the authenticated principals
+     */
+    public CachingJwtAuthenticator(final MetricRegistry metricRegistry,
+                                   final Authenticator<JwtContext, P> authenticator,
+                                   final PrincipalCache<P> cache) {
+        this(metricRegistry, authenticator, cache, false, new PrincipalIndex[0], 0, null,
+            DEFAULT_CLEAN_UP_INTERVAL_MILLIS, null);
+    }
+
+    private CachingJwtAuthenticator(final MetricRegistry metricRegistry,
+                                    final Authenticator<JwtContext, P> authenticator,
+                                    final PrincipalCache<P> cache,
+                                    final boolean compact,
+                                    final PrincipalIndex[] indexes,
+                                    final long refreshAfterWriteMillis,
+                                    final Executor refreshExecutor,
+                                    final long cleanUpIntervalMillis,
+                                    final RevocationList revocations) {
         this.authenticator = authenticator;
         this.cacheMisses = metricRegistry.meter(name(authenticator.getClass(), "cache-misses"));
+        this.stampedeSize = metricRegistry.histogram(name(authenticator.getClass(), "stampede-size"));
+        this.refreshes = metricRegistry.meter(name(authenticator.getClass(), "refreshes"));
+        this.refreshFailures = metricRegistry.meter(name(authenticator.getClass(), "refresh-failures"));
+        this.revoked = metricRegistry.meter(name(authenticator.getClass(), "revoked"));
         this.gets = metricRegistry.timer(name(authenticator.getClass(), "gets"));
-        this.cache = builder.recordStats().build();
+        this.cache = cache;
+        this.compact = compact;
+        this.indexes = indexes;
+        this.refreshAfterWriteMillis = refreshAfterWriteMillis;
+        this.refreshExecutor = refreshExecutor;
+        this.cleanUpIntervalMillis = cleanUpIntervalMillis;
+        this.nextCleanUp = new AtomicLong(System.currentTimeMillis() + cleanUpIntervalMillis);
+        this.revocations = revocations;
+        if (indexes.length > 0) {
+            cache.setRemovalListener(this::unindex);
+        }
+        if (revocations != null && indexNamed(JWT_ID_INDEX) != null) {
+            revocations.addListener(this::invalidateByJwtId);
+        }
     }
 
     @Override
     public Optional<P> authenticate(JwtContext context) throws AuthenticationException {
         final Timer.Context timer = gets.time();
         try {
-            final SimpleEntry<JwtContext, Optional<P>> cacheEntry = cache.getIfPresent(context.getJwt());
+            if (isRevoked(context)) {
+                return Optional.empty();
+            }
+
+            final Object key = keyOf(context);
+            final CachedPrincipal<P> cacheEntry = lookup(key, context);
             if (cacheEntry != null) {
-                return cacheEntry.getValue();
+                return Optional.of(cacheEntry.getPrincipal());
+            }
+
+            return load(key, context);
+        }
+        finally { timer.stop(); }
+    }
+
+    @Override
+    public CompletionStage<Optional<P>> authenticateAsync(JwtContext context) {
+        checkState(refreshExecutor != null, "A refresh executor is required to authenticate asynchronously");
+        if (isRevoked(context)) {
+            return CompletableFuture.completedFuture(Optional.empty());
+        }
+
+        final Object key = keyOf(context);
+        final CachedPrincipal<P> cacheEntry = lookup(key, context);
+        if (cacheEntry != null) {
+            return CompletableFuture.completedFuture(Optional.of(cacheEntry.getPrincipal()));
+        }
+
+        final Load<P> inFlight = loads.get(key);
+        if (inFlight != null) {
+            return inFlight.join();
+        }
+
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    return load(key, context);
+                } catch (AuthenticationException e) {
+                    throw new CompletionException(e);
+                }
+            }, refreshExecutor);
+        } catch (RuntimeException e) {
+            // e.g. a saturated executor
+            final CompletableFuture<Optional<P>> rejected = new CompletableFuture<>();
+            rejected.completeExceptionally(new AuthenticationException("The principal could not be loaded", e));
+            return rejected;
+        }
+    }
+
+    private boolean isRevoked(JwtContext context) {
+        if (revocations != null
+            && revocations.isRevoked(CachedPrincipal.stringClaim(context.getJwtClaims(), "jti"))) {
+            revoked.mark();
+            return true;
+        }
+        return false;
+    }
+
+    private CachedPrincipal<P> lookup(Object key, JwtContext context) {
+        cleanUpIfDue();
+        final CachedPrincipal<P> cacheEntry = cache.getIfPresent(key);
+        if (cacheEntry != null && refreshAfterWriteMillis > 0
+            && System.currentTimeMillis() - cacheEntry.getWrittenAt() >= refreshAfterWriteMillis) {
+            refresh(key, context, cacheEntry);
+        }
+        return cacheEntry;
+    }
+
+    private void cleanUpIfDue() {
+        final long now = System.currentTimeMillis();
+        final long due = nextCleanUp.get();
+        if (now < due || !nextCleanUp.compareAndSet(due, now + cleanUpIntervalMillis)) {
+            return;
+        }
+
+        if (refreshExecutor == null) {
+            cache.cleanUp();
+            return;
+        }
+
+        try {
+            refreshExecutor.execute(cache::cleanUp);
+        } catch (RuntimeException e) {
+            // e.g. a saturated executor, expired entries are discarded by the next clean-up
+        }
+    }
+
+    private Optional<P> load(Object key, JwtContext context) throws AuthenticationException {
+        final Load<P> load = new Load<>();
+        final Load<P> inFlight = loads.putIfAbsent(key, load);
+        if (inFlight != null) {
+            return inFlight.await();
+        }
+
+        try {
+            // another load may have cached the principal and left the slot between the lookup and putIfAbsent
+            final CachedPrincipal<P> cached = cache.peek(key);
+            if (cached != null && !cached.isExpired(System.currentTimeMillis())) {
+                final Optional<P> principal = Optional.of(cached.getPrincipal());
+                load.complete(principal);
+                return principal;
             }
 
             cacheMisses.mark();
-            final Optional<P> principal = authenticator.authenticate(context);
-            if (principal.isPresent()) {
-                cache.put(context.getJwt(), new SimpleEntry<>(context, principal));
+            final Optional<P> principal = loadPrincipal(context);
+            principal.ifPresent(p -> store(key, context, p));
+            load.complete(principal);
+            return principal;
+        } catch (AuthenticationException | RuntimeException | Error e) {
+            load.fail(e);
+            throw e;
+        } finally {
+            loads.remove(key, load);
+            stampedeSize.update(load.callers());
+        }
+    }
+
+    private void refresh(Object key, JwtContext context, CachedPrincipal<P> stale) {
+        final Load<P> load = new Load<>();
+        if (loads.putIfAbsent(key, load) != null) {
+            return;
+        }
+
+        try {
+            refreshExecutor.execute(() -> reload(key, context, stale, load));
+        } catch (RuntimeException e) {
+            // e.g. a saturated executor, the stale principal is served until the next attempt
+            loads.remove(key, load);
+            load.fail(e);
+            refreshFailures.mark();
+        }
+    }
+
+    private void reload(Object key, JwtContext context, CachedPrincipal<P> stale, Load<P> load) {
+        try {
+            refreshes.mark();
+            final Optional<P> principal = loadPrincipal(context);
+            // the stale entry may have been invalidated while the principal was reloaded, which must not be
+            // undone; the key stays indexed by the values of the stale entry, which are the same for the token
+            final CachedPrincipal<P> entry = principal.isPresent()
+                ? newEntry(context, principal.get()).withIndexValues(stale.getIndexValues())
+                : null;
+            if (entry != null && !entry.isExpired(System.currentTimeMillis())) {
+                cache.replace(key, stale, entry);
+            } else {
+                cache.invalidate(key, stale);
             }
+            load.complete(principal);
+        } catch (AuthenticationException | RuntimeException | Error e) {
+            refreshFailures.mark();
+            load.fail(e);
+        } finally {
+            loads.remove(key, load);
+        }
+    }
+
+    private Optional<P> loadPrincipal(JwtContext context) throws AuthenticationException {
+        final long start = System.nanoTime();
+        boolean loaded = false;
+        try {
+            final Optional<P> principal = authenticator.authenticate(context);
+            loaded = true;
             return principal;
+        } finally {
+            totalLoadTime.add(System.nanoTime() - start);
+            (loaded ? loadSuccesses : loadFailures).increment();
+        }
+    }
+
+    private void store(Object key, JwtContext context, P principal) {
+        final CachedPrincipal<P> entry = newEntry(context, principal);
+        if (!entry.isExpired(System.currentTimeMillis())) {
+            put(key, index(key, context, entry));
+        }
+    }
+
+    private CachedPrincipal<P> newEntry(JwtContext context, P principal) {
+        return compact ? CachedPrincipal.compact(context, principal) : CachedPrincipal.full(context, principal);
+    }
+
+    private Object keyOf(JwtContext context) {
+        return compact ? TokenDigest.of(context.getJwt()) : context.getJwt();
+    }
+
+    private CachedPrincipal<P> index(Object key, JwtContext context, CachedPrincipal<P> entry) {
+        if (indexes.length == 0) {
+            return entry;
+        }
+
+        final String[] values = new String[indexes.length];
+        for (int i = 0; i < indexes.length; i++) {
+            values[i] = indexes[i].extract(context);
+        }
+        return index(key, entry, values);
+    }
+
+    private CachedPrincipal<P> index(Object key, CachedPrincipal<P> entry, String[] values) {
+        // the key is indexed before the entry is cached so that an invalidation by index never misses
+        // a cached entry; a removal of the entry unindexes the key again
+        addToIndexes(key, values);
+        return entry.withIndexValues(values);
+    }
+
+    private void put(Object key, CachedPrincipal<P> indexed) {
+        cache.put(key, indexed);
+        // the Guava and off-heap backends notify a removal after releasing their locks, so the removal of a
+        // previous entry for the key may have unindexed it between the indexing and the caching above
+        addToIndexes(key, indexed.getIndexValues());
+    }
+
+    private void addToIndexes(Object key, String[] values) {
+        for (int i = 0; i < values.length; i++) {
+            indexes[i].add(values[i], key);
+        }
+    }
+
+    private void unindex(Object key, CachedPrincipal<P> entry) {
+        final String[] values = entry.getIndexValues();
+        for (int i = 0; i < values.length; i++) {
+            indexes[i].remove(values[i], key);
+        }
+
+        // a newer entry cached for the key before this removal was notified must stay indexed
+        final CachedPrincipal<P> current = cache.peek(key);
+        if (current != null && current != entry && current.getIndexValues().length == indexes.length) {
+            addToIndexes(key, current.getIndexValues());
         }
-        finally { timer.stop(); }
+    }
+
+    boolean isCompact() {
+        return compact;
+    }
+
+    /**
+     * Performs the given action for each cached principal, e.g. to write a snapshot of the cache.
+     */
+    void forEachEntry(BiConsumer<Object, ? super CachedPrincipal<P>> action) {
+        cache.forEach(action);
+    }
+
+    /**
+     * Caches a principal read from a snapshot, re-adding it to the indexes. The index values stored with the
+     * entry are reused if the indexes are still the same, otherwise they are extracted from the retained claims.
+     *
+     * @return {@code false} if the entry has expired and was not cached
+     */
+    boolean restore(Object key, CachedPrincipal<P> entry) {
+        if (entry.isExpired(System.currentTimeMillis())) {
+            return false;
+        }
+
+        if (indexes.length == 0) {
+            cache.put(key, entry.withIndexValues(new String[0]));
+        } else if (entry.getIndexValues().length == indexes.length) {
+            put(key, index(key, entry, entry.getIndexValues()));
+        } else {
+            put(key, index(key, entry.getContext(), entry));
+        }
+        return true;
     }
 
     /**
@@ -79,7 +452,7 @@ public class CachingJwtAuthenticator<P extends Principal> implements Authenticat
      * @param credentials a set of credentials
      */
     public void invalidate(JwtContext credentials) {
-        cache.invalidate(credentials.getJwt());
+        cache.invalidate(keyOf(credentials));
     }
 
     /**
@@ -88,20 +461,103 @@ public class CachingJwtAuthenticator<P extends Principal> implements Authenticat
      * @param credentials a collection of credentials
      */
     public void invalidateAll(Iterable<JwtContext> credentials) {
-        credentials.forEach(context -> cache.invalidate(context.getJwt()));
+        credentials.forEach(context -> cache.invalidate(keyOf(context)));
     }
 
     /**
      * Discards any cached principal for the collection of credentials satisfying the given predicate.
+     * <p>In compact mode the predicate is tested against contexts rebuilt from the retained claims
+     * ({@code sub}, {@code iss}, {@code jti} and {@code exp}).</p>
      *
      * @param predicate a predicate to filter credentials
      */
     public void invalidateAll(Predicate<? super JwtContext> predicate) {
-        cache.asMap().entrySet().stream()
-            .map(entry -> entry.getValue().getKey())
-            .filter(predicate::test)
-            .map(JwtContext::getJwt)
-            .forEach(cache::invalidate);
+        final List<Object> keys = new ArrayList<>();
+        cache.forEach((key, entry) -> {
+            if (predicate.test(entry.getContext())) {
+                keys.add(key);
+            }
+        });
+        keys.forEach(cache::invalidate);
+    }
+
+    /**
+     * Discards all cached principals of the given subject.
+     * <p>Uses the subject index when configured, see {@link Builder#indexBySubject()}, and otherwise scans
+     * the cache.</p>
+     *
+     * @param subject the {@code sub} claim of the credentials
+     * @return the number of discarded principals
+     */
+    public int invalidateBySubject(String subject) {
+        return invalidateBy(SUBJECT_INDEX, subject, CachedPrincipal::getSubject);
+    }
+
+    /**
+     * Discards all cached principals whose credentials were issued by the given issuer.
+     * <p>Uses the issuer index when configured, see {@link Builder#indexByIssuer()}, and otherwise scans
+     * the cache.</p>
+     *
+     * @param issuer the {@code iss} claim of the credentials
+     * @return the number of discarded principals
+     */
+    public int invalidateByIssuer(String issuer) {
+        return invalidateBy(ISSUER_INDEX, issuer, CachedPrincipal::getIssuer);
+    }
+
+    /**
+     * Discards the cached principals of the credentials with the given JWT ID.
+     * <p>Uses the JWT ID index when configured, see {@link Builder#indexByJwtId()}, and otherwise scans
+     * the cache.</p>
+     *
+     * @param jwtId the {@code jti} claim of the credentials
+     * @return the number of discarded principals
+     */
+    public int invalidateByJwtId(String jwtId) {
+        return invalidateBy(JWT_ID_INDEX, jwtId, CachedPrincipal::getJwtId);
+    }
+
+    /**
+     * Discards all cached principals indexed under the given value.
+     *
+     * @param indexName the name of an index added with {@link Builder#addIndex(String, Function)}
+     * @param value     the indexed value
+     * @return the number of discarded principals
+     * @throws IllegalArgumentException if there is no index with the given name
+     */
+    public int invalidateByIndex(String indexName, String value) {
+        final PrincipalIndex index = indexNamed(indexName);
+        checkArgument(index != null, "No index named %s", indexName);
+        return invalidateKeys(index.keysOf(value));
+    }
+
+    private int invalidateBy(String indexName, String value, Function<CachedPrincipal<P>, String> attribute) {
+        final PrincipalIndex index = indexNamed(indexName);
+        if (index != null) {
+            return invalidateKeys(index.keysOf(value));
+        }
+
+        final List<Object> keys = new ArrayList<>();
+        cache.forEach((key, entry) -> {
+            if (Objects.equals(value, attribute.apply(entry))) {
+                keys.add(key);
+            }
+        });
+        return invalidateKeys(keys);
+    }
+
+    private int invalidateKeys(Collection<Object> keys) {
+        keys.forEach(cache::invalidate);
+        return keys.size();
+    }
+
+    private PrincipalIndex indexNamed(String indexName) {
+        for (PrincipalIndex index : indexes) {
+            if (index.getName().equals(indexName)) {
+                return index;
+            }
+        }
+        return null;
     }
 
     /**
@@ -121,11 +577,212 @@ public class CachingJwtAuthenticator<P extends Principal> implements Authenticat
     }
 
     /**
-     * Returns a set of statistics about the cache contents and usage.
+     * Returns a set of statistics about the cache contents and usage. The load statistics count the calls of
+     * the underlying authenticator, including the background refreshes.
      *
      * @return a set of statistics about the cache contents and usage
      */
     public CacheStats stats() {
-        return cache.stats();
+        final CacheStats stats = cache.stats();
+        return new CacheStats(stats.hitCount(), stats.missCount(), loadSuccesses.sum(), loadFailures.sum(),
+            totalLoadTime.sum(), stats.evictionCount());
+    }
+
+    /**
+     * A load of the underlying authenticator which concurrent callers for the same key wait for.
+     */
+    private static final class Load<P> {
+
+        private final CompletableFuture<Optional<P>> result = new CompletableFuture<>();
+        private final AtomicInteger callers = new AtomicInteger(1);
+
+        Optional<P> await() throws AuthenticationException {
+            callers.incrementAndGet();
+            try {
+                return result.join();
+            } catch (CompletionException e) {
+                Throwables.propagateIfPossible(e.getCause(), AuthenticationException.class);
+                throw e;
+            }
+        }
+
+        CompletionStage<Optional<P>> join() {
+            callers.incrementAndGet();
+            // a dependent stage so that callers cannot complete the load themselves
+            return result.thenApply(Function.identity());
+        }
+
+        void complete(Optional<P> principal) {
+            result.complete(principal);
+        }
+
+        void fail(Throwable e) {
+            result.completeExceptionally(e);
+        }
+
+        int callers() {
+            return callers.get();
+        }
+    }
+
+    /**
+     * Builder for {@link CachingJwtAuthenticator}.
+     * <p>An {@link Authenticator} and a {@link PrincipalCache} must be provided during the building process.</p>
+     *
+     * @param <P> the principal
+     */
+    public static class Builder<P extends Principal> {
+
+        private MetricRegistry metricRegistry = new MetricRegistry();
+        private Authenticator<JwtContext, P> authenticator;
+        private PrincipalCache<P> cache;
+        private boolean compact;
+        private final Map<String, PrincipalIndex> indexes = new LinkedHashMap<>();
+        private Duration refreshAfterWrite;
+        private Executor refreshExecutor;
+        private Duration cleanUpInterval = Duration.ofMillis(DEFAULT_CLEAN_UP_INTERVAL_MILLIS);
+        private RevocationList revocations;
+
+        public Builder<P> setMetricRegistry(MetricRegistry metricRegistry) {
+            this.metricRegistry = metricRegistry;
+            return this;
+        }
+
+        public Builder<P> setAuthenticator(Authenticator<JwtContext, P> authenticator) {
+            this.authenticator = authenticator;
+            return this;
+        }
+
+        public Builder<P> setCache(PrincipalCache<P> cache) {
+            this.cache = cache;
+            return this;
+        }
+
+        /**
+         * Keys the cache by {@link TokenDigest} and only retains the principal, {@code sub}, {@code iss},
+         * {@code jti} and {@code exp} of each token.
+         *
+         * @param compact whether to store compact entries
+         * @return the builder
+         */
+        public Builder<P> setCompact(boolean compact) {
+            this.compact = compact;
+            return this;
+        }
+
+        /**
+         * Indexes cached principals by the {@code sub} claim of their credentials.
+         *
+         * @return the builder
+         * @see CachingJwtAuthenticator#invalidateBySubject(String)
+         */
+        public Builder<P> indexBySubject() {
+            return addIndex(SUBJECT_INDEX, PrincipalIndex.claim("sub"));
+        }
+
+        /**
+         * Indexes cached principals by the {@code iss} claim of their credentials.
+         *
+         * @return the builder
+         * @see CachingJwtAuthenticator#invalidateByIssuer(String)
+         */
+        public Builder<P> indexByIssuer() {
+            return addIndex(ISSUER_INDEX, PrincipalIndex.claim("iss"));
+        }
+
+        /**
+         * Indexes cached principals by the {@code jti} claim of their credentials.
+         *
+         * @return the builder
+         * @see CachingJwtAuthenticator#invalidateByJwtId(String)
+         */
+        public Builder<P> indexByJwtId() {
+            return addIndex(JWT_ID_INDEX, PrincipalIndex.claim("jti"));
+        }
+
+        /**
+         * Indexes cached principals by a value extracted from their credentials, e.g. a tenant claim.
+         * The extractor is applied once when a principal is cached and may return {@code null} to leave the
+         * principal out of the index.
+         *
+         * @param name      the name of the index
+         * @param extractor extracts the indexed value from the credentials
+         * @return the builder
+         * @see CachingJwtAuthenticator#invalidateByIndex(String, String)
+         */
+        public Builder<P> addIndex(String name, Function<JwtContext, String> extractor) {
+            checkNotNull(name, "Index name is not set");
+            checkNotNull(extractor, "Index extractor is not set");
+            indexes.put(name, new PrincipalIndex(name, extractor));
+            return this;
+        }
+
+        /**
+         * Reloads cached principals in the background once they are older than the given duration.
+         * Until the reload completes the stale principal continues to be served.
+         *
+         * @param refreshAfterWrite the age after which a principal is reloaded
+         * @return the builder
+         */
+        public Builder<P> setRefreshAfterWrite(Duration refreshAfterWrite) {
+            checkArgument(!refreshAfterWrite.isNegative() && !refreshAfterWrite.isZero(),
+                "Refresh after write must be positive");
+            this.refreshAfterWrite = refreshAfterWrite;
+            return this;
+        }
+
+        /**
+         * Sets the executor running background reloads, clean-ups and the loads of
+         * {@link CachingJwtAuthenticator#authenticateAsync(JwtContext)}. It is required for both and should be a
+         * bounded pool dedicated to the underlying authenticator, as its lookups usually block; a rejected
+         * reload keeps the stale principal and a rejected load fails the authentication.
+         *
+         * @param refreshExecutor the executor running background loads
+         * @return the builder
+         */
+        public Builder<P> setRefreshExecutor(Executor refreshExecutor) {
+            this.refreshExecutor = refreshExecutor;
+            return this;
+        }
+
+        /**
+         * Sets how often the cache is cleaned up on the refresh executor, defaults to one minute. Cleaning up
+         * discards the entries of expired tokens which have not been read since they expired.
+         *
+         * @param cleanUpInterval the time between two clean-ups
+         * @return the builder
+         * @see PrincipalCache#cleanUp()
+         */
+        public Builder<P> setCleanUpInterval(Duration cleanUpInterval) {
+            checkArgument(!cleanUpInterval.isNegative() && !cleanUpInterval.isZero(),
+                "Clean-up interval must be positive");
+            this.cleanUpInterval = cleanUpInterval;
+            return this;
+        }
+
+        /**
+         * Refuses credentials whose {@code jti} claim has been revoked, before the cache is consulted. With an
+         * index on the JWT ID, see {@link #indexByJwtId()}, the principals of newly revoked tokens are also
+         * discarded from the cache whenever the list is refreshed.
+         *
+         * @param revocations the list of revoked JWT IDs
+         * @return the builder
+         */
+        public Builder<P> setRevocationList(RevocationList revocations) {
+            this.revocations = revocations;
+            return this;
+        }
+
+        public CachingJwtAuthenticator<P> build() {
+            checkNotNull(metricRegistry, "MetricRegistry is not set");
+            checkNotNull(authenticator, "Authenticator is not set");
+            checkNotNull(cache, "PrincipalCache is not set");
+            checkState(refreshAfterWrite == null || refreshExecutor != null,
+                "A refresh executor is required to refresh principals");
+            return new CachingJwtAuthenticator<>(metricRegistry, authenticator, cache, compact,
+                indexes.values().toArray(new PrincipalIndex[0]),
+                refreshAfterWrite == null ? 0 : refreshAfterWrite.toMillis(),
+                refreshExecutor, cleanUpInterval.toMillis(), revocations);
+        }
     }
 }
@@ -0,0 +1,334 @@
+package com.github.toastshaman.dropwizard.auth.jwt;
+
+import com.google.common.collect.ImmutableSet;
+import org.jose4j.jws.AlgorithmIdentifiers;
+import org.jose4j.jws.EcdsaUsingShaAlgorithm;
+import org.jose4j.jws.JsonWebSignature;
+import org.jose4j.jwt.consumer.ErrorCodeValidator;
+import org.jose4j.jwt.consumer.ErrorCodes;
+import org.jose4j.jwt.consumer.InvalidJwtException;
+import org.jose4j.jwt.consumer.JwtContext;
+import org.jose4j.jwx.JsonWebStructure;
+import org.jose4j.keys.resolvers.VerificationKeyResolver;
+import org.jose4j.lang.UnresolvableKeyException;
+
+import javax.crypto.Mac;
+import java.io.IOException;
+import java.security.GeneralSecurityException;
+import java.security.InvalidKeyException;
+import java.security.Key;
+import java.security.MessageDigest;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.interfaces.RSAKey;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Verifies the signature of decoded tokens with {@link Mac} and {@link Signature} instances which are
+ * initialised once per thread, algorithm and key and then reused.
+ * <p>The stock {@link org.jose4j.jwt.consumer.JwtConsumer} looks up and initialises a new instance from the
+ * security providers for every token, which is slow and partly synchronised. A {@link JwtAuthFilter} built
+ * with {@link JwtAuthFilter.Builder#setSignatureVerifier(CachingSignatureVerifier)} verifies signatures with
+ * this class instead and only uses its consumer, which must then be built with
+ * {@code setSkipSignatureVerification()}, to validate the claims.</p>
+ * <p>Only signed, unencrypted tokens using the HMAC, RSASSA-PKCS1-v1_5 or ECDSA algorithms are supported;
+ * any other token is rejected. Tokens with critical headers are rejected as well. Like the stock consumer, RSA
+ * keys shorter than 2048 bits are refused; otherwise the {@link VerificationKeyResolver} is trusted to only
+ * return keys of an appropriate type and size.</p>
+ * <p>Instances are looked up by the identity of the resolved key and then by its algorithm and encoding, so
+ * that a resolver may return a new {@link Key} for every token, e.g. {@code new HmacKey(secret)}, without
+ * initialising new instances each time.</p>
+ */
+public class CachingSignatureVerifier {
+
+    /**
+     * The algorithms which can be verified.
+     */
+    public static final Set<String> SUPPORTED_ALGORITHMS = ImmutableSet.of(
+        AlgorithmIdentifiers.HMAC_SHA256,
+        AlgorithmIdentifiers.HMAC_SHA384,
+        AlgorithmIdentifiers.HMAC_SHA512,
+        AlgorithmIdentifiers.RSA_USING_SHA256,
+        AlgorithmIdentifiers.RSA_USING_SHA384,
+        AlgorithmIdentifiers.RSA_USING_SHA512,
+        AlgorithmIdentifiers.ECDSA_USING_P256_CURVE_AND_SHA256,
+        AlgorithmIdentifiers.ECDSA_USING_P384_CURVE_AND_SHA384,
+        AlgorithmIdentifiers.ECDSA_USING_P521_CURVE_AND_SHA512);
+
+    // the instances of a thread are dropped once it has seen this many distinct keys, e.g. after several rotations
+    private static final int MAX_KEYS_PER_THREAD = 16;
+
+    private static final int MIN_RSA_KEY_BITS = 2048;
+
+    private final VerificationKeyResolver keyResolver;
+    private final Set<String> algorithms;
+    private final ThreadLocal<Verifiers> verifiers = ThreadLocal.withInitial(Verifiers::new);
+
+    /**
+     * Creates a new verifier accepting all {@link #SUPPORTED_ALGORITHMS}.
+     *
+     * @param keyResolver resolves the key used to verify each token
+     */
+    public CachingSignatureVerifier(VerificationKeyResolver keyResolver) {
+        this(keyResolver, SUPPORTED_ALGORITHMS.toArray(new String[0]));
+    }
+
+    /**
+     * Creates a new verifier only accepting the given algorithms.
+     *
+     * @param keyResolver resolves the key used to verify each token
+     * @param algorithms  the accepted algorithms, a subset of {@link #SUPPORTED_ALGORITHMS}
+     */
+    public CachingSignatureVerifier(VerificationKeyResolver keyResolver, String... algorithms) {
+        for (String algorithm : algorithms) {
+            checkArgument(SUPPORTED_ALGORITHMS.contains(algorithm), "Unsupported algorithm %s", algorithm);
+        }
+        this.keyResolver = keyResolver;
+        this.algorithms = ImmutableSet.copyOf(algorithms);
+    }
+
+    /**
+     * Verifies the signature of a decoded but not yet verified token.
+     *
+     * @param context the decoded token
+     * @throws InvalidJwtException if the signature cannot be verified or is invalid
+     */
+    public void verify(JwtContext context) throws InvalidJwtException {
+        final List<JsonWebStructure> joseObjects = context.getJoseObjects();
+        if (joseObjects.size() != 1 || !(joseObjects.get(0) instanceof JsonWebSignature)) {
+            throw invalid(context, ErrorCodes.MISCELLANEOUS, "Only signed, unencrypted tokens are supported", null);
+        }
+
+        final JsonWebSignature jws = (JsonWebSignature) joseObjects.get(0);
+        final String algorithmName = jws.getAlgorithmHeaderValue();
+        if (algorithmName == null || !algorithms.contains(algorithmName)) {
+            throw invalid(context, ErrorCodes.MISCELLANEOUS, "Algorithm " + algorithmName + " is not permitted", null);
+        }
+        if (jws.getHeader("crit") != null) {
+            throw invalid(context, ErrorCodes.MISCELLANEOUS, "Critical headers are not supported", null);
+        }
+
+        final Key key;
+        try {
+            key = keyResolver.resolveKey(jws, Collections.emptyList());
+        } catch (UnresolvableKeyException e) {
+            throw invalid(context, ErrorCodes.MISCELLANEOUS, "Unable to resolve a verification key", e);
+        }
+
+        final boolean valid;
+        try {
+            final byte[] signature = Base64.getUrlDecoder().decode(jws.getEncodedSignature());
+            valid = verifiers.get().verify(Algorithm.valueOf(algorithmName), key, context.getJwt(), signature);
+        } catch (GeneralSecurityException | IOException | IllegalArgumentException e) {
+            throw invalid(context, ErrorCodes.SIGNATURE_INVALID, "Unable to verify the signature", e);
+        }
+
+        if (!valid) {
+            throw invalid(context, ErrorCodes.SIGNATURE_INVALID, "JWT rejected due to invalid signature", null);
+        }
+    }
+
+    /**
+     * Returns the number of distinct keys the calling thread holds initialised instances for.
+     */
+    int cachedKeys() {
+        return verifiers.get().byEncoding.size();
+    }
+
+    private static InvalidJwtException invalid(JwtContext context, int errorCode, String message, Throwable cause) {
+        return new InvalidJwtException(message, new ErrorCodeValidator.Error(errorCode, message), cause, context);
+    }
+
+    private enum Algorithm {
+        HS256("HmacSHA256", 0), HS384("HmacSHA384", 0), HS512("HmacSHA512", 0),
+        RS256("SHA256withRSA", 0), RS384("SHA384withRSA", 0), RS512("SHA512withRSA", 0),
+        ES256("SHA256withECDSA", 64), ES384("SHA384withECDSA", 96), ES512("SHA512withECDSA", 132);
+
+        private final String javaName;
+        private final int concatenatedSignatureLength;
+
+        Algorithm(String javaName, int concatenatedSignatureLength) {
+            this.javaName = javaName;
+            this.concatenatedSignatureLength = concatenatedSignatureLength;
+        }
+
+        boolean isMac() {
+            return javaName.startsWith("Hmac");
+        }
+
+        Object newInstance(Key key) throws GeneralSecurityException {
+            if (isMac()) {
+                final Mac mac = Mac.getInstance(javaName);
+                mac.init(key);
+                return mac;
+            }
+
+            if (!(key instanceof PublicKey)) {
+                throw new GeneralSecurityException(name() + " requires a public key");
+            }
+            if (key instanceof RSAKey && ((RSAKey) key).getModulus().bitLength() < MIN_RSA_KEY_BITS) {
+                throw new InvalidKeyException(name() + " requires an RSA key of at least " + MIN_RSA_KEY_BITS
+                    + " bits");
+            }
+            final Signature signature = Signature.getInstance(javaName);
+            signature.initVerify((PublicKey) key);
+            return signature;
+        }
+    }
+
+    /**
+     * The initialised instances and scratch buffer of one thread.
+     */
+    private static final class Verifiers {
+
+        // an index of byEncoding by key instance, which spares encoding a key which was seen before
+        private final Map<Key, Object[]> byKey = new IdentityHashMap<>();
+        private final Map<EncodedKey, Object[]> byEncoding = new HashMap<>();
+        private byte[] signingInput = new byte[1024];
+
+        boolean verify(Algorithm algorithm, Key key, String jwt, byte[] signature)
+            throws GeneralSecurityException, IOException {
+            final int length = encodeSigningInput(jwt);
+            if (length < 0) {
+                return false;
+            }
+
+            final Object[] instances = instances(key);
+            final Object instance = instance(algorithm, instances, key);
+            try {
+                return verify(algorithm, instance, length, signature);
+            } catch (GeneralSecurityException | IOException e) {
+                // the state of an instance which failed is unknown
+                instances[algorithm.ordinal()] = null;
+                throw e;
+            }
+        }
+
+        private boolean verify(Algorithm algorithm, Object instance, int length, byte[] signature)
+            throws GeneralSecurityException, IOException {
+            if (algorithm.isMac()) {
+                final Mac mac = (Mac) instance;
+                mac.update(signingInput, 0, length);
+                return MessageDigest.isEqual(mac.doFinal(), signature);
+            }
+
+            byte[] encodedSignature = signature;
+            if (algorithm.concatenatedSignatureLength > 0) {
+                if (signature.length != algorithm.concatenatedSignatureLength) {
+                    return false;
+                }
+                encodedSignature = EcdsaUsingShaAlgorithm.convertConcatenatedToDer(signature);
+            }
+
+            // a signature returns to its initialised state after each verification
+            final Signature verifier = (Signature) instance;
+            verifier.update(signingInput, 0, length);
+            return verifier.verify(encodedSignature);
+        }
+
+        private Object[] instances(Key key) {
+            Object[] instances = byKey.get(key);
+            if (instances != null) {
+                return instances;
+            }
+
+            final EncodedKey encodedKey = EncodedKey.of(key);
+            instances = encodedKey == null ? null : byEncoding.get(encodedKey);
+            if (instances == null) {
+                if (byEncoding.size() >= MAX_KEYS_PER_THREAD) {
+                    byEncoding.clear();
+                    byKey.clear();
+                }
+                instances = new Object[Algorithm.values().length];
+                if (encodedKey != null) {
+                    byEncoding.put(encodedKey, instances);
+                }
+            }
+            // a resolver returning a new key per token only fills the index, which is dropped when full
+            if (byKey.size() >= MAX_KEYS_PER_THREAD) {
+                byKey.clear();
+            }
+            byKey.put(key, instances);
+            return instances;
+        }
+
+        private static Object instance(Algorithm algorithm, Object[] instances, Key key)
+            throws GeneralSecurityException {
+            Object instance = instances[algorithm.ordinal()];
+            if (instance == null) {
+                instance = algorithm.newInstance(key);
+                instances[algorithm.ordinal()] = instance;
+            }
+            return instance;
+        }
+
+        /**
+         * Copies the signing input, the encoded header and payload, of the token into the scratch buffer.
+         *
+         * @return the length of the signing input or {@code -1} if it is not ASCII, in which case it cannot
+         * be the input which was signed
+         */
+        private int encodeSigningInput(String jwt) {
+            final int length = jwt.lastIndexOf('.');
+            if (signingInput.length < length) {
+                signingInput = new byte[Math.max(length, signingInput.length * 2)];
+            }
+            for (int i = 0; i < length; i++) {
+                final char c = jwt.charAt(i);
+                if (c > 0x7f) {
+                    return -1;
+                }
+                signingInput[i] = (byte) c;
+            }
+            return length;
+        }
+    }
+
+    /**
+     * A key compared by its algorithm and encoding.
+     */
+    private static final class EncodedKey {
+
+        private final String algorithm;
+        private final byte[] encoded;
+        private final int hash;
+
+        private EncodedKey(String algorithm, byte[] encoded) {
+            this.algorithm = algorithm;
+            this.encoded = encoded;
+            this.hash = 31 * algorithm.hashCode() + Arrays.hashCode(encoded);
+        }
+
+        /**
+         * Returns the encoded form of the given key.
+         *
+         * @return the encoded key or {@code null} if the key does not support encoding
+         */
+        static EncodedKey of(Key key) {
+            final byte[] encoded = key.getEncoded();
+            return encoded == null || key.getAlgorithm() == null ? null : new EncodedKey(key.getAlgorithm(), encoded);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (o == null || getClass() != o.getClass()) return false;
+            final EncodedKey that = (EncodedKey) o;
+            return algorithm.equals(that.algorithm) && Arrays.equals(encoded, that.encoded);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+}
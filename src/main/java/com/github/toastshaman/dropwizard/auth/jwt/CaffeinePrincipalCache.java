@@ -0,0 +1,202 @@
+package com.github.toastshaman.dropwizard.auth.jwt;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.CacheWriter;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.google.common.cache.CacheStats;
+
+import java.security.Principal;
+import java.time.Duration;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiConsumer;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * A {@link PrincipalCache} backed by a Caffeine {@link Cache}.
+ * <p>Caffeine uses a W-TinyLFU eviction policy, serves reads without locking and performs its maintenance
+ * asynchronously on the configured executor, so it keeps scaling where a segment-locked LRU cache starts
+ * to contend.</p>
+ * <p>Every entry expires at its token's expiration time, bounded by the configured
+ * {@code expireAfterWrite} and {@code expireAfterAccess} durations. Expired entries are evicted during the
+ * cache's regular maintenance, so the cache tracks the population of live tokens.</p>
+ *
+ * @param <P> the principal
+ */
+public class CaffeinePrincipalCache<P extends Principal> implements PrincipalCache<P> {
+
+    private final Cache<Object, CachedPrincipal<P>> cache;
+    private volatile BiConsumer<Object, ? super CachedPrincipal<P>> removalListener = (key, entry) -> {};
+
+    private CaffeinePrincipalCache(Caffeine<Object, CachedPrincipal<P>> builder) {
+        // a writer is notified synchronously while the entry is removed, unlike an asynchronous removal
+        // listener which could observe a removal after the key has been cached again
+        this.cache = builder.recordStats()
+            .writer(new CacheWriter<Object, CachedPrincipal<P>>() {
+                @Override
+                public void write(Object key, CachedPrincipal<P> entry) {}
+
+                @Override
+                public void delete(Object key, CachedPrincipal<P> entry, RemovalCause cause) {
+                    removalListener.accept(key, entry);
+                }
+            })
+            .build();
+    }
+
+    @Override
+    public CachedPrincipal<P> getIfPresent(Object key) {
+        return cache.getIfPresent(key);
+    }
+
+    @Override
+    public CachedPrincipal<P> peek(Object key) {
+        return cache.asMap().get(key);
+    }
+
+    @Override
+    public void put(Object key, CachedPrincipal<P> entry) {
+        cache.put(key, entry);
+    }
+
+    @Override
+    public void invalidate(Object key) {
+        cache.invalidate(key);
+    }
+
+    @Override
+    public boolean replace(Object key, CachedPrincipal<P> expected, CachedPrincipal<P> updated) {
+        return cache.asMap().replace(key, expected, updated);
+    }
+
+    @Override
+    public boolean invalidate(Object key, CachedPrincipal<P> expected) {
+        return cache.asMap().remove(key, expected);
+    }
+
+    @Override
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    @Override
+    public void forEach(BiConsumer<Object, ? super CachedPrincipal<P>> action) {
+        cache.asMap().forEach(action);
+    }
+
+    @Override
+    public long size() {
+        return cache.estimatedSize();
+    }
+
+    @Override
+    public CacheStats stats() {
+        final com.github.benmanes.caffeine.cache.stats.CacheStats stats = cache.stats();
+        return new CacheStats(stats.hitCount(), stats.missCount(), stats.loadSuccessCount(),
+            stats.loadFailureCount(), stats.totalLoadTime(), stats.evictionCount());
+    }
+
+    @Override
+    public void cleanUp() {
+        cache.cleanUp();
+    }
+
+    @Override
+    public void setRemovalListener(BiConsumer<Object, ? super CachedPrincipal<P>> listener) {
+        this.removalListener = listener;
+    }
+
+    /**
+     * Builder for {@link CaffeinePrincipalCache}.
+     *
+     * @param <P> the principal
+     */
+    public static class Builder<P extends Principal> {
+
+        private long maximumSize = 10_000;
+        private Duration expireAfterAccess;
+        private Duration expireAfterWrite;
+        private Executor executor = ForkJoinPool.commonPool();
+
+        public Builder<P> setMaximumSize(long maximumSize) {
+            checkArgument(maximumSize >= 0, "maximum size must not be negative");
+            this.maximumSize = maximumSize;
+            return this;
+        }
+
+        public Builder<P> setExpireAfterAccess(Duration expireAfterAccess) {
+            this.expireAfterAccess = expireAfterAccess;
+            return this;
+        }
+
+        public Builder<P> setExpireAfterWrite(Duration expireAfterWrite) {
+            this.expireAfterWrite = expireAfterWrite;
+            return this;
+        }
+
+        /**
+         * Sets the executor running evictions and other maintenance work.
+         *
+         * @param executor the executor running the cache maintenance
+         * @return the builder
+         */
+        public Builder<P> setExecutor(Executor executor) {
+            this.executor = executor;
+            return this;
+        }
+
+        public CaffeinePrincipalCache<P> build() {
+            checkState(expireAfterWrite == null || expireAfterAccess == null,
+                "only one of expireAfterWrite and expireAfterAccess can be set");
+            final Caffeine<Object, CachedPrincipal<P>> builder = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .executor(executor)
+                .expireAfter(new TokenExpiry<P>(expireAfterWrite, expireAfterAccess));
+            return new CaffeinePrincipalCache<>(builder);
+        }
+    }
+
+    /**
+     * Expires each entry at its token's expiration time or earlier if the configured durations say so.
+     */
+    private static final class TokenExpiry<P extends Principal> implements Expiry<Object, CachedPrincipal<P>> {
+
+        private final long expireAfterWriteNanos;
+        private final long expireAfterAccessNanos;
+
+        private TokenExpiry(Duration expireAfterWrite, Duration expireAfterAccess) {
+            this.expireAfterWriteNanos = expireAfterWrite == null ? Long.MAX_VALUE : expireAfterWrite.toNanos();
+            this.expireAfterAccessNanos = expireAfterAccess == null ? Long.MAX_VALUE : expireAfterAccess.toNanos();
+        }
+
+        @Override
+        public long expireAfterCreate(Object key, CachedPrincipal<P> entry, long currentTime) {
+            return Math.min(untilExpired(entry), Math.min(expireAfterWriteNanos, expireAfterAccessNanos));
+        }
+
+        @Override
+        public long expireAfterUpdate(Object key, CachedPrincipal<P> entry, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, entry, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(Object key, CachedPrincipal<P> entry, long currentTime, long currentDuration) {
+            if (expireAfterAccessNanos == Long.MAX_VALUE) {
+                return currentDuration;
+            }
+            return Math.min(untilExpired(entry), expireAfterAccessNanos);
+        }
+
+        private static long untilExpired(CachedPrincipal<?> entry) {
+            if (entry.getExpiresAt() == CachedPrincipal.NEVER) {
+                return Long.MAX_VALUE;
+            }
+            return Math.max(0, TimeUnit.MILLISECONDS.toNanos(entry.getExpiresAt() - System.currentTimeMillis()));
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.github.toastshaman.dropwizard.auth.jwt;
+
+import com.google.common.base.Splitter;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheBuilderSpec;
+import com.google.common.cache.CacheStats;
+import org.jose4j.jwt.consumer.JwtContext;
+
+import javax.ws.rs.core.SecurityContext;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Authorizes requests by the roles listed in a claim of the token instead of an
+ * {@link io.dropwizard.auth.Authorizer}.
+ * <p>The roles of a token are read once, interned into a {@link RoleTable} and kept as a {@link RoleSet} in a
+ * {@link SecurityContext} which is cached by token, so that {@code isUserInRole} is a bit test and subsequent
+ * requests with the same token reuse the same security context. The authenticator is still consulted on every
+ * request; a cached security context is only reused while it returns the same principal.</p>
+ * <p>The claim may hold an array of role names or a single string of names separated by spaces or commas,
+ * like the {@code scope} claim of OAuth 2.0.</p>
+ */
+public class ClaimsAuthorization {
+
+    private static final Splitter ROLE_SPLITTER = Splitter.onPattern("[\\s,]+").omitEmptyStrings();
+
+    private final RoleTable roleTable;
+    private final String rolesClaim;
+    private final Cache<String, ClaimsSecurityContext> contexts;
+
+    /**
+     * Creates a new authorization using the {@linkplain RoleTable#global() global role table}.
+     *
+     * @param rolesClaim the name of the claim listing the roles of the principal
+     * @param cacheSpec  a {@link CacheBuilderSpec} for the cache of security contexts
+     */
+    public ClaimsAuthorization(String rolesClaim, CacheBuilderSpec cacheSpec) {
+        this(RoleTable.global(), rolesClaim, CacheBuilder.from(cacheSpec));
+    }
+
+    /**
+     * Creates a new authorization.
+     *
+     * @param roleTable  the table interning the role names
+     * @param rolesClaim the name of the claim listing the roles of the principal
+     * @param builder    a {@link CacheBuilder} for the cache of security contexts
+     */
+    public ClaimsAuthorization(RoleTable roleTable, String rolesClaim, CacheBuilder<Object, Object> builder) {
+        this.roleTable = checkNotNull(roleTable, "RoleTable is not set");
+        this.rolesClaim = checkNotNull(rolesClaim, "Roles claim is not set");
+        this.contexts = builder.recordStats().build();
+    }
+
+    /**
+     * Reads the roles of a token.
+     *
+     * @param context the verified credentials
+     * @return the interned roles listed in the roles claim
+     */
+    public RoleSet rolesOf(JwtContext context) {
+        return roleTable.rolesOf(roleNames(context.getJwtClaims().getClaimValue(rolesClaim)));
+    }
+
+    /**
+     * Returns the security context of an authenticated request, reusing the one cached for the token if it
+     * belongs to the same principal and has the same transport security.
+     */
+    SecurityContext securityContext(String rawToken, JwtContext context, Principal principal, boolean secure) {
+        final ClaimsSecurityContext cached = contexts.getIfPresent(rawToken);
+        if (cached != null && cached.principal == principal && cached.secure == secure) {
+            return cached;
+        }
+
+        final RoleSet roles = cached != null ? cached.roles : rolesOf(context);
+        final ClaimsSecurityContext securityContext = new ClaimsSecurityContext(principal, roles, roleTable, secure);
+        contexts.put(rawToken, securityContext);
+        return securityContext;
+    }
+
+    /**
+     * Discards all cached security contexts.
+     */
+    public void invalidateAll() {
+        contexts.invalidateAll();
+    }
+
+    /**
+     * Returns the number of cached security contexts.
+     *
+     * @return the number of cached security contexts
+     */
+    public long size() {
+        return contexts.size();
+    }
+
+    /**
+     * Returns a set of statistics about the cache contents and usage.
+     *
+     * @return a set of statistics about the cache contents and usage
+     */
+    public CacheStats stats() {
+        return contexts.stats();
+    }
+
+    private static Iterable<String> roleNames(Object claimValue) {
+        if (claimValue instanceof String) {
+            return ROLE_SPLITTER.split((String) claimValue);
+        }
+        if (claimValue instanceof Collection) {
+            final List<String> names = new ArrayList<>();
+            for (Object name : (Collection<?>) claimValue) {
+                if (name instanceof String) {
+                    names.add((String) name);
+                }
+            }
+            return names;
+        }
+        return Collections.emptyList();
+    }
+
+    private static final class ClaimsSecurityContext implements SecurityContext {
+
+        private final Principal principal;
+        private final RoleSet roles;
+        private final RoleTable roleTable;
+        private final boolean secure;
+
+        private ClaimsSecurityContext(Principal principal, RoleSet roles, RoleTable roleTable, boolean secure) {
+            this.principal = principal;
+            this.roles = roles;
+            this.roleTable = roleTable;
+            this.secure = secure;
+        }
+
+        @Override
+        public Principal getUserPrincipal() {
+            return principal;
+        }
+
+        @Override
+        public boolean isUserInRole(String role) {
+            return roleTable.contains(roles, role);
+        }
+
+        @Override
+        public boolean isSecure() {
+            return secure;
+        }
+
+        @Override
+        public String getAuthenticationScheme() {
+            return SecurityContext.BASIC_AUTH;
+        }
+    }
+}
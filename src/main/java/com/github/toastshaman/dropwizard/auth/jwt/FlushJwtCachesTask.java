@@ -0,0 +1,67 @@
+package com.github.toastshaman.dropwizard.auth.jwt;
+
+import com.google.common.collect.ImmutableMultimap;
+import io.dropwizard.servlets.tasks.Task;
+
+import java.io.PrintWriter;
+
+/**
+ * An admin task discarding all cached principals and tokens, e.g. after a key has been compromised:
+ * <pre>
+ * curl -X POST http://localhost:8081/tasks/flush-jwt-caches
+ * </pre>
+ * <p>Every token is verified and authenticated again on its next request.</p>
+ */
+public class FlushJwtCachesTask extends Task {
+
+    private final CachingJwtAuthenticator<?> authenticator;
+    private final VerifiedTokenCache verifiedTokens;
+    private final RejectedTokenCache rejectedTokens;
+
+    /**
+     * Creates a new task named {@code flush-jwt-caches}.
+     *
+     * @param authenticator  the caching authenticator, or {@code null}
+     * @param verifiedTokens the cache of verified tokens, or {@code null}
+     * @param rejectedTokens the cache of rejected tokens, or {@code null}
+     */
+    public FlushJwtCachesTask(CachingJwtAuthenticator<?> authenticator,
+                              VerifiedTokenCache verifiedTokens,
+                              RejectedTokenCache rejectedTokens) {
+        this("flush-jwt-caches", authenticator, verifiedTokens, rejectedTokens);
+    }
+
+    /**
+     * Creates a new task.
+     *
+     * @param name           the name of the task
+     * @param authenticator  the caching authenticator, or {@code null}
+     * @param verifiedTokens the cache of verified tokens, or {@code null}
+     * @param rejectedTokens the cache of rejected tokens, or {@code null}
+     */
+    public FlushJwtCachesTask(String name,
+                              CachingJwtAuthenticator<?> authenticator,
+                              VerifiedTokenCache verifiedTokens,
+                              RejectedTokenCache rejectedTokens) {
+        super(name);
+        this.authenticator = authenticator;
+        this.verifiedTokens = verifiedTokens;
+        this.rejectedTokens = rejectedTokens;
+    }
+
+    @Override
+    public void execute(ImmutableMultimap<String, String> parameters, PrintWriter output) {
+        if (authenticator != null) {
+            output.println("Flushed " + authenticator.size() + " cached principals");
+            authenticator.invalidateAll();
+        }
+        if (verifiedTokens != null) {
+            output.println("Flushed " + verifiedTokens.size() + " verified tokens");
+            verifiedTokens.invalidateAll();
+        }
+        if (rejectedTokens != null) {
+            output.println("Flushed " + rejectedTokens.size() + " rejected tokens");
+            rejectedTokens.invalidateAll();
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.github.toastshaman.dropwizard.auth.jwt;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheBuilderSpec;
+import com.google.common.cache.CacheStats;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalNotification;
+
+import java.security.Principal;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+/**
+ * A {@link PrincipalCache} backed by a Guava {@link Cache}.
+ * <p>Guava only supports a single expiration policy for all entries. Entries whose token has expired are
+ * therefore discarded when they are read, which counts as a miss, or when {@link #cleanUp()} runs;
+ * {@link CachingJwtAuthenticator} runs it periodically, see
+ * {@link CachingJwtAuthenticator.Builder#setCleanUpInterval(java.time.Duration)}. Prefer
+ * {@link CaffeinePrincipalCache}, which evicts them on its own, for large token populations.</p>
+ *
+ * @param <P> the principal
+ */
+public class GuavaPrincipalCache<P extends Principal> implements PrincipalCache<P> {
+
+    private final Cache<Object, CachedPrincipal<P>> cache;
+    private final LongAdder expiredReads = new LongAdder();
+    private volatile BiConsumer<Object, ? super CachedPrincipal<P>> removalListener = (key, entry) -> {};
+
+    /**
+     * Creates a new cache.
+     *
+     * @param cacheSpec a {@link CacheBuilderSpec}
+     */
+    public GuavaPrincipalCache(CacheBuilderSpec cacheSpec) {
+        this(CacheBuilder.from(cacheSpec));
+    }
+
+    /**
+     * Creates a new cache.
+     *
+     * @param builder a {@link CacheBuilder}
+     */
+    public GuavaPrincipalCache(CacheBuilder<Object, Object> builder) {
+        this.cache = builder.recordStats()
+            .removalListener((RemovalNotification<Object, CachedPrincipal<P>> notification) -> {
+                if (notification.getCause() != RemovalCause.REPLACED) {
+                    removalListener.accept(notification.getKey(), notification.getValue());
+                }
+            })
+            .build();
+    }
+
+    @Override
+    public CachedPrincipal<P> getIfPresent(Object key) {
+        final CachedPrincipal<P> entry = cache.getIfPresent(key);
+        if (entry != null && entry.isExpired(System.currentTimeMillis())) {
+            cache.asMap().remove(key, entry);
+            expiredReads.increment();
+            return null;
+        }
+        return entry;
+    }
+
+    @Override
+    public CachedPrincipal<P> peek(Object key) {
+        return cache.asMap().get(key);
+    }
+
+    @Override
+    public void put(Object key, CachedPrincipal<P> entry) {
+        cache.put(key, entry);
+    }
+
+    @Override
+    public void invalidate(Object key) {
+        cache.invalidate(key);
+    }
+
+    @Override
+    public boolean replace(Object key, CachedPrincipal<P> expected, CachedPrincipal<P> updated) {
+        return cache.asMap().replace(key, expected, updated);
+    }
+
+    @Override
+    public boolean invalidate(Object key, CachedPrincipal<P> expected) {
+        return cache.asMap().remove(key, expected);
+    }
+
+    @Override
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    @Override
+    public void forEach(BiConsumer<Object, ? super CachedPrincipal<P>> action) {
+        cache.asMap().forEach(action);
+    }
+
+    @Override
+    public long size() {
+        return cache.size();
+    }
+
+    @Override
+    public CacheStats stats() {
+        // Guava counted the read of an expired entry as a hit
+        final CacheStats stats = cache.stats();
+        final long expired = expiredReads.sum();
+        return new CacheStats(stats.hitCount() - expired, stats.missCount() + expired, stats.loadSuccessCount(),
+            stats.loadExceptionCount(), stats.totalLoadTime(), stats.evictionCount());
+    }
+
+    @Override
+    public void cleanUp() {
+        final long now = System.currentTimeMillis();
+        cache.asMap().values().removeIf(entry -> entry.isExpired(now));
+        cache.cleanUp();
+    }
+
+    @Override
+    public void setRemovalListener(BiConsumer<Object, ? super CachedPrincipal<P>> listener) {
+        this.removalListener = listener;
+    }
+}
@@ -0,0 +1,74 @@
+package com.github.toastshaman.dropwizard.auth.jwt;
+
+import com.google.common.collect.ImmutableMultimap;
+import io.dropwizard.servlets.tasks.Task;
+
+import java.io.PrintWriter;
+import java.util.Map;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * An admin task discarding the cached principals of a subject, issuer, JWT ID or custom index value of a
+ * {@link CachingJwtAuthenticator}, e.g. after the roles of a user have changed:
+ * <pre>
+ * curl -X POST 'http://localhost:8081/tasks/invalidate-jwt-principals?sub=good-guy'
+ * </pre>
+ * <p>The parameters {@code sub}, {@code iss} and {@code jti} are supported by every caching authenticator; any
+ * other parameter names an index added with {@link CachingJwtAuthenticator.Builder#addIndex}.</p>
+ */
+public class InvalidatePrincipalsTask extends Task {
+
+    private final CachingJwtAuthenticator<?> authenticator;
+
+    /**
+     * Creates a new task named {@code invalidate-jwt-principals}.
+     *
+     * @param authenticator the caching authenticator
+     */
+    public InvalidatePrincipalsTask(CachingJwtAuthenticator<?> authenticator) {
+        this("invalidate-jwt-principals", authenticator);
+    }
+
+    /**
+     * Creates a new task.
+     *
+     * @param name          the name of the task
+     * @param authenticator the caching authenticator
+     */
+    public InvalidatePrincipalsTask(String name, CachingJwtAuthenticator<?> authenticator) {
+        super(name);
+        this.authenticator = checkNotNull(authenticator, "CachingJwtAuthenticator is not set");
+    }
+
+    @Override
+    public void execute(ImmutableMultimap<String, String> parameters, PrintWriter output) {
+        if (parameters.isEmpty()) {
+            output.println("Specify the principals to invalidate with a sub, iss, jti or index parameter");
+            return;
+        }
+
+        for (Map.Entry<String, String> parameter : parameters.entries()) {
+            final String name = parameter.getKey();
+            final String value = parameter.getValue();
+            try {
+                output.println("Invalidated " + invalidate(name, value) + " principals of " + name + "=" + value);
+            } catch (IllegalArgumentException e) {
+                output.println(e.getMessage());
+            }
+        }
+    }
+
+    private int invalidate(String name, String value) {
+        switch (name) {
+            case CachingJwtAuthenticator.SUBJECT_INDEX:
+                return authenticator.invalidateBySubject(value);
+            case CachingJwtAuthenticator.ISSUER_INDEX:
+                return authenticator.invalidateByIssuer(value);
+            case CachingJwtAuthenticator.JWT_ID_INDEX:
+                return authenticator.invalidateByJwtId(value);
+            default:
+                return authenticator.invalidateByIndex(name, value);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.github.toastshaman.dropwizard.auth.jwt;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import io.dropwizard.auth.Authenticator;
+import org.jose4j.jwt.MalformedClaimException;
+import org.jose4j.jwt.consumer.ErrorCodeValidator;
+import org.jose4j.jwt.consumer.ErrorCodes;
+import org.jose4j.jwt.consumer.InvalidJwtException;
+import org.jose4j.jwt.consumer.JwtConsumer;
+import org.jose4j.jwt.consumer.JwtContext;
+import org.jose4j.jwx.JsonWebStructure;
+
+import java.security.Principal;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Maps the issuer and key ID of a token to the {@link JwtConsumer}, {@link CachingSignatureVerifier} and
+ * {@link Authenticator} responsible for it.
+ * <p>Before a token is verified, its {@code kid} header and {@code iss} claim are peeked at without verifying
+ * them, decoding only the segments the configured routes need, and looked up in prebuilt maps: a route by key ID
+ * takes precedence over a route by issuer, which takes precedence over the fallback route. Once the token has
+ * been verified, the same lookup on its verified header and claims selects the authenticator. Consumers are never
+ * tried one after another.</p>
+ * <p>Each route verifies signatures with its own verifier, if any, so that a token claiming one issuer is never
+ * verified with the keys of another.</p>
+ *
+ * @param <P> the principal
+ */
+final class IssuerRoutes<P extends Principal> {
+
+    private static final Set<String> ISSUER = ImmutableSet.of("iss");
+    private static final Set<String> KEY_ID = ImmutableSet.of("kid");
+
+    private final Map<String, Route<P>> byKeyId;
+    private final Map<String, Route<P>> byIssuer;
+    private final Route<P> fallback;
+
+    IssuerRoutes(Map<String, Route<P>> byKeyId, Map<String, Route<P>> byIssuer, Route<P> fallback) {
+        this.byKeyId = ImmutableMap.copyOf(byKeyId);
+        this.byIssuer = ImmutableMap.copyOf(byIssuer);
+        this.fallback = fallback;
+    }
+
+    /**
+     * Routes all tokens to the given consumer and signature verifier, which may be {@code null}.
+     */
+    static <P extends Principal> IssuerRoutes<P> of(JwtConsumer consumer, CachingSignatureVerifier signatureVerifier) {
+        return new IssuerRoutes<>(Collections.emptyMap(), Collections.emptyMap(),
+            new Route<>(consumer, null, signatureVerifier));
+    }
+
+    /**
+     * Returns routes with the same issuers and key IDs and the given fallback consumer and signature verifier.
+     */
+    IssuerRoutes<P> withFallback(JwtConsumer consumer, CachingSignatureVerifier signatureVerifier) {
+        return new IssuerRoutes<>(byKeyId, byIssuer, new Route<>(consumer, null, signatureVerifier));
+    }
+
+    /**
+     * Returns the route responsible for a token which has not been verified yet.
+     *
+     * @throws InvalidJwtException if neither the key ID nor the issuer of the token are known and there is no
+     *                             fallback consumer
+     */
+    Route<P> routeFor(String rawToken) throws InvalidJwtException {
+        if (byKeyId.isEmpty() && byIssuer.isEmpty()) {
+            return fallback;
+        }
+
+        final int firstDot = rawToken.indexOf('.');
+        final int secondDot = firstDot < 0 ? -1 : rawToken.indexOf('.', firstDot + 1);
+        final String keyId = byKeyId.isEmpty() || firstDot < 0 ? null : peek(rawToken, 0, firstDot, KEY_ID);
+        // the payload of an encrypted token, which has five segments, cannot be peeked at
+        final String issuer = byIssuer.isEmpty() || secondDot < 0 || rawToken.indexOf('.', secondDot + 1) >= 0
+            ? null
+            : peek(rawToken, firstDot + 1, secondDot, ISSUER);
+
+        final Route<P> route = route(keyId, issuer);
+        if (route == null) {
+            final String message = "No JwtConsumer accepts tokens with key ID " + keyId + " of issuer " + issuer;
+            throw new InvalidJwtException(message, new ErrorCodeValidator.Error(ErrorCodes.MISCELLANEOUS, message),
+                null, null);
+        }
+        return route;
+    }
+
+    /**
+     * Returns the authenticator responsible for a verified token, {@code null} for the default one of the filter.
+     */
+    Authenticator<JwtContext, P> authenticatorFor(JwtContext context) {
+        if (byKeyId.isEmpty() && byIssuer.isEmpty()) {
+            return fallback == null ? null : fallback.authenticator;
+        }
+
+        final List<JsonWebStructure> joseObjects = context.getJoseObjects();
+        final String keyId = byKeyId.isEmpty() || joseObjects.isEmpty()
+            ? null
+            : joseObjects.get(0).getKeyIdHeaderValue();
+        String issuer;
+        try {
+            issuer = byIssuer.isEmpty() ? null : context.getJwtClaims().getIssuer();
+        } catch (MalformedClaimException e) {
+            issuer = null;
+        }
+
+        final Route<P> route = route(keyId, issuer);
+        return route == null ? null : route.authenticator;
+    }
+
+    private Route<P> route(String keyId, String issuer) {
+        Route<P> route = keyId == null ? null : byKeyId.get(keyId);
+        if (route == null && issuer != null) {
+            route = byIssuer.get(issuer);
+        }
+        return route == null ? fallback : route;
+    }
+
+    private static String peek(String rawToken, int start, int end, Set<String> member) {
+        try {
+            final byte[] json = Base64.getUrlDecoder().decode(rawToken.substring(start, end));
+            final Object value = JsonScanner.members(new String(json, UTF_8), member).get(member.iterator().next());
+            return value instanceof String ? (String) value : null;
+        } catch (IllegalArgumentException e) {
+            // a malformed token is left to the fallback consumer, if any, to reject
+            return null;
+        }
+    }
+
+    /**
+     * A consumer, the verifier of the signatures it skips, if any, and the authenticator of the principals of the
+     * tokens it accepts.
+     *
+     * @param <P> the principal
+     */
+    static final class Route<P extends Principal> {
+
+        private final JwtConsumer consumer;
+        private final Authenticator<JwtContext, P> authenticator;
+        private final CachingSignatureVerifier signatureVerifier;
+
+        Route(JwtConsumer consumer, Authenticator<JwtContext, P> authenticator,
+              CachingSignatureVerifier signatureVerifier) {
+            this.consumer = consumer;
+            this.authenticator = authenticator;
+            this.signatureVerifier = signatureVerifier;
+        }
+
+        JwtConsumer consumer() {
+            return consumer;
+        }
+
+        CachingSignatureVerifier signatureVerifier() {
+            return signatureVerifier;
+        }
+    }
+}
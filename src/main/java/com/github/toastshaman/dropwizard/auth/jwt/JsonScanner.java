@@ -0,0 +1,496 @@
+package com.github.toastshaman.dropwizard.auth.jwt;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A small JSON reader which extracts selected members of a top-level object and skips over all other values
+ * without materialising them.
+ * <p>Values are returned the way jose4j's parser returns them: strings as {@link String}, integers as
+ * {@link Long} or {@link BigInteger} if they are too large, other numbers as {@link Double}, booleans as
+ * {@link Boolean}, arrays as {@link List} and objects as {@link Map}. Nesting is limited to {@value #MAX_DEPTH}
+ * levels.</p>
+ * <p>Like jose4j's parser, the scanner rejects numbers which do not match {@code -?[0-9]+(\.[0-9]+)?([eE][+-]?[0-9]+)?}
+ * and objects which repeat a member name, including values which are skipped, so that a document is accepted
+ * or refused the same way by both. Member names are compared where they are in the document, so that the names
+ * of skipped members are never copied.</p>
+ */
+final class JsonScanner {
+
+    private static final int MAX_DEPTH = 32;
+
+    private final String json;
+    private int position;
+    // the start, end and hash of the member names of the objects being read, innermost last
+    private int[] names = new int[3 * 16];
+    private int nameCount;
+
+    private JsonScanner(String json) {
+        this.json = json;
+    }
+
+    /**
+     * Returns the values of the given members of the top-level object of the given JSON document.
+     *
+     * @param json  a JSON document whose root is an object
+     * @param names the names of the members to extract
+     * @return the values by member name, without the members which are absent
+     * @throws IllegalArgumentException if the document is not well-formed or repeats a member name
+     */
+    static Map<String, Object> members(String json, Set<String> names) {
+        final JsonScanner scanner = new JsonScanner(json);
+        final String[] requested = names.toArray(new String[0]);
+        final Map<String, Object> members = new HashMap<>();
+        scanner.object((start, end, s) -> {
+            final String name = s.requested(requested, start, end);
+            if (name != null) {
+                members.put(name, s.value(1));
+            } else {
+                s.skipValue(1);
+            }
+        });
+        scanner.end();
+        return members;
+    }
+
+    private interface MemberHandler {
+        /**
+         * Reads the value of a member whose name, without the quotes, spans the given range of the document.
+         */
+        void member(int nameStart, int nameEnd, JsonScanner scanner);
+    }
+
+    private void object(MemberHandler handler) {
+        skipWhitespace();
+        expect('{');
+        skipWhitespace();
+        if (peek() == '}') {
+            position++;
+            return;
+        }
+
+        final int first = nameCount;
+        while (true) {
+            skipWhitespace();
+            final int nameStart = position + 1;
+            skipString();
+            final int nameEnd = position - 1;
+            addName(first, nameStart, nameEnd);
+            skipWhitespace();
+            expect(':');
+            skipWhitespace();
+            handler.member(nameStart, nameEnd, this);
+            skipWhitespace();
+            final char c = next();
+            if (c == '}') {
+                nameCount = first;
+                return;
+            }
+            if (c != ',') {
+                throw malformed();
+            }
+        }
+    }
+
+    private void addName(int first, int start, int end) {
+        int hash = 0;
+        for (int p = start; p < end; p = skipChar(p)) {
+            hash = 31 * hash + charAt(p);
+        }
+        for (int i = 3 * first; i < 3 * nameCount; i += 3) {
+            if (names[i + 2] == hash && namesEqual(names[i], names[i + 1], start, end)) {
+                throw new IllegalArgumentException("Duplicate member " + name(start, end) + " at position "
+                    + (start - 1));
+            }
+        }
+
+        if (3 * nameCount == names.length) {
+            names = Arrays.copyOf(names, names.length * 2);
+        }
+        names[3 * nameCount] = start;
+        names[3 * nameCount + 1] = end;
+        names[3 * nameCount + 2] = hash;
+        nameCount++;
+    }
+
+    private boolean namesEqual(int start, int end, int otherStart, int otherEnd) {
+        int p = start;
+        int q = otherStart;
+        while (p < end && q < otherEnd) {
+            if (charAt(p) != charAt(q)) {
+                return false;
+            }
+            p = skipChar(p);
+            q = skipChar(q);
+        }
+        return p == end && q == otherEnd;
+    }
+
+    private String requested(String[] requested, int start, int end) {
+        for (String name : requested) {
+            if (nameEquals(name, start, end)) {
+                return name;
+            }
+        }
+        return null;
+    }
+
+    private boolean nameEquals(String name, int start, int end) {
+        int i = 0;
+        for (int p = start; p < end; p = skipChar(p)) {
+            if (i == name.length() || name.charAt(i++) != charAt(p)) {
+                return false;
+            }
+        }
+        return i == name.length();
+    }
+
+    private String name(int start, int end) {
+        final int escape = json.indexOf('\\', start);
+        if (escape < 0 || escape >= end) {
+            return json.substring(start, end);
+        }
+        final StringBuilder name = new StringBuilder(end - start);
+        for (int p = start; p < end; p = skipChar(p)) {
+            name.append(charAt(p));
+        }
+        return name.toString();
+    }
+
+    /**
+     * Returns the character at the given position of a string which was already read, decoding an escape.
+     */
+    private char charAt(int p) {
+        final char c = json.charAt(p);
+        if (c != '\\') {
+            return c;
+        }
+        final char escaped = json.charAt(p + 1);
+        switch (escaped) {
+            case 'b':
+                return '\b';
+            case 'f':
+                return '\f';
+            case 'n':
+                return '\n';
+            case 'r':
+                return '\r';
+            case 't':
+                return '\t';
+            case 'u': {
+                int code = 0;
+                for (int i = p + 2; i < p + 6; i++) {
+                    code = code << 4 | Character.digit(json.charAt(i), 16);
+                }
+                return (char) code;
+            }
+            default:
+                return escaped;
+        }
+    }
+
+    private int skipChar(int p) {
+        if (json.charAt(p) != '\\') {
+            return p + 1;
+        }
+        return json.charAt(p + 1) == 'u' ? p + 6 : p + 2;
+    }
+
+    private void end() {
+        skipWhitespace();
+        if (position != json.length()) {
+            throw malformed();
+        }
+    }
+
+    private Object value(int depth) {
+        checkDepth(depth);
+        switch (peek()) {
+            case '"':
+                return string();
+            case '{': {
+                final Map<String, Object> members = new LinkedHashMap<>();
+                object((start, end, s) -> members.put(s.name(start, end), s.value(depth + 1)));
+                return members;
+            }
+            case '[': {
+                final List<Object> elements = new ArrayList<>();
+                array(() -> elements.add(value(depth + 1)));
+                return elements;
+            }
+            case 't':
+                literal("true");
+                return Boolean.TRUE;
+            case 'f':
+                literal("false");
+                return Boolean.FALSE;
+            case 'n':
+                literal("null");
+                return null;
+            default:
+                return number();
+        }
+    }
+
+    private void skipValue(int depth) {
+        checkDepth(depth);
+        switch (peek()) {
+            case '"':
+                skipString();
+                return;
+            case '{':
+                object((start, end, s) -> s.skipValue(depth + 1));
+                return;
+            case '[':
+                array(() -> skipValue(depth + 1));
+                return;
+            case 't':
+                literal("true");
+                return;
+            case 'f':
+                literal("false");
+                return;
+            case 'n':
+                literal("null");
+                return;
+            default:
+                skipNumber();
+        }
+    }
+
+    private void array(Runnable element) {
+        expect('[');
+        skipWhitespace();
+        if (peek() == ']') {
+            position++;
+            return;
+        }
+
+        while (true) {
+            skipWhitespace();
+            element.run();
+            skipWhitespace();
+            final char c = next();
+            if (c == ']') {
+                return;
+            }
+            if (c != ',') {
+                throw malformed();
+            }
+        }
+    }
+
+    private String string() {
+        expect('"');
+        final int start = position;
+        while (position < json.length()) {
+            final char c = json.charAt(position);
+            if (c == '"') {
+                return json.substring(start, position++);
+            }
+            if (c == '\\') {
+                return escapedString(start);
+            }
+            position++;
+        }
+        throw malformed();
+    }
+
+    private String escapedString(int start) {
+        final StringBuilder builder = new StringBuilder(json.length() - start).append(json, start, position);
+        while (true) {
+            final char c = next();
+            if (c == '"') {
+                return builder.toString();
+            }
+            if (c != '\\') {
+                builder.append(c);
+                continue;
+            }
+
+            final char escaped = next();
+            switch (escaped) {
+                case '"':
+                case '\\':
+                case '/':
+                    builder.append(escaped);
+                    break;
+                case 'b':
+                    builder.append('\b');
+                    break;
+                case 'f':
+                    builder.append('\f');
+                    break;
+                case 'n':
+                    builder.append('\n');
+                    break;
+                case 'r':
+                    builder.append('\r');
+                    break;
+                case 't':
+                    builder.append('\t');
+                    break;
+                case 'u':
+                    if (position + 4 > json.length()) {
+                        throw malformed();
+                    }
+                    try {
+                        builder.append((char) Integer.parseInt(json.substring(position, position + 4), 16));
+                    } catch (NumberFormatException e) {
+                        throw malformed();
+                    }
+                    position += 4;
+                    break;
+                default:
+                    throw malformed();
+            }
+        }
+    }
+
+    private void skipString() {
+        expect('"');
+        while (true) {
+            final char c = next();
+            if (c == '"') {
+                return;
+            }
+            if (c == '\\') {
+                skipEscape();
+            }
+        }
+    }
+
+    private void skipEscape() {
+        switch (next()) {
+            case '"':
+            case '\\':
+            case '/':
+            case 'b':
+            case 'f':
+            case 'n':
+            case 'r':
+            case 't':
+                return;
+            case 'u':
+                for (int i = 0; i < 4; i++) {
+                    if (!isHexDigit(next())) {
+                        throw malformed();
+                    }
+                }
+                return;
+            default:
+                throw malformed();
+        }
+    }
+
+    private static boolean isHexDigit(char c) {
+        return (c >= '0' && c <= '9') || (c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F');
+    }
+
+    private Number number() {
+        final int start = position;
+        final boolean integer = skipNumber();
+        final String number = json.substring(start, position);
+        if (integer) {
+            try {
+                return Long.parseLong(number);
+            } catch (NumberFormatException e) {
+                return new BigInteger(number);
+            }
+        }
+        return Double.parseDouble(number);
+    }
+
+    /**
+     * Skips a number, {@code -?[0-9]+(\.[0-9]+)?([eE][+-]?[0-9]+)?} like jose4j's parser.
+     *
+     * @return whether the number is an integer
+     */
+    private boolean skipNumber() {
+        boolean integer = true;
+        skip('-');
+        skipDigits();
+        if (skip('.')) {
+            integer = false;
+            skipDigits();
+        }
+        if (skip('e') || skip('E')) {
+            integer = false;
+            if (!skip('+')) {
+                skip('-');
+            }
+            skipDigits();
+        }
+        return integer;
+    }
+
+    private void skipDigits() {
+        final int start = position;
+        while (position < json.length() && json.charAt(position) >= '0' && json.charAt(position) <= '9') {
+            position++;
+        }
+        if (position == start) {
+            throw malformed();
+        }
+    }
+
+    private boolean skip(char c) {
+        if (position < json.length() && json.charAt(position) == c) {
+            position++;
+            return true;
+        }
+        return false;
+    }
+
+    private void literal(String literal) {
+        if (!json.startsWith(literal, position)) {
+            throw malformed();
+        }
+        position += literal.length();
+    }
+
+    private void skipWhitespace() {
+        while (position < json.length()) {
+            final char c = json.charAt(position);
+            if (c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+                return;
+            }
+            position++;
+        }
+    }
+
+    private char peek() {
+        if (position >= json.length()) {
+            throw malformed();
+        }
+        return json.charAt(position);
+    }
+
+    private char next() {
+        final char c = peek();
+        position++;
+        return c;
+    }
+
+    private void expect(char expected) {
+        if (next() != expected) {
+            throw malformed();
+        }
+    }
+
+    private static void checkDepth(int depth) {
+        if (depth > MAX_DEPTH) {
+            throw new IllegalArgumentException("JSON is nested too deeply");
+        }
+    }
+
+    private IllegalArgumentException malformed() {
+        return new IllegalArgumentException("Malformed JSON at position " + position);
+    }
+}
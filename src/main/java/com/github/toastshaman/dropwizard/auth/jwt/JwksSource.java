@@ -0,0 +1,65 @@
+package com.github.toastshaman.dropwizard.auth.jwt;
+
+import org.jose4j.http.Get;
+import org.jose4j.http.SimpleResponse;
+import org.jose4j.jwk.JsonWebKeySet;
+import org.jose4j.lang.JoseException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * A location from which a JSON Web Key Set (JWKS) document can be loaded.
+ */
+@FunctionalInterface
+public interface JwksSource {
+
+    /**
+     * Loads the current key set.
+     *
+     * @return the current key set
+     * @throws IOException   if the document could not be read
+     * @throws JoseException if the document is not a valid key set
+     */
+    JsonWebKeySet load() throws IOException, JoseException;
+
+    /**
+     * Returns a source reading the key set from a local file.
+     *
+     * @param path the path of the JWKS document
+     * @return a file based source
+     */
+    static JwksSource fromFile(Path path) {
+        return () -> new JsonWebKeySet(new String(Files.readAllBytes(path), UTF_8));
+    }
+
+    /**
+     * Returns a source fetching the key set from an HTTP(S) endpoint.
+     *
+     * @param location the URL of the JWKS document
+     * @return an HTTP based source
+     */
+    static JwksSource fromUrl(String location) {
+        return fromUrl(location, new Get());
+    }
+
+    /**
+     * Returns a source fetching the key set from an HTTP(S) endpoint with the given client.
+     *
+     * @param location the URL of the JWKS document
+     * @param get      the HTTP client, e.g. configured with custom timeouts or trust stores
+     * @return an HTTP based source
+     */
+    static JwksSource fromUrl(String location, Get get) {
+        return () -> {
+            final SimpleResponse response = get.get(location);
+            if (response.getStatusCode() != 200) {
+                throw new IOException("Unexpected status " + response.getStatusCode() + " fetching " + location);
+            }
+            return new JsonWebKeySet(response.getBody());
+        };
+    }
+}
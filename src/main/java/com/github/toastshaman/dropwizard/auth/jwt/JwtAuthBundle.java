@@ -0,0 +1,119 @@
+package com.github.toastshaman.dropwizard.auth.jwt;
+
+import io.dropwizard.Configuration;
+import io.dropwizard.ConfiguredBundle;
+import io.dropwizard.auth.AuthDynamicFeature;
+import io.dropwizard.auth.AuthValueFactoryProvider;
+import io.dropwizard.auth.Authenticator;
+import io.dropwizard.auth.Authorizer;
+import io.dropwizard.setup.Bootstrap;
+import io.dropwizard.setup.Environment;
+import org.glassfish.jersey.server.filter.RolesAllowedDynamicFeature;
+import org.jose4j.jwt.consumer.JwtContext;
+
+import java.security.Principal;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Registers a {@link JwtAuthFilter} configured by a {@link JwtAuthFactory}, together with the
+ * {@link AuthDynamicFeature}, the {@link AuthValueFactoryProvider} for {@code @Auth} parameters and the
+ * {@link RolesAllowedDynamicFeature}:
+ * <pre>
+ * bootstrap.addBundle(new JwtAuthBundle&lt;MyConfiguration, MyUser&gt;(MyUser.class) {
+ *     public JwtAuthFactory getJwtAuthFactory(MyConfiguration configuration) {
+ *         return configuration.getJwt();
+ *     }
+ *
+ *     public Authenticator&lt;JwtContext, MyUser&gt; getAuthenticator(MyConfiguration configuration,
+ *                                                              Environment environment) {
+ *         return new MyAuthenticator();
+ *     }
+ * });
+ * </pre>
+ * <p>The gauges of the caches, the {@link JwtAuthHealthCheck} and the admin tasks are registered by the
+ * {@link JwtAuthFactory}.</p>
+ *
+ * @param <C> the configuration of the application
+ * @param <P> the principal
+ */
+public abstract class JwtAuthBundle<C extends Configuration, P extends Principal> implements ConfiguredBundle<C> {
+
+    private final Class<P> principalClass;
+    private JwtAuthFactory.JwtAuth<P> auth;
+
+    /**
+     * Creates a new bundle.
+     *
+     * @param principalClass the class of the principal injected into {@code @Auth} parameters
+     */
+    protected JwtAuthBundle(Class<P> principalClass) {
+        this.principalClass = checkNotNull(principalClass, "Principal class is not set");
+    }
+
+    /**
+     * Returns the factory of the filter from the application's configuration.
+     *
+     * @param configuration the application's configuration
+     * @return the factory
+     */
+    public abstract JwtAuthFactory getJwtAuthFactory(C configuration);
+
+    /**
+     * Returns the authenticator looking up the principals of verified tokens. It is wrapped in a
+     * {@link CachingJwtAuthenticator} unless the principal cache is disabled.
+     *
+     * @param configuration the application's configuration
+     * @param environment   the application's environment
+     * @return the authenticator
+     */
+    public abstract Authenticator<JwtContext, P> getAuthenticator(C configuration, Environment environment);
+
+    /**
+     * Returns the authorizer of the filter, by default {@code null} to permit all roles.
+     *
+     * @param configuration the application's configuration
+     * @param environment   the application's environment
+     * @return the authorizer or {@code null}
+     */
+    public Authorizer<P> getAuthorizer(C configuration, Environment environment) {
+        return null;
+    }
+
+    @Override
+    public void initialize(Bootstrap<?> bootstrap) {
+    }
+
+    @Override
+    public void run(C configuration, Environment environment) throws Exception {
+        auth = getJwtAuthFactory(configuration).build(environment, getAuthenticator(configuration, environment),
+            getAuthorizer(configuration, environment));
+
+        environment.jersey().register(new AuthDynamicFeature(auth.getFilter()));
+        environment.jersey().register(new AuthValueFactoryProvider.Binder<>(principalClass));
+        environment.jersey().register(RolesAllowedDynamicFeature.class);
+    }
+
+    /**
+     * Returns the registered filter.
+     *
+     * @return the filter
+     * @throws IllegalStateException if the bundle has not run yet
+     */
+    public JwtAuthFilter<P> getFilter() {
+        checkState(auth != null, "JwtAuthBundle has not run yet");
+        return auth.getFilter();
+    }
+
+    /**
+     * Returns the caching authenticator of the registered filter, e.g. to invalidate cached principals.
+     *
+     * @return the caching authenticator or {@code null} if the principal cache is disabled
+     * @throws IllegalStateException if the bundle has not run yet
+     */
+    public CachingJwtAuthenticator<P> getCachingAuthenticator() {
+        checkState(auth != null, "JwtAuthBundle has not run yet");
+        return auth.getCachingAuthenticator();
+    }
+}
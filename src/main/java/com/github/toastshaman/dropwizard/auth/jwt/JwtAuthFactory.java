@@ -0,0 +1,745 @@
+package com.github.toastshaman.dropwizard.auth.jwt;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.Gauge;
+import com.codahale.metrics.Histogram;
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.MetricRegistryListener;
+import com.codahale.metrics.Timer;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheBuilderSpec;
+import io.dropwizard.auth.Authenticator;
+import io.dropwizard.auth.Authorizer;
+import io.dropwizard.setup.Environment;
+import io.dropwizard.util.Duration;
+import io.dropwizard.validation.ValidationMethod;
+import org.jose4j.jwt.consumer.JwtConsumer;
+import org.jose4j.jwt.consumer.JwtConsumerBuilder;
+import org.jose4j.jwt.consumer.JwtContext;
+import org.jose4j.keys.HmacKey;
+import org.jose4j.keys.resolvers.VerificationKeyResolver;
+
+import javax.validation.Valid;
+import javax.validation.constraints.DecimalMax;
+import javax.validation.constraints.DecimalMin;
+import javax.validation.constraints.Min;
+import javax.validation.constraints.NotNull;
+import java.nio.file.Paths;
+import java.security.Principal;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * A Jackson-configurable factory of a {@link JwtAuthFilter} and the {@link CachingJwtAuthenticator} behind it,
+ * used by {@link JwtAuthBundle}.
+ * <p>Tokens are verified with an HMAC {@code secret} of at least 256 bits or with the keys of a JSON Web Key Set,
+ * read from {@code jwksUrl} or {@code jwksFile} and refreshed every {@code keyRefreshInterval}. The defaults
+ * enable the {@link TokenPreValidator}, the {@link CachingSignatureVerifier}, a {@link VerifiedTokenCache}, a
+ * {@link RejectedTokenCache} and a {@link CaffeinePrincipalCache}, e.g.:</p>
+ * <pre>
+ * jwt:
+ *   jwksUrl: https://login.example.com/.well-known/jwks.json
+ *   expectedIssuer: https://login.example.com/
+ *   allowedClockSkew: 30s
+ *   verifiedTokenCache: maximumSize=10000
+ *   rejectedTokenCache: maximumSize=10000, expireAfterWrite=30s
+ *   principalCache:
+ *     backend: caffeine
+ *     maximumSize: 10000
+ *     refreshAfterWrite: 5m
+ *     refreshThreads: 4
+ *   metricsPrefix: auth
+ *   minimumHitRate: 0.8
+ * </pre>
+ * <p>A cache is disabled by setting its spec to an empty string, or the principal cache's backend to
+ * {@code none}.</p>
+ * <p>The size and {@link com.google.common.cache.CacheStats} of each cache are registered as
+ * {@link CacheStatsGauges}, a {@link JwtAuthHealthCheck} named {@code jwt-auth} checks the hit rate of the
+ * principal cache against {@code minimumHitRate} and the age of a refreshed key set against
+ * {@code maximumKeyAge}, three refresh intervals by default, and the admin tasks
+ * {@code invalidate-jwt-principals} and {@code flush-jwt-caches} are added. With a {@code metricsPrefix} the
+ * names of the health check and the tasks start with the prefix followed by a dash.</p>
+ */
+public class JwtAuthFactory {
+
+    @NotNull
+    private String prefix = "Bearer";
+
+    @NotNull
+    private String realm = "realm";
+
+    private String cookieName;
+
+    private String secret;
+
+    private String jwksUrl;
+
+    private String jwksFile;
+
+    @NotNull
+    private Duration keyRefreshInterval = Duration.minutes(15);
+
+    private String expectedIssuer;
+
+    private List<String> expectedAudience;
+
+    @NotNull
+    private Duration allowedClockSkew = Duration.seconds(30);
+
+    private boolean requireExpirationTime = true;
+
+    private boolean requireSubject = true;
+
+    private boolean preValidation = true;
+
+    private boolean cachingSignatureVerifier = true;
+
+    private boolean lazyClaims;
+
+    @NotNull
+    private CacheBuilderSpec verifiedTokenCache = CacheBuilderSpec.parse("maximumSize=10000");
+
+    @NotNull
+    private CacheBuilderSpec rejectedTokenCache = CacheBuilderSpec.parse("maximumSize=10000, expireAfterWrite=30s");
+
+    @Valid
+    @NotNull
+    private PrincipalCacheFactory principalCache = new PrincipalCacheFactory();
+
+    private String metricsPrefix;
+
+    @DecimalMin("0")
+    @DecimalMax("1")
+    private double minimumHitRate;
+
+    private Duration maximumKeyAge;
+
+    @JsonProperty
+    public String getPrefix() {
+        return prefix;
+    }
+
+    @JsonProperty
+    public void setPrefix(String prefix) {
+        this.prefix = prefix;
+    }
+
+    @JsonProperty
+    public String getRealm() {
+        return realm;
+    }
+
+    @JsonProperty
+    public void setRealm(String realm) {
+        this.realm = realm;
+    }
+
+    @JsonProperty
+    public String getCookieName() {
+        return cookieName;
+    }
+
+    @JsonProperty
+    public void setCookieName(String cookieName) {
+        this.cookieName = cookieName;
+    }
+
+    @JsonProperty
+    public String getSecret() {
+        return secret;
+    }
+
+    @JsonProperty
+    public void setSecret(String secret) {
+        this.secret = secret;
+    }
+
+    @JsonProperty
+    public String getJwksUrl() {
+        return jwksUrl;
+    }
+
+    @JsonProperty
+    public void setJwksUrl(String jwksUrl) {
+        this.jwksUrl = jwksUrl;
+    }
+
+    @JsonProperty
+    public String getJwksFile() {
+        return jwksFile;
+    }
+
+    @JsonProperty
+    public void setJwksFile(String jwksFile) {
+        this.jwksFile = jwksFile;
+    }
+
+    @JsonProperty
+    public Duration getKeyRefreshInterval() {
+        return keyRefreshInterval;
+    }
+
+    @JsonProperty
+    public void setKeyRefreshInterval(Duration keyRefreshInterval) {
+        this.keyRefreshInterval = keyRefreshInterval;
+    }
+
+    @JsonProperty
+    public String getExpectedIssuer() {
+        return expectedIssuer;
+    }
+
+    @JsonProperty
+    public void setExpectedIssuer(String expectedIssuer) {
+        this.expectedIssuer = expectedIssuer;
+    }
+
+    @JsonProperty
+    public List<String> getExpectedAudience() {
+        return expectedAudience;
+    }
+
+    @JsonProperty
+    public void setExpectedAudience(List<String> expectedAudience) {
+        this.expectedAudience = expectedAudience;
+    }
+
+    @JsonProperty
+    public Duration getAllowedClockSkew() {
+        return allowedClockSkew;
+    }
+
+    @JsonProperty
+    public void setAllowedClockSkew(Duration allowedClockSkew) {
+        this.allowedClockSkew = allowedClockSkew;
+    }
+
+    @JsonProperty
+    public boolean isRequireExpirationTime() {
+        return requireExpirationTime;
+    }
+
+    @JsonProperty
+    public void setRequireExpirationTime(boolean requireExpirationTime) {
+        this.requireExpirationTime = requireExpirationTime;
+    }
+
+    @JsonProperty
+    public boolean isRequireSubject() {
+        return requireSubject;
+    }
+
+    @JsonProperty
+    public void setRequireSubject(boolean requireSubject) {
+        this.requireSubject = requireSubject;
+    }
+
+    @JsonProperty
+    public boolean isPreValidation() {
+        return preValidation;
+    }
+
+    @JsonProperty
+    public void setPreValidation(boolean preValidation) {
+        this.preValidation = preValidation;
+    }
+
+    @JsonProperty
+    public boolean isCachingSignatureVerifier() {
+        return cachingSignatureVerifier;
+    }
+
+    @JsonProperty
+    public void setCachingSignatureVerifier(boolean cachingSignatureVerifier) {
+        this.cachingSignatureVerifier = cachingSignatureVerifier;
+    }
+
+    @JsonProperty
+    public boolean isLazyClaims() {
+        return lazyClaims;
+    }
+
+    @JsonProperty
+    public void setLazyClaims(boolean lazyClaims) {
+        this.lazyClaims = lazyClaims;
+    }
+
+    @JsonProperty
+    public CacheBuilderSpec getVerifiedTokenCache() {
+        return verifiedTokenCache;
+    }
+
+    @JsonProperty
+    public void setVerifiedTokenCache(CacheBuilderSpec verifiedTokenCache) {
+        this.verifiedTokenCache = verifiedTokenCache;
+    }
+
+    @JsonProperty
+    public CacheBuilderSpec getRejectedTokenCache() {
+        return rejectedTokenCache;
+    }
+
+    @JsonProperty
+    public void setRejectedTokenCache(CacheBuilderSpec rejectedTokenCache) {
+        this.rejectedTokenCache = rejectedTokenCache;
+    }
+
+    @JsonProperty
+    public PrincipalCacheFactory getPrincipalCache() {
+        return principalCache;
+    }
+
+    @JsonProperty
+    public void setPrincipalCache(PrincipalCacheFactory principalCache) {
+        this.principalCache = principalCache;
+    }
+
+    @JsonProperty
+    public String getMetricsPrefix() {
+        return metricsPrefix;
+    }
+
+    @JsonProperty
+    public void setMetricsPrefix(String metricsPrefix) {
+        this.metricsPrefix = metricsPrefix;
+    }
+
+    @JsonProperty
+    public double getMinimumHitRate() {
+        return minimumHitRate;
+    }
+
+    @JsonProperty
+    public void setMinimumHitRate(double minimumHitRate) {
+        this.minimumHitRate = minimumHitRate;
+    }
+
+    @JsonProperty
+    public Duration getMaximumKeyAge() {
+        return maximumKeyAge;
+    }
+
+    @JsonProperty
+    public void setMaximumKeyAge(Duration maximumKeyAge) {
+        this.maximumKeyAge = maximumKeyAge;
+    }
+
+    @JsonIgnore
+    @ValidationMethod(message = "exactly one of secret, jwksUrl and jwksFile must be set")
+    public boolean isKeySourceValid() {
+        return (secret != null ? 1 : 0) + (jwksUrl != null ? 1 : 0) + (jwksFile != null ? 1 : 0) == 1;
+    }
+
+    @JsonIgnore
+    @ValidationMethod(message = "secret must be at least 256 bits long")
+    public boolean isSecretLongEnough() {
+        // the verification key validation of jose4j is relaxed for secrets, which are held to the minimum of HS256
+        // here, so that HS384 and HS512 tokens can be verified with the same secret
+        return secret == null || secret.getBytes(UTF_8).length >= 32;
+    }
+
+    /**
+     * Builds the filter and the caching authenticator. A refreshing key set is managed by the environment's
+     * lifecycle; the gauges, the health check and the admin tasks are registered with the environment.
+     *
+     * @param environment   the application's environment
+     * @param authenticator the authenticator looking up the principals of verified tokens
+     * @param authorizer    the authorizer of the filter, or {@code null} to permit all roles
+     * @param <P>           the principal
+     * @return the filter and the authenticator
+     */
+    public <P extends Principal> JwtAuth<P> build(Environment environment,
+                                                  Authenticator<JwtContext, P> authenticator,
+                                                  Authorizer<P> authorizer) {
+        final MetricRegistry metrics = metricsPrefix == null
+            ? environment.metrics()
+            : prefixed(environment.metrics(), metricsPrefix);
+        final int allowedClockSkewInSeconds = (int) allowedClockSkew.toSeconds();
+        final VerificationKeyResolver keyResolver = buildKeyResolver(environment);
+
+        final JwtConsumerBuilder consumer = new JwtConsumerBuilder()
+            .setAllowedClockSkewInSeconds(allowedClockSkewInSeconds);
+        if (secret != null) {
+            consumer.setRelaxVerificationKeyValidation();
+        }
+        if (requireExpirationTime) {
+            consumer.setRequireExpirationTime();
+        }
+        if (requireSubject) {
+            consumer.setRequireSubject();
+        }
+        if (expectedIssuer != null) {
+            consumer.setExpectedIssuer(expectedIssuer);
+        }
+        if (expectedAudience != null && !expectedAudience.isEmpty()) {
+            consumer.setExpectedAudience(expectedAudience.toArray(new String[0]));
+        }
+        if (cachingSignatureVerifier) {
+            consumer.setSkipSignatureVerification();
+        } else {
+            consumer.setVerificationKeyResolver(keyResolver);
+        }
+
+        final CachingJwtAuthenticator<P> cachingAuthenticator = principalCache.build(environment,
+            qualified("jwt-principal-refresh"), metrics, authenticator);
+        final JwtAuthFilter.Builder<P> filter = new JwtAuthFilter.Builder<P>()
+            .setJwtConsumer(consumer.build())
+            .setCookieName(cookieName)
+            .setLazyClaims(lazyClaims)
+            .setMetricRegistry(metrics);
+        if (cachingSignatureVerifier) {
+            filter.setSignatureVerifier(new CachingSignatureVerifier(keyResolver));
+        }
+        if (preValidation) {
+            filter.setTokenPreValidator(new TokenPreValidator.Builder()
+                .setAllowedClockSkewInSeconds(allowedClockSkewInSeconds)
+                .build());
+        }
+        final VerifiedTokenCache verifiedTokens = isDisabled(verifiedTokenCache)
+            ? null
+            : new VerifiedTokenCache(metrics, verifiedTokenCache, allowedClockSkewInSeconds);
+        final RejectedTokenCache rejectedTokens = isDisabled(rejectedTokenCache)
+            ? null
+            : new RejectedTokenCache(metrics, rejectedTokenCache);
+        if (verifiedTokens != null) {
+            filter.setVerifiedTokenCache(verifiedTokens);
+        }
+        if (rejectedTokens != null) {
+            filter.setRejectedTokenCache(rejectedTokens);
+        }
+        if (authorizer != null) {
+            filter.setAuthorizer(authorizer);
+        }
+        filter.setPrefix(prefix)
+            .setRealm(realm)
+            .setAuthenticator(cachingAuthenticator == null ? authenticator : cachingAuthenticator);
+
+        registerOperations(environment, metrics, keyResolver, cachingAuthenticator, verifiedTokens, rejectedTokens);
+        return new JwtAuth<>(filter.buildAuthFilter(), cachingAuthenticator);
+    }
+
+    private void registerOperations(Environment environment,
+                                    MetricRegistry metrics,
+                                    VerificationKeyResolver keyResolver,
+                                    CachingJwtAuthenticator<?> cachingAuthenticator,
+                                    VerifiedTokenCache verifiedTokens,
+                                    RejectedTokenCache rejectedTokens) {
+        final JwtAuthHealthCheck.Builder healthCheck = new JwtAuthHealthCheck.Builder();
+        if (cachingAuthenticator != null) {
+            metrics.register(name(CachingJwtAuthenticator.class, "cache"), CacheStatsGauges.of(cachingAuthenticator));
+            healthCheck.setCachingAuthenticator(cachingAuthenticator, minimumHitRate);
+            environment.admin().addTask(new InvalidatePrincipalsTask(qualified("invalidate-jwt-principals"),
+                cachingAuthenticator));
+        }
+        if (verifiedTokens != null) {
+            metrics.register(name(VerifiedTokenCache.class, "cache"), CacheStatsGauges.of(verifiedTokens));
+        }
+        if (rejectedTokens != null) {
+            metrics.register(name(RejectedTokenCache.class, "cache"), CacheStatsGauges.of(rejectedTokens));
+        }
+        if (keyResolver instanceof RefreshingJwksKeyResolver) {
+            final Duration keyAge = maximumKeyAge != null
+                ? maximumKeyAge
+                : Duration.milliseconds(keyRefreshInterval.toMilliseconds() * 3);
+            healthCheck.setKeyResolver((RefreshingJwksKeyResolver) keyResolver,
+                java.time.Duration.ofMillis(keyAge.toMilliseconds()));
+        }
+        if (cachingAuthenticator != null || keyResolver instanceof RefreshingJwksKeyResolver) {
+            environment.healthChecks().register(qualified("jwt-auth"), healthCheck.build());
+        }
+        environment.admin().addTask(new FlushJwtCachesTask(qualified("flush-jwt-caches"), cachingAuthenticator,
+            verifiedTokens, rejectedTokens));
+    }
+
+    private String qualified(String name) {
+        return metricsPrefix == null ? name : metricsPrefix + "-" + name;
+    }
+
+    private VerificationKeyResolver buildKeyResolver(Environment environment) {
+        if (secret != null) {
+            final HmacKey key = new HmacKey(secret.getBytes(UTF_8));
+            return (jws, nestingContext) -> key;
+        }
+
+        final JwksSource source = jwksUrl != null
+            ? JwksSource.fromUrl(jwksUrl)
+            : JwksSource.fromFile(Paths.get(jwksFile));
+        final RefreshingJwksKeyResolver resolver = new RefreshingJwksKeyResolver(source,
+            java.time.Duration.ofMillis(keyRefreshInterval.toMilliseconds()));
+        environment.lifecycle().manage(resolver);
+        return resolver;
+    }
+
+    private static boolean isDisabled(CacheBuilderSpec spec) {
+        return spec.toParsableString().isEmpty();
+    }
+
+    /**
+     * Returns a registry whose metrics are also registered in the given one, with the given prefix.
+     */
+    private static MetricRegistry prefixed(MetricRegistry parent, String prefix) {
+        final MetricRegistry registry = new MetricRegistry();
+        registry.addListener(new MetricRegistryListener() {
+            @Override
+            public void onGaugeAdded(String metric, Gauge<?> gauge) {
+                parent.register(name(prefix, metric), gauge);
+            }
+
+            @Override
+            public void onGaugeRemoved(String metric) {
+                parent.remove(name(prefix, metric));
+            }
+
+            @Override
+            public void onCounterAdded(String metric, Counter counter) {
+                parent.register(name(prefix, metric), counter);
+            }
+
+            @Override
+            public void onCounterRemoved(String metric) {
+                parent.remove(name(prefix, metric));
+            }
+
+            @Override
+            public void onHistogramAdded(String metric, Histogram histogram) {
+                parent.register(name(prefix, metric), histogram);
+            }
+
+            @Override
+            public void onHistogramRemoved(String metric) {
+                parent.remove(name(prefix, metric));
+            }
+
+            @Override
+            public void onMeterAdded(String metric, Meter meter) {
+                parent.register(name(prefix, metric), meter);
+            }
+
+            @Override
+            public void onMeterRemoved(String metric) {
+                parent.remove(name(prefix, metric));
+            }
+
+            @Override
+            public void onTimerAdded(String metric, Timer timer) {
+                parent.register(name(prefix, metric), timer);
+            }
+
+            @Override
+            public void onTimerRemoved(String metric) {
+                parent.remove(name(prefix, metric));
+            }
+        });
+        return registry;
+    }
+
+    /**
+     * The backend and sizing of the cache of authenticated principals.
+     */
+    public static class PrincipalCacheFactory {
+
+        private static final int REFRESH_QUEUE_SIZE = 1024;
+
+        /**
+         * The implementations of {@link PrincipalCache} which can be configured.
+         */
+        public enum Backend {
+            /**
+             * A {@link CaffeinePrincipalCache}, which evicts entries when their token expires.
+             */
+            CAFFEINE,
+            /**
+             * A {@link GuavaPrincipalCache}.
+             */
+            GUAVA,
+            /**
+             * No cache, every request is authenticated by the underlying authenticator.
+             */
+            NONE
+        }
+
+        @NotNull
+        private Backend backend = Backend.CAFFEINE;
+
+        @Min(0)
+        private long maximumSize = 10_000;
+
+        private Duration expireAfterAccess;
+
+        private Duration expireAfterWrite;
+
+        private Duration refreshAfterWrite;
+
+        private boolean compact = true;
+
+        @Min(1)
+        private int refreshThreads = 4;
+
+        @JsonProperty
+        public Backend getBackend() {
+            return backend;
+        }
+
+        @JsonProperty
+        public void setBackend(Backend backend) {
+            this.backend = backend;
+        }
+
+        @JsonProperty
+        public long getMaximumSize() {
+            return maximumSize;
+        }
+
+        @JsonProperty
+        public void setMaximumSize(long maximumSize) {
+            this.maximumSize = maximumSize;
+        }
+
+        @JsonProperty
+        public Duration getExpireAfterAccess() {
+            return expireAfterAccess;
+        }
+
+        @JsonProperty
+        public void setExpireAfterAccess(Duration expireAfterAccess) {
+            this.expireAfterAccess = expireAfterAccess;
+        }
+
+        @JsonProperty
+        public Duration getExpireAfterWrite() {
+            return expireAfterWrite;
+        }
+
+        @JsonProperty
+        public void setExpireAfterWrite(Duration expireAfterWrite) {
+            this.expireAfterWrite = expireAfterWrite;
+        }
+
+        @JsonProperty
+        public Duration getRefreshAfterWrite() {
+            return refreshAfterWrite;
+        }
+
+        @JsonProperty
+        public void setRefreshAfterWrite(Duration refreshAfterWrite) {
+            this.refreshAfterWrite = refreshAfterWrite;
+        }
+
+        @JsonProperty
+        public boolean isCompact() {
+            return compact;
+        }
+
+        @JsonProperty
+        public void setCompact(boolean compact) {
+            this.compact = compact;
+        }
+
+        @JsonProperty
+        public int getRefreshThreads() {
+            return refreshThreads;
+        }
+
+        @JsonProperty
+        public void setRefreshThreads(int refreshThreads) {
+            this.refreshThreads = refreshThreads;
+        }
+
+        @JsonIgnore
+        @ValidationMethod(message = "only one of expireAfterAccess and expireAfterWrite can be set")
+        public boolean isExpirationValid() {
+            return expireAfterAccess == null || expireAfterWrite == null;
+        }
+
+        /**
+         * Builds the caching authenticator, indexed by subject. With {@code refreshAfterWrite} the principals are
+         * reloaded by a pool of {@code refreshThreads} threads managed by the environment, whose queue is bounded
+         * so that a slow user store cannot pile up reloads.
+         *
+         * @return the caching authenticator or {@code null} if the backend is {@link Backend#NONE}
+         */
+        <P extends Principal> CachingJwtAuthenticator<P> build(Environment environment,
+                                                               String refreshPoolName,
+                                                               MetricRegistry metrics,
+                                                               Authenticator<JwtContext, P> authenticator) {
+            if (backend == Backend.NONE) {
+                return null;
+            }
+
+            final CachingJwtAuthenticator.Builder<P> builder = new CachingJwtAuthenticator.Builder<P>()
+                .setMetricRegistry(metrics)
+                .setAuthenticator(authenticator)
+                .setCache(buildCache())
+                .setCompact(compact)
+                .indexBySubject();
+            if (refreshAfterWrite != null) {
+                builder.setRefreshAfterWrite(java.time.Duration.ofMillis(refreshAfterWrite.toMilliseconds()))
+                    .setRefreshExecutor(environment.lifecycle().executorService(refreshPoolName + "-%d")
+                        .minThreads(refreshThreads)
+                        .maxThreads(refreshThreads)
+                        .workQueue(new ArrayBlockingQueue<>(REFRESH_QUEUE_SIZE))
+                        .build());
+            }
+            return builder.build();
+        }
+
+        private <P extends Principal> PrincipalCache<P> buildCache() {
+            if (backend == Backend.GUAVA) {
+                final CacheBuilder<Object, Object> builder = CacheBuilder.newBuilder().maximumSize(maximumSize);
+                if (expireAfterAccess != null) {
+                    builder.expireAfterAccess(expireAfterAccess.toMilliseconds(), TimeUnit.MILLISECONDS);
+                }
+                if (expireAfterWrite != null) {
+                    builder.expireAfterWrite(expireAfterWrite.toMilliseconds(), TimeUnit.MILLISECONDS);
+                }
+                return new GuavaPrincipalCache<>(builder);
+            }
+
+            final CaffeinePrincipalCache.Builder<P> builder = new CaffeinePrincipalCache.Builder<P>()
+                .setMaximumSize(maximumSize);
+            if (expireAfterAccess != null) {
+                builder.setExpireAfterAccess(java.time.Duration.ofMillis(expireAfterAccess.toMilliseconds()));
+            }
+            if (expireAfterWrite != null) {
+                builder.setExpireAfterWrite(java.time.Duration.ofMillis(expireAfterWrite.toMilliseconds()));
+            }
+            return builder.build();
+        }
+    }
+
+    /**
+     * The filter and caching authenticator built by a {@link JwtAuthFactory}.
+     *
+     * @param <P> the principal
+     */
+    public static class JwtAuth<P extends Principal> {
+
+        private final JwtAuthFilter<P> filter;
+        private final CachingJwtAuthenticator<P> cachingAuthenticator;
+
+        JwtAuth(JwtAuthFilter<P> filter, CachingJwtAuthenticator<P> cachingAuthenticator) {
+            this.filter = filter;
+            this.cachingAuthenticator = cachingAuthenticator;
+        }
+
+        public JwtAuthFilter<P> getFilter() {
+            return filter;
+        }
+
+        /**
+         * Returns the caching authenticator.
+         *
+         * @return the caching authenticator or {@code null} if the principal cache is disabled
+         */
+        public CachingJwtAuthenticator<P> getCachingAuthenticator() {
+            return cachingAuthenticator;
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.github.toastshaman.dropwizard.auth.jwt;
 
+import com.codahale.metrics.MetricRegistry;
 import io.dropwizard.auth.AuthFilter;
 import io.dropwizard.auth.AuthenticationException;
 import io.dropwizard.auth.Authenticator;
@@ -14,38 +15,62 @@ import javax.ws.rs.InternalServerErrorException;
 import javax.ws.rs.Priorities;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.container.ContainerRequestContext;
-import javax.ws.rs.core.Cookie;
 import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.core.SecurityContext;
 import java.io.IOException;
 import java.security.Principal;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.function.Function;
 
 import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
 import static javax.ws.rs.core.HttpHeaders.AUTHORIZATION;
+import static javax.ws.rs.core.HttpHeaders.COOKIE;
 
 @Priority(Priorities.AUTHENTICATION)
 public class JwtAuthFilter<P extends Principal> extends AuthFilter<JwtContext, P> {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(JwtAuthFilter.class);
 
-    private final JwtConsumer consumer;
     private final String cookieName;
+    private final IssuerRoutes<P> routes;
+    private final ClaimsAuthorization claimsAuthorization;
+    private final JwtVerificationMetrics metrics;
 
-    private JwtAuthFilter(JwtConsumer consumer, String cookieName) {
-        this.consumer = consumer;
+    // replaced as a whole when reloadable settings change, read once per request
+    private volatile TokenVerifier verifier;
+
+    private JwtAuthFilter(String cookieName, IssuerRoutes<P> routes, TokenVerifier verifier,
+                          ClaimsAuthorization claimsAuthorization) {
         this.cookieName = cookieName;
+        this.routes = routes;
+        this.verifier = verifier;
+        this.claimsAuthorization = claimsAuthorization;
+        this.metrics = verifier.metrics();
     }
 
     @Override
     public void filter(final ContainerRequestContext requestContext) throws IOException {
-        final Optional<String> optionalToken = getTokenFromCookieOrHeader(requestContext);
+        final String rawToken = getTokenFromCookieOrHeader(requestContext);
+        final TokenVerifier verifier = this.verifier;
 
-        if (optionalToken.isPresent()) {
+        if (rawToken == null) {
+            metrics.missingToken();
+        } else {
             try {
-                final JwtContext jwtContext = verifyToken(optionalToken.get());
-                final Optional<P> principal = authenticator.authenticate(jwtContext);
+                // null for a token which has recently been rejected
+                final JwtContext jwtContext = verifier.verify(rawToken);
+                final Optional<P> principal = jwtContext == null ? Optional.empty() : authenticate(jwtContext);
+
+                if (principal.isPresent() && claimsAuthorization != null) {
+                    requestContext.setSecurityContext(claimsAuthorization.securityContext(rawToken, jwtContext,
+                        principal.get(), requestContext.getSecurityContext().isSecure()));
+                    return;
+                }
 
                 if (principal.isPresent()) {
                     requestContext.setSecurityContext(new SecurityContext() {
@@ -57,7 +82,11 @@ public class JwtAuthFilter<P extends Principal> extends AuthFilter<JwtContext, P
 
                         @Override
                         public boolean isUserInRole(String role) {
-                            return authorizer.authorize(principal.get(), role);
+                            final long start = metrics.start();
+                            try {
+                                return authorizer.authorize(principal.get(), role);
+                            }
+                            finally { metrics.stop(metrics.authorize, start); }
                         }
 
                         @Override
@@ -73,6 +102,10 @@ public class JwtAuthFilter<P extends Principal> extends AuthFilter<JwtContext, P
                     });
                     return;
                 }
+
+                if (jwtContext != null) {
+                    verifier.unknownPrincipal(rawToken);
+                }
             } catch (InvalidJwtException ex) {
                 LOGGER.warn("Error decoding credentials: " + ex.getMessage(), ex);
             } catch (AuthenticationException ex) {
@@ -84,41 +117,51 @@ public class JwtAuthFilter<P extends Principal> extends AuthFilter<JwtContext, P
         throw new WebApplicationException(unauthorizedHandler.buildResponse(prefix, realm));
     }
 
-    private JwtContext verifyToken(String rawToken) throws InvalidJwtException {
-        return consumer.process(rawToken);
+    private Optional<P> authenticate(JwtContext jwtContext) throws AuthenticationException {
+        final Authenticator<JwtContext, P> issuerAuthenticator = routes.authenticatorFor(jwtContext);
+        final long start = metrics.start();
+        try {
+            return (issuerAuthenticator != null ? issuerAuthenticator : authenticator).authenticate(jwtContext);
+        }
+        finally { metrics.stop(metrics.authenticate, start); }
     }
 
-    private Optional<String> getTokenFromCookieOrHeader(ContainerRequestContext requestContext) {
-        final Optional<String> headerToken = getTokenFromHeader(requestContext.getHeaders());
-        return headerToken.isPresent() ? headerToken : getTokenFromCookie(requestContext);
-    }
+    private String getTokenFromCookieOrHeader(ContainerRequestContext requestContext) {
+        final MultivaluedMap<String, String> headers = requestContext.getHeaders();
+        final String headerToken;
+        final long header = metrics.start();
+        try {
+            headerToken = TokenExtractor.fromAuthorizationHeader(headers.getFirst(AUTHORIZATION), prefix);
+        }
+        finally { metrics.stop(metrics.headerExtraction, header); }
 
-    private Optional<String> getTokenFromHeader(MultivaluedMap<String, String> headers) {
-        final String header = headers.getFirst(AUTHORIZATION);
-        if (header != null) {
-            int space = header.indexOf(' ');
-            if (space > 0) {
-                final String method = header.substring(0, space);
-                if (prefix.equalsIgnoreCase(method)) {
-                    final String rawToken = header.substring(space + 1);
-                    return Optional.of(rawToken);
-                }
-            }
+        if (headerToken != null) {
+            return headerToken;
         }
 
-        return Optional.empty();
+        final long cookie = metrics.start();
+        try {
+            return getTokenFromCookie(headers);
+        }
+        finally { metrics.stop(metrics.cookieExtraction, cookie); }
     }
 
-    private Optional<String> getTokenFromCookie(ContainerRequestContext requestContext) {
-        final Map<String, Cookie> cookies = requestContext.getCookies();
+    private String getTokenFromCookie(MultivaluedMap<String, String> headers) {
+        if (cookieName == null) {
+            return null;
+        }
 
-        if (cookieName != null && cookies.containsKey(cookieName)) {
-            final Cookie tokenCookie = cookies.get(cookieName);
-            final String rawToken = tokenCookie.getValue();
-            return Optional.of(rawToken);
+        final List<String> cookieHeaders = headers.get(COOKIE);
+        if (cookieHeaders != null) {
+            for (int i = 0; i < cookieHeaders.size(); i++) {
+                final String rawToken = TokenExtractor.fromCookieHeader(cookieHeaders.get(i), cookieName);
+                if (rawToken != null) {
+                    return rawToken;
+                }
+            }
         }
 
-        return Optional.empty();
+        return null;
     }
 
     /**
@@ -131,21 +174,279 @@ public class JwtAuthFilter<P extends Principal> extends AuthFilter<JwtContext, P
 
         private JwtConsumer consumer;
         private String cookieName;
+        private VerifiedTokenCache verifiedTokens;
+        private RejectedTokenCache rejectedTokens;
+        private CachingSignatureVerifier signatureVerifier;
+        private TokenPreValidator preValidator;
+        private ClaimsAuthorization claimsAuthorization;
+        private boolean lazyClaims;
+        private MetricRegistry metricRegistry;
+        private final Map<String, IssuerRoutes.Route<P>> keyIdRoutes = new HashMap<>();
+        private final Map<String, IssuerRoutes.Route<P>> issuerRoutes = new HashMap<>();
+        private ReloadableJwtSettings reloadableSettings;
 
+        /**
+         * Sets the consumer verifying the tokens. With {@linkplain #addIssuer(String, JwtConsumer) issuers} or
+         * {@linkplain #addKeyId(String, JwtConsumer) key IDs}, it is optional and verifies the tokens which match
+         * none of them.
+         *
+         * @param consumer the consumer verifying the tokens
+         * @return the builder
+         */
         public Builder<P> setJwtConsumer(JwtConsumer consumer) {
             this.consumer = consumer;
             return this;
         }
 
+        /**
+         * Verifies the tokens of the given issuer with their own consumer and authenticates them with the
+         * authenticator of the filter. The unverified {@code iss} claim of each token is peeked at once to look
+         * up its consumer, which then verifies the token, including its issuer and signature. The caches and
+         * pre-validator of the filter are shared by all issuers.
+         *
+         * @param issuer   the {@code iss} claim of the tokens
+         * @param consumer the consumer verifying the tokens of the issuer
+         * @return the builder
+         */
+        public Builder<P> addIssuer(String issuer, JwtConsumer consumer) {
+            return addIssuer(issuer, consumer, null);
+        }
+
+        /**
+         * Verifies the tokens of the given issuer with their own consumer and authenticator.
+         *
+         * @param issuer        the {@code iss} claim of the tokens
+         * @param consumer      the consumer verifying the tokens of the issuer
+         * @param authenticator the authenticator of the principals of the issuer, {@code null} for the
+         *                      authenticator of the filter
+         * @return the builder
+         * @see #addIssuer(String, JwtConsumer)
+         */
+        public Builder<P> addIssuer(String issuer, JwtConsumer consumer, Authenticator<JwtContext, P> authenticator) {
+            return addIssuer(issuer, consumer, authenticator, null);
+        }
+
+        /**
+         * Verifies the tokens of the given issuer with their own consumer, signature verifier and authenticator.
+         * The consumer must then be built with
+         * {@link org.jose4j.jwt.consumer.JwtConsumerBuilder#setSkipSignatureVerification()}; the verifier should
+         * only resolve the keys of the issuer.
+         *
+         * @param issuer            the {@code iss} claim of the tokens
+         * @param consumer          the consumer validating the claims of the tokens of the issuer
+         * @param authenticator     the authenticator of the principals of the issuer, {@code null} for the
+         *                          authenticator of the filter
+         * @param signatureVerifier the verifier of the signatures of the issuer, {@code null} if the consumer
+         *                          verifies them
+         * @return the builder
+         * @see #setSignatureVerifier(CachingSignatureVerifier)
+         */
+        public Builder<P> addIssuer(String issuer, JwtConsumer consumer, Authenticator<JwtContext, P> authenticator,
+                                    CachingSignatureVerifier signatureVerifier) {
+            issuerRoutes.put(checkNotNull(issuer, "Issuer is not set"), new IssuerRoutes.Route<>(
+                checkNotNull(consumer, "JwtConsumer is not set"), authenticator, signatureVerifier));
+            return this;
+        }
+
+        /**
+         * Verifies the tokens signed with the given key with their own consumer and authenticates them with the
+         * authenticator of the filter. A route by key ID takes precedence over a route by issuer.
+         *
+         * @param keyId    the {@code kid} header of the tokens
+         * @param consumer the consumer verifying the tokens signed with the key
+         * @return the builder
+         */
+        public Builder<P> addKeyId(String keyId, JwtConsumer consumer) {
+            return addKeyId(keyId, consumer, null);
+        }
+
+        /**
+         * Verifies the tokens signed with the given key with their own consumer and authenticator.
+         *
+         * @param keyId         the {@code kid} header of the tokens
+         * @param consumer      the consumer verifying the tokens signed with the key
+         * @param authenticator the authenticator of the principals, {@code null} for the authenticator of the
+         *                      filter
+         * @return the builder
+         * @see #addKeyId(String, JwtConsumer)
+         */
+        public Builder<P> addKeyId(String keyId, JwtConsumer consumer, Authenticator<JwtContext, P> authenticator) {
+            return addKeyId(keyId, consumer, authenticator, null);
+        }
+
+        /**
+         * Verifies the tokens signed with the given key with their own consumer, signature verifier and
+         * authenticator.
+         *
+         * @param keyId             the {@code kid} header of the tokens
+         * @param consumer          the consumer validating the claims of the tokens signed with the key
+         * @param authenticator     the authenticator of the principals, {@code null} for the authenticator of the
+         *                          filter
+         * @param signatureVerifier the verifier of the signatures made with the key, {@code null} if the consumer
+         *                          verifies them
+         * @return the builder
+         * @see #addIssuer(String, JwtConsumer, Authenticator, CachingSignatureVerifier)
+         */
+        public Builder<P> addKeyId(String keyId, JwtConsumer consumer, Authenticator<JwtContext, P> authenticator,
+                                   CachingSignatureVerifier signatureVerifier) {
+            keyIdRoutes.put(checkNotNull(keyId, "Key ID is not set"), new IssuerRoutes.Route<>(
+                checkNotNull(consumer, "JwtConsumer is not set"), authenticator, signatureVerifier));
+            return this;
+        }
+
         public Builder<P> setCookieName(String cookieName) {
             this.cookieName = cookieName;
             return this;
         }
 
+        /**
+         * Authenticates principals with an {@link AsyncAuthenticator}, waiting at most the given time for each
+         * lookup. A lookup which times out is answered with {@code 500 Internal Server Error} like any other
+         * {@link AuthenticationException}; it keeps running so that it can populate caches for later requests.
+         * The request thread is blocked while it waits, the timeout only bounds how long; it is not freed for
+         * other requests. This replaces any authenticator set with {@link #setAuthenticator(Authenticator)}.
+         *
+         * @param authenticator the asynchronous authenticator
+         * @param timeout       the maximum time a request waits for its principal
+         * @return the builder
+         */
+        public Builder<P> setAsyncAuthenticator(AsyncAuthenticator<JwtContext, P> authenticator, Duration timeout) {
+            setAuthenticator(AsyncAuthenticator.awaiting(authenticator, timeout));
+            return this;
+        }
+
+        /**
+         * Sets an optional cache of verified tokens which is consulted before the {@link JwtConsumer}.
+         *
+         * @param verifiedTokens a cache of verified tokens
+         * @return the builder
+         */
+        public Builder<P> setVerifiedTokenCache(VerifiedTokenCache verifiedTokens) {
+            this.verifiedTokens = verifiedTokens;
+            return this;
+        }
+
+        /**
+         * Sets an optional cache of recently rejected tokens which is consulted before the {@link JwtConsumer},
+         * once the token has not been found in the verified token cache. Tokens refused by the consumer and
+         * tokens for which the authenticator returns no principal are rejected without being verified again
+         * while they are cached.
+         *
+         * @param rejectedTokens a cache of rejected tokens
+         * @return the builder
+         */
+        public Builder<P> setRejectedTokenCache(RejectedTokenCache rejectedTokens) {
+            this.rejectedTokens = rejectedTokens;
+            return this;
+        }
+
+        /**
+         * Sets an optional verifier which checks the signature of each token before it is handed to the
+         * {@link JwtConsumer}. The consumer must then be built with
+         * {@link org.jose4j.jwt.consumer.JwtConsumerBuilder#setSkipSignatureVerification()} and only validates
+         * the claims.
+         * <p>It cannot be combined with issuer or key ID routes, as it would verify the tokens of every issuer
+         * with the same keys; each route is given its own verifier instead.</p>
+         *
+         * @param signatureVerifier a verifier reusing its signature instances
+         * @return the builder
+         */
+        public Builder<P> setSignatureVerifier(CachingSignatureVerifier signatureVerifier) {
+            this.signatureVerifier = signatureVerifier;
+            return this;
+        }
+
+        /**
+         * Sets optional cheap checks which reject malformed, expired or unexpectedly signed tokens before they
+         * are parsed and verified.
+         *
+         * @param preValidator the checks run on every token which is not found in the verified token cache
+         * @return the builder
+         */
+        public Builder<P> setTokenPreValidator(TokenPreValidator preValidator) {
+            this.preValidator = preValidator;
+            return this;
+        }
+
+        /**
+         * Authorizes requests by the roles listed in a claim of the token. The {@link io.dropwizard.auth.Authorizer}
+         * of the filter is not used.
+         *
+         * @param claimsAuthorization the claim holding the roles and the cache of security contexts
+         * @return the builder
+         */
+        public Builder<P> setClaimsAuthorization(ClaimsAuthorization claimsAuthorization) {
+            this.claimsAuthorization = claimsAuthorization;
+            return this;
+        }
+
+        /**
+         * Decodes the claims of signed tokens as {@link LazyJwtClaims}, which only extract a claim from the payload
+         * when it is read. This saves time and garbage for tokens carrying many claims the application never
+         * reads; encrypted and nested tokens are still processed by the {@link JwtConsumer} alone.
+         *
+         * @param lazyClaims whether claims are decoded on demand
+         * @return the builder
+         */
+        public Builder<P> setLazyClaims(boolean lazyClaims) {
+            this.lazyClaims = lazyClaims;
+            return this;
+        }
+
+        /**
+         * Takes the {@link JwtConsumer}, the token caches and the pre-validator from settings which may be
+         * reloaded while the application runs, instead of the ones set on this builder. Reloaded settings are
+         * published to the filter with a single volatile write; requests in flight finish with the settings they
+         * started with.
+         *
+         * @param reloadableSettings the settings
+         * @return the builder
+         */
+        public Builder<P> setReloadableSettings(ReloadableJwtSettings reloadableSettings) {
+            this.reloadableSettings = reloadableSettings;
+            return this;
+        }
+
+        /**
+         * Sets the registry in which the timers and counters of each stage of the filter are registered. Without a
+         * registry the stages are neither timed nor counted.
+         *
+         * @param metricRegistry the application's registry of metrics
+         * @return the builder
+         */
+        public Builder<P> setMetricRegistry(MetricRegistry metricRegistry) {
+            this.metricRegistry = metricRegistry;
+            return this;
+        }
+
         @Override
         protected JwtAuthFilter<P> newInstance() {
-            checkNotNull(consumer, "JwtConsumer is not set");
-            return new JwtAuthFilter<>(consumer, cookieName);
+            checkState(signatureVerifier == null || keyIdRoutes.isEmpty() && issuerRoutes.isEmpty(),
+                "A CachingSignatureVerifier cannot be shared by routes; set one per issuer or key ID instead");
+            final JwtVerificationMetrics metrics = JwtVerificationMetrics.of(metricRegistry, JwtAuthFilter.class);
+            final IssuerRoutes<P> routes = new IssuerRoutes<>(keyIdRoutes, issuerRoutes, null);
+            if (reloadableSettings == null) {
+                if (keyIdRoutes.isEmpty() && issuerRoutes.isEmpty()) {
+                    checkNotNull(consumer, "JwtConsumer is not set");
+                }
+                final IssuerRoutes<P> withFallback = consumer == null
+                    ? routes
+                    : routes.withFallback(consumer, signatureVerifier);
+                return new JwtAuthFilter<>(cookieName, withFallback, new TokenVerifier(withFallback, verifiedTokens,
+                    rejectedTokens, preValidator, lazyClaims, metrics), claimsAuthorization);
+            }
+
+            // the issuer and key ID routes, and with them the authenticators, do not change with the settings
+            final CachingSignatureVerifier signatureVerifier = this.signatureVerifier;
+            final boolean lazyClaims = this.lazyClaims;
+            final Function<JwtFilterSettings, TokenVerifier> verifiers = settings -> new TokenVerifier(
+                routes.withFallback(settings.getJwtConsumer(), signatureVerifier), settings.getVerifiedTokenCache(),
+                settings.getRejectedTokenCache(), settings.getTokenPreValidator(), lazyClaims, metrics);
+
+            final JwtAuthFilter<P> filter = new JwtAuthFilter<>(cookieName, routes,
+                verifiers.apply(reloadableSettings.get()), claimsAuthorization);
+            reloadableSettings.addListener(settings -> filter.verifier = verifiers.apply(settings));
+            return filter;
         }
     }
 }
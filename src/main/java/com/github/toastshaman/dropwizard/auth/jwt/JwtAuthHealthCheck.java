@@ -0,0 +1,186 @@
+package com.github.toastshaman.dropwizard.auth.jwt;
+
+import com.codahale.metrics.health.HealthCheck;
+import com.google.common.base.Ticker;
+import com.google.common.cache.CacheStats;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * A {@link HealthCheck} which is unhealthy when the hit rate of the principal cache has degraded or the keys of
+ * a {@link RefreshingJwksKeyResolver} have not been refreshed for too long.
+ * <p>The hit rate is computed over a window of recent requests, so that it follows the current traffic rather than
+ * the lifetime of the cache, and is only judged once enough requests have been seen. The cache statistics are
+ * snapshotted at most once per window and the rate is computed against the latest snapshot at least one window
+ * old, so the window spans one to two windows of traffic however often the check is polled.</p>
+ */
+public class JwtAuthHealthCheck extends HealthCheck {
+
+    private final CachingJwtAuthenticator<?> authenticator;
+    private final double minimumHitRate;
+    private final long minimumRequests;
+    private final RefreshingJwksKeyResolver keyResolver;
+    private final long maximumKeyAgeMillis;
+    private final long hitRateWindowNanos;
+    private final Ticker ticker;
+
+    private Snapshot baseline;
+    private Snapshot latest;
+
+    private JwtAuthHealthCheck(CachingJwtAuthenticator<?> authenticator,
+                               double minimumHitRate,
+                               long minimumRequests,
+                               RefreshingJwksKeyResolver keyResolver,
+                               long maximumKeyAgeMillis,
+                               long hitRateWindowNanos,
+                               Ticker ticker) {
+        this.authenticator = authenticator;
+        this.minimumHitRate = minimumHitRate;
+        this.minimumRequests = minimumRequests;
+        this.keyResolver = keyResolver;
+        this.maximumKeyAgeMillis = maximumKeyAgeMillis;
+        this.hitRateWindowNanos = hitRateWindowNanos;
+        this.ticker = ticker;
+        this.latest = new Snapshot(new CacheStats(0, 0, 0, 0, 0, 0), ticker.read());
+        this.baseline = latest;
+    }
+
+    @Override
+    protected synchronized Result check() {
+        final List<String> problems = new ArrayList<>();
+        final List<String> state = new ArrayList<>();
+
+        if (authenticator != null) {
+            final CacheStats recent = recentStats(authenticator.stats(), ticker.read());
+            final String hitRate = String.format("principal cache hit rate %.3f over %d requests",
+                recent.hitRate(), recent.requestCount());
+            if (recent.requestCount() >= minimumRequests && recent.hitRate() < minimumHitRate) {
+                problems.add(hitRate + " is below " + minimumHitRate);
+            } else {
+                state.add(hitRate);
+            }
+        }
+
+        if (keyResolver != null) {
+            final long lastRefresh = keyResolver.getLastRefreshTime();
+            final long age = System.currentTimeMillis() - lastRefresh;
+            if (lastRefresh == 0) {
+                problems.add("keys have never been loaded");
+            } else if (age > maximumKeyAgeMillis) {
+                problems.add("keys were last refreshed " + age + "ms ago");
+            } else {
+                state.add("keys refreshed " + age + "ms ago");
+            }
+        }
+
+        return problems.isEmpty()
+            ? Result.healthy(String.join(", ", state))
+            : Result.unhealthy(String.join(", ", problems));
+    }
+
+    private CacheStats recentStats(CacheStats stats, long now) {
+        if (now - latest.time >= hitRateWindowNanos) {
+            baseline = latest;
+            latest = new Snapshot(stats, now);
+        }
+        return stats.minus(baseline.stats);
+    }
+
+    private static final class Snapshot {
+
+        private final CacheStats stats;
+        private final long time;
+
+        private Snapshot(CacheStats stats, long time) {
+            this.stats = stats;
+            this.time = time;
+        }
+    }
+
+    /**
+     * Builder for {@link JwtAuthHealthCheck}.
+     * <p>Both the caching authenticator and the key resolver are optional; the check only covers those which
+     * are set.</p>
+     */
+    public static class Builder {
+
+        private CachingJwtAuthenticator<?> authenticator;
+        private double minimumHitRate;
+        private long minimumRequests = 100;
+        private Duration hitRateWindow = Duration.ofMinutes(1);
+        private Ticker ticker = Ticker.systemTicker();
+        private RefreshingJwksKeyResolver keyResolver;
+        private Duration maximumKeyAge;
+
+        /**
+         * Checks the hit rate of the given authenticator's cache.
+         *
+         * @param authenticator  the caching authenticator
+         * @param minimumHitRate the lowest healthy hit rate, between 0 and 1
+         * @return this builder
+         */
+        public Builder setCachingAuthenticator(CachingJwtAuthenticator<?> authenticator, double minimumHitRate) {
+            checkArgument(minimumHitRate >= 0 && minimumHitRate <= 1, "minimum hit rate must be between 0 and 1");
+            this.authenticator = authenticator;
+            this.minimumHitRate = minimumHitRate;
+            return this;
+        }
+
+        /**
+         * Sets the number of requests within the window below which the hit rate is not judged, 100 by default.
+         *
+         * @param minimumRequests the number of requests
+         * @return this builder
+         */
+        public Builder setMinimumRequests(long minimumRequests) {
+            checkArgument(minimumRequests >= 0, "minimum requests must not be negative");
+            this.minimumRequests = minimumRequests;
+            return this;
+        }
+
+        /**
+         * Sets the window over which the hit rate is computed, one minute by default.
+         *
+         * @param hitRateWindow the window
+         * @return this builder
+         */
+        public Builder setHitRateWindow(Duration hitRateWindow) {
+            checkArgument(!hitRateWindow.isNegative() && !hitRateWindow.isZero(), "hit rate window must be positive");
+            this.hitRateWindow = hitRateWindow;
+            return this;
+        }
+
+        /**
+         * Checks that the keys of the given resolver have been refreshed within the given age, which should be
+         * a few refresh intervals so that a single failed refresh does not make the application unhealthy.
+         *
+         * @param keyResolver   the key resolver
+         * @param maximumKeyAge the longest healthy time since the last successful refresh
+         * @return this builder
+         */
+        public Builder setKeyResolver(RefreshingJwksKeyResolver keyResolver, Duration maximumKeyAge) {
+            checkArgument(!maximumKeyAge.isNegative() && !maximumKeyAge.isZero(), "maximum key age must be positive");
+            this.keyResolver = keyResolver;
+            this.maximumKeyAge = maximumKeyAge;
+            return this;
+        }
+
+        Builder setTicker(Ticker ticker) {
+            this.ticker = checkNotNull(ticker);
+            return this;
+        }
+
+        public JwtAuthHealthCheck build() {
+            checkState(authenticator != null || keyResolver != null,
+                "Neither a CachingJwtAuthenticator nor a RefreshingJwksKeyResolver is set");
+            return new JwtAuthHealthCheck(authenticator, minimumHitRate, minimumRequests, keyResolver,
+                maximumKeyAge == null ? 0 : maximumKeyAge.toMillis(), hitRateWindow.toNanos(), ticker);
+        }
+    }
+}
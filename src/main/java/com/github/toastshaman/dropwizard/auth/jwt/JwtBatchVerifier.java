@@ -0,0 +1,279 @@
+package com.github.toastshaman.dropwizard.auth.jwt;
+
+import com.codahale.metrics.MetricRegistry;
+import io.dropwizard.auth.AuthenticationException;
+import io.dropwizard.auth.Authenticator;
+import org.jose4j.jwt.consumer.InvalidJwtException;
+import org.jose4j.jwt.consumer.JwtConsumer;
+import org.jose4j.jwt.consumer.JwtContext;
+
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Verifies and optionally authenticates many tokens at once, e.g. the tokens carried by queued messages.
+ * <p>Tokens go through the same pipeline as in {@link JwtAuthFilter}: the rejected and verified token caches,
+ * the {@link TokenPreValidator}, the {@link CachingSignatureVerifier} and the {@link JwtConsumer}, followed by
+ * the {@link Authenticator} if one is set. Caches and authenticators, e.g. a {@link CachingJwtAuthenticator},
+ * can be shared with a filter.</p>
+ * <p>Identical tokens are verified once and distinct tokens are verified in parallel on a
+ * {@link ForkJoinPool}. Results are returned in the order of the input.</p>
+ *
+ * @param <P> the principal
+ */
+public class JwtBatchVerifier<P extends Principal> {
+
+    private final TokenVerifier verifier;
+    private final Authenticator<JwtContext, P> authenticator;
+    private final ForkJoinPool pool;
+
+    private JwtBatchVerifier(TokenVerifier verifier, Authenticator<JwtContext, P> authenticator, ForkJoinPool pool) {
+        this.verifier = verifier;
+        this.authenticator = authenticator;
+        this.pool = pool;
+    }
+
+    /**
+     * Verifies the given tokens.
+     *
+     * @param rawTokens the raw tokens
+     * @return one result per token, in the order of the input
+     */
+    public List<Result<P>> verify(Collection<String> rawTokens) {
+        final Map<String, ForkJoinTask<Result<P>>> tasks = new LinkedHashMap<>();
+        for (String rawToken : rawTokens) {
+            tasks.computeIfAbsent(rawToken, token -> pool.submit(() -> verifyOne(token)));
+        }
+
+        final List<Result<P>> results = new ArrayList<>(rawTokens.size());
+        for (String rawToken : rawTokens) {
+            results.add(tasks.get(rawToken).join());
+        }
+        return results;
+    }
+
+    /**
+     * Verifies the given tokens.
+     *
+     * @param rawTokens the raw tokens
+     * @return one result per token, in the order of the input
+     */
+    public List<Result<P>> verify(Stream<String> rawTokens) {
+        return verify(rawTokens.collect(Collectors.toList()));
+    }
+
+    private Result<P> verifyOne(String rawToken) {
+        final JwtContext context;
+        try {
+            context = verifier.verify(rawToken);
+        } catch (InvalidJwtException | RuntimeException e) {
+            // a failure of one token, e.g. of the consumer, must not fail the whole batch
+            return new Result<>(rawToken, null, Optional.empty(), e, false);
+        }
+
+        if (context == null) {
+            // recently rejected
+            return new Result<>(rawToken, null, Optional.empty(), null, false);
+        }
+
+        if (authenticator == null) {
+            return new Result<>(rawToken, context, Optional.empty(), null, false);
+        }
+
+        final JwtVerificationMetrics metrics = verifier.metrics();
+        final long start = metrics.start();
+        try {
+            final Optional<P> principal = authenticator.authenticate(context);
+            if (!principal.isPresent()) {
+                verifier.unknownPrincipal(rawToken);
+            }
+            return new Result<>(rawToken, context, principal, null, true);
+        } catch (AuthenticationException | RuntimeException e) {
+            return new Result<>(rawToken, context, Optional.empty(), e, true);
+        }
+        finally { metrics.stop(metrics.authenticate, start); }
+    }
+
+    /**
+     * The outcome of verifying one token.
+     *
+     * @param <P> the principal
+     */
+    public static final class Result<P extends Principal> {
+
+        private final String token;
+        private final JwtContext context;
+        private final Optional<P> principal;
+        private final Exception error;
+        private final boolean authenticated;
+
+        private Result(String token, JwtContext context, Optional<P> principal, Exception error,
+                       boolean authenticated) {
+            this.token = token;
+            this.context = context;
+            this.principal = principal;
+            this.error = error;
+            this.authenticated = authenticated;
+        }
+
+        public String getToken() {
+            return token;
+        }
+
+        /**
+         * Returns the verified credentials.
+         *
+         * @return the verified credentials or {@code null} if the token was rejected
+         */
+        public JwtContext getContext() {
+            return context;
+        }
+
+        /**
+         * Returns the authenticated principal.
+         *
+         * @return the principal or an absent optional if the token was rejected, could not be authenticated
+         * or no authenticator is set
+         */
+        public Optional<P> getPrincipal() {
+            return principal;
+        }
+
+        /**
+         * Returns why the token could not be verified or authenticated.
+         *
+         * @return an {@link InvalidJwtException}, an {@link AuthenticationException} or the
+         * {@link RuntimeException} thrown while verifying or authenticating the token, or {@code null} if there
+         * was no error or the token was rejected from the {@link RejectedTokenCache}
+         */
+        public Exception getError() {
+            return error;
+        }
+
+        /**
+         * Returns whether the token was verified and, if an authenticator is set, authenticated. A token whose
+         * principal the authenticator does not know is not valid.
+         *
+         * @return {@code true} if the token is valid
+         */
+        public boolean isValid() {
+            return context != null && error == null && (!authenticated || principal.isPresent());
+        }
+    }
+
+    /**
+     * Builder for {@link JwtBatchVerifier}.
+     * <p>A {@link JwtConsumer} must be provided during the building process.</p>
+     *
+     * @param <P> the principal
+     */
+    public static class Builder<P extends Principal> {
+
+        private JwtConsumer consumer;
+        private Authenticator<JwtContext, P> authenticator;
+        private VerifiedTokenCache verifiedTokens;
+        private RejectedTokenCache rejectedTokens;
+        private CachingSignatureVerifier signatureVerifier;
+        private TokenPreValidator preValidator;
+        private boolean lazyClaims;
+        private MetricRegistry metricRegistry;
+        private ForkJoinPool pool = ForkJoinPool.commonPool();
+
+        public Builder<P> setJwtConsumer(JwtConsumer consumer) {
+            this.consumer = consumer;
+            return this;
+        }
+
+        /**
+         * Sets an optional authenticator resolving the principal of each verified token.
+         *
+         * @param authenticator an authenticator, e.g. a {@link CachingJwtAuthenticator} shared with a filter
+         * @return the builder
+         */
+        public Builder<P> setAuthenticator(Authenticator<JwtContext, P> authenticator) {
+            this.authenticator = authenticator;
+            return this;
+        }
+
+        public Builder<P> setVerifiedTokenCache(VerifiedTokenCache verifiedTokens) {
+            this.verifiedTokens = verifiedTokens;
+            return this;
+        }
+
+        public Builder<P> setRejectedTokenCache(RejectedTokenCache rejectedTokens) {
+            this.rejectedTokens = rejectedTokens;
+            return this;
+        }
+
+        /**
+         * Sets an optional signature verifier, see
+         * {@link JwtAuthFilter.Builder#setSignatureVerifier(CachingSignatureVerifier)}.
+         *
+         * @param signatureVerifier a verifier reusing its signature instances
+         * @return the builder
+         */
+        public Builder<P> setSignatureVerifier(CachingSignatureVerifier signatureVerifier) {
+            this.signatureVerifier = signatureVerifier;
+            return this;
+        }
+
+        public Builder<P> setTokenPreValidator(TokenPreValidator preValidator) {
+            this.preValidator = preValidator;
+            return this;
+        }
+
+        /**
+         * Decodes claims on demand, see {@link JwtAuthFilter.Builder#setLazyClaims(boolean)}.
+         *
+         * @param lazyClaims whether claims are decoded on demand
+         * @return the builder
+         */
+        public Builder<P> setLazyClaims(boolean lazyClaims) {
+            this.lazyClaims = lazyClaims;
+            return this;
+        }
+
+        /**
+         * Sets the registry in which the timers and counters of each stage are registered. Without a registry the
+         * stages are neither timed nor counted.
+         *
+         * @param metricRegistry the application's registry of metrics
+         * @return the builder
+         */
+        public Builder<P> setMetricRegistry(MetricRegistry metricRegistry) {
+            this.metricRegistry = metricRegistry;
+            return this;
+        }
+
+        /**
+         * Sets the pool verifying the tokens, defaults to {@link ForkJoinPool#commonPool()}.
+         *
+         * @param pool a fork-join pool
+         * @return the builder
+         */
+        public Builder<P> setPool(ForkJoinPool pool) {
+            this.pool = pool;
+            return this;
+        }
+
+        public JwtBatchVerifier<P> build() {
+            checkNotNull(consumer, "JwtConsumer is not set");
+            checkNotNull(pool, "ForkJoinPool is not set");
+            final JwtVerificationMetrics metrics = JwtVerificationMetrics.of(metricRegistry, JwtBatchVerifier.class);
+            final TokenVerifier verifier = new TokenVerifier(IssuerRoutes.of(consumer, signatureVerifier), verifiedTokens,
+                rejectedTokens, preValidator, lazyClaims, metrics);
+            return new JwtBatchVerifier<>(verifier, authenticator, pool);
+        }
+    }
+}
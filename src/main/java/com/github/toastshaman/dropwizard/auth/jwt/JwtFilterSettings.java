@@ -0,0 +1,84 @@
+package com.github.toastshaman.dropwizard.auth.jwt;
+
+import org.jose4j.jwt.consumer.JwtConsumer;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * The parts of a {@link JwtAuthFilter} which can be replaced while the application runs: the {@link JwtConsumer},
+ * with its keys and allowed clock skew, the token caches and the {@link TokenPreValidator}.
+ * <p>Settings are immutable. They are built by a {@link ReloadableJwtSettings.Loader} and published as a whole,
+ * so a request is always verified with one consistent set of them.</p>
+ */
+public class JwtFilterSettings {
+
+    private final JwtConsumer consumer;
+    private final VerifiedTokenCache verifiedTokens;
+    private final RejectedTokenCache rejectedTokens;
+    private final TokenPreValidator preValidator;
+
+    private JwtFilterSettings(JwtConsumer consumer,
+                              VerifiedTokenCache verifiedTokens,
+                              RejectedTokenCache rejectedTokens,
+                              TokenPreValidator preValidator) {
+        this.consumer = consumer;
+        this.verifiedTokens = verifiedTokens;
+        this.rejectedTokens = rejectedTokens;
+        this.preValidator = preValidator;
+    }
+
+    public JwtConsumer getJwtConsumer() {
+        return consumer;
+    }
+
+    public VerifiedTokenCache getVerifiedTokenCache() {
+        return verifiedTokens;
+    }
+
+    public RejectedTokenCache getRejectedTokenCache() {
+        return rejectedTokens;
+    }
+
+    public TokenPreValidator getTokenPreValidator() {
+        return preValidator;
+    }
+
+    /**
+     * Builder for {@link JwtFilterSettings}.
+     * <p>A {@link JwtConsumer} must be provided; the caches and the pre-validator are optional, see
+     * {@link JwtAuthFilter.Builder}. New caches should be built on every reload, so that no token verified with
+     * a replaced key stays cached.</p>
+     */
+    public static class Builder {
+
+        private JwtConsumer consumer;
+        private VerifiedTokenCache verifiedTokens;
+        private RejectedTokenCache rejectedTokens;
+        private TokenPreValidator preValidator;
+
+        public Builder setJwtConsumer(JwtConsumer consumer) {
+            this.consumer = consumer;
+            return this;
+        }
+
+        public Builder setVerifiedTokenCache(VerifiedTokenCache verifiedTokens) {
+            this.verifiedTokens = verifiedTokens;
+            return this;
+        }
+
+        public Builder setRejectedTokenCache(RejectedTokenCache rejectedTokens) {
+            this.rejectedTokens = rejectedTokens;
+            return this;
+        }
+
+        public Builder setTokenPreValidator(TokenPreValidator preValidator) {
+            this.preValidator = preValidator;
+            return this;
+        }
+
+        public JwtFilterSettings build() {
+            checkNotNull(consumer, "JwtConsumer is not set");
+            return new JwtFilterSettings(consumer, verifiedTokens, rejectedTokens, preValidator);
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package com.github.toastshaman.dropwizard.auth.jwt;
+
+import com.codahale.metrics.Counter;
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.Timer;
+import com.google.common.base.CaseFormat;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import org.jose4j.jws.AlgorithmIdentifiers;
+import org.jose4j.jwt.consumer.ErrorCodeValidator;
+import org.jose4j.jwt.consumer.ErrorCodes;
+import org.jose4j.jwt.consumer.InvalidJwtException;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * The timers and counters of a {@link JwtAuthFilter} or {@link JwtBatchVerifier}, registered under the name of
+ * their class.
+ * <ul>
+ * <li>{@code extract.header} and {@code extract.cookie} time the extraction of the raw token</li>
+ * <li>{@code pre-validate} times the checks of the {@link TokenPreValidator}</li>
+ * <li>{@code parse} times decoding the token without verifying it</li>
+ * <li>{@code verify.<alg>} times signature verification and claim validation by signature algorithm</li>
+ * <li>{@code authenticate} and {@code authorize} time the {@link io.dropwizard.auth.Authenticator} and
+ * {@link io.dropwizard.auth.Authorizer}</li>
+ * <li>{@code rejected.<reason>} counts rejected requests, by {@link ErrorCodes} for invalid tokens, as well as
+ * {@code rejected.missing-token}, {@code rejected.unknown-principal} and {@code rejected.cached}</li>
+ * </ul>
+ * <p>Without a registry the metrics are {@linkplain #DISABLED disabled}: stages are neither timed nor counted,
+ * so that a request does not read the clock or look up a timer for nothing. A stage is timed by reading the
+ * clock with {@link #start()} and recording the elapsed time with {@link #stop(Timer, long)}, without allocating
+ * a {@link Timer.Context}.</p>
+ */
+final class JwtVerificationMetrics {
+
+    private static final Set<String> ALGORITHMS = algorithms();
+    private static final Map<Integer, String> ERROR_CODES = errorCodes();
+
+    /**
+     * Metrics which time and count nothing.
+     */
+    static final JwtVerificationMetrics DISABLED = new JwtVerificationMetrics();
+
+    final Timer headerExtraction;
+    final Timer cookieExtraction;
+    final Timer preValidate;
+    final Timer parse;
+    final Timer authenticate;
+    final Timer authorize;
+
+    private final Map<String, Timer> verifyByAlgorithm;
+    private final Timer verifyOther;
+    private final Map<Integer, Counter> rejectedByErrorCode;
+    private final Counter rejectedOther;
+    private final Counter missingToken;
+    private final Counter unknownPrincipal;
+    private final Counter cachedRejection;
+    private final boolean enabled;
+
+    private JwtVerificationMetrics() {
+        this.headerExtraction = null;
+        this.cookieExtraction = null;
+        this.preValidate = null;
+        this.parse = null;
+        this.authenticate = null;
+        this.authorize = null;
+        this.verifyByAlgorithm = ImmutableMap.of();
+        this.verifyOther = null;
+        this.rejectedByErrorCode = ImmutableMap.of();
+        this.rejectedOther = null;
+        this.missingToken = null;
+        this.unknownPrincipal = null;
+        this.cachedRejection = null;
+        this.enabled = false;
+    }
+
+    JwtVerificationMetrics(MetricRegistry registry, Class<?> owner) {
+        this.headerExtraction = registry.timer(name(owner, "extract", "header"));
+        this.cookieExtraction = registry.timer(name(owner, "extract", "cookie"));
+        this.preValidate = registry.timer(name(owner, "pre-validate"));
+        this.parse = registry.timer(name(owner, "parse"));
+        this.authenticate = registry.timer(name(owner, "authenticate"));
+        this.authorize = registry.timer(name(owner, "authorize"));
+
+        // the algorithm header is not trusted until the signature has been verified, so only well-known
+        // algorithms get their own timer
+        final ImmutableMap.Builder<String, Timer> verify = ImmutableMap.builder();
+        ALGORITHMS.forEach(alg -> verify.put(alg, registry.timer(name(owner, "verify", alg))));
+        this.verifyByAlgorithm = verify.build();
+        this.verifyOther = registry.timer(name(owner, "verify", "other"));
+
+        final ImmutableMap.Builder<Integer, Counter> rejected = ImmutableMap.builder();
+        ERROR_CODES.forEach((code, reason) -> rejected.put(code, registry.counter(name(owner, "rejected", reason))));
+        this.rejectedByErrorCode = rejected.build();
+        this.rejectedOther = registry.counter(name(owner, "rejected", "other"));
+        this.missingToken = registry.counter(name(owner, "rejected", "missing-token"));
+        this.unknownPrincipal = registry.counter(name(owner, "rejected", "unknown-principal"));
+        this.cachedRejection = registry.counter(name(owner, "rejected", "cached"));
+        this.enabled = true;
+    }
+
+    /**
+     * Returns the metrics registered in the given registry, or the disabled metrics if it is {@code null}.
+     */
+    static JwtVerificationMetrics of(MetricRegistry registry, Class<?> owner) {
+        return registry == null ? DISABLED : new JwtVerificationMetrics(registry, owner);
+    }
+
+    /**
+     * Returns the start time of a stage, to be passed to {@link #stop(Timer, long)}.
+     */
+    long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Records the time elapsed since the given start time of a stage.
+     */
+    void stop(Timer timer, long start) {
+        if (enabled) {
+            timer.update(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    Timer verify(String algorithm) {
+        if (!enabled) {
+            return null;
+        }
+        final Timer timer = algorithm == null ? null : verifyByAlgorithm.get(algorithm);
+        return timer == null ? verifyOther : timer;
+    }
+
+    void rejected(InvalidJwtException e) {
+        if (!enabled) {
+            return;
+        }
+        if (e.getErrorDetails().isEmpty()) {
+            rejectedOther.inc();
+            return;
+        }
+
+        for (ErrorCodeValidator.Error error : e.getErrorDetails()) {
+            final Counter counter = rejectedByErrorCode.get(error.getErrorCode());
+            (counter == null ? rejectedOther : counter).inc();
+        }
+    }
+
+    void missingToken() {
+        if (enabled) {
+            missingToken.inc();
+        }
+    }
+
+    void unknownPrincipal() {
+        if (enabled) {
+            unknownPrincipal.inc();
+        }
+    }
+
+    void cachedRejection() {
+        if (enabled) {
+            cachedRejection.inc();
+        }
+    }
+
+    private static Set<String> algorithms() {
+        final ImmutableSet.Builder<String> algorithms = ImmutableSet.builder();
+        for (Field field : AlgorithmIdentifiers.class.getFields()) {
+            if (Modifier.isStatic(field.getModifiers()) && field.getType() == String.class) {
+                algorithms.add((String) constant(field));
+            }
+        }
+        return algorithms.build();
+    }
+
+    /**
+     * Maps each error code to the name of its constant in lower hyphen case, e.g. {@code signature-invalid}.
+     */
+    private static Map<Integer, String> errorCodes() {
+        final Map<Integer, String> errorCodes = new LinkedHashMap<>();
+        for (Field field : ErrorCodes.class.getFields()) {
+            if (Modifier.isStatic(field.getModifiers()) && field.getType() == int.class) {
+                errorCodes.putIfAbsent((Integer) constant(field),
+                    CaseFormat.UPPER_UNDERSCORE.to(CaseFormat.LOWER_HYPHEN, field.getName()));
+            }
+        }
+        return ImmutableMap.copyOf(errorCodes);
+    }
+
+    private static Object constant(Field field) {
+        try {
+            return field.get(null);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
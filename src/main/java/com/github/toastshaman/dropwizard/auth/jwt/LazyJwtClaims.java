@@ -0,0 +1,272 @@
+package com.github.toastshaman.dropwizard.auth.jwt;
+
+import com.google.common.collect.ImmutableSet;
+import org.jose4j.json.JsonUtil;
+import org.jose4j.jws.JsonWebSignature;
+import org.jose4j.jwt.JwtClaims;
+import org.jose4j.jwt.MalformedClaimException;
+import org.jose4j.jwt.ReservedClaimNames;
+import org.jose4j.jwt.consumer.ErrorCodeValidator;
+import org.jose4j.jwt.consumer.ErrorCodes;
+import org.jose4j.jwt.consumer.InvalidJwtException;
+import org.jose4j.jwt.consumer.JwtContext;
+import org.jose4j.jwx.JsonWebStructure;
+import org.jose4j.lang.JoseException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * {@link JwtClaims} which are decoded from the JSON payload one claim at a time, when they are first accessed.
+ * <p>The registered claims ({@code iss}, {@code sub}, {@code aud}, {@code exp}, {@code nbf}, {@code iat} and
+ * {@code jti}), which the validators of a {@link org.jose4j.jwt.consumer.JwtConsumer} read, are extracted when
+ * the claims are created; all other values are skipped over without being materialised. Any other claim is
+ * extracted from the payload when it is first read and then remembered. Methods which need all claims, such as
+ * {@link #getClaimsMap()}, {@link #toJson()} or any setter, parse the complete payload once.</p>
+ * <p>The claims are safe for concurrent reads, so that a context holding them can be cached.</p>
+ */
+public class LazyJwtClaims extends JwtClaims {
+
+    private static final Set<String> REGISTERED_CLAIMS = ImmutableSet.of(
+        ReservedClaimNames.ISSUER,
+        ReservedClaimNames.SUBJECT,
+        ReservedClaimNames.AUDIENCE,
+        ReservedClaimNames.EXPIRATION_TIME,
+        ReservedClaimNames.NOT_BEFORE,
+        ReservedClaimNames.ISSUED_AT,
+        ReservedClaimNames.JWT_ID);
+
+    private static final Object ABSENT = new Object();
+
+    private final String json;
+    private final ConcurrentMap<String, Object> decoded = new ConcurrentHashMap<>();
+    private volatile boolean materialized;
+
+    private LazyJwtClaims(String json, Map<String, Object> registeredClaims) {
+        this.json = json;
+        for (String name : REGISTERED_CLAIMS) {
+            decoded.put(name, registeredClaims.getOrDefault(name, ABSENT));
+        }
+    }
+
+    /**
+     * Creates lazily decoded claims from a JSON document.
+     *
+     * @param json the JSON payload of a token
+     * @return the claims
+     * @throws InvalidJwtException if the document is not a well-formed JSON object
+     */
+    public static LazyJwtClaims parse(String json) throws InvalidJwtException {
+        try {
+            return new LazyJwtClaims(json, JsonScanner.members(json, REGISTERED_CLAIMS));
+        } catch (IllegalArgumentException e) {
+            throw invalid(ErrorCodes.JSON_INVALID, "Unable to parse JWT Claim Set JSON: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Decodes a signed token in compact serialization without verifying it. The context is meant to be passed
+     * to {@link org.jose4j.jwt.consumer.JwtConsumer#processContext(JwtContext)}, which verifies the signature
+     * over the raw header and payload and validates the claims.
+     *
+     * @param rawToken the raw token as sent by the client
+     * @return the decoded, unverified context with lazily decoded claims
+     * @throws InvalidJwtException if the token is not a signed JWT in compact serialization, e.g. an encrypted
+     *                             or nested token
+     */
+    public static JwtContext decode(String rawToken) throws InvalidJwtException {
+        final JsonWebSignature jws = new JsonWebSignature();
+        try {
+            jws.setCompactSerialization(rawToken);
+        } catch (JoseException e) {
+            throw invalid(ErrorCodes.MISCELLANEOUS, "Unable to process JOSE object (cause: " + e + ")", e);
+        }
+
+        if ("JWT".equalsIgnoreCase(jws.getContentTypeHeaderValue())) {
+            throw invalid(ErrorCodes.MISCELLANEOUS, "Nested tokens are not decoded lazily", null);
+        }
+
+        final String json = new String(jws.getUnverifiedPayloadBytes(), UTF_8);
+        return new JwtContext(rawToken, parse(json), Collections.<JsonWebStructure>singletonList(jws));
+    }
+
+    @Override
+    public Object getClaimValue(String claimName) {
+        if (materialized) {
+            return super.getClaimValue(claimName);
+        }
+
+        Object value = decoded.get(claimName);
+        if (value == null) {
+            // the document was validated when the claims were created
+            value = JsonScanner.members(json, Collections.singleton(claimName)).getOrDefault(claimName, ABSENT);
+            decoded.putIfAbsent(claimName, value);
+        }
+        return value == ABSENT ? null : value;
+    }
+
+    @Override
+    public <T> T getClaimValue(String claimName, Class<T> type) throws MalformedClaimException {
+        final Object value = getClaimValue(claimName);
+        try {
+            return type.cast(value);
+        } catch (ClassCastException e) {
+            throw new MalformedClaimException("The value of the '" + claimName + "' claim is not the expected type ("
+                + value + " - " + e.getMessage() + ")");
+        }
+    }
+
+    @Override
+    public List<String> getAudience() throws MalformedClaimException {
+        final Object audience = getClaimValue(ReservedClaimNames.AUDIENCE);
+        if (audience == null) {
+            return null;
+        }
+        if (audience instanceof String) {
+            return Collections.singletonList((String) audience);
+        }
+        if (audience instanceof List) {
+            final List<String> values = new ArrayList<>();
+            for (Object value : (List<?>) audience) {
+                if (!(value instanceof String)) {
+                    throw new MalformedClaimException("The array value of the '" + ReservedClaimNames.AUDIENCE
+                        + "' claim contains non string values");
+                }
+                values.add((String) value);
+            }
+            return values;
+        }
+        throw new MalformedClaimException("The value of the '" + ReservedClaimNames.AUDIENCE
+            + "' claim is not an array of strings or a single string value.");
+    }
+
+    @Override
+    public String getRawJson() {
+        return json;
+    }
+
+    @Override
+    public Map<String, Object> getClaimsMap(Set<String> omittedClaims) {
+        materialize();
+        return super.getClaimsMap(omittedClaims);
+    }
+
+    @Override
+    public Map<String, List<Object>> flattenClaims(Set<String> omittedClaims) {
+        materialize();
+        return super.flattenClaims(omittedClaims);
+    }
+
+    @Override
+    public String toJson() {
+        materialize();
+        return super.toJson();
+    }
+
+    @Override
+    public String toString() {
+        materialize();
+        return super.toString();
+    }
+
+    @Override
+    public void setIssuer(String issuer) {
+        materialize();
+        super.setIssuer(issuer);
+    }
+
+    @Override
+    public void setSubject(String subject) {
+        materialize();
+        super.setSubject(subject);
+    }
+
+    @Override
+    public void setAudience(String audience) {
+        materialize();
+        super.setAudience(audience);
+    }
+
+    @Override
+    public void setAudience(List<String> audiences) {
+        materialize();
+        super.setAudience(audiences);
+    }
+
+    @Override
+    public void setJwtId(String jwtId) {
+        materialize();
+        super.setJwtId(jwtId);
+    }
+
+    @Override
+    public void unsetClaim(String claimName) {
+        materialize();
+        super.unsetClaim(claimName);
+    }
+
+    @Override
+    public void setNumericDateClaim(String claimName, org.jose4j.jwt.NumericDate value) {
+        materialize();
+        super.setNumericDateClaim(claimName, value);
+    }
+
+    @Override
+    public void setStringClaim(String claimName, String value) {
+        materialize();
+        super.setStringClaim(claimName, value);
+    }
+
+    @Override
+    public void setStringListClaim(String claimName, List<String> values) {
+        materialize();
+        super.setStringListClaim(claimName, values);
+    }
+
+    @Override
+    public void setStringListClaim(String claimName, String... values) {
+        materialize();
+        super.setStringListClaim(claimName, values);
+    }
+
+    @Override
+    public void setClaim(String claimName, Object value) {
+        materialize();
+        super.setClaim(claimName, value);
+    }
+
+    /**
+     * Copies all claims into the map of the superclass, after which all methods delegate to it.
+     */
+    private void materialize() {
+        if (materialized) {
+            return;
+        }
+
+        synchronized (this) {
+            if (!materialized) {
+                final Map<String, Object> claims;
+                try {
+                    claims = JsonUtil.parseJson(json);
+                } catch (JoseException e) {
+                    throw new IllegalStateException("Unable to parse JWT Claim Set JSON", e);
+                }
+                for (Map.Entry<String, Object> claim : claims.entrySet()) {
+                    super.setClaim(claim.getKey(), claim.getValue());
+                }
+                materialized = true;
+            }
+        }
+    }
+
+    private static InvalidJwtException invalid(int errorCode, String message, Throwable cause) {
+        return new InvalidJwtException(message, new ErrorCodeValidator.Error(errorCode, message), cause, null);
+    }
+}
@@ -0,0 +1,538 @@
+package com.github.toastshaman.dropwizard.auth.jwt;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiConsumer;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A {@link PrincipalCache} which stores serialized entries in direct {@link ByteBuffer}s outside of the heap.
+ * <p>The cache is split into segments, each a slab of fixed-size slots addressed by the {@link TokenDigest} of
+ * the token. A digest may occupy one of a few neighbouring slots; when all of them are taken, the oldest entry is
+ * evicted. Neither the slots nor their lookup create objects on the heap, so the heap and the time spent in
+ * garbage collection stay flat no matter how many entries are cached. A small on-heap tier in front of the slabs
+ * keeps the most recently used principals deserialized.</p>
+ * <p>Keys must be {@link TokenDigest}s, i.e. the {@link CachingJwtAuthenticator} must be built in
+ * {@linkplain CachingJwtAuthenticator.Builder#setCompact(boolean) compact mode}. Entries are always stored
+ * compact and entries which do not fit into a slot are not cached. The slabs are allocated up front and count
+ * against {@code -XX:MaxDirectMemorySize}.</p>
+ * <p>Entries are deserialized on every read of the slabs, so {@link #replace} and {@link #invalidate(Object,
+ * CachedPrincipal)} recognize the expected entry by its {@linkplain CachedPrincipal#getWrittenAt() write time}
+ * rather than by identity.</p>
+ *
+ * @param <P> the principal
+ */
+public class OffHeapPrincipalCache<P extends Principal> implements PrincipalCache<P> {
+
+    private static final int LENGTH = 0;
+    private static final int DIGEST = LENGTH + Integer.BYTES;
+    private static final int EXPIRES_AT = DIGEST + TokenDigest.BYTES;
+    private static final int WRITTEN_AT = EXPIRES_AT + Long.BYTES;
+    private static final int BODY = WRITTEN_AT + Long.BYTES;
+
+    private static final int PROBES = 8;
+
+    private final CachedPrincipalCodec<P> codec;
+    private final Segment[] segments;
+    private final int segmentBits;
+    private final Cache<TokenDigest, CachedPrincipal<P>> hotTier;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private volatile BiConsumer<Object, ? super CachedPrincipal<P>> removalListener = (key, entry) -> {};
+
+    private OffHeapPrincipalCache(PrincipalSerializer<P> serializer, int segments, int slotsPerSegment,
+                                  int slotSize, long hotTierSize) {
+        this.codec = new CachedPrincipalCodec<>(serializer);
+        this.segments = new Segment[segments];
+        for (int i = 0; i < segments; i++) {
+            this.segments[i] = new Segment(slotsPerSegment, slotSize);
+        }
+        this.segmentBits = Integer.numberOfTrailingZeros(segments);
+        this.hotTier = hotTierSize > 0 ? CacheBuilder.newBuilder().maximumSize(hotTierSize).build() : null;
+    }
+
+    @Override
+    public CachedPrincipal<P> getIfPresent(Object key) {
+        final TokenDigest digest = digestOf(key);
+        final long now = System.currentTimeMillis();
+
+        if (hotTier != null) {
+            final CachedPrincipal<P> entry = hotTier.getIfPresent(digest);
+            if (entry != null && !entry.isExpired(now)) {
+                hits.increment();
+                return entry;
+            }
+        }
+
+        final Segment segment = segmentFor(digest);
+        CachedPrincipal<P> entry = null;
+        CachedPrincipal<P> expired = null;
+        synchronized (segment) {
+            final int offset = segment.find(digest, slotOf(digest));
+            if (offset >= 0) {
+                if (segment.isExpired(offset, now)) {
+                    expired = remove(segment, offset, digest);
+                } else {
+                    entry = read(segment, offset);
+                    if (hotTier != null) {
+                        hotTier.put(digest, entry);
+                    }
+                }
+            }
+        }
+
+        if (expired != null) {
+            removalListener.accept(digest, expired);
+        }
+        if (entry == null) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return entry;
+    }
+
+    @Override
+    public CachedPrincipal<P> peek(Object key) {
+        final TokenDigest digest = digestOf(key);
+        final Segment segment = segmentFor(digest);
+        synchronized (segment) {
+            final int offset = segment.find(digest, slotOf(digest));
+            return offset < 0 || segment.isExpired(offset, System.currentTimeMillis()) ? null : read(segment, offset);
+        }
+    }
+
+    @Override
+    public void put(Object key, CachedPrincipal<P> entry) {
+        final TokenDigest digest = digestOf(key);
+        final CachedPrincipal<P> compact = compact(entry);
+        final byte[] body = serialize(compact);
+
+        final Segment segment = segmentFor(digest);
+        if (BODY + body.length > segment.slotSize) {
+            invalidate(digest);
+            return;
+        }
+
+        final long now = System.currentTimeMillis();
+        TokenDigest removedDigest = null;
+        CachedPrincipal<P> removed = null;
+        synchronized (segment) {
+            final int offset = segment.slotFor(digest, slotOf(digest), now);
+            if (segment.isUsed(offset) && !digest.matches(segment.slab, offset + DIGEST)) {
+                removedDigest = segment.digestAt(offset);
+                if (!segment.isExpired(offset, now)) {
+                    evictions.increment();
+                }
+                removed = remove(segment, offset, removedDigest);
+            }
+            segment.write(offset, digest, compact, body);
+            if (hotTier != null) {
+                hotTier.put(digest, compact);
+            }
+        }
+
+        if (removed != null) {
+            removalListener.accept(removedDigest, removed);
+        }
+    }
+
+    @Override
+    public void invalidate(Object key) {
+        final TokenDigest digest = digestOf(key);
+        final Segment segment = segmentFor(digest);
+        CachedPrincipal<P> removed = null;
+        synchronized (segment) {
+            final int offset = segment.find(digest, slotOf(digest));
+            if (offset >= 0) {
+                removed = remove(segment, offset, digest);
+            }
+        }
+
+        if (removed != null) {
+            removalListener.accept(digest, removed);
+        }
+    }
+
+    @Override
+    public boolean replace(Object key, CachedPrincipal<P> expected, CachedPrincipal<P> updated) {
+        final TokenDigest digest = digestOf(key);
+        final CachedPrincipal<P> compact = compact(updated);
+        final byte[] body = serialize(compact);
+
+        final Segment segment = segmentFor(digest);
+        if (BODY + body.length > segment.slotSize) {
+            invalidate(digest, expected);
+            return false;
+        }
+
+        synchronized (segment) {
+            final int offset = segment.find(digest, slotOf(digest));
+            if (offset < 0 || !segment.isWrittenAt(offset, expected.getWrittenAt())) {
+                return false;
+            }
+            segment.write(offset, digest, compact, body);
+            if (hotTier != null) {
+                hotTier.put(digest, compact);
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public boolean invalidate(Object key, CachedPrincipal<P> expected) {
+        final TokenDigest digest = digestOf(key);
+        final Segment segment = segmentFor(digest);
+        final CachedPrincipal<P> removed;
+        synchronized (segment) {
+            final int offset = segment.find(digest, slotOf(digest));
+            if (offset < 0 || !segment.isWrittenAt(offset, expected.getWrittenAt())) {
+                return false;
+            }
+            removed = remove(segment, offset, digest);
+        }
+
+        removalListener.accept(digest, removed);
+        return true;
+    }
+
+    @Override
+    public void invalidateAll() {
+        removeAll(false);
+    }
+
+    @Override
+    public void forEach(BiConsumer<Object, ? super CachedPrincipal<P>> action) {
+        final long now = System.currentTimeMillis();
+        for (Segment segment : segments) {
+            for (int slot = 0; slot < segment.slots; slot++) {
+                final TokenDigest digest;
+                final CachedPrincipal<P> entry;
+                synchronized (segment) {
+                    final int offset = segment.offset(slot);
+                    if (!segment.isUsed(offset) || segment.isExpired(offset, now)) {
+                        continue;
+                    }
+                    digest = segment.digestAt(offset);
+                    entry = read(segment, offset);
+                }
+                action.accept(digest, entry);
+            }
+        }
+    }
+
+    @Override
+    public long size() {
+        long size = 0;
+        for (Segment segment : segments) {
+            size += segment.size;
+        }
+        return size;
+    }
+
+    @Override
+    public CacheStats stats() {
+        return new CacheStats(hits.sum(), misses.sum(), 0, 0, 0, evictions.sum());
+    }
+
+    @Override
+    public void cleanUp() {
+        final long now = System.currentTimeMillis();
+        removeAll(true);
+        if (hotTier != null) {
+            hotTier.asMap().values().removeIf(entry -> entry.isExpired(now));
+            hotTier.cleanUp();
+        }
+    }
+
+    @Override
+    public void setRemovalListener(BiConsumer<Object, ? super CachedPrincipal<P>> listener) {
+        this.removalListener = listener;
+    }
+
+    /**
+     * Returns the number of bytes allocated outside of the heap.
+     *
+     * @return the combined capacity of all slabs
+     */
+    public long capacityInBytes() {
+        long capacity = 0;
+        for (Segment segment : segments) {
+            capacity += segment.slab.capacity();
+        }
+        return capacity;
+    }
+
+    private void removeAll(boolean expiredOnly) {
+        final long now = System.currentTimeMillis();
+        for (Segment segment : segments) {
+            final List<TokenDigest> digests = new ArrayList<>();
+            final List<CachedPrincipal<P>> entries = new ArrayList<>();
+            synchronized (segment) {
+                for (int slot = 0; slot < segment.slots; slot++) {
+                    final int offset = segment.offset(slot);
+                    if (segment.isUsed(offset) && (!expiredOnly || segment.isExpired(offset, now))) {
+                        final TokenDigest digest = segment.digestAt(offset);
+                        digests.add(digest);
+                        entries.add(remove(segment, offset, digest));
+                    }
+                }
+            }
+
+            for (int i = 0; i < digests.size(); i++) {
+                removalListener.accept(digests.get(i), entries.get(i));
+            }
+        }
+    }
+
+    private CachedPrincipal<P> remove(Segment segment, int offset, TokenDigest digest) {
+        final CachedPrincipal<P> entry = read(segment, offset);
+        segment.free(offset);
+        if (hotTier != null) {
+            hotTier.invalidate(digest);
+        }
+        return entry;
+    }
+
+    private Segment segmentFor(TokenDigest digest) {
+        return segments[digest.hashCode() & (segments.length - 1)];
+    }
+
+    private int slotOf(TokenDigest digest) {
+        return digest.hashCode() >>> segmentBits;
+    }
+
+    private static TokenDigest digestOf(Object key) {
+        checkArgument(key instanceof TokenDigest,
+            "Keys must be token digests, enable the compact mode of the CachingJwtAuthenticator");
+        return (TokenDigest) key;
+    }
+
+    private static <P extends Principal> CachedPrincipal<P> compact(CachedPrincipal<P> entry) {
+        if (!entry.isFull()) {
+            return entry;
+        }
+        return new CachedPrincipal<>(entry.getPrincipal(), entry.getSubject(), entry.getIssuer(), entry.getJwtId(),
+            entry.getExpiresAt(), entry.getWrittenAt(), null, entry.getIndexValues());
+    }
+
+    private byte[] serialize(CachedPrincipal<P> entry) {
+        try {
+            return codec.encode(entry);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to serialize principal", e);
+        }
+    }
+
+    private CachedPrincipal<P> read(Segment segment, int offset) {
+        try {
+            return codec.decode(segment.bodyAt(offset),
+                segment.slab.getLong(offset + EXPIRES_AT), segment.slab.getLong(offset + WRITTEN_AT));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to deserialize principal", e);
+        }
+    }
+
+    /**
+     * A slab of slots, each holding the length of the entry's body (zero for a free slot), the token digest,
+     * the expiration and write times, followed by the serialized claims and principal. All access to a
+     * segment is guarded by its monitor.
+     */
+    private static final class Segment {
+
+        private final ByteBuffer slab;
+        private final int slots;
+        private final int slotSize;
+        private final int probes;
+        private volatile int size;
+
+        private Segment(int slots, int slotSize) {
+            this.slab = ByteBuffer.allocateDirect(slots * slotSize);
+            this.slots = slots;
+            this.slotSize = slotSize;
+            this.probes = Math.min(PROBES, slots);
+        }
+
+        private int offset(int slot) {
+            return (slot & (slots - 1)) * slotSize;
+        }
+
+        private boolean isUsed(int offset) {
+            return slab.getInt(offset + LENGTH) != 0;
+        }
+
+        private boolean isExpired(int offset, long now) {
+            return now >= slab.getLong(offset + EXPIRES_AT);
+        }
+
+        private boolean isWrittenAt(int offset, long writtenAt) {
+            return slab.getLong(offset + WRITTEN_AT) == writtenAt;
+        }
+
+        private int find(TokenDigest digest, int slot) {
+            for (int i = 0; i < probes; i++) {
+                final int offset = offset(slot + i);
+                if (isUsed(offset) && digest.matches(slab, offset + DIGEST)) {
+                    return offset;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * Returns the slot already holding the digest, else a free or expired slot, else the oldest slot.
+         */
+        private int slotFor(TokenDigest digest, int slot, long now) {
+            int free = -1;
+            int oldest = -1;
+            long oldestWrittenAt = Long.MAX_VALUE;
+            for (int i = 0; i < probes; i++) {
+                final int offset = offset(slot + i);
+                if (!isUsed(offset)) {
+                    if (free < 0) {
+                        free = offset;
+                    }
+                } else if (digest.matches(slab, offset + DIGEST)) {
+                    return offset;
+                } else if (isExpired(offset, now)) {
+                    if (free < 0) {
+                        free = offset;
+                    }
+                } else if (slab.getLong(offset + WRITTEN_AT) < oldestWrittenAt) {
+                    oldestWrittenAt = slab.getLong(offset + WRITTEN_AT);
+                    oldest = offset;
+                }
+            }
+            return free >= 0 ? free : oldest;
+        }
+
+        private TokenDigest digestAt(int offset) {
+            slab.position(offset + DIGEST);
+            return TokenDigest.readFrom(slab);
+        }
+
+        private byte[] bodyAt(int offset) {
+            final byte[] body = new byte[slab.getInt(offset + LENGTH)];
+            slab.position(offset + BODY);
+            slab.get(body);
+            return body;
+        }
+
+        private void write(int offset, TokenDigest digest, CachedPrincipal<?> entry, byte[] body) {
+            if (!isUsed(offset)) {
+                size++;
+            }
+            digest.writeTo(slab, offset + DIGEST);
+            slab.putLong(offset + EXPIRES_AT, entry.getExpiresAt());
+            slab.putLong(offset + WRITTEN_AT, entry.getWrittenAt());
+            slab.position(offset + BODY);
+            slab.put(body);
+            slab.putInt(offset + LENGTH, body.length);
+        }
+
+        private void free(int offset) {
+            slab.putInt(offset + LENGTH, 0);
+            size--;
+        }
+    }
+
+    /**
+     * Builder for {@link OffHeapPrincipalCache}.
+     * <p>A {@link PrincipalSerializer} must be provided during the building process.</p>
+     *
+     * @param <P> the principal
+     */
+    public static class Builder<P extends Principal> {
+
+        private PrincipalSerializer<P> serializer;
+        private long maximumSize = 1_000_000;
+        private int slotSize = 256;
+        private int concurrencyLevel = 16;
+        private long hotTierSize = 10_000;
+
+        public Builder<P> setSerializer(PrincipalSerializer<P> serializer) {
+            this.serializer = serializer;
+            return this;
+        }
+
+        /**
+         * Sets the number of entries the cache can hold, which is rounded up to a power of two per segment.
+         * Entries may be evicted before the cache is full when several tokens compete for the same slots.
+         *
+         * @param maximumSize the number of entries
+         * @return the builder
+         */
+        public Builder<P> setMaximumSize(long maximumSize) {
+            this.maximumSize = maximumSize;
+            return this;
+        }
+
+        /**
+         * Sets the number of bytes reserved for each entry, defaults to 256. An entry takes 52 bytes plus its
+         * serialized claims and principal; larger entries are not cached.
+         *
+         * @param slotSize the number of bytes per entry
+         * @return the builder
+         */
+        public Builder<P> setSlotSize(int slotSize) {
+            this.slotSize = slotSize;
+            return this;
+        }
+
+        /**
+         * Sets the number of independently locked segments, which is rounded up to a power of two.
+         *
+         * @param concurrencyLevel the number of segments
+         * @return the builder
+         */
+        public Builder<P> setConcurrencyLevel(int concurrencyLevel) {
+            this.concurrencyLevel = concurrencyLevel;
+            return this;
+        }
+
+        /**
+         * Sets the number of deserialized entries kept on the heap, defaults to 10,000. Zero disables the tier.
+         *
+         * @param hotTierSize the number of entries kept on the heap
+         * @return the builder
+         */
+        public Builder<P> setHotTierSize(long hotTierSize) {
+            this.hotTierSize = hotTierSize;
+            return this;
+        }
+
+        public OffHeapPrincipalCache<P> build() {
+            checkNotNull(serializer, "PrincipalSerializer is not set");
+            checkArgument(maximumSize > 0, "Maximum size must be positive");
+            checkArgument(slotSize > BODY, "Slot size must be larger than %s bytes", BODY);
+            checkArgument(concurrencyLevel > 0, "Concurrency level must be positive");
+            checkArgument(hotTierSize >= 0, "Hot tier size must not be negative");
+
+            final int segments = ceilingPowerOfTwo(concurrencyLevel);
+            final long slotsPerSegment = ceilingPowerOfTwo((maximumSize + segments - 1) / segments);
+            checkArgument(slotsPerSegment * slotSize <= Integer.MAX_VALUE,
+                "Segments cannot exceed 2 GiB, increase the concurrency level");
+            return new OffHeapPrincipalCache<>(serializer, segments, (int) slotsPerSegment, slotSize, hotTierSize);
+        }
+
+        private static int ceilingPowerOfTwo(int value) {
+            return value == 1 ? 1 : Integer.highestOneBit(value - 1) << 1;
+        }
+
+        private static long ceilingPowerOfTwo(long value) {
+            return value == 1 ? 1 : Long.highestOneBit(value - 1) << 1;
+        }
+    }
+}
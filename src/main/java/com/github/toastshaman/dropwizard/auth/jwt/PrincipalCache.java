@@ -0,0 +1,111 @@
+package com.github.toastshaman.dropwizard.auth.jwt;
+
+import com.google.common.cache.CacheStats;
+
+import java.security.Principal;
+import java.util.function.BiConsumer;
+
+/**
+ * The storage backing a {@link CachingJwtAuthenticator}.
+ * <p>Keys identify a token; implementations must treat them as opaque values with well-defined
+ * {@code equals} and {@code hashCode}. All methods may be called concurrently.</p>
+ *
+ * @param <P> the principal
+ * @see GuavaPrincipalCache
+ * @see CaffeinePrincipalCache
+ */
+public interface PrincipalCache<P extends Principal> {
+
+    /**
+     * Returns the entry cached for the given key. Entries which have {@linkplain CachedPrincipal#isExpired(long)
+     * expired} must not be returned.
+     *
+     * @param key the key identifying a token
+     * @return the cached entry or {@code null} if there is none
+     */
+    CachedPrincipal<P> getIfPresent(Object key);
+
+    /**
+     * Returns the entry cached for the given key without recording a hit or a miss, e.g. to check from a
+     * removal listener whether the key has been cached again.
+     *
+     * @param key the key identifying a token
+     * @return the cached entry or {@code null} if there is none
+     */
+    CachedPrincipal<P> peek(Object key);
+
+    /**
+     * Caches an entry, replacing any entry previously cached for the key.
+     *
+     * @param key   the key identifying a token
+     * @param entry the entry to cache
+     */
+    void put(Object key, CachedPrincipal<P> entry);
+
+    /**
+     * Discards the entry cached for the given key.
+     *
+     * @param key the key identifying a token
+     */
+    void invalidate(Object key);
+
+    /**
+     * Replaces the entry cached for the given key, but only if it is still the expected entry, so that an entry
+     * which was invalidated, evicted or replaced in the meantime is not brought back.
+     *
+     * @param key      the key identifying a token
+     * @param expected the entry which must still be cached
+     * @param updated  the entry replacing it
+     * @return {@code true} if the entry was replaced
+     */
+    boolean replace(Object key, CachedPrincipal<P> expected, CachedPrincipal<P> updated);
+
+    /**
+     * Discards the entry cached for the given key, but only if it is still the expected entry.
+     *
+     * @param key      the key identifying a token
+     * @param expected the entry which must still be cached
+     * @return {@code true} if the entry was discarded
+     */
+    boolean invalidate(Object key, CachedPrincipal<P> expected);
+
+    /**
+     * Discards all entries.
+     */
+    void invalidateAll();
+
+    /**
+     * Performs the given action for each cached entry. Entries added or removed during the iteration may or
+     * may not be visited.
+     *
+     * @param action the action to perform
+     */
+    void forEach(BiConsumer<Object, ? super CachedPrincipal<P>> action);
+
+    /**
+     * Returns the approximate number of entries.
+     *
+     * @return the approximate number of entries
+     */
+    long size();
+
+    /**
+     * Returns a set of statistics about the cache contents and usage.
+     *
+     * @return a set of statistics about the cache contents and usage
+     */
+    CacheStats stats();
+
+    /**
+     * Performs any pending maintenance operations, such as evicting expired entries.
+     */
+    void cleanUp();
+
+    /**
+     * Sets the listener notified whenever an entry is removed, whether it was invalidated, evicted or expired.
+     * The listener is not notified when an entry is replaced by a newer entry for the same key.
+     *
+     * @param listener the listener receiving the key and the removed entry
+     */
+    void setRemovalListener(BiConsumer<Object, ? super CachedPrincipal<P>> listener);
+}
@@ -0,0 +1,241 @@
+package com.github.toastshaman.dropwizard.auth.jwt;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.dropwizard.lifecycle.Managed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.Principal;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+
+/**
+ * Saves the principals cached by a {@link CachingJwtAuthenticator} to a local file and restores them on startup,
+ * so that a restarted application does not send every request of its first minutes to the underlying
+ * authenticator.
+ * <p>The snapshot is written periodically and when the application stops, to a temporary file which then
+ * replaces the previous snapshot. Each entry holds the {@link TokenDigest}, expiration and write times, retained
+ * claims and the principal written by a {@link PrincipalSerializer}. On startup the file is memory-mapped and
+ * every entry whose token has not yet expired is cached again.</p>
+ * <p>Only an authenticator in {@linkplain CachingJwtAuthenticator.Builder#setCompact(boolean) compact mode} can
+ * be snapshotted, since the raw tokens of a full cache are not written to disk. Register the snapshot with
+ * Dropwizard's lifecycle, or call {@link #start()}, before the first request arrives.</p>
+ *
+ * @param <P> the principal
+ */
+public class PrincipalCacheSnapshot<P extends Principal> implements Managed {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PrincipalCacheSnapshot.class);
+
+    private static final int MAGIC = 0x4A575443;
+    private static final int VERSION = 1;
+    private static final int ENTRY_HEADER = TokenDigest.BYTES + Long.BYTES + Long.BYTES + Integer.BYTES;
+
+    private final CachingJwtAuthenticator<P> authenticator;
+    private final CachedPrincipalCodec<P> codec;
+    private final Path file;
+    private final Duration saveInterval;
+    private final ScheduledExecutorService scheduler;
+    private final boolean ownsScheduler;
+
+    private ScheduledFuture<?> saveTask;
+
+    /**
+     * Creates a new snapshot which is saved periodically on its own daemon thread.
+     *
+     * @param authenticator the authenticator whose cache is saved and restored
+     * @param serializer    converts principals to and from bytes
+     * @param file          the snapshot file
+     * @param saveInterval  the time between two snapshots
+     */
+    public PrincipalCacheSnapshot(CachingJwtAuthenticator<P> authenticator, PrincipalSerializer<P> serializer,
+                                  Path file, Duration saveInterval) {
+        this(authenticator, serializer, file, saveInterval, Executors.newSingleThreadScheduledExecutor(
+            new ThreadFactoryBuilder()
+                .setNameFormat("principal-cache-snapshot-%d")
+                .setDaemon(true)
+                .build()), true);
+    }
+
+    /**
+     * Creates a new snapshot which is saved periodically on the given scheduler.
+     *
+     * @param authenticator the authenticator whose cache is saved and restored
+     * @param serializer    converts principals to and from bytes
+     * @param file          the snapshot file
+     * @param saveInterval  the time between two snapshots
+     * @param scheduler     the scheduler writing the snapshots, e.g. one managed by the environment
+     */
+    public PrincipalCacheSnapshot(CachingJwtAuthenticator<P> authenticator, PrincipalSerializer<P> serializer,
+                                  Path file, Duration saveInterval, ScheduledExecutorService scheduler) {
+        this(authenticator, serializer, file, saveInterval, scheduler, false);
+    }
+
+    private PrincipalCacheSnapshot(CachingJwtAuthenticator<P> authenticator,
+                                   PrincipalSerializer<P> serializer,
+                                   Path file,
+                                   Duration saveInterval,
+                                   ScheduledExecutorService scheduler,
+                                   boolean ownsScheduler) {
+        checkNotNull(authenticator, "CachingJwtAuthenticator is not set");
+        checkArgument(authenticator.isCompact(), "snapshots require a CachingJwtAuthenticator in compact mode");
+        checkArgument(!saveInterval.isNegative() && !saveInterval.isZero(), "save interval must be positive");
+        this.authenticator = authenticator;
+        this.codec = new CachedPrincipalCodec<>(checkNotNull(serializer, "PrincipalSerializer is not set"));
+        this.file = checkNotNull(file, "Snapshot file is not set");
+        this.saveInterval = saveInterval;
+        this.scheduler = scheduler;
+        this.ownsScheduler = ownsScheduler;
+    }
+
+    /**
+     * Restores the last snapshot, if any, and schedules the periodic snapshots. A snapshot which cannot be
+     * read is logged and the application starts with the entries restored so far.
+     */
+    @Override
+    public synchronized void start() {
+        if (saveTask == null) {
+            try {
+                LOGGER.info("Restored {} cached principals from {}", load(), file);
+            } catch (IOException | RuntimeException e) {
+                LOGGER.warn("Unable to restore cached principals from " + file, e);
+            }
+            final long interval = saveInterval.toMillis();
+            saveTask = scheduler.scheduleWithFixedDelay(this::trySave, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Cancels the periodic snapshots and writes a final one.
+     */
+    @Override
+    public synchronized void stop() {
+        if (saveTask != null) {
+            saveTask.cancel(false);
+            saveTask = null;
+            trySave();
+        }
+        if (ownsScheduler) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Caches the principals of the snapshot file again, skipping entries whose token has expired.
+     *
+     * @return the number of restored principals
+     * @throws IOException if the snapshot cannot be read
+     */
+    public int load() throws IOException {
+        if (!Files.exists(file)) {
+            return 0;
+        }
+
+        try (FileChannel channel = FileChannel.open(file, READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Snapshot " + file + " is larger than 2 GiB");
+            }
+
+            final MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < 2 * Integer.BYTES || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                throw new IOException("Unrecognised snapshot " + file);
+            }
+
+            final long now = System.currentTimeMillis();
+            int restored = 0;
+            try {
+                while (buffer.hasRemaining()) {
+                    final TokenDigest digest = TokenDigest.readFrom(buffer);
+                    final long expiresAt = buffer.getLong();
+                    final long writtenAt = buffer.getLong();
+                    final byte[] body = new byte[buffer.getInt()];
+                    if (expiresAt <= now) {
+                        buffer.position(buffer.position() + body.length);
+                        continue;
+                    }
+
+                    buffer.get(body);
+                    if (authenticator.restore(digest, codec.decode(body, expiresAt, writtenAt))) {
+                        restored++;
+                    }
+                }
+            } catch (BufferUnderflowException | IllegalArgumentException | NegativeArraySizeException e) {
+                throw new IOException("Truncated snapshot " + file + " after " + restored + " principals", e);
+            }
+            return restored;
+        }
+    }
+
+    /**
+     * Writes the cached principals whose token has not yet expired to the snapshot file.
+     *
+     * @return the number of saved principals
+     * @throws IOException if the snapshot cannot be written
+     */
+    public synchronized int save() throws IOException {
+        final Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        final long now = System.currentTimeMillis();
+        final ByteBuffer header = ByteBuffer.allocate(ENTRY_HEADER);
+        final int[] saved = {0};
+
+        try (FileChannel channel = FileChannel.open(temporary, CREATE, WRITE, TRUNCATE_EXISTING);
+             DataOutputStream out = new DataOutputStream(
+                 new BufferedOutputStream(Channels.newOutputStream(channel), 64 * 1024))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            authenticator.forEachEntry((key, entry) -> {
+                if (key instanceof TokenDigest && !entry.isExpired(now)) {
+                    try {
+                        final byte[] body = codec.encode(entry);
+                        header.clear();
+                        ((TokenDigest) key).writeTo(header);
+                        header.putLong(entry.getExpiresAt()).putLong(entry.getWrittenAt()).putInt(body.length);
+                        out.write(header.array());
+                        out.write(body);
+                        saved[0]++;
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            });
+            out.flush();
+            channel.force(false);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        Files.move(temporary, file, ATOMIC_MOVE, REPLACE_EXISTING);
+        return saved[0];
+    }
+
+    private void trySave() {
+        try {
+            LOGGER.debug("Saved {} cached principals to {}", save(), file);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Unable to save cached principals to " + file, e);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.github.toastshaman.dropwizard.auth.jwt;
+
+import com.google.common.collect.ImmutableSet;
+import org.jose4j.jwt.consumer.JwtContext;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+/**
+ * A secondary index of a {@link CachingJwtAuthenticator} mapping a value extracted from the credentials,
+ * e.g. the {@code sub} claim, to the cache keys of all principals authenticated with that value.
+ * <p>Keys are added and removed atomically per value, so concurrent inserts and removals for the same value
+ * never lose each other's updates and a value is dropped as soon as its last key is removed.</p>
+ */
+final class PrincipalIndex {
+
+    private final String name;
+    private final Function<JwtContext, String> extractor;
+    private final ConcurrentMap<String, Set<Object>> keysByValue = new ConcurrentHashMap<>();
+
+    PrincipalIndex(String name, Function<JwtContext, String> extractor) {
+        this.name = name;
+        this.extractor = extractor;
+    }
+
+    static Function<JwtContext, String> claim(String claimName) {
+        return context -> CachedPrincipal.stringClaim(context.getJwtClaims(), claimName);
+    }
+
+    String getName() {
+        return name;
+    }
+
+    String extract(JwtContext context) {
+        return extractor.apply(context);
+    }
+
+    void add(String value, Object key) {
+        if (value == null) {
+            return;
+        }
+
+        keysByValue.compute(value, (v, keys) -> {
+            final Set<Object> result = keys == null ? ConcurrentHashMap.newKeySet(4) : keys;
+            result.add(key);
+            return result;
+        });
+    }
+
+    void remove(String value, Object key) {
+        if (value == null) {
+            return;
+        }
+
+        keysByValue.computeIfPresent(value, (v, keys) -> {
+            keys.remove(key);
+            return keys.isEmpty() ? null : keys;
+        });
+    }
+
+    Set<Object> keysOf(String value) {
+        final Set<Object> keys = keysByValue.get(value);
+        return keys == null ? ImmutableSet.of() : ImmutableSet.copyOf(keys);
+    }
+
+    int size() {
+        return keysByValue.size();
+    }
+}
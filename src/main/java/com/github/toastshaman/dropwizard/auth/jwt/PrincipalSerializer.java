@@ -0,0 +1,59 @@
+package com.github.toastshaman.dropwizard.auth.jwt;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.security.Principal;
+import java.util.function.Function;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * Converts principals to and from bytes so that they can be stored outside of the heap.
+ *
+ * @param <P> the principal
+ * @see OffHeapPrincipalCache
+ */
+public interface PrincipalSerializer<P extends Principal> {
+
+    /**
+     * Writes a principal.
+     *
+     * @param principal the principal to write
+     * @param out       the output to write the principal to
+     * @throws IOException if the principal cannot be written
+     */
+    void write(P principal, DataOutput out) throws IOException;
+
+    /**
+     * Reads a principal previously written with {@link #write(Principal, DataOutput)}.
+     *
+     * @param in the input to read the principal from
+     * @return the principal
+     * @throws IOException if the principal cannot be read
+     */
+    P read(DataInput in) throws IOException;
+
+    /**
+     * Returns a serializer which only stores the {@linkplain Principal#getName() name} of a principal, e.g. for
+     * {@link io.dropwizard.auth.PrincipalImpl}.
+     *
+     * @param factory creates a principal from its name
+     * @param <P>     the principal
+     * @return a serializer
+     */
+    static <P extends Principal> PrincipalSerializer<P> byName(Function<String, P> factory) {
+        checkNotNull(factory, "Principal factory is not set");
+        return new PrincipalSerializer<P>() {
+            @Override
+            public void write(P principal, DataOutput out) throws IOException {
+                out.writeUTF(principal.getName());
+            }
+
+            @Override
+            public P read(DataInput in) throws IOException {
+                return factory.apply(in.readUTF());
+            }
+        };
+    }
+}
@@ -0,0 +1,233 @@
+package com.github.toastshaman.dropwizard.auth.jwt;
+
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.MultimapBuilder;
+import com.google.common.collect.Multimaps;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.dropwizard.lifecycle.Managed;
+import org.jose4j.jwk.JsonWebKey;
+import org.jose4j.jwk.JsonWebKeySet;
+import org.jose4j.jwk.Use;
+import org.jose4j.jws.JsonWebSignature;
+import org.jose4j.jwx.JsonWebStructure;
+import org.jose4j.keys.resolvers.VerificationKeyResolver;
+import org.jose4j.lang.InvalidAlgorithmException;
+import org.jose4j.lang.UnresolvableKeyException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.security.Key;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+/**
+ * A {@link VerificationKeyResolver} backed by a JSON Web Key Set which is refreshed in the background.
+ * <p>The keys are indexed by their {@code kid} in an immutable map that is replaced atomically on every
+ * successful refresh, so resolving a key is a single map lookup and never waits for a fetch. A failed
+ * refresh keeps the previously loaded keys.</p>
+ * <p>A {@code kid} may be published on several keys, e.g. during a rotation or with one key per algorithm.
+ * Such keys are chosen by the token's {@code alg} header: a key whose {@code alg} matches wins over a key of
+ * the matching key type, and among equals the first key of the set is used.</p>
+ * <p>Register the resolver with Dropwizard's lifecycle, or call {@link #start()}, before the first
+ * request arrives.</p>
+ */
+public class RefreshingJwksKeyResolver implements VerificationKeyResolver, Managed {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RefreshingJwksKeyResolver.class);
+
+    private final JwksSource source;
+    private final Duration refreshInterval;
+    private final ScheduledExecutorService scheduler;
+    private final boolean ownsScheduler;
+
+    private volatile Keys keys = new Keys(ImmutableMap.of(), 0L);
+    private ScheduledFuture<?> refreshTask;
+
+    /**
+     * Creates a new resolver which refreshes the key set on its own daemon thread.
+     *
+     * @param source          the location of the key set
+     * @param refreshInterval the time between two refreshes
+     */
+    public RefreshingJwksKeyResolver(JwksSource source, Duration refreshInterval) {
+        this(source, refreshInterval, Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+            .setNameFormat("jwks-refresh-%d")
+            .setDaemon(true)
+            .build()), true);
+    }
+
+    /**
+     * Creates a new resolver which refreshes the key set on the given scheduler.
+     *
+     * @param source          the location of the key set
+     * @param refreshInterval the time between two refreshes
+     * @param scheduler       the scheduler running the refreshes, e.g. one managed by the environment
+     */
+    public RefreshingJwksKeyResolver(JwksSource source, Duration refreshInterval, ScheduledExecutorService scheduler) {
+        this(source, refreshInterval, scheduler, false);
+    }
+
+    private RefreshingJwksKeyResolver(JwksSource source,
+                                      Duration refreshInterval,
+                                      ScheduledExecutorService scheduler,
+                                      boolean ownsScheduler) {
+        checkArgument(!refreshInterval.isNegative() && !refreshInterval.isZero(), "refresh interval must be positive");
+        this.source = checkNotNull(source, "JwksSource is not set");
+        this.refreshInterval = refreshInterval;
+        this.scheduler = scheduler;
+        this.ownsScheduler = ownsScheduler;
+    }
+
+    @Override
+    public Key resolveKey(JsonWebSignature jws, List<JsonWebStructure> nestingContext) throws UnresolvableKeyException {
+        final Keys current = keys;
+        final String keyId = jws.getKeyIdHeaderValue();
+        Key key = keyId == null ? current.defaultKey : current.byKeyId.get(keyId);
+        if (key == null && keyId != null && current.sharedKeyIds.containsKey(keyId)) {
+            key = select(jws, current.sharedKeyIds.get(keyId));
+        }
+        if (key == null) {
+            throw new UnresolvableKeyException("Unable to find a verification key for kid " + keyId);
+        }
+        return key;
+    }
+
+    /**
+     * Loads the key set once and schedules the periodic refresh.
+     */
+    @Override
+    public synchronized void start() {
+        if (refreshTask == null) {
+            refresh();
+            final long interval = refreshInterval.toMillis();
+            refreshTask = scheduler.scheduleWithFixedDelay(this::refresh, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (refreshTask != null) {
+            refreshTask.cancel(false);
+            refreshTask = null;
+        }
+        if (ownsScheduler) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Loads the key set from the source and publishes it if it could be read.
+     *
+     * @return {@code true} if the key set was refreshed
+     */
+    public boolean refresh() {
+        try {
+            keys = index(source.load());
+            return true;
+        } catch (Exception e) {
+            LOGGER.warn("Unable to refresh the JSON Web Key Set, keeping the previous keys", e);
+            return false;
+        }
+    }
+
+    /**
+     * Returns the key ids of the currently published keys.
+     *
+     * @return the currently published key ids
+     */
+    public Iterable<String> getKeyIds() {
+        final Keys current = keys;
+        return Sets.union(current.byKeyId.keySet(), current.sharedKeyIds.keySet());
+    }
+
+    /**
+     * Returns the time of the last successful refresh in milliseconds since the epoch.
+     *
+     * @return the time of the last successful refresh or {@code 0} if the keys were never loaded
+     */
+    public long getLastRefreshTime() {
+        return keys.loadedAt;
+    }
+
+    private static Key select(JsonWebSignature jws, List<JsonWebKey> candidates) throws UnresolvableKeyException {
+        final String algorithm = jws.getAlgorithmHeaderValue();
+        for (JsonWebKey jwk : candidates) {
+            if (algorithm != null && algorithm.equals(jwk.getAlgorithm())) {
+                return jwk.getKey();
+            }
+        }
+
+        final String keyType;
+        try {
+            keyType = jws.getKeyType();
+        } catch (InvalidAlgorithmException e) {
+            throw new UnresolvableKeyException("Unable to choose a verification key for alg " + algorithm, e);
+        }
+        for (JsonWebKey jwk : candidates) {
+            if (jwk.getAlgorithm() == null && keyType.equals(jwk.getKeyType())) {
+                return jwk.getKey();
+            }
+        }
+        return null;
+    }
+
+    private static Keys index(JsonWebKeySet keySet) {
+        final ListMultimap<String, JsonWebKey> byKeyId = MultimapBuilder.linkedHashKeys().arrayListValues().build();
+        Key onlyKey = null;
+        int count = 0;
+        for (JsonWebKey jwk : keySet.getJsonWebKeys()) {
+            if (Use.ENCRYPTION.equals(jwk.getUse())) {
+                continue;
+            }
+            if (jwk.getKeyId() != null) {
+                byKeyId.put(jwk.getKeyId(), jwk);
+            }
+            onlyKey = jwk.getKey();
+            count++;
+        }
+
+        final ImmutableMap.Builder<String, Key> unique = ImmutableMap.builder();
+        final ImmutableMap.Builder<String, List<JsonWebKey>> shared = ImmutableMap.builder();
+        for (Map.Entry<String, List<JsonWebKey>> entry : Multimaps.asMap(byKeyId).entrySet()) {
+            final List<JsonWebKey> jwks = entry.getValue();
+            if (jwks.size() == 1) {
+                unique.put(entry.getKey(), jwks.get(0).getKey());
+            } else {
+                LOGGER.warn("The kid {} is published on {} keys, they are chosen by the alg of each token",
+                    entry.getKey(), jwks.size());
+                shared.put(entry.getKey(), ImmutableList.copyOf(jwks));
+            }
+        }
+        return new Keys(unique.build(), shared.build(), count == 1 ? onlyKey : null, System.currentTimeMillis());
+    }
+
+    private static final class Keys {
+        private final Map<String, Key> byKeyId;
+        private final Map<String, List<JsonWebKey>> sharedKeyIds;
+        private final Key defaultKey;
+        private final long loadedAt;
+
+        private Keys(Map<String, Key> byKeyId, long loadedAt) {
+            this(byKeyId, ImmutableMap.of(), null, loadedAt);
+        }
+
+        private Keys(Map<String, Key> byKeyId, Map<String, List<JsonWebKey>> sharedKeyIds, Key defaultKey,
+                     long loadedAt) {
+            this.byKeyId = byKeyId;
+            this.sharedKeyIds = sharedKeyIds;
+            this.defaultKey = defaultKey;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
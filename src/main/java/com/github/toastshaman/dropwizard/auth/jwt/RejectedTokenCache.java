@@ -0,0 +1,119 @@
+package com.github.toastshaman.dropwizard.auth.jwt;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheBuilderSpec;
+import com.google.common.cache.CacheStats;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * A bounded cache of tokens which have recently been rejected, so that clients replaying a bad token are
+ * turned away without parsing and verifying it again.
+ * <p>Tokens are keyed by their {@link TokenDigest}, which keeps the size of each entry independent of the
+ * size of the token. Rejections are only remembered for a short time: the cache should be configured with a
+ * {@code expireAfterWrite} of a few seconds, e.g. {@code maximumSize=10000, expireAfterWrite=10s}, so that
+ * a rejection caused by a transient condition, such as a key which has not been fetched yet or a user who
+ * has just been created, does not outlive it for long.</p>
+ */
+public class RejectedTokenCache {
+
+    /**
+     * Why a token was rejected.
+     */
+    public enum Rejection {
+        /**
+         * The token is malformed, badly signed, expired or otherwise refused by the consumer.
+         */
+        INVALID_TOKEN,
+
+        /**
+         * The token is valid but the authenticator did not return a principal for it.
+         */
+        UNKNOWN_PRINCIPAL
+    }
+
+    private final Cache<TokenDigest, Rejection> cache;
+    private final Meter hits;
+    private final Meter misses;
+    private final Meter invalidTokens;
+    private final Meter unknownPrincipals;
+
+    /**
+     * Creates a new rejected token cache.
+     *
+     * @param metricRegistry the application's registry of metrics
+     * @param cacheSpec      a {@link CacheBuilderSpec}
+     */
+    public RejectedTokenCache(final MetricRegistry metricRegistry, final CacheBuilderSpec cacheSpec) {
+        this(metricRegistry, CacheBuilder.from(cacheSpec));
+    }
+
+    /**
+     * Creates a new rejected token cache.
+     *
+     * @param metricRegistry the application's registry of metrics
+     * @param builder        a {@link CacheBuilder}
+     */
+    public RejectedTokenCache(final MetricRegistry metricRegistry, final CacheBuilder<Object, Object> builder) {
+        this.cache = builder.recordStats().build();
+        this.hits = metricRegistry.meter(name(RejectedTokenCache.class, "hits"));
+        this.misses = metricRegistry.meter(name(RejectedTokenCache.class, "misses"));
+        this.invalidTokens = metricRegistry.meter(name(RejectedTokenCache.class, "invalid-tokens"));
+        this.unknownPrincipals = metricRegistry.meter(name(RejectedTokenCache.class, "unknown-principals"));
+    }
+
+    /**
+     * Returns why the given token was rejected if the rejection is still cached.
+     *
+     * @param rawToken the raw token as sent by the client
+     * @return the reason of the rejection or {@code null} if the token has to be verified
+     */
+    public Rejection getIfPresent(String rawToken) {
+        final Rejection rejection = cache.getIfPresent(TokenDigest.of(rawToken));
+        if (rejection != null) {
+            hits.mark();
+        } else {
+            misses.mark();
+        }
+        return rejection;
+    }
+
+    /**
+     * Remembers that the given token has just been rejected.
+     *
+     * @param rawToken  the raw token as sent by the client
+     * @param rejection why the token was rejected
+     */
+    public void put(String rawToken, Rejection rejection) {
+        (rejection == Rejection.INVALID_TOKEN ? invalidTokens : unknownPrincipals).mark();
+        cache.put(TokenDigest.of(rawToken), rejection);
+    }
+
+    /**
+     * Discards all cached rejections.
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * Returns the number of cached rejections.
+     *
+     * @return the number of cached rejections
+     */
+    public long size() {
+        return cache.size();
+    }
+
+    /**
+     * Returns a set of statistics about the cache contents and usage.
+     *
+     * @return a set of statistics about the cache contents and usage
+     */
+    public CacheStats stats() {
+        return cache.stats();
+    }
+}
@@ -0,0 +1,184 @@
+package com.github.toastshaman.dropwizard.auth.jwt;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.dropwizard.lifecycle.Managed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.Consumer;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+/**
+ * {@link JwtFilterSettings} which are rebuilt whenever a configuration or key file changes, so that keys, the
+ * allowed clock skew or cache sizes can be changed without restarting the application.
+ * <p>The directory of the file is watched with a {@link WatchService} on a daemon thread. When the file is
+ * created or modified, the {@link Loader} builds new settings on that thread, which are then published by a
+ * single volatile write; requests in flight keep using the settings they started with and never wait for a
+ * reload. Settings which cannot be loaded are logged and the previous ones are kept.</p>
+ * <p>The settings are loaded once when this object is created. Register it with Dropwizard's lifecycle, or call
+ * {@link #start()}, to watch the file.</p>
+ */
+public class ReloadableJwtSettings implements Managed {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ReloadableJwtSettings.class);
+
+    /**
+     * Builds settings from the watched file.
+     */
+    @FunctionalInterface
+    public interface Loader {
+
+        /**
+         * Reads the given file and builds the settings it describes.
+         *
+         * @param file the watched file
+         * @return the new settings
+         * @throws IOException if the file cannot be read
+         */
+        JwtFilterSettings load(Path file) throws IOException;
+    }
+
+    private final Path file;
+    private final Loader loader;
+    private final ThreadFactory threadFactory;
+    private final List<Consumer<JwtFilterSettings>> listeners = new CopyOnWriteArrayList<>();
+
+    private volatile Snapshot snapshot;
+    private WatchService watchService;
+
+    /**
+     * Creates new settings and loads them from the given file.
+     *
+     * @param file   the configuration or key file to watch
+     * @param loader builds the settings from the file
+     * @throws IOException if the settings cannot be loaded
+     */
+    public ReloadableJwtSettings(Path file, Loader loader) throws IOException {
+        this.file = checkNotNull(file, "File is not set").toAbsolutePath();
+        this.loader = checkNotNull(loader, "Loader is not set");
+        this.threadFactory = new ThreadFactoryBuilder()
+            .setNameFormat("jwt-settings-watch-%d")
+            .setDaemon(true)
+            .build();
+        this.snapshot = new Snapshot(load(), System.currentTimeMillis());
+    }
+
+    /**
+     * Returns the current settings.
+     *
+     * @return the current settings
+     */
+    public JwtFilterSettings get() {
+        return snapshot.settings;
+    }
+
+    /**
+     * Starts watching the file.
+     *
+     * @throws IOException if the directory of the file cannot be watched
+     */
+    @Override
+    public synchronized void start() throws IOException {
+        if (watchService == null) {
+            final WatchService watcher = file.getFileSystem().newWatchService();
+            file.getParent().register(watcher, ENTRY_CREATE, ENTRY_MODIFY);
+            watchService = watcher;
+            threadFactory.newThread(() -> watch(watcher)).start();
+        }
+    }
+
+    @Override
+    public synchronized void stop() throws IOException {
+        if (watchService != null) {
+            watchService.close();
+            watchService = null;
+        }
+    }
+
+    /**
+     * Loads the settings from the file and publishes them if they could be built. The listeners are notified
+     * of the new settings.
+     *
+     * @return {@code true} if the settings were reloaded
+     */
+    public boolean reload() {
+        final JwtFilterSettings settings;
+        try {
+            settings = load();
+        } catch (IOException | RuntimeException e) {
+            LOGGER.warn("Unable to reload the JWT settings from " + file + ", keeping the previous settings", e);
+            return false;
+        }
+
+        snapshot = new Snapshot(settings, System.currentTimeMillis());
+        listeners.forEach(listener -> listener.accept(settings));
+        return true;
+    }
+
+    /**
+     * Adds a listener which is notified of the new settings after each reload.
+     *
+     * @param listener the listener receiving the settings
+     */
+    public void addListener(Consumer<JwtFilterSettings> listener) {
+        listeners.add(checkNotNull(listener, "listener is not set"));
+    }
+
+    /**
+     * Returns the time the current settings were loaded in milliseconds since the epoch.
+     *
+     * @return the time of the last successful load
+     */
+    public long getLastReloadTime() {
+        return snapshot.loadedAt;
+    }
+
+    private JwtFilterSettings load() throws IOException {
+        return checkNotNull(loader.load(file), "Loader returned no settings");
+    }
+
+    private void watch(WatchService watcher) {
+        final Path fileName = file.getFileName();
+        try {
+            while (true) {
+                final WatchKey key = watcher.take();
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    changed |= event.kind() == OVERFLOW || fileName.equals(event.context());
+                }
+                if (changed) {
+                    reload();
+                }
+                if (!key.reset()) {
+                    LOGGER.warn("Stopped watching {}, its directory is no longer accessible", file);
+                    return;
+                }
+            }
+        } catch (ClosedWatchServiceException | InterruptedException e) {
+            // stopped
+        }
+    }
+
+    private static final class Snapshot {
+        private final JwtFilterSettings settings;
+        private final long loadedAt;
+
+        private Snapshot(JwtFilterSettings settings, long loadedAt) {
+            this.settings = settings;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package com.github.toastshaman.dropwizard.auth.jwt;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnels;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.dropwizard.lifecycle.Managed;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * The JWT IDs ({@code jti}) of revoked tokens, polled from a {@link RevocationSource} in the background.
+ * <p>Each successful poll publishes an immutable snapshot consisting of a Bloom filter and the exact set of
+ * revoked IDs. A check first consults the filter, which answers the common case of a token that is not revoked
+ * with a few hash computations and without touching the set; only possible members are confirmed against the
+ * set. A failed poll keeps the previously loaded list.</p>
+ * <p>Register the list with Dropwizard's lifecycle, or call {@link #start()}, before the first request arrives,
+ * and pass it to {@link CachingJwtAuthenticator.Builder#setRevocationList(RevocationList)}.</p>
+ */
+public class RevocationList implements Managed {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(RevocationList.class);
+
+    private static final double FALSE_POSITIVE_PROBABILITY = 0.01;
+
+    private final RevocationSource source;
+    private final Duration refreshInterval;
+    private final ScheduledExecutorService scheduler;
+    private final boolean ownsScheduler;
+    private final List<Consumer<String>> listeners = new CopyOnWriteArrayList<>();
+
+    private volatile Revocations revocations = new Revocations(ImmutableSet.of(), 0L);
+    private ScheduledFuture<?> refreshTask;
+
+    /**
+     * Creates a new list which is polled on its own daemon thread.
+     *
+     * @param source          the location of the list
+     * @param refreshInterval the time between two polls
+     */
+    public RevocationList(RevocationSource source, Duration refreshInterval) {
+        this(source, refreshInterval, Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+            .setNameFormat("revocation-refresh-%d")
+            .setDaemon(true)
+            .build()), true);
+    }
+
+    /**
+     * Creates a new list which is polled on the given scheduler.
+     *
+     * @param source          the location of the list
+     * @param refreshInterval the time between two polls
+     * @param scheduler       the scheduler running the polls, e.g. one managed by the environment
+     */
+    public RevocationList(RevocationSource source, Duration refreshInterval, ScheduledExecutorService scheduler) {
+        this(source, refreshInterval, scheduler, false);
+    }
+
+    private RevocationList(RevocationSource source,
+                           Duration refreshInterval,
+                           ScheduledExecutorService scheduler,
+                           boolean ownsScheduler) {
+        checkArgument(!refreshInterval.isNegative() && !refreshInterval.isZero(), "refresh interval must be positive");
+        this.source = checkNotNull(source, "RevocationSource is not set");
+        this.refreshInterval = refreshInterval;
+        this.scheduler = scheduler;
+        this.ownsScheduler = ownsScheduler;
+    }
+
+    /**
+     * Returns whether the token with the given JWT ID has been revoked.
+     *
+     * @param jwtId the {@code jti} claim of a token, may be {@code null}
+     * @return {@code true} if the token has been revoked
+     */
+    public boolean isRevoked(String jwtId) {
+        return jwtId != null && revocations.contains(jwtId);
+    }
+
+    /**
+     * Loads the list once and schedules the periodic polls.
+     */
+    @Override
+    public synchronized void start() {
+        if (refreshTask == null) {
+            refresh();
+            final long interval = refreshInterval.toMillis();
+            refreshTask = scheduler.scheduleWithFixedDelay(this::refresh, interval, interval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    @Override
+    public synchronized void stop() {
+        if (refreshTask != null) {
+            refreshTask.cancel(false);
+            refreshTask = null;
+        }
+        if (ownsScheduler) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Loads the list from the source and publishes it if it could be read. The listeners are notified of every
+     * JWT ID which was not revoked before.
+     *
+     * @return {@code true} if the list was refreshed
+     */
+    public boolean refresh() {
+        final Revocations previous = revocations;
+        final Revocations current;
+        try {
+            current = new Revocations(ImmutableSet.copyOf(source.load()), System.currentTimeMillis());
+        } catch (Exception e) {
+            LOGGER.warn("Unable to refresh the revocation list, keeping the previous list", e);
+            return false;
+        }
+
+        revocations = current;
+        if (!listeners.isEmpty()) {
+            for (String jwtId : current.jwtIds) {
+                if (!previous.contains(jwtId)) {
+                    listeners.forEach(listener -> listener.accept(jwtId));
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Adds a listener which is notified of each newly revoked JWT ID after a refresh.
+     *
+     * @param listener the listener receiving the JWT ID
+     */
+    public void addListener(Consumer<String> listener) {
+        listeners.add(checkNotNull(listener, "listener is not set"));
+    }
+
+    /**
+     * Returns the number of revoked JWT IDs.
+     *
+     * @return the number of revoked JWT IDs
+     */
+    public int size() {
+        return revocations.jwtIds.size();
+    }
+
+    /**
+     * Returns the time of the last successful refresh in milliseconds since the epoch.
+     *
+     * @return the time of the last successful refresh or {@code 0} if the list was never loaded
+     */
+    public long getLastRefreshTime() {
+        return revocations.loadedAt;
+    }
+
+    static List<String> parse(Collection<String> lines) {
+        final List<String> jwtIds = new ArrayList<>(lines.size());
+        for (String line : lines) {
+            final String jwtId = line.trim();
+            if (!jwtId.isEmpty() && !jwtId.startsWith("#")) {
+                jwtIds.add(jwtId);
+            }
+        }
+        return jwtIds;
+    }
+
+    private static final class Revocations {
+        private final ImmutableSet<String> jwtIds;
+        private final BloomFilter<CharSequence> filter;
+        private final long loadedAt;
+
+        private Revocations(ImmutableSet<String> jwtIds, long loadedAt) {
+            this.jwtIds = jwtIds;
+            this.filter = BloomFilter.create(Funnels.stringFunnel(UTF_8), Math.max(jwtIds.size(), 1024),
+                FALSE_POSITIVE_PROBABILITY);
+            jwtIds.forEach(filter::put);
+            this.loadedAt = loadedAt;
+        }
+
+        private boolean contains(String jwtId) {
+            return filter.mightContain(jwtId) && jwtIds.contains(jwtId);
+        }
+    }
+}
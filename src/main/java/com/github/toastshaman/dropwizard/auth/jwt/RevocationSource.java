@@ -0,0 +1,66 @@
+package com.github.toastshaman.dropwizard.auth.jwt;
+
+import org.jose4j.http.Get;
+import org.jose4j.http.SimpleResponse;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collection;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * A location from which the JWT IDs ({@code jti}) of revoked tokens can be loaded.
+ * <p>The file and HTTP sources expect a plain text document with one JWT ID per line. Blank lines and lines
+ * starting with {@code #} are ignored.</p>
+ */
+@FunctionalInterface
+public interface RevocationSource {
+
+    /**
+     * Loads the complete list of revoked JWT IDs.
+     *
+     * @return the revoked JWT IDs
+     * @throws IOException if the list could not be read
+     */
+    Collection<String> load() throws IOException;
+
+    /**
+     * Returns a source reading the revoked JWT IDs from a local file.
+     *
+     * @param path the path of the list
+     * @return a file based source
+     */
+    static RevocationSource fromFile(Path path) {
+        return () -> RevocationList.parse(Files.readAllLines(path, UTF_8));
+    }
+
+    /**
+     * Returns a source fetching the revoked JWT IDs from an HTTP(S) endpoint.
+     *
+     * @param location the URL of the list
+     * @return an HTTP based source
+     */
+    static RevocationSource fromUrl(String location) {
+        return fromUrl(location, new Get());
+    }
+
+    /**
+     * Returns a source fetching the revoked JWT IDs from an HTTP(S) endpoint with the given client.
+     *
+     * @param location the URL of the list
+     * @param get      the HTTP client, e.g. configured with custom timeouts or trust stores
+     * @return an HTTP based source
+     */
+    static RevocationSource fromUrl(String location, Get get) {
+        return () -> {
+            final SimpleResponse response = get.get(location);
+            if (response.getStatusCode() != 200) {
+                throw new IOException("Unexpected status " + response.getStatusCode() + " fetching " + location);
+            }
+            return RevocationList.parse(Arrays.asList(response.getBody().split("\r?\n")));
+        };
+    }
+}
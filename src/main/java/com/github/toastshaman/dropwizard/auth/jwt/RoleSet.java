@@ -0,0 +1,53 @@
+package com.github.toastshaman.dropwizard.auth.jwt;
+
+import com.google.common.collect.ImmutableSet;
+
+import java.util.Set;
+
+/**
+ * An immutable set of roles, held as a bitset of the ids assigned by a {@link RoleTable} and, for roles which
+ * could not be interned because the table was full, as a set of names.
+ */
+public final class RoleSet {
+
+    /**
+     * The set without any roles.
+     */
+    public static final RoleSet EMPTY = new RoleSet(new long[0], ImmutableSet.of());
+
+    private final long[] words;
+    private final Set<String> uninterned;
+
+    RoleSet(long[] words, Set<String> uninterned) {
+        this.words = words;
+        this.uninterned = uninterned;
+    }
+
+    /**
+     * Returns whether the set holds the role with the given id.
+     *
+     * @param id the id of a role in its {@link RoleTable}
+     * @return {@code true} if the role is in the set
+     */
+    public boolean contains(int id) {
+        if (id < 0) {
+            return false;
+        }
+        final int word = id >>> 6;
+        return word < words.length && (words[word] & (1L << id)) != 0;
+    }
+
+    /**
+     * Returns whether the set holds the given role which has no id in its {@link RoleTable}.
+     *
+     * @param role the name of a role
+     * @return {@code true} if the role is in the set
+     */
+    public boolean containsUninterned(String role) {
+        return uninterned.contains(role);
+    }
+
+    public boolean isEmpty() {
+        return words.length == 0 && uninterned.isEmpty();
+    }
+}
@@ -0,0 +1,126 @@
+package com.github.toastshaman.dropwizard.auth.jwt;
+
+import com.google.common.collect.ImmutableSet;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Assigns each role name a small integer so that the roles of a token can be stored as a {@link RoleSet}.
+ * <p>Ids are handed out in the order roles are first seen and never change. The table holds a bounded number
+ * of roles, as the roles come from tokens; once it is full further roles are not interned but kept by name in
+ * the {@link RoleSet}s holding them, so that checks for them still succeed, only more slowly.</p>
+ */
+public final class RoleTable {
+
+    private static final RoleTable GLOBAL = new RoleTable(4096);
+
+    private final ConcurrentMap<String, Integer> ids = new ConcurrentHashMap<>();
+    private final int maximumSize;
+
+    /**
+     * Creates a new table.
+     *
+     * @param maximumSize the maximum number of roles the table holds
+     */
+    public RoleTable(int maximumSize) {
+        checkArgument(maximumSize > 0, "Maximum size must be positive");
+        this.maximumSize = maximumSize;
+    }
+
+    /**
+     * Returns the table shared by all {@link ClaimsAuthorization}s which are not given their own, holding up to
+     * 4096 roles.
+     *
+     * @return the global role table
+     */
+    public static RoleTable global() {
+        return GLOBAL;
+    }
+
+    /**
+     * Returns the id of the given role, assigning one if the role has not been seen before.
+     *
+     * @param role the name of a role
+     * @return the id of the role or {@code -1} if the table is full
+     */
+    public int intern(String role) {
+        final Integer id = ids.get(role);
+        if (id != null) {
+            return id;
+        }
+        synchronized (this) {
+            final Integer existing = ids.get(role);
+            if (existing != null) {
+                return existing;
+            }
+            if (ids.size() >= maximumSize) {
+                return -1;
+            }
+            final int next = ids.size();
+            ids.put(role, next);
+            return next;
+        }
+    }
+
+    /**
+     * Returns the id of the given role without interning it.
+     *
+     * @param role the name of a role
+     * @return the id of the role or {@code -1} if the role has never been interned
+     */
+    public int idOf(String role) {
+        final Integer id = ids.get(role);
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Interns the given roles.
+     *
+     * @param roles the names of the roles of a principal
+     * @return the set of the interned roles
+     */
+    public RoleSet rolesOf(Iterable<String> roles) {
+        long[] words = new long[0];
+        final ImmutableSet.Builder<String> uninterned = ImmutableSet.builder();
+        for (String role : roles) {
+            final int id = intern(role);
+            if (id < 0) {
+                uninterned.add(role);
+                continue;
+            }
+            final int word = id >>> 6;
+            if (word >= words.length) {
+                words = Arrays.copyOf(words, word + 1);
+            }
+            words[word] |= 1L << id;
+        }
+        final RoleSet set = new RoleSet(words, uninterned.build());
+        return set.isEmpty() ? RoleSet.EMPTY : set;
+    }
+
+    /**
+     * Returns whether the given set holds the given role.
+     *
+     * @param roles the roles of a principal
+     * @param role  the name of a role
+     * @return {@code true} if the role is in the set
+     */
+    public boolean contains(RoleSet roles, String role) {
+        // a role without an id was either never seen or seen once the table was full, as ids are never dropped
+        final int id = idOf(role);
+        return id >= 0 ? roles.contains(id) : roles.containsUninterned(role);
+    }
+
+    /**
+     * Returns the number of interned roles.
+     *
+     * @return the number of interned roles
+     */
+    public int size() {
+        return ids.size();
+    }
+}
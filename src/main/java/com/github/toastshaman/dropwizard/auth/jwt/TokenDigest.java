@@ -0,0 +1,109 @@
+package com.github.toastshaman.dropwizard.auth.jwt;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * The SHA-256 digest of a raw token, held in four primitive fields.
+ * <p>A digest takes a fixed 48 bytes on the heap no matter how large the token is, which makes it a
+ * compact cache key. Two tokens with the same digest are treated as the same token.</p>
+ */
+public final class TokenDigest {
+
+    /**
+     * The number of bytes of a digest.
+     */
+    public static final int BYTES = 32;
+
+    private static final ThreadLocal<MessageDigest> SHA_256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    });
+
+    private final long d0;
+    private final long d1;
+    private final long d2;
+    private final long d3;
+
+    private TokenDigest(long d0, long d1, long d2, long d3) {
+        this.d0 = d0;
+        this.d1 = d1;
+        this.d2 = d2;
+        this.d3 = d3;
+    }
+
+    /**
+     * Computes the digest of a raw token.
+     *
+     * @param rawToken the token as sent by the client
+     * @return the digest of the token
+     */
+    public static TokenDigest of(String rawToken) {
+        final MessageDigest sha256 = SHA_256.get();
+        // not ASCII, which would map every other character to the same '?'
+        return fromBytes(sha256.digest(rawToken.getBytes(UTF_8)));
+    }
+
+    /**
+     * Reads a digest previously written with {@link #writeTo(ByteBuffer)}.
+     *
+     * @param buffer the buffer to read the digest from
+     * @return the digest
+     */
+    public static TokenDigest readFrom(ByteBuffer buffer) {
+        return new TokenDigest(buffer.getLong(), buffer.getLong(), buffer.getLong(), buffer.getLong());
+    }
+
+    private static TokenDigest fromBytes(byte[] digest) {
+        return readFrom(ByteBuffer.wrap(digest));
+    }
+
+    /**
+     * Writes the digest to the given buffer.
+     *
+     * @param buffer the buffer to write the digest to
+     */
+    public void writeTo(ByteBuffer buffer) {
+        buffer.putLong(d0).putLong(d1).putLong(d2).putLong(d3);
+    }
+
+    /**
+     * Writes the digest to the given buffer at the given index, without changing its position.
+     */
+    void writeTo(ByteBuffer buffer, int index) {
+        buffer.putLong(index, d0).putLong(index + 8, d1).putLong(index + 16, d2).putLong(index + 24, d3);
+    }
+
+    /**
+     * Returns whether the given buffer holds this digest at the given index.
+     */
+    boolean matches(ByteBuffer buffer, int index) {
+        return buffer.getLong(index) == d0 && buffer.getLong(index + 8) == d1
+            && buffer.getLong(index + 16) == d2 && buffer.getLong(index + 24) == d3;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        final TokenDigest that = (TokenDigest) o;
+        return d0 == that.d0 && d1 == that.d1 && d2 == that.d2 && d3 == that.d3;
+    }
+
+    @Override
+    public int hashCode() {
+        // the digest is uniformly distributed, so any of its bits make a good hash
+        return (int) (d0 ^ (d0 >>> 32));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%016x%016x%016x%016x", d0, d1, d2, d3);
+    }
+}
@@ -0,0 +1,116 @@
+package com.github.toastshaman.dropwizard.auth.jwt;
+
+/**
+ * Locates raw tokens in {@code Authorization} and {@code Cookie} header values.
+ * <p>The header is scanned in place: the scheme is compared case-insensitively with
+ * {@link String#regionMatches(boolean, int, String, int, int)} and cookies are searched for the requested
+ * name without building a map of all cookies. The only allocation is the token itself once it has been
+ * found.</p>
+ */
+public final class TokenExtractor {
+
+    private TokenExtractor() {}
+
+    /**
+     * Returns the index at which the token starts in an {@code Authorization} header value of the form
+     * {@code <prefix> <token>}. This method does not allocate.
+     *
+     * @param header the value of the {@code Authorization} header, may be {@code null}
+     * @param prefix the authentication scheme, e.g. {@code Bearer}
+     * @return the index of the first character of the token or {@code -1} if the header does not use the scheme
+     */
+    public static int indexOfToken(String header, String prefix) {
+        if (header == null) {
+            return -1;
+        }
+
+        final int length = prefix.length();
+        if (header.length() <= length
+            || header.charAt(length) != ' '
+            || !header.regionMatches(true, 0, prefix, 0, length)) {
+            return -1;
+        }
+
+        return length + 1;
+    }
+
+    /**
+     * Returns the token of an {@code Authorization} header value of the form {@code <prefix> <token>}.
+     *
+     * @param header the value of the {@code Authorization} header, may be {@code null}
+     * @param prefix the authentication scheme, e.g. {@code Bearer}
+     * @return the token or {@code null} if the header does not use the scheme
+     */
+    public static String fromAuthorizationHeader(String header, String prefix) {
+        final int start = indexOfToken(header, prefix);
+        return start < 0 ? null : header.substring(start);
+    }
+
+    /**
+     * Returns the value of the named cookie in a {@code Cookie} header value.
+     * <p>Cookies are separated by {@code ;} or {@code ,}, whitespace around names and values is ignored and a
+     * value enclosed in double quotes is returned without the quotes.</p>
+     *
+     * @param header the value of the {@code Cookie} header, may be {@code null}
+     * @param name   the name of the cookie
+     * @return the value of the first cookie with the given name or {@code null} if there is none
+     */
+    public static String fromCookieHeader(String header, String name) {
+        if (header == null) {
+            return null;
+        }
+
+        final int length = header.length();
+        int position = 0;
+        while (position < length) {
+            final int nameStart = skipWhitespace(header, position, length);
+            int equals = -1;
+            int end = nameStart;
+            while (end < length && !isSeparator(header.charAt(end))) {
+                if (equals < 0 && header.charAt(end) == '=') {
+                    equals = end;
+                }
+                end++;
+            }
+
+            if (equals > 0) {
+                final int nameEnd = trimTrailingWhitespace(header, nameStart, equals);
+                if (nameEnd - nameStart == name.length() && header.startsWith(name, nameStart)) {
+                    return value(header, equals + 1, end);
+                }
+            }
+
+            position = end + 1;
+        }
+
+        return null;
+    }
+
+    private static String value(String header, int start, int end) {
+        int valueStart = skipWhitespace(header, start, end);
+        int valueEnd = trimTrailingWhitespace(header, valueStart, end);
+        if (valueEnd - valueStart >= 2 && header.charAt(valueStart) == '"' && header.charAt(valueEnd - 1) == '"') {
+            valueStart++;
+            valueEnd--;
+        }
+        return header.substring(valueStart, valueEnd);
+    }
+
+    private static boolean isSeparator(char c) {
+        return c == ';' || c == ',';
+    }
+
+    private static int skipWhitespace(String s, int from, int to) {
+        while (from < to && Character.isWhitespace(s.charAt(from))) {
+            from++;
+        }
+        return from;
+    }
+
+    private static int trimTrailingWhitespace(String s, int from, int to) {
+        while (to > from && Character.isWhitespace(s.charAt(to - 1))) {
+            to--;
+        }
+        return to;
+    }
+}
@@ -0,0 +1,204 @@
+package com.github.toastshaman.dropwizard.auth.jwt;
+
+import com.google.common.collect.ImmutableSet;
+import org.jose4j.jwt.consumer.ErrorCodeValidator;
+import org.jose4j.jwt.consumer.ErrorCodes;
+import org.jose4j.jwt.consumer.InvalidJwtException;
+
+import java.util.Base64;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+/**
+ * Cheap checks which reject tokens before they are parsed and verified by a
+ * {@link org.jose4j.jwt.consumer.JwtConsumer}, so that floods of bogus tokens cost little CPU.
+ * <p>A token passes if it</p>
+ * <ul>
+ * <li>is at most {@link Builder#setMaxLength(int) max length} characters long,</li>
+ * <li>consists of three non-empty segments of base64url characters, i.e. is a signed, unencrypted token,</li>
+ * <li>has an {@code alg} header and, if configured, a {@code kid} header from the allow-lists, and</li>
+ * <li>unless disabled, has not expired and is already valid according to its {@code exp} and {@code nbf}
+ * claims.</li>
+ * </ul>
+ * <p>Passing these checks does not mean anything: the token still has to be verified. They only serve to
+ * reject tokens early, with the same {@link ErrorCodes} the consumer would have used.</p>
+ */
+public class TokenPreValidator {
+
+    private static final Set<String> HEADER_MEMBERS = ImmutableSet.of("alg", "kid");
+    private static final Set<String> TIME_CLAIMS = ImmutableSet.of("exp", "nbf");
+
+    private final int maxLength;
+    private final Set<String> algorithms;
+    private final Set<String> keyIds;
+    private final boolean checkTimes;
+    private final long allowedClockSkewInMillis;
+
+    private TokenPreValidator(int maxLength, Set<String> algorithms, Set<String> keyIds,
+                              boolean checkTimes, long allowedClockSkewInMillis) {
+        this.maxLength = maxLength;
+        this.algorithms = algorithms;
+        this.keyIds = keyIds;
+        this.checkTimes = checkTimes;
+        this.allowedClockSkewInMillis = allowedClockSkewInMillis;
+    }
+
+    /**
+     * Checks whether the given raw token is worth verifying.
+     *
+     * @param rawToken the raw token as sent by the client
+     * @throws InvalidJwtException if the token can be rejected without verifying it
+     */
+    public void validate(String rawToken) throws InvalidJwtException {
+        final int length = rawToken.length();
+        if (length > maxLength) {
+            throw invalid(ErrorCodes.MISCELLANEOUS, "Token is longer than " + maxLength + " characters");
+        }
+
+        // a single pass over the token checks the charset and finds the two separators
+        int firstDot = -1;
+        int secondDot = -1;
+        for (int i = 0; i < length; i++) {
+            final char c = rawToken.charAt(i);
+            if (c == '.') {
+                if (firstDot < 0) {
+                    firstDot = i;
+                } else if (secondDot < 0) {
+                    secondDot = i;
+                } else {
+                    throw invalid(ErrorCodes.MISCELLANEOUS, "Token does not consist of three segments");
+                }
+            } else if (!isBase64Url(c)) {
+                throw invalid(ErrorCodes.MISCELLANEOUS, "Token contains characters outside of base64url");
+            }
+        }
+        if (firstDot <= 0 || secondDot <= firstDot + 1 || secondDot == length - 1) {
+            throw invalid(ErrorCodes.MISCELLANEOUS, "Token does not consist of three segments");
+        }
+
+        final Map<String, Object> header = members(rawToken, 0, firstDot, HEADER_MEMBERS);
+        final Object algorithm = header.get("alg");
+        if (!(algorithm instanceof String) || (!algorithms.isEmpty() && !algorithms.contains(algorithm))) {
+            throw invalid(ErrorCodes.MISCELLANEOUS, "Algorithm " + algorithm + " is not permitted");
+        }
+        if (!keyIds.isEmpty() && !keyIds.contains(header.get("kid"))) {
+            throw invalid(ErrorCodes.MISCELLANEOUS, "Key ID " + header.get("kid") + " is not permitted");
+        }
+
+        if (checkTimes) {
+            validateTimes(members(rawToken, firstDot + 1, secondDot, TIME_CLAIMS));
+        }
+    }
+
+    private void validateTimes(Map<String, Object> claims) throws InvalidJwtException {
+        final long now = System.currentTimeMillis();
+        final Object expirationTime = claims.get("exp");
+        if (expirationTime instanceof Number
+            && TimeUnit.SECONDS.toMillis(((Number) expirationTime).longValue()) + allowedClockSkewInMillis <= now) {
+            throw invalid(ErrorCodes.EXPIRED, "The token has expired");
+        }
+
+        final Object notBefore = claims.get("nbf");
+        if (notBefore instanceof Number
+            && TimeUnit.SECONDS.toMillis(((Number) notBefore).longValue()) - allowedClockSkewInMillis > now) {
+            throw invalid(ErrorCodes.NOT_YET_VALID, "The token is not yet valid");
+        }
+    }
+
+    private static Map<String, Object> members(String rawToken, int start, int end, Set<String> names)
+        throws InvalidJwtException {
+        try {
+            final byte[] json = Base64.getUrlDecoder().decode(rawToken.substring(start, end));
+            return JsonScanner.members(new String(json, UTF_8), names);
+        } catch (IllegalArgumentException e) {
+            throw invalid(ErrorCodes.JSON_INVALID, "Token segment is not a base64url encoded JSON object");
+        }
+    }
+
+    private static boolean isBase64Url(char c) {
+        return (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z') || (c >= '0' && c <= '9') || c == '-' || c == '_';
+    }
+
+    private static InvalidJwtException invalid(int errorCode, String message) {
+        return new InvalidJwtException(message, new ErrorCodeValidator.Error(errorCode, message), null, null);
+    }
+
+    /**
+     * Builder for {@link TokenPreValidator}.
+     */
+    public static class Builder {
+
+        private int maxLength = 8192;
+        private Set<String> algorithms = ImmutableSet.of();
+        private Set<String> keyIds = ImmutableSet.of();
+        private boolean checkTimes = true;
+        private int allowedClockSkewInSeconds;
+
+        /**
+         * Sets the maximum length of a token, defaults to 8192 characters.
+         *
+         * @param maxLength the maximum number of characters
+         * @return the builder
+         */
+        public Builder setMaxLength(int maxLength) {
+            checkArgument(maxLength > 0, "Max length must be positive");
+            this.maxLength = maxLength;
+            return this;
+        }
+
+        /**
+         * Only lets tokens signed with one of the given algorithms pass. By default any algorithm passes.
+         *
+         * @param algorithms the permitted {@code alg} header values
+         * @return the builder
+         */
+        public Builder setAllowedAlgorithms(String... algorithms) {
+            this.algorithms = ImmutableSet.copyOf(algorithms);
+            return this;
+        }
+
+        /**
+         * Only lets tokens signed with one of the given keys pass. By default any key, or none, passes.
+         *
+         * @param keyIds the permitted {@code kid} header values
+         * @return the builder
+         */
+        public Builder setAllowedKeyIds(String... keyIds) {
+            this.keyIds = ImmutableSet.copyOf(keyIds);
+            return this;
+        }
+
+        /**
+         * Sets whether the {@code exp} and {@code nbf} claims are checked, which requires decoding the
+         * payload. Enabled by default.
+         *
+         * @param checkTimes whether to reject expired and not yet valid tokens
+         * @return the builder
+         */
+        public Builder setCheckTimes(boolean checkTimes) {
+            this.checkTimes = checkTimes;
+            return this;
+        }
+
+        /**
+         * Sets the clock skew allowed when checking {@code exp} and {@code nbf}, which should match the one of
+         * the consumer. Defaults to 0.
+         *
+         * @param allowedClockSkewInSeconds the allowed clock skew
+         * @return the builder
+         */
+        public Builder setAllowedClockSkewInSeconds(int allowedClockSkewInSeconds) {
+            this.allowedClockSkewInSeconds = allowedClockSkewInSeconds;
+            return this;
+        }
+
+        public TokenPreValidator build() {
+            return new TokenPreValidator(maxLength, algorithms, keyIds, checkTimes,
+                TimeUnit.SECONDS.toMillis(allowedClockSkewInSeconds));
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package com.github.toastshaman.dropwizard.auth.jwt;
+
+import com.github.toastshaman.dropwizard.auth.jwt.RejectedTokenCache.Rejection;
+import org.jose4j.jwt.consumer.ErrorCodes;
+import org.jose4j.jwt.consumer.InvalidJwtException;
+import org.jose4j.jwt.consumer.JwtConsumer;
+import org.jose4j.jwt.consumer.JwtConsumerBuilder;
+import org.jose4j.jwt.consumer.JwtContext;
+
+/**
+ * The verification pipeline shared by {@link JwtAuthFilter} and {@link JwtBatchVerifier}: the rejected and
+ * verified token caches, the {@link TokenPreValidator}, decoding, and finally the {@link CachingSignatureVerifier}
+ * and {@link JwtConsumer} of the route selected by the {@link IssuerRoutes}, each stage being timed by
+ * {@link JwtVerificationMetrics}.
+ * <p>With lazy claims, signed tokens are decoded into {@link LazyJwtClaims} instead of being parsed by jose4j.</p>
+ */
+final class TokenVerifier {
+
+    private static final JwtConsumer PARSER = new JwtConsumerBuilder()
+        .setSkipAllValidators()
+        .setDisableRequireSignature()
+        .setSkipSignatureVerification()
+        .build();
+
+    private final IssuerRoutes<?> routes;
+    private final VerifiedTokenCache verifiedTokens;
+    private final RejectedTokenCache rejectedTokens;
+    private final TokenPreValidator preValidator;
+    private final boolean lazyClaims;
+    private final JwtVerificationMetrics metrics;
+
+    TokenVerifier(IssuerRoutes<?> routes,
+                  VerifiedTokenCache verifiedTokens,
+                  RejectedTokenCache rejectedTokens,
+                  TokenPreValidator preValidator,
+                  boolean lazyClaims,
+                  JwtVerificationMetrics metrics) {
+        this.routes = routes;
+        this.verifiedTokens = verifiedTokens;
+        this.rejectedTokens = rejectedTokens;
+        this.preValidator = preValidator;
+        this.lazyClaims = lazyClaims;
+        this.metrics = metrics;
+    }
+
+    JwtVerificationMetrics metrics() {
+        return metrics;
+    }
+
+    /**
+     * Records that no principal could be found for a valid token.
+     */
+    void unknownPrincipal(String rawToken) {
+        metrics.unknownPrincipal();
+        if (rejectedTokens != null) {
+            rejectedTokens.put(rawToken, Rejection.UNKNOWN_PRINCIPAL);
+            // the rejected token cache is only consulted once the verified token cache has missed
+            if (verifiedTokens != null) {
+                verifiedTokens.invalidate(rawToken);
+            }
+        }
+    }
+
+    /**
+     * Verifies a token, looking it up in the verified token cache first and, only if it is not found there, in
+     * the rejected token cache, so that the digest of the token is not computed for tokens which are cached as
+     * verified.
+     *
+     * @return the verified context or {@code null} if the token has recently been rejected
+     */
+    JwtContext verify(String rawToken) throws InvalidJwtException {
+        final JwtContext cachedContext = verifiedTokens == null ? null : verifiedTokens.getIfPresent(rawToken);
+        if (cachedContext != null) {
+            return cachedContext;
+        }
+        if (rejectedTokens != null && rejectedTokens.getIfPresent(rawToken) != null) {
+            metrics.cachedRejection();
+            return null;
+        }
+
+        try {
+            final JwtContext jwtContext = preValidateAndVerify(rawToken);
+            if (verifiedTokens != null) {
+                verifiedTokens.put(rawToken, jwtContext);
+            }
+            return jwtContext;
+        } catch (InvalidJwtException e) {
+            metrics.rejected(e);
+            // a token which is not valid yet may become acceptable within the lifetime of the rejection
+            if (rejectedTokens != null && !e.hasErrorCode(ErrorCodes.NOT_YET_VALID)) {
+                rejectedTokens.put(rawToken, Rejection.INVALID_TOKEN);
+            }
+            throw e;
+        }
+    }
+
+    private JwtContext preValidateAndVerify(String rawToken) throws InvalidJwtException {
+        if (preValidator != null) {
+            final long start = metrics.start();
+            try {
+                preValidator.validate(rawToken);
+            }
+            finally { metrics.stop(metrics.preValidate, start); }
+        }
+        return parseAndVerify(rawToken);
+    }
+
+    /**
+     * Decodes the token without verifying it first, so that decoding and verification can be timed
+     * separately, then lets the consumer verify the decoded token.
+     */
+    private JwtContext parseAndVerify(String rawToken) throws InvalidJwtException {
+        final IssuerRoutes.Route<?> route = routes.routeFor(rawToken);
+        final JwtConsumer consumer = route.consumer();
+        final CachingSignatureVerifier signatureVerifier = route.signatureVerifier();
+        JwtContext parsed = null;
+        InvalidJwtException parseFailure = null;
+        final long parsing = metrics.start();
+        try {
+            parsed = lazyClaims ? LazyJwtClaims.decode(rawToken) : PARSER.process(rawToken);
+        } catch (InvalidJwtException e) {
+            parseFailure = e;
+        }
+        finally { metrics.stop(metrics.parse, parsing); }
+
+        if (parsed == null) {
+            if (signatureVerifier != null) {
+                // the consumer skips signature verification, it must not be handed tokens the verifier has not seen
+                throw parseFailure;
+            }
+
+            // e.g. an encrypted token, which only the consumer can decrypt
+            final long verifying = metrics.start();
+            try {
+                return consumer.process(rawToken);
+            }
+            finally { metrics.stop(metrics.verify(null), verifying); }
+        }
+
+        final String algorithm = parsed.getJoseObjects().get(0).getAlgorithmHeaderValue();
+        final long verifying = metrics.start();
+        try {
+            if (signatureVerifier != null) {
+                signatureVerifier.verify(parsed);
+            }
+            consumer.processContext(parsed);
+            return parsed;
+        }
+        finally { metrics.stop(metrics.verify(algorithm), verifying); }
+    }
+}
@@ -0,0 +1,147 @@
+package com.github.toastshaman.dropwizard.auth.jwt;
+
+import com.codahale.metrics.Meter;
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheBuilderSpec;
+import com.google.common.cache.CacheStats;
+import org.jose4j.jwt.MalformedClaimException;
+import org.jose4j.jwt.NumericDate;
+import org.jose4j.jwt.consumer.JwtContext;
+
+import java.util.concurrent.TimeUnit;
+
+import static com.codahale.metrics.MetricRegistry.name;
+
+/**
+ * A bounded cache of tokens which have already been verified by a {@link org.jose4j.jwt.consumer.JwtConsumer}.
+ * <p>A token found in the cache skips parsing, signature verification and claim validation. Entries are
+ * discarded once the token's expiration time (minus the allowed clock skew) has passed, so a cached token
+ * is never accepted after the point where the consumer would no longer be guaranteed to accept it.</p>
+ */
+public class VerifiedTokenCache {
+
+    private final Cache<String, Entry> cache;
+    private final long allowedClockSkewInMillis;
+    private final Meter hits;
+    private final Meter misses;
+
+    /**
+     * Creates a new verified token cache.
+     *
+     * @param metricRegistry             the application's registry of metrics
+     * @param cacheSpec                  a {@link CacheBuilderSpec}
+     * @param allowedClockSkewInSeconds  the clock skew subtracted from each token's expiration time
+     */
+    public VerifiedTokenCache(final MetricRegistry metricRegistry,
+                              final CacheBuilderSpec cacheSpec,
+                              final int allowedClockSkewInSeconds) {
+        this(metricRegistry, CacheBuilder.from(cacheSpec), allowedClockSkewInSeconds);
+    }
+
+    /**
+     * Creates a new verified token cache.
+     *
+     * @param metricRegistry             the application's registry of metrics
+     * @param builder                    a {@link CacheBuilder}
+     * @param allowedClockSkewInSeconds  the clock skew subtracted from each token's expiration time
+     */
+    public VerifiedTokenCache(final MetricRegistry metricRegistry,
+                              final CacheBuilder<Object, Object> builder,
+                              final int allowedClockSkewInSeconds) {
+        this.cache = builder.recordStats().build();
+        this.allowedClockSkewInMillis = TimeUnit.SECONDS.toMillis(allowedClockSkewInSeconds);
+        this.hits = metricRegistry.meter(name(VerifiedTokenCache.class, "hits"));
+        this.misses = metricRegistry.meter(name(VerifiedTokenCache.class, "misses"));
+    }
+
+    /**
+     * Returns the verified context of the given token if it is cached and has not yet expired.
+     *
+     * @param rawToken the raw token as sent by the client
+     * @return the verified context or {@code null} if the token has to be verified
+     */
+    public JwtContext getIfPresent(String rawToken) {
+        final Entry entry = cache.getIfPresent(rawToken);
+        if (entry != null) {
+            if (entry.expiresAt > System.currentTimeMillis()) {
+                hits.mark();
+                return entry.context;
+            }
+            cache.invalidate(rawToken);
+        }
+
+        misses.mark();
+        return null;
+    }
+
+    /**
+     * Caches the context of a token that has just been verified.
+     *
+     * @param rawToken the raw token as sent by the client
+     * @param context  the context returned by the consumer
+     */
+    public void put(String rawToken, JwtContext context) {
+        final long expiresAt = expiresAt(context);
+        if (expiresAt > System.currentTimeMillis()) {
+            cache.put(rawToken, new Entry(context, expiresAt));
+        }
+    }
+
+    /**
+     * Discards the given token.
+     *
+     * @param rawToken the raw token as sent by the client
+     */
+    public void invalidate(String rawToken) {
+        cache.invalidate(rawToken);
+    }
+
+    /**
+     * Discards all cached tokens.
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * Returns the number of cached tokens.
+     *
+     * @return the number of cached tokens
+     */
+    public long size() {
+        return cache.size();
+    }
+
+    /**
+     * Returns a set of statistics about the cache contents and usage.
+     *
+     * @return a set of statistics about the cache contents and usage
+     */
+    public CacheStats stats() {
+        return cache.stats();
+    }
+
+    private long expiresAt(JwtContext context) {
+        try {
+            final NumericDate expirationTime = context.getJwtClaims().getExpirationTime();
+            if (expirationTime == null) {
+                return Long.MAX_VALUE;
+            }
+            return expirationTime.getValueInMillis() - allowedClockSkewInMillis;
+        } catch (MalformedClaimException e) {
+            return Long.MIN_VALUE;
+        }
+    }
+
+    private static final class Entry {
+        private final JwtContext context;
+        private final long expiresAt;
+
+        private Entry(JwtContext context, long expiresAt) {
+            this.context = context;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.github.toastshaman.dropwizard.auth.jwt;
+
+import io.dropwizard.auth.AuthenticationException;
+import io.dropwizard.auth.Authenticator;
+import io.dropwizard.auth.PrincipalImpl;
+import org.junit.Test;
+
+import java.security.Principal;
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.failBecauseExceptionWasNotThrown;
+
+public class AsyncAuthenticatorTest {
+
+    @Test
+    public void runsBlockingAuthenticatorsOnTheExecutor() throws Exception {
+        final AsyncAuthenticator<String, Principal> async = AsyncAuthenticator.fromBlocking(
+            credentials -> Optional.of(new PrincipalImpl(credentials)), Runnable::run);
+
+        assertThat(async.authenticateAsync("good-guy").toCompletableFuture().get())
+            .isEqualTo(Optional.<Principal>of(new PrincipalImpl("good-guy")));
+    }
+
+    @Test
+    public void waitsForThePrincipal() throws Exception {
+        final Authenticator<String, Principal> awaiting = AsyncAuthenticator.awaiting(
+            credentials -> CompletableFuture.completedFuture(Optional.of(new PrincipalImpl(credentials))),
+            Duration.ofSeconds(1));
+
+        assertThat(awaiting.authenticate("good-guy")).isEqualTo(Optional.<Principal>of(new PrincipalImpl("good-guy")));
+    }
+
+    @Test
+    public void failsWhenTheLookupTimesOut() throws Exception {
+        final Authenticator<String, Principal> awaiting = AsyncAuthenticator.awaiting(
+            credentials -> new CompletableFuture<>(), Duration.ofMillis(10));
+
+        try {
+            awaiting.authenticate("good-guy");
+            failBecauseExceptionWasNotThrown(AuthenticationException.class);
+        } catch (AuthenticationException e) {
+            assertThat(e.getMessage()).contains("timed out");
+        }
+    }
+
+    @Test
+    public void propagatesAuthenticationFailures() throws Exception {
+        final Authenticator<String, Principal> awaiting = AsyncAuthenticator.awaiting(
+            AsyncAuthenticator.fromBlocking(credentials -> {
+                throw new AuthenticationException("unavailable");
+            }, Runnable::run),
+            Duration.ofSeconds(1));
+
+        try {
+            awaiting.authenticate("good-guy");
+            failBecauseExceptionWasNotThrown(AuthenticationException.class);
+        } catch (AuthenticationException e) {
+            assertThat(e.getMessage()).isEqualTo("unavailable");
+        }
+    }
+}
@@ -4,13 +4,25 @@ import io.dropwizard.auth.AuthenticationException;
 import io.dropwizard.auth.Authenticator;
 import io.dropwizard.auth.Authorizer;
 import io.dropwizard.auth.PrincipalImpl;
+import org.jose4j.jws.JsonWebSignature;
+import org.jose4j.jwt.JwtClaims;
 import org.jose4j.jwt.MalformedClaimException;
 import org.jose4j.jwt.consumer.JwtContext;
+import org.jose4j.keys.HmacKey;
+import org.jose4j.lang.JoseException;
 
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.core.MultivaluedHashMap;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.core.SecurityContext;
 import java.security.Principal;
 import java.util.List;
 import java.util.Optional;
 
+import static javax.ws.rs.core.HttpHeaders.AUTHORIZATION;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
 public class AuthUtil {
 
     public static Authenticator<JwtContext, Principal> getJWTAuthenticator(final List<String> validUsers) {
@@ -36,4 +48,31 @@ public class AuthUtil {
     public static Authorizer<Principal> getTestAuthorizer(final String validUser, final String validRole) {
         return (principal, role) -> principal != null && validUser.equals(principal.getName()) && validRole.equals(role);
     }
-}
\ No newline at end of file
+
+    public static ContainerRequestContext request(String token) {
+        final MultivaluedMap<String, String> headers = new MultivaluedHashMap<>();
+        if (token != null) {
+            headers.putSingle(AUTHORIZATION, "Bearer " + token);
+        }
+        final ContainerRequestContext request = mock(ContainerRequestContext.class);
+        when(request.getHeaders()).thenReturn(headers);
+        when(request.getSecurityContext()).thenReturn(mock(SecurityContext.class));
+        return request;
+    }
+
+    public static String sign(JwtClaims claims, String algorithm, byte[] secret) throws JoseException {
+        return sign(claims, algorithm, secret, null);
+    }
+
+    public static String sign(JwtClaims claims, String algorithm, byte[] secret, String keyId) throws JoseException {
+        final JsonWebSignature jws = new JsonWebSignature();
+        jws.setPayload(claims.toJson());
+        jws.setAlgorithmHeaderValue(algorithm);
+        if (keyId != null) {
+            jws.setKeyIdHeaderValue(keyId);
+        }
+        jws.setKey(new HmacKey(secret));
+        jws.setDoKeyValidation(false);
+        return jws.getCompactSerialization();
+    }
+}
@@ -0,0 +1,146 @@
+package com.github.toastshaman.dropwizard.auth.jwt;
+
+import org.jose4j.jwk.EcJwkGenerator;
+import org.jose4j.jwk.PublicJsonWebKey;
+import org.jose4j.jwk.RsaJwkGenerator;
+import org.jose4j.jws.JsonWebSignature;
+import org.jose4j.jwt.JwtClaims;
+import org.jose4j.jwt.consumer.ErrorCodes;
+import org.jose4j.jwt.consumer.InvalidJwtException;
+import org.jose4j.jwt.consumer.JwtConsumer;
+import org.jose4j.jwt.consumer.JwtConsumerBuilder;
+import org.jose4j.jwt.consumer.JwtContext;
+import org.jose4j.keys.EllipticCurves;
+import org.jose4j.keys.HmacKey;
+import org.junit.Test;
+
+import java.security.Key;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.google.common.base.Charsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.failBecauseExceptionWasNotThrown;
+import static org.jose4j.jws.AlgorithmIdentifiers.ECDSA_USING_P256_CURVE_AND_SHA256;
+import static org.jose4j.jws.AlgorithmIdentifiers.HMAC_SHA256;
+import static org.jose4j.jws.AlgorithmIdentifiers.RSA_USING_SHA256;
+
+public class CachingSignatureVerifierTest {
+
+    private static final HmacKey HMAC_KEY = new HmacKey("dfwzsdzwh823zebdwdz772632gdsbdaa".getBytes(UTF_8));
+
+    private final JwtConsumer parser = new JwtConsumerBuilder()
+        .setSkipAllValidators()
+        .setDisableRequireSignature()
+        .setSkipSignatureVerification()
+        .build();
+
+    @Test
+    public void verifiesHmacSignatures() throws Exception {
+        final CachingSignatureVerifier verifier = verifierFor(HMAC_KEY);
+        final String token = sign(HMAC_SHA256, HMAC_KEY);
+
+        verifier.verify(parser.process(token));
+        verifier.verify(parser.process(token));
+    }
+
+    @Test
+    public void verifiesRsaSignatures() throws Exception {
+        final PublicJsonWebKey jwk = RsaJwkGenerator.generateJwk(2048);
+        final CachingSignatureVerifier verifier = verifierFor(jwk.getPublicKey());
+
+        verifier.verify(parser.process(sign(RSA_USING_SHA256, jwk.getPrivateKey())));
+        verifier.verify(parser.process(sign(RSA_USING_SHA256, jwk.getPrivateKey())));
+    }
+
+    @Test
+    public void verifiesEcdsaSignatures() throws Exception {
+        final PublicJsonWebKey jwk = EcJwkGenerator.generateJwk(EllipticCurves.P256);
+        final CachingSignatureVerifier verifier = verifierFor(jwk.getPublicKey());
+
+        verifier.verify(parser.process(sign(ECDSA_USING_P256_CURVE_AND_SHA256, jwk.getPrivateKey())));
+        verifier.verify(parser.process(sign(ECDSA_USING_P256_CURVE_AND_SHA256, jwk.getPrivateKey())));
+    }
+
+    @Test
+    public void reusesInstancesForKeysResolvedAnewForEveryToken() throws Exception {
+        final AtomicReference<byte[]> secret = new AtomicReference<>(HMAC_KEY.getEncoded());
+        final CachingSignatureVerifier verifier = new CachingSignatureVerifier(
+            (jws, nesting) -> new HmacKey(secret.get()));
+        final String token = sign(HMAC_SHA256, HMAC_KEY);
+
+        for (int i = 0; i < 40; i++) {
+            verifier.verify(parser.process(token));
+        }
+        assertThat(verifier.cachedKeys()).isEqualTo(1);
+
+        secret.set("another secret of at least 256 bits".getBytes(UTF_8));
+        assertRejected(verifier, parser.process(token), ErrorCodes.SIGNATURE_INVALID);
+        assertThat(verifier.cachedKeys()).isEqualTo(2);
+    }
+
+    @Test
+    public void rejectsTamperedTokens() throws Exception {
+        final String token = sign(HMAC_SHA256, HMAC_KEY);
+        final String[] parts = token.split("\\.");
+        final String tampered = parts[0] + "." + sign(HMAC_SHA256, HMAC_KEY, "bad-guy").split("\\.")[1] + "." + parts[2];
+
+        assertRejected(verifierFor(HMAC_KEY), parser.process(tampered), ErrorCodes.SIGNATURE_INVALID);
+    }
+
+    @Test
+    public void rejectsKeysOfTheWrongType() throws Exception {
+        final PublicJsonWebKey jwk = RsaJwkGenerator.generateJwk(2048);
+
+        assertRejected(verifierFor(jwk.getPublicKey()), parser.process(sign(HMAC_SHA256, HMAC_KEY)),
+            ErrorCodes.SIGNATURE_INVALID);
+    }
+
+    @Test
+    public void rejectsRsaKeysShorterThan2048Bits() throws Exception {
+        final PublicJsonWebKey jwk = RsaJwkGenerator.generateJwk(1024);
+        final JsonWebSignature jws = new JsonWebSignature();
+        jws.setPayload(new JwtClaims().toJson());
+        jws.setAlgorithmHeaderValue(RSA_USING_SHA256);
+        jws.setKey(jwk.getPrivateKey());
+        jws.setDoKeyValidation(false);
+
+        assertRejected(verifierFor(jwk.getPublicKey()), parser.process(jws.getCompactSerialization()),
+            ErrorCodes.SIGNATURE_INVALID);
+    }
+
+    @Test
+    public void rejectsAlgorithmsWhichAreNotPermitted() throws Exception {
+        final CachingSignatureVerifier verifier = new CachingSignatureVerifier((jws, nesting) -> HMAC_KEY,
+            RSA_USING_SHA256);
+
+        assertRejected(verifier, parser.process(sign(HMAC_SHA256, HMAC_KEY)), ErrorCodes.MISCELLANEOUS);
+    }
+
+    private static CachingSignatureVerifier verifierFor(Key key) {
+        return new CachingSignatureVerifier((jws, nesting) -> key);
+    }
+
+    private static void assertRejected(CachingSignatureVerifier verifier, JwtContext context, int errorCode) {
+        try {
+            verifier.verify(context);
+            failBecauseExceptionWasNotThrown(InvalidJwtException.class);
+        } catch (InvalidJwtException e) {
+            assertThat(e.hasErrorCode(errorCode)).isTrue();
+        }
+    }
+
+    private static String sign(String algorithm, Key key) throws Exception {
+        return sign(algorithm, key, "good-guy");
+    }
+
+    private static String sign(String algorithm, Key key, String subject) throws Exception {
+        final JwtClaims claims = new JwtClaims();
+        claims.setSubject(subject);
+
+        final JsonWebSignature jws = new JsonWebSignature();
+        jws.setPayload(claims.toJson());
+        jws.setAlgorithmHeaderValue(algorithm);
+        jws.setKey(key);
+        return jws.getCompactSerialization();
+    }
+}
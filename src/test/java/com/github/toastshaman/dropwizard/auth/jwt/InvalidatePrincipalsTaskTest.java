@@ -0,0 +1,78 @@
+package com.github.toastshaman.dropwizard.auth.jwt;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.collect.ImmutableMultimap;
+import io.dropwizard.auth.Authenticator;
+import io.dropwizard.auth.PrincipalImpl;
+import org.jose4j.jwt.JwtClaims;
+import org.jose4j.jwt.consumer.JwtContext;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.security.Principal;
+import java.util.Collections;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+
+public class InvalidatePrincipalsTaskTest {
+
+    @SuppressWarnings("unchecked")
+    private final Authenticator<JwtContext, Principal> underlying = mock(Authenticator.class);
+
+    private final CachingJwtAuthenticator<Principal> cached = new CachingJwtAuthenticator.Builder<Principal>()
+        .setMetricRegistry(new MetricRegistry())
+        .setAuthenticator(underlying)
+        .setCache(new CaffeinePrincipalCache.Builder<Principal>().setExecutor(Runnable::run).build())
+        .indexBySubject()
+        .build();
+
+    private final StringWriter output = new StringWriter();
+
+    @Before
+    public void setUp() throws Exception {
+        when(underlying.authenticate(any(JwtContext.class))).thenReturn(Optional.of(new PrincipalImpl("principal")));
+        cached.authenticate(context("token-1", "good-guy"));
+        cached.authenticate(context("token-2", "good-guy"));
+        cached.authenticate(context("token-3", "bad-guy"));
+    }
+
+    @Test
+    public void invalidatesThePrincipalsOfASubject() throws Exception {
+        new InvalidatePrincipalsTask(cached).execute(ImmutableMultimap.of("sub", "good-guy"), writer());
+
+        assertThat(cached.size()).isEqualTo(1);
+        assertThat(output.toString()).contains("Invalidated 2 principals of sub=good-guy");
+    }
+
+    @Test
+    public void reportsUnknownIndexes() throws Exception {
+        new InvalidatePrincipalsTask(cached).execute(ImmutableMultimap.of("tenant", "acme"), writer());
+
+        assertThat(cached.size()).isEqualTo(3);
+        assertThat(output.toString()).contains("No index named tenant");
+    }
+
+    @Test
+    public void flushesAllCaches() throws Exception {
+        new FlushJwtCachesTask(cached, null, null).execute(ImmutableMultimap.of(), writer());
+
+        assertThat(cached.size()).isZero();
+        assertThat(output.toString()).contains("Flushed 3 cached principals");
+    }
+
+    private PrintWriter writer() {
+        return new PrintWriter(output, true);
+    }
+
+    private static JwtContext context(String token, String subject) {
+        final JwtClaims claims = new JwtClaims();
+        claims.setSubject(subject);
+        claims.setExpirationTimeMinutesInTheFuture(5);
+        return new JwtContext(token, claims, Collections.emptyList());
+    }
+}
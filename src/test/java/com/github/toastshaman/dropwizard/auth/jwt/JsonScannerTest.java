@@ -0,0 +1,77 @@
+package com.github.toastshaman.dropwizard.auth.jwt;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+import static org.assertj.core.api.Assertions.failBecauseExceptionWasNotThrown;
+
+public class JsonScannerTest {
+
+    @Test
+    public void extractsTheRequestedTopLevelMembers() {
+        final Map<String, Object> members = JsonScanner.members(
+            "{ \"sub\" : \"good\\\"guy\\u0021\", \"nested\": {\"exp\": 1}, \"exp\": 1500000000, \"ratio\": 0.5,"
+                + " \"aud\": [\"a\", \"b\"], \"admin\": true, \"other\": null, \"obj\": {\"k\": [1, {}]} }",
+            ImmutableSet.of("sub", "exp", "ratio", "aud", "admin", "obj"));
+
+        assertThat(members).containsOnly(
+            entry("sub", "good\"guy!"),
+            entry("exp", 1500000000L),
+            entry("ratio", 0.5),
+            entry("aud", Arrays.asList("a", "b")),
+            entry("admin", true),
+            entry("obj", ImmutableMap.of("k", Arrays.asList(1L, ImmutableMap.of()))));
+    }
+
+    @Test
+    public void readsNumbersLikeJose4j() {
+        final Map<String, Object> members = JsonScanner.members(
+            "{\"a\": 01, \"b\": -0, \"c\": 1.5e-3, \"d\": 1E+5, \"e\": 9223372036854775808, \"f\": [1e5, -1.0]}",
+            ImmutableSet.of("a", "b", "c", "d", "e"));
+
+        assertThat(members).containsOnly(
+            entry("a", 1L),
+            entry("b", 0L),
+            entry("c", 0.0015),
+            entry("d", 100000.0),
+            entry("e", new BigInteger("9223372036854775808")));
+    }
+
+    @Test
+    public void rejectsDuplicateMemberNames() {
+        for (String json : new String[] {"{\"a\":1,\"a\":2}", "{\"b\":1,\"b\":2}", "{\"a\":1,\"\\u0061\":2}",
+            "{\"b\":{\"c\":1,\"d\":{},\"c\":2}}", "{\"b\":[{\"\\n\":1,\"\\u000a\":2}]}"}) {
+            try {
+                JsonScanner.members(json, ImmutableSet.of("a"));
+                failBecauseExceptionWasNotThrown(IllegalArgumentException.class);
+            } catch (IllegalArgumentException e) {
+                assertThat(e.getMessage()).as(json).startsWith("Duplicate member");
+            }
+        }
+
+        final String nested = "{\"b\":{\"a\":1},\"a\":{\"a\":2,\"b\":{}},\"ab\":3}";
+        assertThat(JsonScanner.members(nested, ImmutableSet.of("a"))).containsOnly(entry("a", ImmutableMap.of("a", 2L, "b", ImmutableMap.of())));
+    }
+
+    @Test
+    public void rejectsMalformedDocuments() {
+        for (String json : new String[] {"", "[]", "{", "{\"a\"}", "{\"a\":}", "{\"a\":1,}", "{\"a\":tru}", "{} {}",
+            "{\"a\":\"\\x\"}", "{\"b\":\"\\x\"}", "{\"a\":1.2.3}", "{\"a\":--}", "{\"b\":1.}", "{\"a\":.5}",
+            "{\"a\":+1}", "{\"a\":1e}", "{\"b\":1-2}", "{\"a\":0x1}", Strings.repeat("{\"a\":", 40) + "1" + Strings.repeat("}", 40)}) {
+            try {
+                JsonScanner.members(json, ImmutableSet.of("a"));
+                failBecauseExceptionWasNotThrown(IllegalArgumentException.class);
+            } catch (IllegalArgumentException e) {
+                assertThat(e.getMessage()).as(json).isNotEmpty();
+            }
+        }
+    }
+}
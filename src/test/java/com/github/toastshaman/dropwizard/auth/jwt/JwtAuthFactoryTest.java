@@ -0,0 +1,252 @@
+package com.github.toastshaman.dropwizard.auth.jwt;
+
+import com.codahale.metrics.MetricRegistry;
+import io.dropwizard.Configuration;
+import io.dropwizard.auth.AuthDynamicFeature;
+import io.dropwizard.auth.Authenticator;
+import io.dropwizard.auth.PrincipalImpl;
+import io.dropwizard.configuration.ConfigurationValidationException;
+import io.dropwizard.configuration.ResourceConfigurationSourceProvider;
+import io.dropwizard.configuration.YamlConfigurationFactory;
+import io.dropwizard.jackson.Jackson;
+import io.dropwizard.jersey.validation.Validators;
+import io.dropwizard.setup.Environment;
+import io.dropwizard.util.Duration;
+import org.eclipse.jetty.util.component.LifeCycle;
+import org.jose4j.jwk.JsonWebKeySet;
+import org.jose4j.jwk.RsaJsonWebKey;
+import org.jose4j.jwk.RsaJwkGenerator;
+import org.jose4j.jws.AlgorithmIdentifiers;
+import org.jose4j.jws.JsonWebSignature;
+import org.jose4j.jwt.JwtClaims;
+import org.jose4j.jwt.consumer.JwtContext;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.Principal;
+import java.util.Optional;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.failBecauseExceptionWasNotThrown;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+
+public class JwtAuthFactoryTest {
+
+    private static final String SECRET = "Po70rBeXjKDhckY9yWmhNVte/UajN8xbA==lkDvaBTeWRja0SFMzcz113d/bi3Tn";
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final YamlConfigurationFactory<JwtAuthFactory> configurationFactory = new YamlConfigurationFactory<>(
+        JwtAuthFactory.class, Validators.newValidator(), Jackson.newObjectMapper(), "dw");
+
+    private final MetricRegistry metricRegistry = new MetricRegistry();
+
+    private final Environment environment = new Environment("test", Jackson.newObjectMapper(),
+        Validators.newValidator(), metricRegistry, getClass().getClassLoader());
+
+    @SuppressWarnings("unchecked")
+    private final Authenticator<JwtContext, Principal> authenticator = mock(Authenticator.class);
+
+    @Test
+    public void readsTheSettingsFromYaml() throws Exception {
+        final JwtAuthFactory factory = load();
+
+        assertThat(factory.getSecret()).isEqualTo(SECRET);
+        assertThat(factory.getExpectedIssuer()).isEqualTo("issuer");
+        assertThat(factory.getAllowedClockSkew()).isEqualTo(Duration.seconds(10));
+        assertThat(factory.getVerifiedTokenCache().toParsableString()).isEqualTo("maximumSize=100");
+        assertThat(factory.getRejectedTokenCache().toParsableString()).isEmpty();
+        assertThat(factory.getPrincipalCache().getBackend()).isEqualTo(JwtAuthFactory.PrincipalCacheFactory.Backend.GUAVA);
+        assertThat(factory.getPrincipalCache().getMaximumSize()).isEqualTo(50);
+        assertThat(factory.getPrincipalCache().getExpireAfterAccess()).isEqualTo(Duration.minutes(10));
+        assertThat(factory.getKeyRefreshInterval()).isEqualTo(Duration.minutes(15));
+        assertThat(factory.isPreValidation()).isTrue();
+    }
+
+    @Test
+    public void requiresExactlyOneKeySource() throws Exception {
+        final JwtAuthFactory factory = new JwtAuthFactory();
+        assertThat(Validators.newValidator().validate(factory)).isNotEmpty();
+
+        factory.setSecret(SECRET);
+        assertThat(Validators.newValidator().validate(factory)).isEmpty();
+
+        factory.setJwksUrl("https://example.com/jwks.json");
+        assertThat(Validators.newValidator().validate(factory)).isNotEmpty();
+    }
+
+    @Test
+    public void rejectsSecretsShorterThan256Bits() throws Exception {
+        final JwtAuthFactory factory = new JwtAuthFactory();
+        factory.setSecret(SECRET.substring(0, 31));
+        assertThat(Validators.newValidator().validate(factory)).isNotEmpty();
+
+        factory.setSecret(SECRET.substring(0, 32));
+        assertThat(Validators.newValidator().validate(factory)).isEmpty();
+    }
+
+    @Test
+    public void rejectsConflictingExpirations() throws Exception {
+        final JwtAuthFactory factory = new JwtAuthFactory();
+        factory.setSecret(SECRET);
+        factory.getPrincipalCache().setExpireAfterAccess(Duration.minutes(1));
+        factory.getPrincipalCache().setExpireAfterWrite(Duration.minutes(1));
+
+        assertThat(Validators.newValidator().validate(factory)).isNotEmpty();
+    }
+
+    @Test
+    public void buildsAFilterCachingPrincipals() throws Exception {
+        when(authenticator.authenticate(any(JwtContext.class))).thenReturn(Optional.of(new PrincipalImpl("good-guy")));
+        final JwtAuthFactory.JwtAuth<Principal> auth = load().build(environment, authenticator, null);
+        final String token = token("issuer");
+
+        auth.getFilter().filter(AuthUtil.request(token));
+        auth.getFilter().filter(AuthUtil.request(token));
+
+        verify(authenticator, times(1)).authenticate(any(JwtContext.class));
+        assertThat(auth.getCachingAuthenticator().size()).isEqualTo(1);
+        assertThat(metricRegistry.getNames())
+            .contains(name("auth", VerifiedTokenCache.class.getName(), "hits"))
+            .doesNotContain(name("auth", RejectedTokenCache.class.getName(), "hits"));
+        assertThat(metricRegistry.meter(name("auth", VerifiedTokenCache.class.getName(), "hits")).getCount())
+            .isEqualTo(1);
+    }
+
+    @Test
+    public void refreshesPrincipalsOnAPoolManagedByTheEnvironment() throws Exception {
+        when(authenticator.authenticate(any(JwtContext.class))).thenReturn(Optional.of(new PrincipalImpl("good-guy")));
+        final JwtAuthFactory factory = load();
+        factory.getPrincipalCache().setRefreshAfterWrite(Duration.minutes(5));
+        final int managed = environment.lifecycle().getManagedObjects().size();
+
+        final JwtAuthFactory.JwtAuth<Principal> auth = factory.build(environment, authenticator, null);
+        auth.getFilter().filter(AuthUtil.request(token("issuer")));
+
+        assertThat(auth.getCachingAuthenticator().size()).isEqualTo(1);
+        assertThat(environment.lifecycle().getManagedObjects()).hasSize(managed + 1);
+    }
+
+    @Test
+    public void registersCacheGaugesAndAHealthCheck() throws Exception {
+        when(authenticator.authenticate(any(JwtContext.class))).thenReturn(Optional.of(new PrincipalImpl("good-guy")));
+        final JwtAuthFactory.JwtAuth<Principal> auth = load().build(environment, authenticator, null);
+        final String token = token("issuer");
+
+        auth.getFilter().filter(AuthUtil.request(token));
+        auth.getFilter().filter(AuthUtil.request(token));
+
+        final String verifiedTokens = name("auth", VerifiedTokenCache.class.getName(), "cache");
+        final String principals = name("auth", CachingJwtAuthenticator.class.getName(), "cache");
+        assertThat(metricRegistry.getGauges().get(name(verifiedTokens, "hit-rate")).getValue()).isEqualTo(0.5);
+        assertThat(metricRegistry.getGauges().get(name(principals, "size")).getValue()).isEqualTo(1L);
+        assertThat(metricRegistry.getNames())
+            .doesNotContain(name("auth", RejectedTokenCache.class.getName(), "cache", "size"));
+        assertThat(environment.healthChecks().runHealthCheck("auth-jwt-auth").isHealthy()).isTrue();
+    }
+
+    @Test
+    public void rejectsTokensOfAnotherIssuer() throws Exception {
+        final JwtAuthFactory.JwtAuth<Principal> auth = load().build(environment, authenticator, null);
+
+        try {
+            auth.getFilter().filter(AuthUtil.request(token("another issuer")));
+            failBecauseExceptionWasNotThrown(javax.ws.rs.WebApplicationException.class);
+        } catch (javax.ws.rs.WebApplicationException e) {
+            assertThat(e.getResponse().getStatus()).isEqualTo(401);
+        }
+        verify(authenticator, never()).authenticate(any(JwtContext.class));
+    }
+
+    @Test
+    public void rejectsTokensSignedWithRsaKeysShorterThan2048Bits() throws Exception {
+        final RsaJsonWebKey jwk = RsaJwkGenerator.generateJwk(1024);
+        jwk.setKeyId("weak");
+        final Path jwksFile = folder.newFile("jwks.json").toPath();
+        Files.write(jwksFile, new JsonWebKeySet(jwk).toJson().getBytes(UTF_8));
+
+        final JwtClaims claims = new JwtClaims();
+        claims.setSubject("good-guy");
+        claims.setExpirationTimeMinutesInTheFuture(5);
+        final JsonWebSignature jws = new JsonWebSignature();
+        jws.setPayload(claims.toJson());
+        jws.setAlgorithmHeaderValue(AlgorithmIdentifiers.RSA_USING_SHA256);
+        jws.setKeyIdHeaderValue("weak");
+        jws.setKey(jwk.getPrivateKey());
+        jws.setDoKeyValidation(false);
+        final String token = jws.getCompactSerialization();
+
+        for (boolean cachingSignatureVerifier : new boolean[]{true, false}) {
+            final Environment environment = new Environment("test", Jackson.newObjectMapper(),
+                Validators.newValidator(), new MetricRegistry(), getClass().getClassLoader());
+            final JwtAuthFactory factory = new JwtAuthFactory();
+            factory.setJwksFile(jwksFile.toString());
+            factory.setCachingSignatureVerifier(cachingSignatureVerifier);
+            final JwtAuthFactory.JwtAuth<Principal> auth = factory.build(environment, authenticator, null);
+            for (LifeCycle managed : environment.lifecycle().getManagedObjects()) {
+                managed.start();
+            }
+
+            try {
+                auth.getFilter().filter(AuthUtil.request(token));
+                failBecauseExceptionWasNotThrown(javax.ws.rs.WebApplicationException.class);
+            } catch (javax.ws.rs.WebApplicationException e) {
+                assertThat(e.getResponse().getStatus()).isEqualTo(401);
+            } finally {
+                for (LifeCycle managed : environment.lifecycle().getManagedObjects()) {
+                    managed.stop();
+                }
+            }
+        }
+        verify(authenticator, never()).authenticate(any(JwtContext.class));
+    }
+
+    @Test
+    public void registersTheFilterWithJersey() throws Exception {
+        final JwtAuthFactory factory = load();
+        final JwtAuthBundle<Configuration, Principal> bundle = new JwtAuthBundle<Configuration, Principal>(
+            Principal.class) {
+            @Override
+            public JwtAuthFactory getJwtAuthFactory(Configuration configuration) {
+                return factory;
+            }
+
+            @Override
+            public Authenticator<JwtContext, Principal> getAuthenticator(Configuration configuration,
+                                                                        Environment environment) {
+                return authenticator;
+            }
+        };
+
+        bundle.run(new Configuration(), environment);
+
+        assertThat(bundle.getFilter()).isNotNull();
+        assertThat(bundle.getCachingAuthenticator()).isNotNull();
+        assertThat(environment.jersey().getResourceConfig().getSingletons())
+            .hasAtLeastOneElementOfType(AuthDynamicFeature.class);
+    }
+
+    private JwtAuthFactory load() throws Exception {
+        try {
+            return configurationFactory.build(new ResourceConfigurationSourceProvider(), "jwt-auth.yml");
+        } catch (ConfigurationValidationException e) {
+            throw new AssertionError(e.getMessage(), e);
+        }
+    }
+
+    private static String token(String issuer) throws Exception {
+        final JwtClaims claims = new JwtClaims();
+        claims.setSubject("good-guy");
+        claims.setIssuer(issuer);
+        claims.setExpirationTimeMinutesInTheFuture(5);
+
+        return AuthUtil.sign(claims, AlgorithmIdentifiers.HMAC_SHA256, SECRET.getBytes(UTF_8));
+    }
+}
@@ -0,0 +1,373 @@
+package com.github.toastshaman.dropwizard.auth.jwt;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheBuilderSpec;
+import io.dropwizard.auth.Authenticator;
+import io.dropwizard.auth.PrincipalImpl;
+import org.jose4j.jws.AlgorithmIdentifiers;
+import org.jose4j.jwt.JwtClaims;
+import org.jose4j.jwt.consumer.JwtConsumer;
+import org.jose4j.jwt.consumer.JwtConsumerBuilder;
+import org.jose4j.jwt.consumer.JwtContext;
+import org.jose4j.keys.HmacKey;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.core.SecurityContext;
+import java.security.Principal;
+import java.util.Optional;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static com.google.common.base.Charsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.failBecauseExceptionWasNotThrown;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+
+public class JwtAuthFilterTest {
+
+    private static final String SECRET = "Po70rBeXjKDhckY9yWmhNVte/UajN8xbA==lkDvaBTeWRja0SFMzcz113d/bi3Tn";
+
+    private final MetricRegistry metricRegistry = new MetricRegistry();
+
+    private final RejectedTokenCache rejectedTokens = new RejectedTokenCache(metricRegistry,
+        CacheBuilderSpec.parse("maximumSize=10, expireAfterWrite=10s"));
+
+    @SuppressWarnings("unchecked")
+    private final Authenticator<JwtContext, Principal> authenticator = mock(Authenticator.class);
+
+    private final JwtConsumer consumer = new JwtConsumerBuilder()
+        .setRequireSubject()
+        .setVerificationKey(new HmacKey(SECRET.getBytes(UTF_8)))
+        .setRelaxVerificationKeyValidation()
+        .build();
+
+    private final JwtAuthFilter<Principal> filter = new JwtAuthFilter.Builder<Principal>()
+        .setJwtConsumer(consumer)
+        .setRejectedTokenCache(rejectedTokens)
+        .setMetricRegistry(metricRegistry)
+        .setPrefix("Bearer")
+        .setAuthenticator(authenticator)
+        .buildAuthFilter();
+
+    @Test
+    public void rejectsInvalidTokensFromTheCache() throws Exception {
+        final String token = token(SECRET.replace('P', 'Q'));
+
+        assertUnauthorized(token);
+        assertUnauthorized(token);
+
+        assertThat(rejectedTokens.size()).isEqualTo(1);
+        assertThat(metricRegistry.meter(name(RejectedTokenCache.class, "invalid-tokens")).getCount()).isEqualTo(1);
+        assertThat(metricRegistry.meter(name(RejectedTokenCache.class, "hits")).getCount()).isEqualTo(1);
+        verify(authenticator, never()).authenticate(any(JwtContext.class));
+    }
+
+    @Test
+    public void rejectsTokensOfUnknownPrincipalsFromTheCache() throws Exception {
+        when(authenticator.authenticate(any(JwtContext.class))).thenReturn(Optional.empty());
+        final String token = token(SECRET);
+
+        assertUnauthorized(token);
+        assertUnauthorized(token);
+
+        verify(authenticator, times(1)).authenticate(any(JwtContext.class));
+        assertThat(rejectedTokens.getIfPresent(token)).isEqualTo(RejectedTokenCache.Rejection.UNKNOWN_PRINCIPAL);
+    }
+
+    @Test
+    public void onlyLooksUpTokensMissingFromTheVerifiedTokenCacheInTheRejectedTokenCache() throws Exception {
+        when(authenticator.authenticate(any(JwtContext.class)))
+            .thenReturn(Optional.of(new PrincipalImpl("good-guy")), Optional.of(new PrincipalImpl("good-guy")),
+                Optional.empty());
+        final JwtAuthFilter<Principal> caching = new JwtAuthFilter.Builder<Principal>()
+            .setJwtConsumer(consumer)
+            .setVerifiedTokenCache(new VerifiedTokenCache(metricRegistry, CacheBuilderSpec.parse("maximumSize=10"), 0))
+            .setRejectedTokenCache(rejectedTokens)
+            .setPrefix("Bearer")
+            .setAuthenticator(authenticator)
+            .buildAuthFilter();
+        final String token = token(SECRET);
+
+        authorize(caching, token);
+        authorize(caching, token);
+        assertThat(metricRegistry.meter(name(RejectedTokenCache.class, "misses")).getCount()).isEqualTo(1);
+
+        // the principal is gone, the token must now be turned away by the rejected token cache
+        assertUnauthorized(caching, token);
+        assertUnauthorized(caching, token);
+        assertUnauthorized(caching, token);
+        verify(authenticator, times(3)).authenticate(any(JwtContext.class));
+        assertThat(metricRegistry.meter(name(RejectedTokenCache.class, "hits")).getCount()).isEqualTo(2);
+    }
+
+    @Test
+    public void timesEachStageOfTheFilter() throws Exception {
+        when(authenticator.authenticate(any(JwtContext.class))).thenReturn(Optional.of(new PrincipalImpl("good-guy")));
+
+        final ContainerRequestContext request = AuthUtil.request(token(SECRET));
+        filter.filter(request);
+
+        final ArgumentCaptor<SecurityContext> securityContext = ArgumentCaptor.forClass(SecurityContext.class);
+        verify(request).setSecurityContext(securityContext.capture());
+        assertThat(securityContext.getValue().isUserInRole("ADMIN")).isTrue();
+
+        for (String stage : new String[] {"extract.header", "parse", "verify.HS512", "authenticate", "authorize"}) {
+            assertThat(metricRegistry.timer(name(JwtAuthFilter.class, stage)).getCount()).as(stage).isEqualTo(1);
+        }
+        assertThat(metricRegistry.timer(name(JwtAuthFilter.class, "extract", "cookie")).getCount()).isZero();
+    }
+
+    @Test
+    public void countsRejectionsByReason() throws Exception {
+        assertUnauthorized(token(SECRET.replace('P', 'Q')));
+        assertUnauthorized(null);
+
+        assertThat(metricRegistry.counter(name(JwtAuthFilter.class, "rejected", "signature-invalid")).getCount()).isEqualTo(1);
+        assertThat(metricRegistry.counter(name(JwtAuthFilter.class, "rejected", "missing-token")).getCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void verifiesSignaturesWithTheSignatureVerifier() throws Exception {
+        when(authenticator.authenticate(any(JwtContext.class))).thenReturn(Optional.of(new PrincipalImpl("good-guy")));
+        final JwtAuthFilter<Principal> verifying = new JwtAuthFilter.Builder<Principal>()
+            .setJwtConsumer(new JwtConsumerBuilder().setRequireSubject().setSkipSignatureVerification().build())
+            .setSignatureVerifier(new CachingSignatureVerifier((jws, nesting) -> new HmacKey(SECRET.getBytes(UTF_8))))
+            .setPrefix("Bearer")
+            .setAuthenticator(authenticator)
+            .buildAuthFilter();
+
+        final ContainerRequestContext request = AuthUtil.request(token(SECRET));
+        verifying.filter(request);
+        verify(request).setSecurityContext(any(SecurityContext.class));
+
+        try {
+            verifying.filter(AuthUtil.request(token(SECRET.replace('P', 'Q'))));
+            failBecauseExceptionWasNotThrown(WebApplicationException.class);
+        } catch (WebApplicationException e) {
+            assertThat(e.getResponse().getStatus()).isEqualTo(401);
+        }
+    }
+
+    @Test
+    public void authorizesByTheRolesClaim() throws Exception {
+        final Principal principal = new PrincipalImpl("good-guy");
+        when(authenticator.authenticate(any(JwtContext.class))).thenReturn(Optional.of(principal));
+        final ClaimsAuthorization claimsAuthorization = new ClaimsAuthorization(new RoleTable(16), "roles",
+            CacheBuilder.newBuilder().maximumSize(10));
+        final JwtAuthFilter<Principal> authorizing = new JwtAuthFilter.Builder<Principal>()
+            .setJwtConsumer(consumer)
+            .setClaimsAuthorization(claimsAuthorization)
+            .setPrefix("Bearer")
+            .setAuthenticator(authenticator)
+            .buildAuthFilter();
+        final String token = token(SECRET, "USER", "AUDITOR");
+
+        final SecurityContext first = authorize(authorizing, token);
+        final SecurityContext second = authorize(authorizing, token);
+
+        assertThat(first.getUserPrincipal()).isSameAs(principal);
+        assertThat(first.isUserInRole("USER")).isTrue();
+        assertThat(first.isUserInRole("AUDITOR")).isTrue();
+        assertThat(first.isUserInRole("ADMIN")).isFalse();
+        assertThat(second).isSameAs(first);
+        assertThat(claimsAuthorization.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void doesNotReuseTheSecurityContextOfAnotherPrincipal() throws Exception {
+        when(authenticator.authenticate(any(JwtContext.class)))
+            .thenReturn(Optional.of(new PrincipalImpl("good-guy")), Optional.of(new PrincipalImpl("good-guy")));
+        final JwtAuthFilter<Principal> authorizing = new JwtAuthFilter.Builder<Principal>()
+            .setJwtConsumer(consumer)
+            .setClaimsAuthorization(new ClaimsAuthorization("roles", CacheBuilderSpec.parse("maximumSize=10")))
+            .setPrefix("Bearer")
+            .setAuthenticator(authenticator)
+            .buildAuthFilter();
+        final String token = token(SECRET, "USER");
+
+        final SecurityContext first = authorize(authorizing, token);
+        final SecurityContext second = authorize(authorizing, token);
+
+        assertThat(second).isNotSameAs(first);
+        assertThat(second.isUserInRole("USER")).isTrue();
+    }
+
+    @Test
+    public void verifiesTokensWithLazilyDecodedClaims() throws Exception {
+        when(authenticator.authenticate(any(JwtContext.class))).thenReturn(Optional.of(new PrincipalImpl("good-guy")));
+        final JwtAuthFilter<Principal> lazy = new JwtAuthFilter.Builder<Principal>()
+            .setJwtConsumer(consumer)
+            .setLazyClaims(true)
+            .setPrefix("Bearer")
+            .setAuthenticator(authenticator)
+            .buildAuthFilter();
+
+        assertThat(authorize(lazy, token(SECRET, "USER")).getUserPrincipal().getName()).isEqualTo("good-guy");
+
+        final ArgumentCaptor<JwtContext> context = ArgumentCaptor.forClass(JwtContext.class);
+        verify(authenticator).authenticate(context.capture());
+        assertThat(context.getValue().getJwtClaims()).isInstanceOf(LazyJwtClaims.class);
+        assertThat(context.getValue().getJwtClaims().getSubject()).isEqualTo("good-guy");
+
+        try {
+            lazy.filter(AuthUtil.request(token(SECRET.replace('P', 'Q'))));
+            failBecauseExceptionWasNotThrown(WebApplicationException.class);
+        } catch (WebApplicationException e) {
+            assertThat(e.getResponse().getStatus()).isEqualTo(401);
+        }
+    }
+
+    @Test
+    public void dispatchesTokensToTheConsumerAndAuthenticatorOfTheirIssuer() throws Exception {
+        final String otherSecret = SECRET.replace('P', 'Q');
+        @SuppressWarnings("unchecked")
+        final Authenticator<JwtContext, Principal> otherAuthenticator = mock(Authenticator.class);
+        when(authenticator.authenticate(any(JwtContext.class))).thenReturn(Optional.of(new PrincipalImpl("good-guy")));
+        when(otherAuthenticator.authenticate(any(JwtContext.class))).thenReturn(Optional.of(new PrincipalImpl("other")));
+        final JwtAuthFilter<Principal> multiIssuer = new JwtAuthFilter.Builder<Principal>()
+            .addIssuer("issuer", issuerConsumer(SECRET, "issuer"))
+            .addIssuer("other", issuerConsumer(otherSecret, "other"), otherAuthenticator)
+            .setPrefix("Bearer")
+            .setAuthenticator(authenticator)
+            .buildAuthFilter();
+
+        assertThat(authorize(multiIssuer, issuedToken(SECRET, "issuer", null)).getUserPrincipal().getName())
+            .isEqualTo("good-guy");
+        assertThat(authorize(multiIssuer, issuedToken(otherSecret, "other", null)).getUserPrincipal().getName())
+            .isEqualTo("other");
+
+        // the token claims to be issued by "other" but is signed with the key of "issuer"
+        for (String token : new String[] {issuedToken(SECRET, "other", null), issuedToken(SECRET, "unknown", null)}) {
+            try {
+                multiIssuer.filter(AuthUtil.request(token));
+                failBecauseExceptionWasNotThrown(WebApplicationException.class);
+            } catch (WebApplicationException e) {
+                assertThat(e.getResponse().getStatus()).isEqualTo(401);
+            }
+        }
+        verify(authenticator, times(1)).authenticate(any(JwtContext.class));
+        verify(otherAuthenticator, times(1)).authenticate(any(JwtContext.class));
+    }
+
+    @Test
+    public void prefersRoutesByKeyIdAndFallsBackToTheDefaultConsumer() throws Exception {
+        final String otherSecret = SECRET.replace('P', 'Q');
+        when(authenticator.authenticate(any(JwtContext.class))).thenReturn(Optional.of(new PrincipalImpl("good-guy")));
+        final JwtAuthFilter<Principal> multiIssuer = new JwtAuthFilter.Builder<Principal>()
+            .setJwtConsumer(consumer)
+            .addIssuer("issuer", issuerConsumer(SECRET, "issuer"))
+            .addKeyId("rotated", issuerConsumer(otherSecret, "issuer"))
+            .setPrefix("Bearer")
+            .setAuthenticator(authenticator)
+            .buildAuthFilter();
+
+        assertThat(authorize(multiIssuer, issuedToken(otherSecret, "issuer", "rotated")).getUserPrincipal())
+            .isNotNull();
+        assertThat(authorize(multiIssuer, issuedToken(SECRET, "unknown", null)).getUserPrincipal()).isNotNull();
+    }
+
+    @Test
+    public void verifiesTheSignaturesOfEachIssuerWithItsOwnKeys() throws Exception {
+        final String otherSecret = SECRET.replace('P', 'Q');
+        when(authenticator.authenticate(any(JwtContext.class))).thenReturn(Optional.of(new PrincipalImpl("good-guy")));
+        final JwtAuthFilter<Principal> multiIssuer = new JwtAuthFilter.Builder<Principal>()
+            .addIssuer("issuer", claimsConsumer("issuer"), null, signatureVerifier(SECRET))
+            .addIssuer("other", claimsConsumer("other"), null, signatureVerifier(otherSecret))
+            .setPrefix("Bearer")
+            .setAuthenticator(authenticator)
+            .buildAuthFilter();
+
+        assertThat(authorize(multiIssuer, issuedToken(otherSecret, "other", null)).getUserPrincipal()).isNotNull();
+
+        // the token claims to be issued by "other" but is signed with the key of "issuer"
+        try {
+            multiIssuer.filter(AuthUtil.request(issuedToken(SECRET, "other", null)));
+            failBecauseExceptionWasNotThrown(WebApplicationException.class);
+        } catch (WebApplicationException e) {
+            assertThat(e.getResponse().getStatus()).isEqualTo(401);
+        }
+        verify(authenticator, times(1)).authenticate(any(JwtContext.class));
+    }
+
+    @Test
+    public void doesNotShareASignatureVerifierBetweenRoutes() throws Exception {
+        final JwtAuthFilter.Builder<Principal> builder = new JwtAuthFilter.Builder<Principal>()
+            .addIssuer("issuer", claimsConsumer("issuer"))
+            .setSignatureVerifier(signatureVerifier(SECRET));
+
+        try {
+            builder.setPrefix("Bearer").setAuthenticator(authenticator).buildAuthFilter();
+            failBecauseExceptionWasNotThrown(IllegalStateException.class);
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage()).contains("CachingSignatureVerifier");
+        }
+    }
+
+    private static JwtConsumer claimsConsumer(String issuer) {
+        return new JwtConsumerBuilder()
+            .setExpectedIssuer(issuer)
+            .setSkipSignatureVerification()
+            .build();
+    }
+
+    private static CachingSignatureVerifier signatureVerifier(String secret) {
+        final HmacKey key = new HmacKey(secret.getBytes(UTF_8));
+        return new CachingSignatureVerifier((jws, nestingContext) -> key);
+    }
+
+    private static JwtConsumer issuerConsumer(String secret, String issuer) {
+        return new JwtConsumerBuilder()
+            .setExpectedIssuer(issuer)
+            .setVerificationKey(new HmacKey(secret.getBytes(UTF_8)))
+            .setRelaxVerificationKeyValidation()
+            .build();
+    }
+
+    private static String issuedToken(String secret, String issuer, String keyId) throws Exception {
+        final JwtClaims claims = new JwtClaims();
+        claims.setSubject("good-guy");
+        claims.setIssuer(issuer);
+
+        return AuthUtil.sign(claims, AlgorithmIdentifiers.HMAC_SHA512, secret.getBytes(UTF_8), keyId);
+    }
+
+    private static SecurityContext authorize(JwtAuthFilter<Principal> filter, String token) throws Exception {
+        final ContainerRequestContext request = AuthUtil.request(token);
+        final SecurityContext original = mock(SecurityContext.class);
+        when(request.getSecurityContext()).thenReturn(original);
+        filter.filter(request);
+
+        final ArgumentCaptor<SecurityContext> securityContext = ArgumentCaptor.forClass(SecurityContext.class);
+        verify(request).setSecurityContext(securityContext.capture());
+        return securityContext.getValue();
+    }
+
+    private void assertUnauthorized(String token) throws Exception {
+        assertUnauthorized(filter, token);
+    }
+
+    private static void assertUnauthorized(JwtAuthFilter<Principal> filter, String token) throws Exception {
+        final ContainerRequestContext request = AuthUtil.request(token);
+
+        try {
+            filter.filter(request);
+            failBecauseExceptionWasNotThrown(WebApplicationException.class);
+        } catch (WebApplicationException e) {
+            assertThat(e.getResponse().getStatus()).isEqualTo(401);
+        }
+    }
+
+    private static String token(String secret, String... roles) throws Exception {
+        final JwtClaims claims = new JwtClaims();
+        claims.setSubject("good-guy");
+        if (roles.length > 0) {
+            claims.setStringListClaim("roles", roles);
+        }
+
+        return AuthUtil.sign(claims, AlgorithmIdentifiers.HMAC_SHA512, secret.getBytes(UTF_8));
+    }
+}
@@ -0,0 +1,127 @@
+package com.github.toastshaman.dropwizard.auth.jwt;
+
+import com.codahale.metrics.MetricRegistry;
+import com.codahale.metrics.health.HealthCheck;
+import com.google.common.base.Ticker;
+import com.google.common.cache.CacheBuilderSpec;
+import io.dropwizard.auth.Authenticator;
+import io.dropwizard.auth.PrincipalImpl;
+import org.jose4j.jwk.JsonWebKeySet;
+import org.jose4j.jwk.RsaJwkGenerator;
+import org.jose4j.jwt.JwtClaims;
+import org.jose4j.jwt.consumer.JwtContext;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.security.Principal;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+
+public class JwtAuthHealthCheckTest {
+
+    @SuppressWarnings("unchecked")
+    private final Authenticator<JwtContext, Principal> underlying = mock(Authenticator.class);
+
+    private final CachingJwtAuthenticator<Principal> cached = new CachingJwtAuthenticator<>(new MetricRegistry(),
+        underlying, CacheBuilderSpec.parse("maximumSize=10"));
+
+    @Before
+    public void setUp() throws Exception {
+        when(underlying.authenticate(any(JwtContext.class))).thenReturn(Optional.of(new PrincipalImpl("principal")));
+    }
+
+    @Test
+    public void isUnhealthyWhenTheHitRateOfTheWindowIsTooLow() throws Exception {
+        final AtomicLong nanos = new AtomicLong();
+        final HealthCheck healthCheck = new JwtAuthHealthCheck.Builder()
+            .setCachingAuthenticator(cached, 0.5)
+            .setMinimumRequests(4)
+            .setHitRateWindow(Duration.ofMinutes(1))
+            .setTicker(new Ticker() {
+                @Override
+                public long read() {
+                    return nanos.get();
+                }
+            })
+            .build();
+
+        authenticate("one", "one", "one", "one");
+        assertThat(healthCheck.execute().isHealthy()).isTrue();
+        nanos.addAndGet(Duration.ofMinutes(1).toNanos());
+        assertThat(healthCheck.execute().getMessage()).contains("over 4 requests");
+
+        authenticate("two", "three", "four", "four");
+        assertThat(healthCheck.execute().getMessage()).contains("hit rate 0.500 over 8 requests");
+        assertThat(healthCheck.execute().getMessage()).contains("hit rate 0.500 over 8 requests");
+
+        nanos.addAndGet(Duration.ofMinutes(1).toNanos());
+        final HealthCheck.Result result = healthCheck.execute();
+        assertThat(result.isHealthy()).isFalse();
+        assertThat(result.getMessage()).contains("hit rate 0.250 over 4 requests");
+    }
+
+    @Test
+    public void doesNotJudgeTheHitRateOfTooFewRequests() throws Exception {
+        final HealthCheck healthCheck = new JwtAuthHealthCheck.Builder()
+            .setCachingAuthenticator(cached, 0.5)
+            .build();
+
+        authenticate("one", "two", "three");
+
+        assertThat(healthCheck.execute().isHealthy()).isTrue();
+    }
+
+    @Test
+    public void isUnhealthyUntilTheKeysHaveBeenLoaded() throws Exception {
+        final JsonWebKeySet keys = new JsonWebKeySet(Collections.singletonList(RsaJwkGenerator.generateJwk(2048)));
+        final RefreshingJwksKeyResolver resolver = new RefreshingJwksKeyResolver(() -> keys, Duration.ofHours(1));
+        final HealthCheck healthCheck = new JwtAuthHealthCheck.Builder()
+            .setKeyResolver(resolver, Duration.ofHours(3))
+            .build();
+
+        assertThat(healthCheck.execute().getMessage()).isEqualTo("keys have never been loaded");
+
+        resolver.refresh();
+        assertThat(healthCheck.execute().isHealthy()).isTrue();
+    }
+
+    @Test
+    public void isUnhealthyWhenTheKeysAreStale() throws Exception {
+        final JsonWebKeySet keys = new JsonWebKeySet(Collections.singletonList(RsaJwkGenerator.generateJwk(2048)));
+        final boolean[] available = {true};
+        final RefreshingJwksKeyResolver resolver = new RefreshingJwksKeyResolver(() -> {
+            if (!available[0]) {
+                throw new IOException("unavailable");
+            }
+            return keys;
+        }, Duration.ofHours(1));
+        final HealthCheck healthCheck = new JwtAuthHealthCheck.Builder()
+            .setKeyResolver(resolver, Duration.ofMillis(1))
+            .build();
+
+        resolver.refresh();
+        available[0] = false;
+        Thread.sleep(10);
+        resolver.refresh();
+
+        final HealthCheck.Result result = healthCheck.execute();
+        assertThat(result.isHealthy()).isFalse();
+        assertThat(result.getMessage()).startsWith("keys were last refreshed");
+    }
+
+    private void authenticate(String... subjects) throws Exception {
+        for (String subject : subjects) {
+            final JwtClaims claims = new JwtClaims();
+            claims.setSubject(subject);
+            claims.setExpirationTimeMinutesInTheFuture(5);
+            cached.authenticate(new JwtContext("token-" + subject, claims, Collections.emptyList()));
+        }
+    }
+}
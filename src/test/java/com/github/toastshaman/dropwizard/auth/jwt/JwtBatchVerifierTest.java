@@ -0,0 +1,146 @@
+package com.github.toastshaman.dropwizard.auth.jwt;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.cache.CacheBuilderSpec;
+import io.dropwizard.auth.Authenticator;
+import io.dropwizard.auth.PrincipalImpl;
+import org.jose4j.jws.AlgorithmIdentifiers;
+import org.jose4j.jwt.JwtClaims;
+import org.jose4j.jwt.consumer.InvalidJwtException;
+import org.jose4j.jwt.consumer.JwtConsumer;
+import org.jose4j.jwt.consumer.JwtConsumerBuilder;
+import org.jose4j.jwt.consumer.JwtContext;
+import org.jose4j.keys.HmacKey;
+import org.junit.Test;
+
+import java.security.Principal;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static com.google.common.base.Charsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+
+public class JwtBatchVerifierTest {
+
+    private static final String SECRET = "Po70rBeXjKDhckY9yWmhNVte/UajN8xbA==lkDvaBTeWRja0SFMzcz113d/bi3Tn";
+
+    private final MetricRegistry metricRegistry = new MetricRegistry();
+
+    @SuppressWarnings("unchecked")
+    private final Authenticator<JwtContext, Principal> underlying = mock(Authenticator.class);
+
+    private final CachingJwtAuthenticator<Principal> authenticator = new CachingJwtAuthenticator<>(metricRegistry,
+        underlying, CacheBuilderSpec.parse("maximumSize=10"));
+
+    private final JwtConsumer consumer = new JwtConsumerBuilder()
+        .setRequireSubject()
+        .setVerificationKey(new HmacKey(SECRET.getBytes(UTF_8)))
+        .setRelaxVerificationKeyValidation()
+        .build();
+
+    private final JwtBatchVerifier<Principal> verifier = new JwtBatchVerifier.Builder<Principal>()
+        .setJwtConsumer(consumer)
+        .setAuthenticator(authenticator)
+        .setMetricRegistry(metricRegistry)
+        .build();
+
+    @Test
+    public void returnsResultsInInputOrder() throws Exception {
+        when(underlying.authenticate(any(JwtContext.class)))
+            .thenAnswer(i -> Optional.of(new PrincipalImpl(((JwtContext) i.getArguments()[0]).getJwtClaims().getSubject())));
+        final String alice = token("alice", SECRET);
+        final String bob = token("bob", SECRET);
+        final String bogus = token("eve", SECRET.replace('P', 'Q'));
+
+        final List<JwtBatchVerifier.Result<Principal>> results = verifier.verify(Arrays.asList(bob, bogus, alice));
+
+        assertThat(results).extracting(JwtBatchVerifier.Result::getToken).containsExactly(bob, bogus, alice);
+        assertThat(results).extracting(JwtBatchVerifier.Result::isValid).containsExactly(true, false, true);
+        assertThat(results.get(0).getPrincipal()).contains(new PrincipalImpl("bob"));
+        assertThat(results.get(1).getError()).isInstanceOf(InvalidJwtException.class);
+        assertThat(results.get(2).getPrincipal()).contains(new PrincipalImpl("alice"));
+    }
+
+    @Test
+    public void verifiesIdenticalTokensOnce() throws Exception {
+        when(underlying.authenticate(any(JwtContext.class))).thenReturn(Optional.of(new PrincipalImpl("alice")));
+        final String alice = token("alice", SECRET);
+
+        final List<JwtBatchVerifier.Result<Principal>> results = verifier.verify(Stream.of(alice, alice, alice));
+
+        assertThat(results).hasSize(3);
+        assertThat(results.get(0)).isSameAs(results.get(1)).isSameAs(results.get(2));
+        assertThat(metricRegistry.timer(name(JwtBatchVerifier.class, "parse")).getCount()).isEqualTo(1);
+        verify(underlying, times(1)).authenticate(any(JwtContext.class));
+    }
+
+    @Test
+    public void sharesTheAuthenticatorCache() throws Exception {
+        when(underlying.authenticate(any(JwtContext.class))).thenReturn(Optional.of(new PrincipalImpl("alice")));
+        final String alice = token("alice", SECRET);
+
+        verifier.verify(Arrays.asList(alice));
+        verifier.verify(Arrays.asList(alice));
+
+        verify(underlying, times(1)).authenticate(any(JwtContext.class));
+        assertThat(authenticator.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void rejectsTokensOfUnknownPrincipals() throws Exception {
+        when(underlying.authenticate(any(JwtContext.class))).thenReturn(Optional.empty());
+
+        final JwtBatchVerifier.Result<Principal> result = verifier.verify(Arrays.asList(token("mallory", SECRET))).get(0);
+
+        assertThat(result.isValid()).isFalse();
+        assertThat(result.getError()).isNull();
+        assertThat(result.getPrincipal()).isEmpty();
+        assertThat(result.getContext().getJwtClaims().getSubject()).isEqualTo("mallory");
+    }
+
+    @Test
+    public void reportsAnAuthenticatorFailureAsTheFailureOfItsToken() throws Exception {
+        final IllegalStateException failure = new IllegalStateException("user store unavailable");
+        when(underlying.authenticate(any(JwtContext.class))).thenAnswer(i -> {
+            final String subject = ((JwtContext) i.getArguments()[0]).getJwtClaims().getSubject();
+            if (subject.equals("mallory")) {
+                throw failure;
+            }
+            return Optional.of(new PrincipalImpl(subject));
+        });
+        final String alice = token("alice", SECRET);
+        final String mallory = token("mallory", SECRET);
+
+        final List<JwtBatchVerifier.Result<Principal>> results = verifier.verify(Arrays.asList(alice, mallory));
+
+        assertThat(results).extracting(JwtBatchVerifier.Result::isValid).containsExactly(true, false);
+        assertThat(results.get(0).getPrincipal()).contains(new PrincipalImpl("alice"));
+        assertThat(results.get(1).getError()).isSameAs(failure);
+        assertThat(results.get(1).getContext().getJwtClaims().getSubject()).isEqualTo("mallory");
+    }
+
+    @Test
+    public void verifiesTokensWithoutAnAuthenticator() throws Exception {
+        final JwtBatchVerifier<Principal> claimsOnly = new JwtBatchVerifier.Builder<Principal>()
+            .setJwtConsumer(consumer)
+            .build();
+
+        final JwtBatchVerifier.Result<Principal> result = claimsOnly.verify(Arrays.asList(token("alice", SECRET))).get(0);
+
+        assertThat(result.isValid()).isTrue();
+        assertThat(result.getPrincipal()).isEmpty();
+        assertThat(result.getContext().getJwtClaims().getSubject()).isEqualTo("alice");
+    }
+
+    private static String token(String subject, String secret) throws Exception {
+        final JwtClaims claims = new JwtClaims();
+        claims.setSubject(subject);
+
+        return AuthUtil.sign(claims, AlgorithmIdentifiers.HMAC_SHA512, secret.getBytes(UTF_8));
+    }
+}
@@ -2,12 +2,18 @@ package com.github.toastshaman.dropwizard.auth.jwt;
 
 import com.codahale.metrics.MetricRegistry;
 import com.google.common.base.Throwables;
+import com.google.common.base.Ticker;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheBuilderSpec;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.Uninterruptibles;
+import io.dropwizard.auth.AuthenticationException;
 import io.dropwizard.auth.Authenticator;
 import io.dropwizard.auth.PrincipalImpl;
 import org.jose4j.jws.AlgorithmIdentifiers;
 import org.jose4j.jws.JsonWebSignature;
 import org.jose4j.jwt.JwtClaims;
+import org.jose4j.jwt.NumericDate;
 import org.jose4j.jwt.consumer.JwtConsumer;
 import org.jose4j.jwt.consumer.JwtConsumerBuilder;
 import org.jose4j.jwt.consumer.JwtContext;
@@ -16,10 +22,22 @@ import org.junit.Before;
 import org.junit.Test;
 
 import java.security.Principal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
 
 import static com.google.common.base.Charsets.UTF_8;
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.failBecauseExceptionWasNotThrown;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.*;
 
@@ -78,6 +96,25 @@ public class JwtCachingAuthenticatorTest {
         catch (Exception e) { throw Throwables.propagate(e); }
     }
 
+    private JwtContext expiredToken() {
+        final JwtClaims claims = new JwtClaims();
+        claims.setSubject("good-guy");
+        claims.setIssuer("Issuer");
+        claims.setAudience("Audience");
+        claims.setExpirationTime(NumericDate.fromSeconds(NumericDate.now().getValue() - 10));
+
+        final JsonWebSignature jws = new JsonWebSignature();
+        jws.setPayload(claims.toJson());
+        jws.setAlgorithmHeaderValue(AlgorithmIdentifiers.HMAC_SHA512);
+        jws.setKey(new HmacKey(SECRET.getBytes(UTF_8)));
+        jws.setDoKeyValidation(false);
+
+        try {
+            return consumer.process(jws.getCompactSerialization());
+        }
+        catch (Exception e) { throw Throwables.propagate(e); }
+    }
+
     @Before
     public void setUp() throws Exception {
         when(underlying.authenticate(any(JwtContext.class)))
@@ -99,4 +136,415 @@ public class JwtCachingAuthenticatorTest {
 
         verify(underlying, times(2)).authenticate(any(JwtContext.class));
     }
+
+    @Test
+    public void invalidatesPrincipalsMatchingAPredicate() throws Exception {
+        cached.authenticate(tokenOne());
+        cached.invalidateAll(context -> "good-guy".equals(context.getJwtClaims().getClaimValue("sub")));
+        cached.authenticate(tokenOne());
+
+        verify(underlying, times(2)).authenticate(any(JwtContext.class));
+    }
+
+    @Test
+    public void cachesPrincipalsWithTheCaffeineBackend() throws Exception {
+        final CachingJwtAuthenticator<Principal> caffeine = new CachingJwtAuthenticator<>(new MetricRegistry(),
+            underlying, new CaffeinePrincipalCache.Builder<Principal>().setExecutor(Runnable::run).build());
+
+        assertThat(caffeine.authenticate(tokenOne())).isEqualTo(Optional.<Principal>of(new PrincipalImpl("principal")));
+        assertThat(caffeine.authenticate(tokenOne())).isEqualTo(Optional.<Principal>of(new PrincipalImpl("principal")));
+        assertThat(caffeine.authenticate(tokenTwo())).isEqualTo(Optional.<Principal>of(new PrincipalImpl("principal")));
+
+        verify(underlying, times(2)).authenticate(any(JwtContext.class));
+        assertThat(caffeine.size()).isEqualTo(2);
+        assertThat(caffeine.stats().hitCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void recordsTheLoadsOfTheUnderlyingAuthenticator() throws Exception {
+        cached.authenticate(tokenOne());
+        cached.authenticate(tokenOne());
+
+        when(underlying.authenticate(any(JwtContext.class))).thenThrow(new AuthenticationException("unavailable"));
+        try {
+            cached.authenticate(tokenTwo());
+            failBecauseExceptionWasNotThrown(AuthenticationException.class);
+        } catch (AuthenticationException e) {
+            // expected
+        }
+
+        assertThat(cached.stats().hitCount()).isEqualTo(1);
+        assertThat(cached.stats().loadSuccessCount()).isEqualTo(1);
+        assertThat(cached.stats().loadExceptionCount()).isEqualTo(1);
+        assertThat(cached.stats().totalLoadTime()).isPositive();
+    }
+
+    @Test
+    public void doesNotCachePrincipalsOfExpiredTokens() throws Exception {
+        // the token is still accepted by the consumer thanks to the allowed clock skew
+        assertThat(cached.authenticate(expiredToken())).isEqualTo(Optional.<Principal>of(new PrincipalImpl("principal")));
+        assertThat(cached.size()).isZero();
+    }
+
+    @Test
+    public void evictsEntriesOnceTheirTokenExpires() throws Exception {
+        final PrincipalCache<Principal> guava = new GuavaPrincipalCache<>(CacheBuilderSpec.parse("maximumSize=10"));
+        final PrincipalCache<Principal> caffeine = new CaffeinePrincipalCache.Builder<Principal>()
+            .setExecutor(Runnable::run)
+            .build();
+        final long expiresAt = System.currentTimeMillis() + 1000;
+
+        for (PrincipalCache<Principal> cache : ImmutableList.of(guava, caffeine)) {
+            cache.put("token", new CachedPrincipal<>(new PrincipalImpl("principal"), "good-guy", "Issuer", null, expiresAt, null));
+            assertThat(cache.getIfPresent("token")).isNotNull();
+        }
+
+        Thread.sleep(expiresAt - System.currentTimeMillis() + 50);
+
+        for (PrincipalCache<Principal> cache : ImmutableList.of(guava, caffeine)) {
+            assertThat(cache.getIfPresent("token")).isNull();
+        }
+
+        assertThat(guava.stats().hitCount()).isEqualTo(1);
+        assertThat(guava.stats().missCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void periodicallyDiscardsTheEntriesOfExpiredTokensWhichAreNotRead() throws Exception {
+        final PrincipalCache<Principal> guava = new GuavaPrincipalCache<>(CacheBuilderSpec.parse("maximumSize=10"));
+        final CachingJwtAuthenticator<Principal> authenticator = new CachingJwtAuthenticator.Builder<Principal>()
+            .setAuthenticator(underlying)
+            .setCache(guava)
+            .setRefreshExecutor(Runnable::run)
+            .setCleanUpInterval(Duration.ofMillis(1))
+            .build();
+        final long expiresAt = System.currentTimeMillis() + 50;
+        guava.put("other", new CachedPrincipal<>(new PrincipalImpl("principal"), "good-guy-two", "Issuer", null, expiresAt, null));
+
+        Thread.sleep(expiresAt - System.currentTimeMillis() + 50);
+        authenticator.authenticate(tokenOne());
+
+        assertThat(guava.peek("other")).isNull();
+    }
+
+    @Test
+    public void keysCompactEntriesByTokenDigest() throws Exception {
+        final PrincipalCache<Principal> cache = new GuavaPrincipalCache<>(CacheBuilderSpec.parse("maximumSize=10"));
+        final CachingJwtAuthenticator<Principal> compact = new CachingJwtAuthenticator.Builder<Principal>()
+            .setAuthenticator(underlying)
+            .setCache(cache)
+            .setCompact(true)
+            .build();
+
+        compact.authenticate(tokenOne());
+        compact.authenticate(tokenOne());
+
+        verify(underlying, times(1)).authenticate(any(JwtContext.class));
+        final CachedPrincipal<Principal> entry = cache.getIfPresent(TokenDigest.of(tokenOne().getJwt()));
+        assertThat(entry.isFull()).isFalse();
+        assertThat(entry.getSubject()).isEqualTo("good-guy");
+        assertThat(entry.getIssuer()).isEqualTo("Issuer");
+    }
+
+    @Test
+    public void distinguishesTheDigestsOfNonAsciiTokens() throws Exception {
+        final TokenDigest digest = TokenDigest.of("header.päyload.signature");
+
+        assertThat(digest).isNotEqualTo(TokenDigest.of("header.pöyload.signature"));
+        assertThat(digest).isEqualTo(TokenDigest.of("header.päyload.signature"));
+    }
+
+    @Test
+    public void invalidatesCompactEntriesMatchingAPredicate() throws Exception {
+        final CachingJwtAuthenticator<Principal> compact = new CachingJwtAuthenticator.Builder<Principal>()
+            .setAuthenticator(underlying)
+            .setCache(new GuavaPrincipalCache<>(CacheBuilderSpec.parse("maximumSize=10")))
+            .setCompact(true)
+            .build();
+
+        compact.authenticate(tokenOne());
+        compact.authenticate(tokenTwo());
+        compact.invalidateAll(context -> "good-guy".equals(context.getJwtClaims().getClaimValue("sub")));
+
+        assertThat(compact.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void invalidatesPrincipalsBySubjectIndex() throws Exception {
+        final PrincipalCache<Principal> guava = new GuavaPrincipalCache<>(CacheBuilderSpec.parse("maximumSize=10"));
+        final PrincipalCache<Principal> caffeine = new CaffeinePrincipalCache.Builder<Principal>()
+            .setExecutor(Runnable::run)
+            .build();
+
+        for (PrincipalCache<Principal> cache : ImmutableList.of(guava, caffeine)) {
+            final CachingJwtAuthenticator<Principal> indexed = new CachingJwtAuthenticator.Builder<Principal>()
+                .setAuthenticator(underlying)
+                .setCache(cache)
+                .indexBySubject()
+                .build();
+
+            indexed.authenticate(tokenOne());
+            indexed.authenticate(tokenTwo());
+
+            assertThat(indexed.invalidateBySubject("good-guy")).isEqualTo(1);
+            assertThat(indexed.invalidateBySubject("good-guy")).isZero();
+            assertThat(indexed.size()).isEqualTo(1);
+        }
+    }
+
+    @Test
+    public void unindexesEvictedPrincipals() throws Exception {
+        final CachingJwtAuthenticator<Principal> indexed = new CachingJwtAuthenticator.Builder<Principal>()
+            .setAuthenticator(underlying)
+            .setCache(new GuavaPrincipalCache<>(CacheBuilderSpec.parse("maximumSize=1")))
+            .setCompact(true)
+            .indexByIssuer()
+            .addIndex("tenant", context -> "acme")
+            .build();
+
+        indexed.authenticate(tokenOne());
+        indexed.authenticate(tokenTwo());
+
+        assertThat(indexed.size()).isEqualTo(1);
+        assertThat(indexed.invalidateByIndex("tenant", "acme")).isEqualTo(1);
+        assertThat(indexed.invalidateByIssuer("Issuer")).isZero();
+    }
+
+    @Test
+    public void keepsPrincipalsCachedAgainWhileTheirEvictionIsNotifiedIndexed() throws Exception {
+        final AtomicLong nanos = new AtomicLong();
+        final Ticker ticker = new Ticker() {
+            @Override
+            public long read() {
+                return nanos.get();
+            }
+        };
+        final CountDownLatch notifying = new CountDownLatch(1);
+        final CountDownLatch recached = new CountDownLatch(1);
+        final GuavaPrincipalCache<Principal> cache = new GuavaPrincipalCache<Principal>(
+            CacheBuilder.newBuilder().ticker(ticker).expireAfterWrite(1, TimeUnit.MINUTES)) {
+            @Override
+            public void setRemovalListener(BiConsumer<Object, ? super CachedPrincipal<Principal>> listener) {
+                // Guava notifies after releasing the segment lock, so the key can be cached again in between
+                super.setRemovalListener((key, entry) -> {
+                    notifying.countDown();
+                    Uninterruptibles.awaitUninterruptibly(recached);
+                    listener.accept(key, entry);
+                });
+            }
+        };
+        final CachingJwtAuthenticator<Principal> indexed = new CachingJwtAuthenticator.Builder<Principal>()
+            .setAuthenticator(underlying)
+            .setCache(cache)
+            .indexBySubject()
+            .build();
+
+        indexed.authenticate(tokenOne());
+        nanos.addAndGet(TimeUnit.MINUTES.toNanos(2));
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        final Future<?> eviction = executor.submit(cache::cleanUp);
+        notifying.await();
+        indexed.authenticate(tokenOne());
+        recached.countDown();
+        eviction.get(10, TimeUnit.SECONDS);
+        executor.shutdown();
+
+        assertThat(indexed.size()).isEqualTo(1);
+        assertThat(indexed.invalidateBySubject("good-guy")).isEqualTo(1);
+        assertThat(indexed.size()).isZero();
+    }
+
+    @Test
+    public void scansTheCacheWithoutAnIndex() throws Exception {
+        cached.authenticate(tokenOne());
+
+        assertThat(cached.invalidateBySubject("good-guy-two")).isZero();
+        assertThat(cached.invalidateByIssuer("Issuer")).isEqualTo(1);
+        assertThat(cached.size()).isZero();
+    }
+
+    @Test
+    public void coalescesConcurrentMissesForTheSameToken() throws Exception {
+        final CountDownLatch loading = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger loads = new AtomicInteger();
+        final MetricRegistry registry = new MetricRegistry();
+        final CachingJwtAuthenticator<Principal> coalescing = new CachingJwtAuthenticator<>(registry,
+            context -> {
+                loads.incrementAndGet();
+                loading.countDown();
+                Uninterruptibles.awaitUninterruptibly(release);
+                return Optional.of(new PrincipalImpl("principal"));
+            },
+            CacheBuilderSpec.parse("maximumSize=10"));
+
+        final JwtContext token = tokenOne();
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final List<Future<Optional<Principal>>> results = new ArrayList<>();
+            results.add(executor.submit(() -> coalescing.authenticate(token)));
+            loading.await();
+            for (int i = 0; i < 3; i++) {
+                results.add(executor.submit(() -> coalescing.authenticate(token)));
+            }
+            Thread.sleep(100);
+            release.countDown();
+
+            for (Future<Optional<Principal>> result : results) {
+                assertThat(result.get()).isEqualTo(Optional.<Principal>of(new PrincipalImpl("principal")));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(loads.get()).isEqualTo(1);
+        assertThat(registry.getHistograms().values().iterator().next().getSnapshot().getMax()).isEqualTo(4);
+    }
+
+    @Test
+    public void servesAPrincipalCachedByALoadWhichCompletedAfterTheLookup() throws Exception {
+        final JwtContext token = tokenOne();
+        final PrincipalCache<Principal> racing = new GuavaPrincipalCache<Principal>(
+            CacheBuilderSpec.parse("maximumSize=10")) {
+            @Override
+            public CachedPrincipal<Principal> getIfPresent(Object key) {
+                // another load caches the principal and leaves its slot right after this lookup missed
+                final CachedPrincipal<Principal> entry = super.getIfPresent(key);
+                if (entry == null) {
+                    put(key, CachedPrincipal.full(token, new PrincipalImpl("principal")));
+                }
+                return entry;
+            }
+        };
+        final CachingJwtAuthenticator<Principal> authenticator = new CachingJwtAuthenticator<>(new MetricRegistry(),
+            underlying, racing);
+
+        assertThat(authenticator.authenticate(token)).contains(new PrincipalImpl("principal"));
+        verify(underlying, never()).authenticate(any(JwtContext.class));
+    }
+
+    @Test
+    public void doesNotCacheFailedLoads() throws Exception {
+        when(underlying.authenticate(any(JwtContext.class))).thenThrow(new AuthenticationException("unavailable"));
+
+        try {
+            cached.authenticate(tokenOne());
+            failBecauseExceptionWasNotThrown(AuthenticationException.class);
+        } catch (AuthenticationException e) {
+            assertThat(e.getMessage()).isEqualTo("unavailable");
+        }
+        assertThat(cached.size()).isZero();
+    }
+
+    @Test
+    public void servesTheStalePrincipalWhileRefreshing() throws Exception {
+        final CachingJwtAuthenticator<Principal> refreshing = refreshingAuthenticator();
+
+        refreshing.authenticate(tokenOne());
+        Thread.sleep(5);
+        when(underlying.authenticate(any(JwtContext.class)))
+            .thenReturn(Optional.<Principal>of(new PrincipalImpl("refreshed")));
+
+        assertThat(refreshing.authenticate(tokenOne())).isEqualTo(Optional.<Principal>of(new PrincipalImpl("principal")));
+        assertThat(refreshing.authenticate(tokenOne())).isEqualTo(Optional.<Principal>of(new PrincipalImpl("refreshed")));
+    }
+
+    @Test
+    public void keepsTheStalePrincipalWhenARefreshFails() throws Exception {
+        final CachingJwtAuthenticator<Principal> refreshing = refreshingAuthenticator();
+
+        refreshing.authenticate(tokenOne());
+        Thread.sleep(5);
+        when(underlying.authenticate(any(JwtContext.class))).thenThrow(new AuthenticationException("unavailable"));
+
+        assertThat(refreshing.authenticate(tokenOne())).isEqualTo(Optional.<Principal>of(new PrincipalImpl("principal")));
+        assertThat(refreshing.authenticate(tokenOne())).isEqualTo(Optional.<Principal>of(new PrincipalImpl("principal")));
+        assertThat(refreshing.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void discardsThePrincipalWhenARefreshFindsNone() throws Exception {
+        final CachingJwtAuthenticator<Principal> refreshing = refreshingAuthenticator();
+
+        refreshing.authenticate(tokenOne());
+        Thread.sleep(5);
+        when(underlying.authenticate(any(JwtContext.class))).thenReturn(Optional.empty());
+
+        assertThat(refreshing.authenticate(tokenOne())).isEqualTo(Optional.<Principal>of(new PrincipalImpl("principal")));
+        assertThat(refreshing.size()).isZero();
+    }
+
+    @Test
+    public void doesNotRestorePrincipalsInvalidatedWhileRefreshing() throws Exception {
+        final PrincipalCache<Principal> guava = new GuavaPrincipalCache<>(CacheBuilderSpec.parse("maximumSize=10"));
+        final PrincipalCache<Principal> caffeine = new CaffeinePrincipalCache.Builder<Principal>()
+            .setExecutor(Runnable::run)
+            .build();
+
+        for (PrincipalCache<Principal> cache : ImmutableList.of(guava, caffeine)) {
+            final ExecutorService executor = Executors.newSingleThreadExecutor();
+            final CachingJwtAuthenticator<Principal> refreshing = new CachingJwtAuthenticator.Builder<Principal>()
+                .setAuthenticator(underlying)
+                .setCache(cache)
+                .indexBySubject()
+                .setRefreshAfterWrite(Duration.ofMillis(1))
+                .setRefreshExecutor(executor)
+                .build();
+            when(underlying.authenticate(any(JwtContext.class)))
+                .thenReturn(Optional.<Principal>of(new PrincipalImpl("principal")));
+            refreshing.authenticate(tokenOne());
+            Thread.sleep(5);
+
+            final CountDownLatch reloading = new CountDownLatch(1);
+            final CountDownLatch invalidated = new CountDownLatch(1);
+            when(underlying.authenticate(any(JwtContext.class))).thenAnswer(invocation -> {
+                reloading.countDown();
+                Uninterruptibles.awaitUninterruptibly(invalidated);
+                return Optional.<Principal>of(new PrincipalImpl("refreshed"));
+            });
+
+            refreshing.authenticate(tokenOne());
+            reloading.await();
+            assertThat(refreshing.invalidateBySubject("good-guy")).isEqualTo(1);
+            invalidated.countDown();
+            executor.shutdown();
+            assertThat(executor.awaitTermination(10, TimeUnit.SECONDS)).isTrue();
+
+            assertThat(refreshing.size()).isZero();
+            assertThat(refreshing.invalidateBySubject("good-guy")).isZero();
+        }
+    }
+
+    @Test
+    public void authenticatesAsynchronously() throws Exception {
+        final CachingJwtAuthenticator<Principal> async = refreshingAuthenticator();
+
+        assertThat(async.authenticateAsync(tokenOne()).toCompletableFuture().get())
+            .isEqualTo(Optional.<Principal>of(new PrincipalImpl("principal")));
+        assertThat(async.authenticateAsync(tokenOne()).toCompletableFuture().isDone()).isTrue();
+        assertThat(async.size()).isEqualTo(1);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void requiresAnExecutorToAuthenticateAsynchronously() throws Exception {
+        cached.authenticateAsync(tokenOne());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void requiresAnExecutorToRefreshPrincipals() throws Exception {
+        new CachingJwtAuthenticator.Builder<Principal>()
+            .setAuthenticator(underlying)
+            .setCache(new GuavaPrincipalCache<>(CacheBuilderSpec.parse("maximumSize=10")))
+            .setRefreshAfterWrite(Duration.ofMillis(1))
+            .build();
+    }
+
+    private CachingJwtAuthenticator<Principal> refreshingAuthenticator() {
+        return new CachingJwtAuthenticator.Builder<Principal>()
+            .setAuthenticator(underlying)
+            .setCache(new GuavaPrincipalCache<>(CacheBuilderSpec.parse("maximumSize=10")))
+            .setRefreshAfterWrite(Duration.ofMillis(1))
+            .setRefreshExecutor(Runnable::run)
+            .build();
+    }
 }
@@ -0,0 +1,149 @@
+package com.github.toastshaman.dropwizard.auth.jwt;
+
+import org.jose4j.jws.AlgorithmIdentifiers;
+import org.jose4j.jwt.JwtClaims;
+import org.jose4j.jwt.MalformedClaimException;
+import org.jose4j.jwt.NumericDate;
+import org.jose4j.jwt.consumer.ErrorCodes;
+import org.jose4j.jwt.consumer.InvalidJwtException;
+import org.jose4j.jwt.consumer.JwtConsumer;
+import org.jose4j.jwt.consumer.JwtConsumerBuilder;
+import org.jose4j.jwt.consumer.JwtContext;
+import org.jose4j.keys.HmacKey;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import static com.google.common.base.Charsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+import static org.assertj.core.api.Assertions.failBecauseExceptionWasNotThrown;
+
+public class LazyJwtClaimsTest {
+
+    private static final byte[] SECRET = "Po70rBeXjKDhckY9yWmhNVte/UajN8xbA==lkDvaBTeWRja0SFMzcz113d/bi3Tn".getBytes(UTF_8);
+
+    private final JwtConsumer consumer = new JwtConsumerBuilder()
+        .setRequireSubject()
+        .setRequireExpirationTime()
+        .setExpectedAudience("api")
+        .setVerificationKey(new HmacKey(SECRET))
+        .setRelaxVerificationKeyValidation()
+        .build();
+
+    @Test
+    public void decodesClaimsOnDemand() throws Exception {
+        final LazyJwtClaims claims = LazyJwtClaims.parse(
+            "{\"sub\":\"good-guy\",\"aud\":\"api\",\"exp\":1500000000,\"roles\":[\"ADMIN\"],\"profile\":{\"age\":42}}");
+
+        assertThat(claims.getSubject()).isEqualTo("good-guy");
+        assertThat(claims.getAudience()).containsExactly("api");
+        assertThat(claims.getExpirationTime()).isEqualTo(NumericDate.fromSeconds(1500000000));
+        assertThat(claims.getStringListClaimValue("roles")).containsExactly("ADMIN");
+        assertThat(claims.getClaimValue("profile")).isEqualTo(Collections.singletonMap("age", 42L));
+        assertThat(claims.hasClaim("missing")).isFalse();
+        assertThat(claims.getIssuer()).isNull();
+    }
+
+    @Test
+    public void reportsClaimsOfTheWrongType() throws Exception {
+        final LazyJwtClaims claims = LazyJwtClaims.parse("{\"sub\":1,\"aud\":[\"api\",2]}");
+
+        try {
+            claims.getSubject();
+            failBecauseExceptionWasNotThrown(MalformedClaimException.class);
+        } catch (MalformedClaimException e) {
+            assertThat(e.getMessage()).contains("'sub'");
+        }
+
+        try {
+            claims.getAudience();
+            failBecauseExceptionWasNotThrown(MalformedClaimException.class);
+        } catch (MalformedClaimException e) {
+            assertThat(e.getMessage()).contains("'aud'");
+        }
+    }
+
+    @Test
+    public void rejectsMalformedPayloads() {
+        try {
+            LazyJwtClaims.parse("{\"sub\":\"good-guy\",");
+            failBecauseExceptionWasNotThrown(InvalidJwtException.class);
+        } catch (InvalidJwtException e) {
+            assertThat(e.hasErrorCode(ErrorCodes.JSON_INVALID)).isTrue();
+        }
+    }
+
+    @Test
+    public void rejectsDuplicateClaims() {
+        for (String json : new String[] {
+            "{\"sub\":\"good-guy\",\"sub\":\"admin\"}",
+            "{\"sub\":\"good-guy\",\"profile\":{\"role\":\"user\",\"role\":\"admin\"}}"}) {
+            try {
+                LazyJwtClaims.parse(json);
+                failBecauseExceptionWasNotThrown(InvalidJwtException.class);
+            } catch (InvalidJwtException e) {
+                assertThat(e.hasErrorCode(ErrorCodes.JSON_INVALID)).isTrue();
+            }
+        }
+    }
+
+    @Test
+    public void materializesAllClaimsWhenModified() throws Exception {
+        final LazyJwtClaims claims = LazyJwtClaims.parse("{\"sub\":\"good-guy\",\"roles\":[\"ADMIN\"]}");
+
+        claims.setIssuer("issuer");
+
+        assertThat(claims.getClaimsMap()).containsOnly(
+            entry("sub", "good-guy"),
+            entry("roles", Collections.singletonList("ADMIN")),
+            entry("iss", "issuer"));
+        assertThat(JwtClaims.parse(claims.toJson()).getClaimsMap()).isEqualTo(claims.getClaimsMap());
+    }
+
+    @Test
+    public void verifiesDecodedTokensWithTheConsumer() throws Exception {
+        final JwtContext context = LazyJwtClaims.decode(token(SECRET));
+
+        consumer.processContext(context);
+
+        assertThat(context.getJwtClaims()).isInstanceOf(LazyJwtClaims.class);
+        assertThat(context.getJwtClaims().getSubject()).isEqualTo("good-guy");
+        assertThat(context.getJwtClaims().getStringListClaimValue("roles")).isEqualTo(Arrays.asList("USER", "ADMIN"));
+    }
+
+    @Test
+    public void rejectsTokensWithAnInvalidSignature() throws Exception {
+        final JwtContext context = LazyJwtClaims.decode(token("another secret which is long enough".getBytes(UTF_8)));
+
+        try {
+            consumer.processContext(context);
+            failBecauseExceptionWasNotThrown(InvalidJwtException.class);
+        } catch (InvalidJwtException e) {
+            assertThat(e.hasErrorCode(ErrorCodes.SIGNATURE_INVALID)).isTrue();
+        }
+    }
+
+    @Test
+    public void rejectsTokensWhichAreNotSigned() {
+        for (String token : new String[] {"not.a-token", "a.b.c.d.e"}) {
+            try {
+                LazyJwtClaims.decode(token);
+                failBecauseExceptionWasNotThrown(InvalidJwtException.class);
+            } catch (InvalidJwtException e) {
+                assertThat(e.getMessage()).as(token).isNotEmpty();
+            }
+        }
+    }
+
+    private static String token(byte[] secret) throws Exception {
+        final JwtClaims claims = new JwtClaims();
+        claims.setSubject("good-guy");
+        claims.setAudience("api");
+        claims.setExpirationTimeMinutesInTheFuture(5);
+        claims.setStringListClaim("roles", "USER", "ADMIN");
+
+        return AuthUtil.sign(claims, AlgorithmIdentifiers.HMAC_SHA256, secret);
+    }
+}
@@ -0,0 +1,185 @@
+package com.github.toastshaman.dropwizard.auth.jwt;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Strings;
+import io.dropwizard.auth.Authenticator;
+import io.dropwizard.auth.PrincipalImpl;
+import org.jose4j.jwt.JwtClaims;
+import org.jose4j.jwt.consumer.JwtContext;
+import org.junit.Test;
+
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.failBecauseExceptionWasNotThrown;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+
+public class OffHeapPrincipalCacheTest {
+
+    private final OffHeapPrincipalCache<Principal> cache = new OffHeapPrincipalCache.Builder<Principal>()
+        .setSerializer(PrincipalSerializer.byName(PrincipalImpl::new))
+        .setMaximumSize(64)
+        .setConcurrencyLevel(2)
+        .setHotTierSize(0)
+        .build();
+
+    @Test
+    public void storesEntriesOutsideOfTheHeap() throws Exception {
+        final CachedPrincipal<Principal> entry = entry("alice", CachedPrincipal.NEVER)
+            .withIndexValues(new String[]{"alice", null});
+
+        cache.put(TokenDigest.of("token"), entry);
+        final CachedPrincipal<Principal> cached = cache.getIfPresent(TokenDigest.of("token"));
+
+        assertThat(cached).isNotSameAs(entry);
+        assertThat(cached.getPrincipal()).isEqualTo(new PrincipalImpl("alice"));
+        assertThat(cached.getSubject()).isEqualTo("alice");
+        assertThat(cached.getIssuer()).isEqualTo("issuer");
+        assertThat(cached.getJwtId()).isNull();
+        assertThat(cached.getExpiresAt()).isEqualTo(CachedPrincipal.NEVER);
+        assertThat(cached.getWrittenAt()).isEqualTo(entry.getWrittenAt());
+        assertThat(cached.getIndexValues()).containsExactly("alice", null);
+        assertThat(cache.size()).isEqualTo(1);
+        assertThat(cache.capacityInBytes()).isEqualTo(64 * 256);
+    }
+
+    @Test
+    public void replacesEntriesOfTheSameToken() throws Exception {
+        final List<Object> removed = new ArrayList<>();
+        cache.setRemovalListener((key, entry) -> removed.add(key));
+
+        cache.put(TokenDigest.of("token"), entry("alice", CachedPrincipal.NEVER));
+        cache.put(TokenDigest.of("token"), entry("bob", CachedPrincipal.NEVER));
+
+        assertThat(cache.getIfPresent(TokenDigest.of("token")).getPrincipal()).isEqualTo(new PrincipalImpl("bob"));
+        assertThat(cache.size()).isEqualTo(1);
+        assertThat(removed).isEmpty();
+    }
+
+    @Test
+    public void replacesOnlyTheExpectedEntry() throws Exception {
+        final CachedPrincipal<Principal> alice = new CachedPrincipal<>(new PrincipalImpl("alice"), "alice", "issuer",
+            null, CachedPrincipal.NEVER, 1L, null, new String[0]);
+        final CachedPrincipal<Principal> bob = entry("bob", CachedPrincipal.NEVER);
+        cache.put(TokenDigest.of("token"), alice);
+
+        assertThat(cache.replace(TokenDigest.of("token"), cache.getIfPresent(TokenDigest.of("token")), bob)).isTrue();
+        assertThat(cache.replace(TokenDigest.of("token"), alice, entry("carol", CachedPrincipal.NEVER))).isFalse();
+        assertThat(cache.invalidate(TokenDigest.of("token"), alice)).isFalse();
+        assertThat(cache.getIfPresent(TokenDigest.of("token")).getPrincipal()).isEqualTo(new PrincipalImpl("bob"));
+
+        assertThat(cache.invalidate(TokenDigest.of("token"), bob)).isTrue();
+        assertThat(cache.replace(TokenDigest.of("token"), bob, alice)).isFalse();
+        assertThat(cache.getIfPresent(TokenDigest.of("token"))).isNull();
+    }
+
+    @Test
+    public void notifiesTheListenerOfRemovedEntries() throws Exception {
+        final Map<Object, String> removed = new HashMap<>();
+        cache.setRemovalListener((key, entry) -> removed.put(key, entry.getSubject()));
+        cache.put(TokenDigest.of("one"), entry("alice", CachedPrincipal.NEVER));
+        cache.put(TokenDigest.of("two"), entry("bob", 0));
+        cache.put(TokenDigest.of("three"), entry("carol", CachedPrincipal.NEVER));
+
+        cache.invalidate(TokenDigest.of("one"));
+        assertThat(cache.getIfPresent(TokenDigest.of("two"))).isNull();
+        cache.invalidateAll();
+
+        assertThat(removed).containsOnlyKeys(TokenDigest.of("one"), TokenDigest.of("two"), TokenDigest.of("three"));
+        assertThat(removed).containsValues("alice", "bob", "carol");
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    public void evictsTheOldestEntryWhenItsSlotsAreTaken() throws Exception {
+        final OffHeapPrincipalCache<Principal> tiny = new OffHeapPrincipalCache.Builder<Principal>()
+            .setSerializer(PrincipalSerializer.byName(PrincipalImpl::new))
+            .setMaximumSize(4)
+            .setConcurrencyLevel(1)
+            .setHotTierSize(0)
+            .build();
+
+        for (int i = 0; i < 10; i++) {
+            tiny.put(TokenDigest.of("token-" + i), new CachedPrincipal<>(new PrincipalImpl("user-" + i),
+                "user-" + i, null, null, CachedPrincipal.NEVER, i, null, new String[0]));
+        }
+
+        assertThat(tiny.size()).isEqualTo(4);
+        assertThat(tiny.stats().evictionCount()).isEqualTo(6);
+        for (int i = 6; i < 10; i++) {
+            assertThat(tiny.getIfPresent(TokenDigest.of("token-" + i))).isNotNull();
+        }
+    }
+
+    @Test
+    public void doesNotCacheEntriesLargerThanASlot() throws Exception {
+        cache.put(TokenDigest.of("token"), entry("alice", CachedPrincipal.NEVER));
+        cache.put(TokenDigest.of("token"), entry(Strings.repeat("a", 256), CachedPrincipal.NEVER));
+
+        assertThat(cache.getIfPresent(TokenDigest.of("token"))).isNull();
+        assertThat(cache.size()).isZero();
+    }
+
+    @Test
+    public void servesRecentlyUsedEntriesFromTheHotTier() throws Exception {
+        final OffHeapPrincipalCache<Principal> tiered = new OffHeapPrincipalCache.Builder<Principal>()
+            .setSerializer(PrincipalSerializer.byName(PrincipalImpl::new))
+            .setMaximumSize(64)
+            .setHotTierSize(16)
+            .build();
+
+        tiered.put(TokenDigest.of("token"), entry("alice", CachedPrincipal.NEVER));
+        final CachedPrincipal<Principal> first = tiered.getIfPresent(TokenDigest.of("token"));
+
+        assertThat(tiered.getIfPresent(TokenDigest.of("token"))).isSameAs(first);
+        tiered.invalidate(TokenDigest.of("token"));
+        assertThat(tiered.getIfPresent(TokenDigest.of("token"))).isNull();
+        assertThat(tiered.stats().hitCount()).isEqualTo(2);
+        assertThat(tiered.stats().missCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void rejectsKeysOtherThanTokenDigests() throws Exception {
+        try {
+            cache.getIfPresent("token");
+            failBecauseExceptionWasNotThrown(IllegalArgumentException.class);
+        } catch (IllegalArgumentException e) {
+            assertThat(e.getMessage()).contains("compact mode");
+        }
+    }
+
+    @Test
+    public void backsACompactCachingJwtAuthenticator() throws Exception {
+        @SuppressWarnings("unchecked")
+        final Authenticator<JwtContext, Principal> underlying = mock(Authenticator.class);
+        when(underlying.authenticate(any(JwtContext.class))).thenReturn(Optional.of(new PrincipalImpl("alice")));
+        final CachingJwtAuthenticator<Principal> authenticator = new CachingJwtAuthenticator.Builder<Principal>()
+            .setMetricRegistry(new MetricRegistry())
+            .setAuthenticator(underlying)
+            .setCache(cache)
+            .setCompact(true)
+            .indexBySubject()
+            .build();
+        final JwtClaims claims = new JwtClaims();
+        claims.setSubject("alice");
+        final JwtContext context = new JwtContext("token", claims, Collections.emptyList());
+
+        assertThat(authenticator.authenticate(context)).contains(new PrincipalImpl("alice"));
+        assertThat(authenticator.authenticate(context)).contains(new PrincipalImpl("alice"));
+        verify(underlying, times(1)).authenticate(any(JwtContext.class));
+
+        assertThat(authenticator.invalidateBySubject("alice")).isEqualTo(1);
+        assertThat(cache.size()).isZero();
+    }
+
+    private static CachedPrincipal<Principal> entry(String subject, long expiresAt) {
+        return new CachedPrincipal<>(new PrincipalImpl(subject), subject, "issuer", null, expiresAt, null);
+    }
+}
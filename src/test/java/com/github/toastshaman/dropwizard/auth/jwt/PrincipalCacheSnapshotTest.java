@@ -0,0 +1,135 @@
+package com.github.toastshaman.dropwizard.auth.jwt;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.cache.CacheBuilderSpec;
+import io.dropwizard.auth.Authenticator;
+import io.dropwizard.auth.PrincipalImpl;
+import org.jose4j.jwt.JwtClaims;
+import org.jose4j.jwt.NumericDate;
+import org.jose4j.jwt.consumer.JwtContext;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.Principal;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.failBecauseExceptionWasNotThrown;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+
+public class PrincipalCacheSnapshotTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final PrincipalSerializer<Principal> serializer = PrincipalSerializer.byName(PrincipalImpl::new);
+
+    @Test
+    public void restoresTheCachedPrincipals() throws Exception {
+        final Path file = folder.getRoot().toPath().resolve("principals.bin");
+        final CachingJwtAuthenticator<Principal> before = authenticator(context ->
+            Optional.of(new PrincipalImpl((String) context.getJwtClaims().getClaimValue("sub"))));
+        before.authenticate(token("alice", 60_000));
+        before.authenticate(token("bob", 60_000));
+
+        assertThat(snapshot(before, file).save()).isEqualTo(2);
+
+        @SuppressWarnings("unchecked")
+        final Authenticator<JwtContext, Principal> underlying = mock(Authenticator.class);
+        final CachingJwtAuthenticator<Principal> after = authenticator(underlying);
+
+        assertThat(snapshot(after, file).load()).isEqualTo(2);
+        assertThat(after.authenticate(token("alice", 60_000))).contains(new PrincipalImpl("alice"));
+        assertThat(after.authenticate(token("bob", 60_000))).contains(new PrincipalImpl("bob"));
+        verify(underlying, never()).authenticate(any(JwtContext.class));
+
+        assertThat(after.invalidateBySubject("alice")).isEqualTo(1);
+        assertThat(after.size()).isEqualTo(1);
+    }
+
+    @Test
+    public void skipsExpiredPrincipals() throws Exception {
+        final Path file = folder.getRoot().toPath().resolve("principals.bin");
+        final CachingJwtAuthenticator<Principal> before = authenticator(context ->
+            Optional.of(new PrincipalImpl("alice")));
+        before.authenticate(token("alice", 1_000));
+        snapshot(before, file).save();
+
+        Thread.sleep(1_100);
+        final CachingJwtAuthenticator<Principal> after = authenticator(context -> Optional.empty());
+
+        assertThat(snapshot(after, file).load()).isZero();
+        assertThat(after.size()).isZero();
+    }
+
+    @Test
+    public void savesWhenStopped() throws Exception {
+        final Path file = folder.getRoot().toPath().resolve("principals.bin");
+        final CachingJwtAuthenticator<Principal> authenticator = authenticator(context ->
+            Optional.of(new PrincipalImpl("alice")));
+        final PrincipalCacheSnapshot<Principal> snapshot = snapshot(authenticator, file);
+
+        snapshot.start();
+        authenticator.authenticate(token("alice", 60_000));
+        snapshot.stop();
+
+        assertThat(Files.exists(file)).isTrue();
+        assertThat(snapshot(authenticator(context -> Optional.empty()), file).load()).isEqualTo(1);
+    }
+
+    @Test
+    public void rejectsUnrecognisedFiles() throws Exception {
+        final Path file = folder.newFile().toPath();
+        Files.write(file, new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+
+        try {
+            snapshot(authenticator(context -> Optional.empty()), file).load();
+            failBecauseExceptionWasNotThrown(IOException.class);
+        } catch (IOException e) {
+            assertThat(e.getMessage()).startsWith("Unrecognised snapshot");
+        }
+    }
+
+    @Test
+    public void requiresACompactAuthenticator() throws Exception {
+        final CachingJwtAuthenticator<Principal> full = new CachingJwtAuthenticator.Builder<Principal>()
+            .setAuthenticator(context -> Optional.empty())
+            .setCache(new GuavaPrincipalCache<>(CacheBuilderSpec.parse("maximumSize=10")))
+            .build();
+
+        try {
+            snapshot(full, folder.getRoot().toPath().resolve("principals.bin"));
+            failBecauseExceptionWasNotThrown(IllegalArgumentException.class);
+        } catch (IllegalArgumentException e) {
+            assertThat(e.getMessage()).contains("compact mode");
+        }
+    }
+
+    private PrincipalCacheSnapshot<Principal> snapshot(CachingJwtAuthenticator<Principal> authenticator, Path file) {
+        return new PrincipalCacheSnapshot<>(authenticator, serializer, file, Duration.ofMinutes(1));
+    }
+
+    private static CachingJwtAuthenticator<Principal> authenticator(Authenticator<JwtContext, Principal> underlying) {
+        return new CachingJwtAuthenticator.Builder<Principal>()
+            .setMetricRegistry(new MetricRegistry())
+            .setAuthenticator(underlying)
+            .setCache(new GuavaPrincipalCache<>(CacheBuilderSpec.parse("maximumSize=10")))
+            .setCompact(true)
+            .indexBySubject()
+            .build();
+    }
+
+    private static JwtContext token(String subject, long expiresInMillis) {
+        final JwtClaims claims = new JwtClaims();
+        claims.setSubject(subject);
+        claims.setExpirationTime(NumericDate.fromMilliseconds(System.currentTimeMillis() + expiresInMillis));
+        return new JwtContext("token-of-" + subject, claims, Collections.emptyList());
+    }
+}
@@ -0,0 +1,139 @@
+package com.github.toastshaman.dropwizard.auth.jwt;
+
+import org.jose4j.jwk.EcJwkGenerator;
+import org.jose4j.jwk.EllipticCurveJsonWebKey;
+import org.jose4j.jwk.JsonWebKeySet;
+import org.jose4j.jwk.PublicJsonWebKey;
+import org.jose4j.jwk.RsaJsonWebKey;
+import org.jose4j.jwk.RsaJwkGenerator;
+import org.jose4j.jws.JsonWebSignature;
+import org.jose4j.jwt.JwtClaims;
+import org.jose4j.jwt.consumer.InvalidJwtException;
+import org.jose4j.jwt.consumer.JwtConsumer;
+import org.jose4j.jwt.consumer.JwtConsumerBuilder;
+import org.jose4j.keys.EllipticCurves;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.failBecauseExceptionWasNotThrown;
+import static org.jose4j.jws.AlgorithmIdentifiers.ECDSA_USING_P256_CURVE_AND_SHA256;
+import static org.jose4j.jws.AlgorithmIdentifiers.RSA_USING_SHA256;
+
+public class RefreshingJwksKeyResolverTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private Path jwksFile;
+    private RefreshingJwksKeyResolver resolver;
+    private JwtConsumer consumer;
+
+    @Before
+    public void setUp() throws Exception {
+        jwksFile = folder.newFile("jwks.json").toPath();
+        resolver = new RefreshingJwksKeyResolver(JwksSource.fromFile(jwksFile), Duration.ofHours(1));
+        consumer = new JwtConsumerBuilder()
+            .setRequireSubject()
+            .setVerificationKeyResolver(resolver)
+            .build();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        resolver.stop();
+    }
+
+    @Test
+    public void resolvesKeysByKeyId() throws Exception {
+        final RsaJsonWebKey first = generateKey("first");
+        final RsaJsonWebKey second = generateKey("second");
+        publish(first, second);
+        resolver.start();
+
+        assertThat(resolver.getKeyIds()).containsOnly("first", "second");
+        assertThat(consumer.process(sign(first)).getJwtClaims().getSubject()).isEqualTo("good-guy");
+        assertThat(consumer.process(sign(second)).getJwtClaims().getSubject()).isEqualTo("good-guy");
+    }
+
+    @Test
+    public void picksUpRotatedKeysOnRefresh() throws Exception {
+        final RsaJsonWebKey retired = generateKey("retired");
+        final RsaJsonWebKey rotated = generateKey("rotated");
+        publish(retired);
+        resolver.start();
+
+        publish(rotated);
+        assertThat(resolver.refresh()).isTrue();
+
+        assertThat(consumer.process(sign(rotated)).getJwtClaims().getSubject()).isEqualTo("good-guy");
+        try {
+            consumer.process(sign(retired));
+            failBecauseExceptionWasNotThrown(InvalidJwtException.class);
+        } catch (InvalidJwtException e) {
+            assertThat(e.getMessage()).contains("retired");
+        }
+    }
+
+    @Test
+    public void keepsThePreviousKeysWhenARefreshFails() throws Exception {
+        final RsaJsonWebKey key = generateKey("key");
+        publish(key);
+        resolver.start();
+
+        Files.write(jwksFile, "not a key set".getBytes(UTF_8));
+
+        assertThat(resolver.refresh()).isFalse();
+        assertThat(consumer.process(sign(key)).getJwtClaims().getSubject()).isEqualTo("good-guy");
+    }
+
+    @Test
+    public void choosesKeysSharingAKeyIdByAlgorithm() throws Exception {
+        final RsaJsonWebKey rsa = generateKey("shared");
+        rsa.setAlgorithm(RSA_USING_SHA256);
+        final EllipticCurveJsonWebKey ec = EcJwkGenerator.generateJwk(EllipticCurves.P256);
+        ec.setKeyId("shared");
+        publish(rsa, ec);
+        resolver.start();
+
+        assertThat(resolver.getLastRefreshTime()).isPositive();
+        assertThat(resolver.getKeyIds()).containsOnly("shared");
+        assertThat(consumer.process(sign(rsa)).getJwtClaims().getSubject()).isEqualTo("good-guy");
+        assertThat(consumer.process(sign(ec, ECDSA_USING_P256_CURVE_AND_SHA256)).getJwtClaims().getSubject())
+            .isEqualTo("good-guy");
+    }
+
+    private static RsaJsonWebKey generateKey(String keyId) throws Exception {
+        final RsaJsonWebKey jwk = RsaJwkGenerator.generateJwk(2048);
+        jwk.setKeyId(keyId);
+        return jwk;
+    }
+
+    private void publish(PublicJsonWebKey... keys) throws Exception {
+        Files.write(jwksFile, new JsonWebKeySet(keys).toJson().getBytes(UTF_8));
+    }
+
+    private static String sign(RsaJsonWebKey key) throws Exception {
+        return sign(key, RSA_USING_SHA256);
+    }
+
+    private static String sign(PublicJsonWebKey key, String algorithm) throws Exception {
+        final JwtClaims claims = new JwtClaims();
+        claims.setSubject("good-guy");
+
+        final JsonWebSignature jws = new JsonWebSignature();
+        jws.setPayload(claims.toJson());
+        jws.setAlgorithmHeaderValue(algorithm);
+        jws.setKeyIdHeaderValue(key.getKeyId());
+        jws.setKey(key.getPrivateKey());
+        return jws.getCompactSerialization();
+    }
+}
@@ -0,0 +1,138 @@
+package com.github.toastshaman.dropwizard.auth.jwt;
+
+import io.dropwizard.auth.Authenticator;
+import io.dropwizard.auth.PrincipalImpl;
+import org.jose4j.jws.AlgorithmIdentifiers;
+import org.jose4j.jwt.JwtClaims;
+import org.jose4j.jwt.consumer.JwtConsumerBuilder;
+import org.jose4j.jwt.consumer.JwtContext;
+import org.jose4j.keys.HmacKey;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.ws.rs.WebApplicationException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.failBecauseExceptionWasNotThrown;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+
+public class ReloadableJwtSettingsTest {
+
+    private static final String FIRST_SECRET = "Po70rBeXjKDhckY9yWmhNVte/UajN8xbA==lkDvaBTeWRja0SFMzcz113d/bi3Tn";
+    private static final String SECOND_SECRET = "Qo70rBeXjKDhckY9yWmhNVte/UajN8xbA==lkDvaBTeWRja0SFMzcz113d/bi3Tn";
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private Path file;
+    private ReloadableJwtSettings settings;
+
+    @Before
+    public void setUp() throws Exception {
+        file = folder.newFile("secret.txt").toPath();
+        write(FIRST_SECRET);
+        settings = new ReloadableJwtSettings(file, ReloadableJwtSettingsTest::load);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        settings.stop();
+    }
+
+    @Test
+    public void publishesReloadedSettingsToTheListeners() throws Exception {
+        final JwtFilterSettings initial = settings.get();
+        final List<JwtFilterSettings> published = new ArrayList<>();
+        settings.addListener(published::add);
+
+        write(SECOND_SECRET);
+
+        assertThat(settings.reload()).isTrue();
+        assertThat(settings.get()).isNotSameAs(initial);
+        assertThat(published).containsExactly(settings.get());
+        assertThat(settings.getLastReloadTime()).isPositive();
+    }
+
+    @Test
+    public void keepsThePreviousSettingsIfTheFileCannotBeLoaded() throws Exception {
+        final JwtFilterSettings initial = settings.get();
+
+        Files.delete(file);
+
+        assertThat(settings.reload()).isFalse();
+        assertThat(settings.get()).isSameAs(initial);
+    }
+
+    @Test
+    public void reloadsTheSettingsWhenTheFileChanges() throws Exception {
+        final JwtFilterSettings initial = settings.get();
+        settings.start();
+
+        write(SECOND_SECRET);
+
+        final long deadline = System.currentTimeMillis() + 30_000;
+        while (settings.get() == initial && System.currentTimeMillis() < deadline) {
+            Thread.sleep(50);
+        }
+        assertThat(settings.get()).isNotSameAs(initial);
+    }
+
+    @Test
+    public void verifiesTokensWithTheReloadedKey() throws Exception {
+        @SuppressWarnings("unchecked")
+        final Authenticator<JwtContext, Principal> authenticator = mock(Authenticator.class);
+        when(authenticator.authenticate(any(JwtContext.class))).thenReturn(Optional.of(new PrincipalImpl("good-guy")));
+        final JwtAuthFilter<Principal> filter = new JwtAuthFilter.Builder<Principal>()
+            .setReloadableSettings(settings)
+            .setPrefix("Bearer")
+            .setAuthenticator(authenticator)
+            .buildAuthFilter();
+
+        filter.filter(AuthUtil.request(token(FIRST_SECRET)));
+
+        write(SECOND_SECRET);
+        settings.reload();
+
+        filter.filter(AuthUtil.request(token(SECOND_SECRET)));
+        try {
+            filter.filter(AuthUtil.request(token(FIRST_SECRET)));
+            failBecauseExceptionWasNotThrown(WebApplicationException.class);
+        } catch (WebApplicationException e) {
+            assertThat(e.getResponse().getStatus()).isEqualTo(401);
+        }
+    }
+
+    private void write(String secret) throws IOException {
+        Files.write(file, secret.getBytes(UTF_8));
+    }
+
+    private static JwtFilterSettings load(Path file) throws IOException {
+        final byte[] secret = Files.readAllBytes(file);
+        return new JwtFilterSettings.Builder()
+            .setJwtConsumer(new JwtConsumerBuilder()
+                .setRequireSubject()
+                .setVerificationKey(new HmacKey(secret))
+                .setRelaxVerificationKeyValidation()
+                .build())
+            .build();
+    }
+
+    private static String token(String secret) throws Exception {
+        final JwtClaims claims = new JwtClaims();
+        claims.setSubject("good-guy");
+
+        return AuthUtil.sign(claims, AlgorithmIdentifiers.HMAC_SHA512, secret.getBytes(UTF_8));
+    }
+}
@@ -0,0 +1,129 @@
+package com.github.toastshaman.dropwizard.auth.jwt;
+
+import com.google.common.cache.CacheBuilderSpec;
+import io.dropwizard.auth.Authenticator;
+import io.dropwizard.auth.PrincipalImpl;
+import org.jose4j.jwt.JwtClaims;
+import org.jose4j.jwt.consumer.JwtContext;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.Principal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.*;
+
+public class RevocationListTest {
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private Path file;
+    private RevocationList revocations;
+
+    @Before
+    public void setUp() throws Exception {
+        file = folder.newFile("revoked.txt").toPath();
+        revocations = new RevocationList(RevocationSource.fromFile(file), Duration.ofHours(1));
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        revocations.stop();
+    }
+
+    @Test
+    public void revokesTheListedJwtIds() throws Exception {
+        publish("# revoked on 2017-06-01", "jti-1", "", "  jti-2  ");
+        revocations.start();
+
+        assertThat(revocations.isRevoked("jti-1")).isTrue();
+        assertThat(revocations.isRevoked("jti-2")).isTrue();
+        assertThat(revocations.isRevoked("jti-3")).isFalse();
+        assertThat(revocations.isRevoked(null)).isFalse();
+        assertThat(revocations.size()).isEqualTo(2);
+        assertThat(revocations.getLastRefreshTime()).isPositive();
+    }
+
+    @Test
+    public void notifiesListenersOfNewlyRevokedJwtIds() throws Exception {
+        final List<String> revoked = new ArrayList<>();
+        revocations.addListener(revoked::add);
+
+        publish("jti-1");
+        revocations.refresh();
+        publish("jti-1", "jti-2");
+        revocations.refresh();
+
+        assertThat(revoked).containsExactly("jti-1", "jti-2");
+    }
+
+    @Test
+    public void keepsThePreviousListWhenARefreshFails() throws Exception {
+        final RevocationList failing = new RevocationList(new RevocationSource() {
+            private int calls;
+
+            @Override
+            public List<String> load() throws IOException {
+                if (calls++ > 0) {
+                    throw new IOException("unavailable");
+                }
+                return Collections.singletonList("jti-1");
+            }
+        }, Duration.ofHours(1));
+
+        assertThat(failing.refresh()).isTrue();
+        assertThat(failing.refresh()).isFalse();
+        assertThat(failing.isRevoked("jti-1")).isTrue();
+    }
+
+    @Test
+    public void refusesRevokedTokensBeforeTheCacheIsConsulted() throws Exception {
+        @SuppressWarnings("unchecked")
+        final Authenticator<JwtContext, Principal> underlying = mock(Authenticator.class);
+        when(underlying.authenticate(any(JwtContext.class))).thenReturn(Optional.of(new PrincipalImpl("alice")));
+        final CachingJwtAuthenticator<Principal> authenticator = new CachingJwtAuthenticator.Builder<Principal>()
+            .setAuthenticator(underlying)
+            .setCache(new GuavaPrincipalCache<>(CacheBuilderSpec.parse("maximumSize=10")))
+            .setRevocationList(revocations)
+            .indexByJwtId()
+            .setRefreshExecutor(Runnable::run)
+            .build();
+
+        assertThat(authenticator.authenticate(token("jti-1"))).contains(new PrincipalImpl("alice"));
+        assertThat(authenticator.authenticate(token("jti-2"))).contains(new PrincipalImpl("alice"));
+
+        publish("jti-1");
+        revocations.refresh();
+
+        assertThat(authenticator.authenticate(token("jti-1"))).isEmpty();
+        assertThat(authenticator.authenticateAsync(token("jti-1")).toCompletableFuture().get()).isEmpty();
+        assertThat(authenticator.authenticate(token("jti-2"))).contains(new PrincipalImpl("alice"));
+        assertThat(authenticator.size()).isEqualTo(1);
+        verify(underlying, times(2)).authenticate(any(JwtContext.class));
+    }
+
+    private void publish(String... lines) throws IOException {
+        Files.write(file, String.join("\n", lines).getBytes(UTF_8));
+    }
+
+    private static JwtContext token(String jwtId) {
+        final JwtClaims claims = new JwtClaims();
+        claims.setSubject("alice");
+        claims.setJwtId(jwtId);
+        return new JwtContext("token-" + jwtId, claims, Collections.emptyList());
+    }
+}
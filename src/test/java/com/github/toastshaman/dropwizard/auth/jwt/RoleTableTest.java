@@ -0,0 +1,64 @@
+package com.github.toastshaman.dropwizard.auth.jwt;
+
+import com.google.common.collect.ImmutableList;
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class RoleTableTest {
+
+    private final RoleTable table = new RoleTable(100);
+
+    @Test
+    public void assignsEachRoleAStableId() throws Exception {
+        assertThat(table.intern("USER")).isEqualTo(0);
+        assertThat(table.intern("ADMIN")).isEqualTo(1);
+        assertThat(table.intern("USER")).isEqualTo(0);
+        assertThat(table.idOf("ADMIN")).isEqualTo(1);
+        assertThat(table.idOf("AUDITOR")).isEqualTo(-1);
+        assertThat(table.size()).isEqualTo(2);
+    }
+
+    @Test
+    public void storesRolesAsABitset() throws Exception {
+        for (int i = 0; i < 70; i++) {
+            table.intern("role-" + i);
+        }
+
+        final RoleSet roles = table.rolesOf(ImmutableList.of("role-3", "role-69", "NEW"));
+
+        assertThat(table.contains(roles, "role-3")).isTrue();
+        assertThat(table.contains(roles, "role-69")).isTrue();
+        assertThat(table.contains(roles, "NEW")).isTrue();
+        assertThat(table.contains(roles, "role-4")).isFalse();
+        assertThat(table.contains(roles, "UNKNOWN")).isFalse();
+        assertThat(table.rolesOf(ImmutableList.of())).isSameAs(RoleSet.EMPTY);
+    }
+
+    @Test
+    public void keepsRolesByNameOnceFull() throws Exception {
+        final RoleTable small = new RoleTable(1);
+
+        final RoleSet roles = small.rolesOf(ImmutableList.of("USER", "ADMIN"));
+
+        assertThat(small.contains(roles, "USER")).isTrue();
+        assertThat(small.contains(roles, "ADMIN")).isTrue();
+        assertThat(small.contains(roles, "AUDITOR")).isFalse();
+        assertThat(small.intern("ADMIN")).isEqualTo(-1);
+    }
+
+    @Test
+    public void checksNewRolesOnceTokensHaveFilledTheTable() throws Exception {
+        for (int i = 0; i < 100; i++) {
+            table.rolesOf(ImmutableList.of("scope-" + i));
+        }
+
+        final RoleSet roles = table.rolesOf(ImmutableList.of("scope-7", "ADMIN"));
+
+        assertThat(table.size()).isEqualTo(100);
+        assertThat(table.contains(roles, "ADMIN")).isTrue();
+        assertThat(table.contains(roles, "scope-7")).isTrue();
+        assertThat(table.contains(roles, "scope-8")).isFalse();
+        assertThat(table.contains(table.rolesOf(ImmutableList.of("USER")), "ADMIN")).isFalse();
+    }
+}
@@ -0,0 +1,46 @@
+package com.github.toastshaman.dropwizard.auth.jwt;
+
+import org.junit.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TokenExtractorTest {
+
+    @Test
+    public void extractsTheTokenFollowingTheScheme() {
+        assertThat(TokenExtractor.fromAuthorizationHeader("Bearer a.b.c", "Bearer")).isEqualTo("a.b.c");
+        assertThat(TokenExtractor.indexOfToken("Bearer a.b.c", "Bearer")).isEqualTo(7);
+    }
+
+    @Test
+    public void comparesTheSchemeCaseInsensitively() {
+        assertThat(TokenExtractor.fromAuthorizationHeader("bEaReR a.b.c", "Bearer")).isEqualTo("a.b.c");
+    }
+
+    @Test
+    public void ignoresOtherSchemes() {
+        assertThat(TokenExtractor.fromAuthorizationHeader("Basic dXNlcjpwYXNz", "Bearer")).isNull();
+        assertThat(TokenExtractor.fromAuthorizationHeader("BearerX a.b.c", "Bearer")).isNull();
+        assertThat(TokenExtractor.fromAuthorizationHeader("Bearer", "Bearer")).isNull();
+        assertThat(TokenExtractor.fromAuthorizationHeader(null, "Bearer")).isNull();
+    }
+
+    @Test
+    public void extractsTheNamedCookie() {
+        assertThat(TokenExtractor.fromCookieHeader("theme=dark; jwt=a.b.c; lang=en", "jwt")).isEqualTo("a.b.c");
+        assertThat(TokenExtractor.fromCookieHeader("jwt=a.b.c", "jwt")).isEqualTo("a.b.c");
+        assertThat(TokenExtractor.fromCookieHeader("theme=dark,jwt = a.b.c ", "jwt")).isEqualTo("a.b.c");
+    }
+
+    @Test
+    public void stripsQuotesFromCookieValues() {
+        assertThat(TokenExtractor.fromCookieHeader("$Version=1; jwt=\"a.b.c\"", "jwt")).isEqualTo("a.b.c");
+    }
+
+    @Test
+    public void doesNotMatchCookiesByPrefix() {
+        assertThat(TokenExtractor.fromCookieHeader("jwt-token=a.b.c; xjwt=d.e.f", "jwt")).isNull();
+        assertThat(TokenExtractor.fromCookieHeader("jwt; other=value", "jwt")).isNull();
+        assertThat(TokenExtractor.fromCookieHeader(null, "jwt")).isNull();
+    }
+}
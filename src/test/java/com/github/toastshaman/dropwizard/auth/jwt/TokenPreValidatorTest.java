@@ -0,0 +1,91 @@
+package com.github.toastshaman.dropwizard.auth.jwt;
+
+import com.google.common.base.Strings;
+import org.jose4j.jws.JsonWebSignature;
+import org.jose4j.jwt.JwtClaims;
+import org.jose4j.jwt.NumericDate;
+import org.jose4j.jwt.consumer.ErrorCodes;
+import org.jose4j.jwt.consumer.InvalidJwtException;
+import org.jose4j.keys.HmacKey;
+import org.junit.Test;
+
+import java.util.Base64;
+
+import static com.google.common.base.Charsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.failBecauseExceptionWasNotThrown;
+import static org.jose4j.jws.AlgorithmIdentifiers.HMAC_SHA256;
+import static org.jose4j.jws.AlgorithmIdentifiers.RSA_USING_SHA256;
+
+public class TokenPreValidatorTest {
+
+    private static final HmacKey KEY = new HmacKey("dfwzsdzwh823zebdwdz772632gdsbdaa".getBytes(UTF_8));
+
+    private final TokenPreValidator validator = new TokenPreValidator.Builder()
+        .setAllowedAlgorithms(HMAC_SHA256)
+        .setAllowedKeyIds("key-1")
+        .setMaxLength(1024)
+        .build();
+
+    @Test
+    public void letsWellFormedTokensPass() throws Exception {
+        validator.validate(token("key-1", 300, -300));
+    }
+
+    @Test
+    public void rejectsTokensWhichAreNotThreeBase64UrlSegments() throws Exception {
+        assertRejected("a.b", ErrorCodes.MISCELLANEOUS);
+        assertRejected("a.b.c.d", ErrorCodes.MISCELLANEOUS);
+        assertRejected("a..c", ErrorCodes.MISCELLANEOUS);
+        assertRejected("a.b.", ErrorCodes.MISCELLANEOUS);
+        assertRejected("a.b+/.c", ErrorCodes.MISCELLANEOUS);
+        assertRejected(Strings.repeat("a", 1025), ErrorCodes.MISCELLANEOUS);
+    }
+
+    @Test
+    public void rejectsSegmentsWhichAreNotJson() throws Exception {
+        assertRejected("bm90IGpzb24.e30.c2ln", ErrorCodes.JSON_INVALID);
+    }
+
+    @Test
+    public void rejectsAlgorithmsAndKeysWhichAreNotPermitted() throws Exception {
+        final String token = token("key-1", 300, -300);
+        final String rsaHeader = Base64.getUrlEncoder().withoutPadding()
+            .encodeToString(("{\"alg\":\"" + RSA_USING_SHA256 + "\",\"kid\":\"key-1\"}").getBytes(UTF_8));
+
+        assertRejected(rsaHeader + token.substring(token.indexOf('.')), ErrorCodes.MISCELLANEOUS);
+        assertRejected(token("key-2", 300, -300), ErrorCodes.MISCELLANEOUS);
+    }
+
+    @Test
+    public void rejectsExpiredAndNotYetValidTokens() throws Exception {
+        assertRejected(token("key-1", -10, -300), ErrorCodes.EXPIRED);
+        assertRejected(token("key-1", 300, 60), ErrorCodes.NOT_YET_VALID);
+
+        new TokenPreValidator.Builder().setAllowedClockSkewInSeconds(30).build().validate(token("key-1", -10, 10));
+        new TokenPreValidator.Builder().setCheckTimes(false).build().validate(token("key-1", -10, 60));
+    }
+
+    private void assertRejected(String token, int errorCode) {
+        try {
+            validator.validate(token);
+            failBecauseExceptionWasNotThrown(InvalidJwtException.class);
+        } catch (InvalidJwtException e) {
+            assertThat(e.hasErrorCode(errorCode)).as(e.getMessage()).isTrue();
+        }
+    }
+
+    private static String token(String keyId, long expiresInSeconds, long validInSeconds) throws Exception {
+        final JwtClaims claims = new JwtClaims();
+        claims.setSubject("good-guy");
+        claims.setExpirationTime(NumericDate.fromSeconds(NumericDate.now().getValue() + expiresInSeconds));
+        claims.setNotBefore(NumericDate.fromSeconds(NumericDate.now().getValue() + validInSeconds));
+
+        final JsonWebSignature jws = new JsonWebSignature();
+        jws.setPayload(claims.toJson());
+        jws.setAlgorithmHeaderValue(HMAC_SHA256);
+        jws.setKeyIdHeaderValue(keyId);
+        jws.setKey(KEY);
+        return jws.getCompactSerialization();
+    }
+}
@@ -0,0 +1,87 @@
+package com.github.toastshaman.dropwizard.auth.jwt;
+
+import com.codahale.metrics.MetricRegistry;
+import com.google.common.base.Throwables;
+import com.google.common.cache.CacheBuilderSpec;
+import org.jose4j.jws.AlgorithmIdentifiers;
+import org.jose4j.jws.JsonWebSignature;
+import org.jose4j.jwt.JwtClaims;
+import org.jose4j.jwt.NumericDate;
+import org.jose4j.jwt.consumer.JwtConsumer;
+import org.jose4j.jwt.consumer.JwtConsumerBuilder;
+import org.jose4j.jwt.consumer.JwtContext;
+import org.jose4j.keys.HmacKey;
+import org.junit.Test;
+
+import static com.codahale.metrics.MetricRegistry.name;
+import static com.google.common.base.Charsets.UTF_8;
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class VerifiedTokenCacheTest {
+
+    private static final String SECRET = "Po70rBeXjKDhckY9yWmhNVte/UajN8xbA==lkDvaBTeWRja0SFMzcz113d/bi3Tn";
+
+    private final MetricRegistry metricRegistry = new MetricRegistry();
+
+    private final VerifiedTokenCache cache = new VerifiedTokenCache(metricRegistry,
+        CacheBuilderSpec.parse("maximumSize=10"), 30);
+
+    private final JwtConsumer consumer = new JwtConsumerBuilder()
+        .setAllowedClockSkewInSeconds(30)
+        .setRequireSubject()
+        .setVerificationKey(new HmacKey(SECRET.getBytes(UTF_8)))
+        .setRelaxVerificationKeyValidation()
+        .build();
+
+    private JwtContext tokenExpiringAt(NumericDate expirationTime) {
+        final JwtClaims claims = new JwtClaims();
+        claims.setSubject("good-guy");
+        if (expirationTime != null) {
+            claims.setExpirationTime(expirationTime);
+        }
+
+        final JsonWebSignature jws = new JsonWebSignature();
+        jws.setPayload(claims.toJson());
+        jws.setAlgorithmHeaderValue(AlgorithmIdentifiers.HMAC_SHA512);
+        jws.setKey(new HmacKey(SECRET.getBytes(UTF_8)));
+        jws.setDoKeyValidation(false);
+
+        try {
+            return consumer.process(jws.getCompactSerialization());
+        }
+        catch (Exception e) { throw Throwables.propagate(e); }
+    }
+
+    private static NumericDate secondsFromNow(long seconds) {
+        final NumericDate date = NumericDate.now();
+        date.addSeconds(seconds);
+        return date;
+    }
+
+    @Test
+    public void returnsTheCachedContextOfAVerifiedToken() throws Exception {
+        final JwtContext context = tokenExpiringAt(secondsFromNow(300));
+        cache.put(context.getJwt(), context);
+
+        assertThat(cache.getIfPresent(context.getJwt())).isSameAs(context);
+        assertThat(metricRegistry.meter(name(VerifiedTokenCache.class, "hits")).getCount()).isEqualTo(1);
+    }
+
+    @Test
+    public void cachesTokensWithoutAnExpirationTime() throws Exception {
+        final JwtContext context = tokenExpiringAt(null);
+        cache.put(context.getJwt(), context);
+
+        assertThat(cache.getIfPresent(context.getJwt())).isSameAs(context);
+    }
+
+    @Test
+    public void doesNotCacheTokensExpiringWithinTheClockSkew() throws Exception {
+        final JwtContext context = tokenExpiringAt(secondsFromNow(10));
+        cache.put(context.getJwt(), context);
+
+        assertThat(cache.size()).isZero();
+        assertThat(cache.getIfPresent(context.getJwt())).isNull();
+        assertThat(metricRegistry.meter(name(VerifiedTokenCache.class, "misses")).getCount()).isEqualTo(1);
+    }
+}
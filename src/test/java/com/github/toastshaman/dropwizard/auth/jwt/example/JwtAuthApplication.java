@@ -1,23 +1,18 @@
 package com.github.toastshaman.dropwizard.auth.jwt.example;
 
-import com.github.toastshaman.dropwizard.auth.jwt.JwtAuthFilter;
+import com.github.toastshaman.dropwizard.auth.jwt.JwtAuthBundle;
+import com.github.toastshaman.dropwizard.auth.jwt.JwtAuthFactory;
 import io.dropwizard.Application;
-import io.dropwizard.auth.AuthDynamicFeature;
-import io.dropwizard.auth.AuthValueFactoryProvider;
 import io.dropwizard.auth.Authenticator;
 import io.dropwizard.setup.Bootstrap;
 import io.dropwizard.setup.Environment;
-import org.glassfish.jersey.server.filter.RolesAllowedDynamicFeature;
 import org.jose4j.jwt.MalformedClaimException;
-import org.jose4j.jwt.consumer.JwtConsumer;
-import org.jose4j.jwt.consumer.JwtConsumerBuilder;
 import org.jose4j.jwt.consumer.JwtContext;
-import org.jose4j.keys.HmacKey;
 
-import java.security.Principal;
 import java.util.Optional;
 
 import static java.math.BigDecimal.ONE;
+import static java.nio.charset.StandardCharsets.UTF_8;
 
 /**
  * A sample dropwizard application that shows how to set up the JWT Authentication provider.
@@ -28,31 +23,26 @@ import static java.math.BigDecimal.ONE;
 public class JwtAuthApplication extends Application<MyConfiguration> {
 
     @Override
-    public void initialize(Bootstrap<MyConfiguration> configurationBootstrap) {}
+    public void initialize(Bootstrap<MyConfiguration> bootstrap) {
+        // verifies tokens and caches principals as configured in the "jwt" section of the configuration
+        bootstrap.addBundle(new JwtAuthBundle<MyConfiguration, MyUser>(MyUser.class) {
+            @Override
+            public JwtAuthFactory getJwtAuthFactory(MyConfiguration configuration) {
+                return configuration.getJwt();
+            }
+
+            @Override
+            public Authenticator<JwtContext, MyUser> getAuthenticator(MyConfiguration configuration,
+                                                                      Environment environment) {
+                return new ExampleAuthenticator();
+            }
+        });
+    }
 
     @Override
     public void run(MyConfiguration configuration, Environment environment) throws Exception {
-        final byte[] key = configuration.getJwtTokenSecret();
-
-        final JwtConsumer consumer = new JwtConsumerBuilder()
-            .setAllowedClockSkewInSeconds(30) // allow some leeway in validating time based claims to account for clock skew
-            .setRequireExpirationTime() // the JWT must have an expiration time
-            .setRequireSubject() // the JWT must have a subject claim
-            .setVerificationKey(new HmacKey(key)) // verify the signature with the public key
-            .setRelaxVerificationKeyValidation() // relaxes key length requirement
-            .build(); // create the JwtConsumer instance
-
-        environment.jersey().register(new AuthDynamicFeature(
-            new JwtAuthFilter.Builder<MyUser>()
-                .setJwtConsumer(consumer)
-                .setRealm("realm")
-                .setPrefix("Bearer")
-                .setAuthenticator(new ExampleAuthenticator())
-                .buildAuthFilter()));
-
-        environment.jersey().register(new AuthValueFactoryProvider.Binder<>(Principal.class));
-        environment.jersey().register(RolesAllowedDynamicFeature.class);
-        environment.jersey().register(new SecuredResource(configuration.getJwtTokenSecret()));
+        // tokens are signed with the secret the bundle verifies them with
+        environment.jersey().register(new SecuredResource(configuration.getJwt().getSecret().getBytes(UTF_8)));
     }
 
     private static class ExampleAuthenticator implements Authenticator<JwtContext, MyUser> {
@@ -1,16 +1,29 @@
 package com.github.toastshaman.dropwizard.auth.jwt.example;
 
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.github.toastshaman.dropwizard.auth.jwt.JwtAuthFactory;
 import io.dropwizard.Configuration;
-import org.hibernate.validator.constraints.NotEmpty;
 
-import java.io.UnsupportedEncodingException;
+import javax.validation.Valid;
+import javax.validation.constraints.NotNull;
 
 public class MyConfiguration extends Configuration {
 
-    @NotEmpty
-    private String jwtTokenSecret = "dfwzsdzwh823zebdwdz772632gdsbd";
+    @Valid
+    @NotNull
+    private JwtAuthFactory jwt = new JwtAuthFactory();
 
-    public byte[] getJwtTokenSecret() throws UnsupportedEncodingException {
-        return jwtTokenSecret.getBytes("UTF-8");
+    public MyConfiguration() {
+        jwt.setSecret("dfwzsdzwh823zebdwdz772632gdsbdaa");
+    }
+
+    @JsonProperty
+    public JwtAuthFactory getJwt() {
+        return jwt;
+    }
+
+    @JsonProperty
+    public void setJwt(JwtAuthFactory jwt) {
+        this.jwt = jwt;
     }
 }
@@ -11,7 +11,6 @@ import org.jose4j.lang.JoseException;
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
-import java.security.Principal;
 import java.util.Map;
 
 import static java.util.Collections.singletonMap;
@@ -66,7 +65,7 @@ public class SecuredResource {
 
     @GET
     @Path("/check-token")
-    public Map<String, Object> get(@Auth Principal user) {
-        return ImmutableMap.<String, Object>of("username", user.getName(), "id", ((MyUser) user).getId());
+    public Map<String, Object> get(@Auth MyUser user) {
+        return ImmutableMap.<String, Object>of("username", user.getName(), "id", user.getId());
     }
 }